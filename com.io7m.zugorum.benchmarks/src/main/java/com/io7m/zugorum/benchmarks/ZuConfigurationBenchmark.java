@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.benchmarks;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The time taken to parse configuration files of varying sizes. The
+ * generated files mix every check type.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZuConfigurationBenchmark
+{
+  @Param({"100", "10000", "50000"})
+  public int checkCount;
+
+  private Path file;
+
+  /**
+   * Generate the configuration file.
+   *
+   * @throws IOException On errors
+   */
+
+  @Setup
+  public void setup()
+    throws IOException
+  {
+    final var text = new StringBuilder(this.checkCount * 160);
+    text.append("""
+      {
+        "ListenAddress": "0.0.0.0",
+        "ListenPort": 8190,
+        "Checks": [
+      """);
+
+    for (int index = 0; index < this.checkCount; ++index) {
+      if (index > 0) {
+        text.append(",\n");
+      }
+      text.append(checkOf(index));
+    }
+
+    text.append("""
+
+        ]
+      }
+      """);
+
+    this.file = Files.createTempFile("zugorum-benchmark-", ".json");
+    Files.writeString(this.file, text, UTF_8);
+  }
+
+  private static String checkOf(
+    final int index)
+  {
+    return switch (index % 4) {
+      case 0 -> """
+          { "Type": "HTTP2xx", "URI": "https://h%d.example.com", "PauseMinimum": "PT30S", "PauseMaximum": "PT60S" }"""
+        .formatted(index);
+      case 1 -> """
+          { "Type": "TLS", "URI": "tls://h%d.example.com:443", "ConnectTimeout": "PT5S" }"""
+        .formatted(index);
+      case 2 -> """
+          { "Type": "SMTPHELO", "URI": "smtp://h%d.example.com:25", "HELO": "zugorum.example.com" }"""
+        .formatted(index);
+      default -> """
+          { "Type": "TCP", "URI": "tcp://h%d.example.com:22", "Deadline": "PT10S" }"""
+        .formatted(index);
+    };
+  }
+
+  /**
+   * Delete the configuration file.
+   *
+   * @throws IOException On errors
+   */
+
+  @TearDown
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(this.file);
+  }
+
+  /**
+   * Parse the configuration file.
+   *
+   * @return The configuration
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public ZuConfiguration ofFile()
+    throws IOException
+  {
+    return ZuConfiguration.ofFile(this.file);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.benchmarks;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckKind;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of metric updates when many probes complete concurrently.
+ * Each thread updates the status and duration histogram of a randomly
+ * chosen check, so threads contend on the same pages and histogram buckets
+ * in proportion to the number of checks.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ZuMetricsBenchmark
+{
+  @Param({"16", "1024", "65536"})
+  public int checkCount;
+
+  private ZuMetrics metrics;
+  private ZuMetrics.Check[] checks;
+
+  /**
+   * Register the checks.
+   */
+
+  @Setup
+  public void setup()
+  {
+    this.metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    this.checks =
+      new ZuMetrics.Check[this.checkCount];
+
+    for (int index = 0; index < this.checkCount; ++index) {
+      this.checks[index] =
+        this.metrics.register(
+          ZuCheckKind.HTTP,
+          URI.create("https://h%d.example.com".formatted(index))
+        );
+    }
+  }
+
+  private ZuMetrics.Check pick()
+  {
+    return this.checks[ThreadLocalRandom.current().nextInt(this.checkCount)];
+  }
+
+  /**
+   * Record an HTTP status.
+   */
+
+  @Benchmark
+  public void status()
+  {
+    this.metrics.status(this.pick(), 200);
+  }
+
+  /**
+   * Record a failure.
+   */
+
+  @Benchmark
+  public void failure()
+  {
+    this.metrics.failure(this.pick(), "Connection refused");
+  }
+
+  /**
+   * Record a probe duration.
+   */
+
+  @Benchmark
+  public void duration()
+  {
+    final var random = ThreadLocalRandom.current();
+    this.checks[random.nextInt(this.checkCount)]
+      .durations()
+      .record(random.nextLong(1_000_000_000L));
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.benchmarks;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckKind;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuMetricsExposition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The cost of rendering a scrape at varying series counts.</p>
+ *
+ * <p>The output is written through the same 64KiB buffer that
+ * {@code ZuMetricsHandler} places in front of the response stream, into a
+ * null stream, so that only the rendering cost is measured. The
+ * {@code changedPercent} parameter controls the fraction of checks whose
+ * state changes between scrapes, and which must therefore be
+ * re-rendered.</p>
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZuMetricsExpositionBenchmark
+{
+  @Param({"1000", "10000", "100000"})
+  public int seriesCount;
+
+  @Param({"0", "1", "100"})
+  public int changedPercent;
+
+  private ZuMetrics metrics;
+  private ZuMetrics.Check[] checks;
+  private ZuMetricsExposition exposition;
+  private int changedPerScrape;
+  private int cursor;
+  private int status;
+
+  /**
+   * Register the checks and render once, so that the caches are warm.
+   *
+   * @throws IOException On errors
+   */
+
+  @Setup
+  public void setup()
+    throws IOException
+  {
+    this.metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    this.checks =
+      new ZuMetrics.Check[this.seriesCount];
+
+    for (int index = 0; index < this.seriesCount; ++index) {
+      final var check =
+        this.metrics.register(
+          ZuCheckKind.HTTP,
+          URI.create("https://h%d.example.com".formatted(index))
+        );
+      this.metrics.status(check, 200);
+      check.durations().record(index * 1000L);
+      this.checks[index] = check;
+    }
+
+    this.changedPerScrape =
+      (this.seriesCount * this.changedPercent) / 100;
+    this.exposition =
+      new ZuMetricsExposition(this.metrics);
+    this.exposition.write(OutputStream.nullOutputStream());
+  }
+
+  /**
+   * Change the configured fraction of checks, then render a scrape.
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public void scrape()
+    throws IOException
+  {
+    this.status = this.status == 200 ? 503 : 200;
+    for (int index = 0; index < this.changedPerScrape; ++index) {
+      final var check = this.checks[this.cursor];
+      this.metrics.status(check, this.status);
+      check.durations().record(1_000_000L);
+      this.cursor = (this.cursor + 1) % this.seriesCount;
+    }
+
+    final var output =
+      new BufferedOutputStream(OutputStream.nullOutputStream(), 65536);
+    this.exposition.write(output);
+    output.flush();
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.benchmarks;
+
+import com.io7m.zugorum.server.internal.ZuTimingWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The cost of scheduling checks on a timing wheel that already holds a
+ * large number of idle checks, and the dispatch latency of a check that is
+ * due after a single tick.</p>
+ *
+ * <p>The memory allocated for each scheduled check is reported by the GC
+ * profiler ({@code gc.alloc.rate.norm}). The dispatch jitter is the sampled
+ * dispatch latency less one tick.</p>
+ */
+
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZuTimingWheelBenchmark
+{
+  private static final Duration TICK =
+    Duration.ofMillis(10L);
+
+  @Param({"50000"})
+  public int idleChecks;
+
+  private ExecutorService executor;
+  private ZuTimingWheel wheel;
+  private ZuTimingWheel.Timeout[] idle;
+
+  /**
+   * Create a wheel holding the idle checks.
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    this.executor =
+      Executors.newVirtualThreadPerTaskExecutor();
+    this.wheel =
+      ZuTimingWheel.create(this.executor, TICK, 4096);
+    this.idle =
+      new ZuTimingWheel.Timeout[this.idleChecks];
+
+    for (int index = 0; index < this.idleChecks; ++index) {
+      this.idle[index] = this.wheel.schedule(() -> { }, Duration.ofHours(1L));
+    }
+  }
+
+  /**
+   * Cancel the idle checks and close the wheel.
+   */
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    for (final var timeout : this.idle) {
+      timeout.cancel();
+    }
+    this.wheel.close();
+    this.executor.close();
+  }
+
+  /**
+   * Schedule a check and cancel it.
+   *
+   * @return The cancelled check
+   */
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public ZuTimingWheel.Timeout scheduleAndCancel()
+  {
+    final var timeout =
+      this.wheel.schedule(() -> { }, Duration.ofMinutes(1L));
+    timeout.cancel();
+    return timeout;
+  }
+
+  /**
+   * Schedule a check due after one tick, and wait for it to be dispatched.
+   *
+   * @throws InterruptedException On interruption
+   */
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void dispatchAfterTick()
+    throws InterruptedException
+  {
+    final var latch = new CountDownLatch(1);
+    this.wheel.schedule(latch::countDown, TICK);
+    latch.await();
+  }
+}
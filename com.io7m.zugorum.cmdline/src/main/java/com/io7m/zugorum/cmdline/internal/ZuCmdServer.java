@@ -66,11 +66,14 @@ public final class ZuCmdServer extends ZuCmd
   {
     QLogback.configure(context);
 
+    final var file =
+      context.parameterValue(CONFIGURATION);
     final var configuration =
-      ZuConfiguration.ofFile(context.parameterValue(CONFIGURATION));
+      ZuConfiguration.ofFile(file);
 
     try (final var server = ZuServer.create(configuration)) {
       server.start();
+      server.watchConfiguration(file);
 
       while (true) {
         Thread.sleep(1_000L);
@@ -38,7 +38,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.Optional;
 
 // CHECKSTYLE:OFF
 
@@ -59,12 +61,367 @@ public record ZuConfiguration(
 
   @JsonProperty(value = "Checks", required = true)
   @JsonPropertyDescription("The list of checks.")
-  List<CheckType> checks)
+  List<CheckType> checks,
+
+  @JsonProperty(value = "Jitter")
+  @JsonPropertyDescription("The strategy used to spread probes over time.")
+  JitterStrategy jitter,
+
+  @JsonProperty(value = "DurationBuckets")
+  @JsonPropertyDescription("The upper bounds (in seconds) of the probe duration histogram buckets.")
+  List<Double> durationBuckets,
+
+  @JsonProperty(value = "MaximumConcurrentProbes")
+  @JsonPropertyDescription("The maximum number of probes that may be in flight at once.")
+  Integer maximumConcurrentProbes,
+
+  @JsonProperty(value = "HostLimits")
+  @JsonPropertyDescription("The per-host probe rate limits. The first matching limit applies; others are unlimited.")
+  List<HostLimit> hostLimits,
+
+  @JsonProperty(value = "DNSCache")
+  @JsonPropertyDescription("The DNS resolution cache.")
+  DNSCache dnsCache,
+
+  @JsonProperty(value = "AvailabilityWindows")
+  @JsonPropertyDescription("The windows over which the availability of each check is computed.")
+  List<Duration> availabilityWindows,
+
+  @JsonProperty(value = "HistorySize")
+  @JsonPropertyDescription("The number of recent probe results retained for each check.")
+  Integer historySize,
+
+  @JsonProperty(value = "RemoteWrite")
+  @JsonPropertyDescription("The Prometheus remote-write endpoint to which metrics are pushed.")
+  Optional<RemoteWrite> remoteWrite)
 {
+  /**
+   * The default probe duration histogram buckets.
+   */
+
+  public static final List<Double> DEFAULT_DURATION_BUCKETS =
+    List.of(0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 30.0);
+
+  /**
+   * The default availability windows.
+   */
+
+  public static final List<Duration> DEFAULT_AVAILABILITY_WINDOWS =
+    List.of(Duration.ofHours(1L), Duration.ofHours(24L), Duration.ofDays(30L));
+
+  /**
+   * The default number of recent probe results retained for each check.
+   */
+
+  public static final int DEFAULT_HISTORY_SIZE =
+    256;
+
+  /**
+   * The default maximum number of probes in flight. This is kept well below
+   * the common default limit of 1024 open files per process.
+   */
+
+  public static final int DEFAULT_MAXIMUM_CONCURRENT_PROBES =
+    512;
+
   public ZuConfiguration
   {
     Objects.requireNonNull(listenAddress, "listenAddress");
     checks = List.copyOf(checks);
+    jitter = Objects.requireNonNullElse(jitter, JitterStrategy.UNIFORM);
+
+    durationBuckets =
+      List.copyOf(
+        Objects.requireNonNullElse(durationBuckets, DEFAULT_DURATION_BUCKETS)
+      );
+
+    for (int index = 0; index < durationBuckets.size(); ++index) {
+      final double bound = durationBuckets.get(index);
+      if (!(bound > 0.0) || Double.isInfinite(bound)) {
+        throw new IllegalArgumentException(
+          "Duration buckets must be positive and finite.");
+      }
+      if (index > 0 && bound <= durationBuckets.get(index - 1)) {
+        throw new IllegalArgumentException(
+          "Duration buckets must be strictly ascending.");
+      }
+    }
+
+    maximumConcurrentProbes =
+      Objects.requireNonNullElse(
+        maximumConcurrentProbes,
+        Integer.valueOf(DEFAULT_MAXIMUM_CONCURRENT_PROBES)
+      );
+
+    if (maximumConcurrentProbes.intValue() <= 0) {
+      throw new IllegalArgumentException(
+        "Maximum concurrent probes must be positive.");
+    }
+
+    hostLimits =
+      List.copyOf(Objects.requireNonNullElse(hostLimits, List.of()));
+    dnsCache =
+      Objects.requireNonNullElse(dnsCache, new DNSCache(null, null));
+
+    availabilityWindows =
+      List.copyOf(
+        Objects.requireNonNullElse(
+          availabilityWindows,
+          DEFAULT_AVAILABILITY_WINDOWS)
+      );
+
+    for (int index = 0; index < availabilityWindows.size(); ++index) {
+      final var window = availabilityWindows.get(index);
+      if (window.isNegative() || window.isZero()) {
+        throw new IllegalArgumentException(
+          "Availability windows must be positive.");
+      }
+      if (index > 0 && window.compareTo(availabilityWindows.get(index - 1)) <= 0) {
+        throw new IllegalArgumentException(
+          "Availability windows must be strictly ascending.");
+      }
+    }
+
+    historySize =
+      Objects.requireNonNullElse(
+        historySize,
+        Integer.valueOf(DEFAULT_HISTORY_SIZE)
+      );
+
+    if (historySize.intValue() < 0) {
+      throw new IllegalArgumentException(
+        "History size must be non-negative.");
+    }
+
+    remoteWrite =
+      Objects.requireNonNullElse(remoteWrite, Optional.empty());
+  }
+
+  /**
+   * The DNS resolution cache shared by all checks.
+   *
+   * @param positiveTTL The time for which successful lookups are cached
+   * @param negativeTTL The time for which failed lookups are cached
+   */
+
+  public record DNSCache(
+    @JsonProperty(value = "PositiveTTL")
+    @JsonPropertyDescription("The time for which successful lookups are cached.")
+    Duration positiveTTL,
+
+    @JsonProperty(value = "NegativeTTL")
+    @JsonPropertyDescription("The time for which failed lookups are cached.")
+    Duration negativeTTL)
+  {
+    /**
+     * The DNS resolution cache shared by all checks.
+     *
+     * @param positiveTTL The time for which successful lookups are cached
+     * @param negativeTTL The time for which failed lookups are cached
+     */
+
+    public DNSCache
+    {
+      positiveTTL =
+        Objects.requireNonNullElse(positiveTTL, Duration.ofSeconds(60L));
+      negativeTTL =
+        Objects.requireNonNullElse(negativeTTL, Duration.ofSeconds(5L));
+
+      if (positiveTTL.isNegative() || negativeTTL.isNegative()) {
+        throw new IllegalArgumentException("TTLs must be non-negative.");
+      }
+    }
+  }
+
+  /**
+   * A Prometheus remote-write endpoint. All series are pushed once per
+   * interval, in as few requests as the series limit allows.
+   *
+   * @param uri                 The endpoint
+   * @param interval            The interval between pushes
+   * @param timeout             The timeout for each request
+   * @param maxSeriesPerRequest The maximum number of series per request
+   * @param maxBacklog          The maximum number of requests held while
+   *                            the endpoint is unavailable
+   * @param maxRetries          The number of times a failed request is
+   *                            retried before waiting for the next push
+   */
+
+  public record RemoteWrite(
+    @JsonProperty(value = "URI", required = true)
+    @JsonPropertyDescription("The remote-write endpoint.")
+    URI uri,
+
+    @JsonProperty(value = "Interval")
+    @JsonPropertyDescription("The interval between pushes.")
+    Duration interval,
+
+    @JsonProperty(value = "Timeout")
+    @JsonPropertyDescription("The timeout for each request.")
+    Duration timeout,
+
+    @JsonProperty(value = "MaxSeriesPerRequest")
+    @JsonPropertyDescription("The maximum number of series per request.")
+    Integer maxSeriesPerRequest,
+
+    @JsonProperty(value = "MaxBacklog")
+    @JsonPropertyDescription("The maximum number of requests held while the endpoint is unavailable.")
+    Integer maxBacklog,
+
+    @JsonProperty(value = "MaxRetries")
+    @JsonPropertyDescription("The number of times a failed request is retried.")
+    Integer maxRetries)
+  {
+    /**
+     * A Prometheus remote-write endpoint.
+     *
+     * @param uri                 The endpoint
+     * @param interval            The interval between pushes
+     * @param timeout             The timeout for each request
+     * @param maxSeriesPerRequest The maximum number of series per request
+     * @param maxBacklog          The maximum number of requests held while
+     *                            the endpoint is unavailable
+     * @param maxRetries          The number of times a failed request is
+     *                            retried before waiting for the next push
+     */
+
+    public RemoteWrite
+    {
+      Objects.requireNonNull(uri, "uri");
+
+      interval =
+        Objects.requireNonNullElse(interval, Duration.ofSeconds(60L));
+      timeout =
+        Objects.requireNonNullElse(timeout, Duration.ofSeconds(10L));
+      maxSeriesPerRequest =
+        Objects.requireNonNullElse(maxSeriesPerRequest, Integer.valueOf(50_000));
+      maxBacklog =
+        Objects.requireNonNullElse(maxBacklog, Integer.valueOf(16));
+      maxRetries =
+        Objects.requireNonNullElse(maxRetries, Integer.valueOf(3));
+
+      if (interval.isNegative() || interval.isZero()
+          || timeout.isNegative() || timeout.isZero()) {
+        throw new IllegalArgumentException(
+          "Remote-write interval and timeout must be positive.");
+      }
+      if (maxSeriesPerRequest.intValue() <= 0 || maxBacklog.intValue() <= 0) {
+        throw new IllegalArgumentException(
+          "Remote-write series and backlog limits must be positive.");
+      }
+      if (maxRetries.intValue() < 0) {
+        throw new IllegalArgumentException(
+          "Remote-write retries must be non-negative.");
+      }
+    }
+  }
+
+  /**
+   * A limit on the rate at which probes are sent to matching hosts. All
+   * checks that target the same host share a single budget, regardless of
+   * the check type, path or port.
+   *
+   * @param host  The host pattern: an exact host name, a pattern of the
+   *              form {@code *.example.com} matching any subdomain, or
+   *              {@code *} matching every host
+   * @param rate  The sustained number of probes per second
+   * @param burst The number of probes that may be sent at once before the
+   *              rate applies
+   */
+
+  public record HostLimit(
+    @JsonProperty(value = "Host", required = true)
+    @JsonPropertyDescription("The host pattern.")
+    String host,
+
+    @JsonProperty(value = "Rate", required = true)
+    @JsonPropertyDescription("The sustained number of probes per second.")
+    double rate,
+
+    @JsonProperty(value = "Burst")
+    @JsonPropertyDescription("The number of probes that may be sent at once.")
+    Integer burst)
+  {
+    /**
+     * A limit on the rate at which probes are sent to matching hosts.
+     *
+     * @param host  The host pattern
+     * @param rate  The sustained number of probes per second
+     * @param burst The number of probes that may be sent at once
+     */
+
+    public HostLimit
+    {
+      Objects.requireNonNull(host, "host");
+      host = host.toLowerCase(Locale.ROOT);
+
+      final var wildcard = host.lastIndexOf('*');
+      if (wildcard > 0 || (wildcard == 0 && !host.equals("*") && !host.startsWith("*."))) {
+        throw new IllegalArgumentException(
+          "Host patterns must be exact names, *.domain, or *.");
+      }
+
+      if (!(rate > 0.0) || Double.isInfinite(rate)) {
+        throw new IllegalArgumentException(
+          "Rate must be positive and finite.");
+      }
+
+      burst = Objects.requireNonNullElse(burst, Integer.valueOf(1));
+      if (burst.intValue() <= 0) {
+        throw new IllegalArgumentException("Burst must be positive.");
+      }
+    }
+
+    /**
+     * @param hostName The host name
+     *
+     * @return {@code true} if the given host name matches this limit
+     */
+
+    public boolean matches(
+      final String hostName)
+    {
+      final var name = hostName.toLowerCase(Locale.ROOT);
+      if (this.host.equals("*")) {
+        return true;
+      }
+      if (this.host.startsWith("*.")) {
+        return name.endsWith(this.host.substring(1));
+      }
+      return name.equals(this.host);
+    }
+  }
+
+  /**
+   * The strategy used to choose the pauses between probes.
+   */
+
+  public enum JitterStrategy
+  {
+    /**
+     * Each pause is drawn uniformly from the pause range, and the first probe
+     * is made immediately.
+     */
+
+    @JsonProperty("Uniform")
+    UNIFORM,
+
+    /**
+     * Probes are started at a fixed period (the midpoint of the pause range),
+     * at a phase derived from the identity of the check. Checks sharing a
+     * pause range are spread evenly over the period.
+     */
+
+    @JsonProperty("Spread")
+    SPREAD,
+
+    /**
+     * Each pause is drawn from {@code [minimum, previous * 3]}, clamped to
+     * the maximum.
+     */
+
+    @JsonProperty("Decorrelated")
+    DECORRELATED
   }
 
   public sealed interface CheckType
@@ -73,6 +430,10 @@ public record ZuConfiguration(
     @JsonPropertyDescription("The check type.")
     String type();
 
+    @JsonProperty(value = "URI", required = true)
+    @JsonPropertyDescription("The target address.")
+    URI uri();
+
     @JsonProperty(value = "PauseMinimum")
     @JsonPropertyDescription("The minimum pause time.")
     Duration pauseMinimum();
@@ -80,6 +441,18 @@ public record ZuConfiguration(
     @JsonProperty(value = "PauseMaximum")
     @JsonPropertyDescription("The maximum pause time.")
     Duration pauseMaximum();
+
+    @JsonProperty(value = "ConnectTimeout")
+    @JsonPropertyDescription("The maximum time allowed to establish a connection.")
+    Duration connectTimeout();
+
+    @JsonProperty(value = "ReadTimeout")
+    @JsonPropertyDescription("The maximum time allowed to wait for data.")
+    Duration readTimeout();
+
+    @JsonProperty(value = "Deadline")
+    @JsonPropertyDescription("The maximum time allowed for an entire probe.")
+    Duration deadline();
   }
 
   public record CheckHTTP2xx(
@@ -97,7 +470,35 @@ public record ZuConfiguration(
 
     @JsonProperty(value = "PauseMaximum")
     @JsonPropertyDescription("The maximum pause time.")
-    Duration pauseMaximum)
+    Duration pauseMaximum,
+
+    @JsonProperty(value = "ConnectTimeout")
+    @JsonPropertyDescription("The maximum time allowed to establish a connection.")
+    Duration connectTimeout,
+
+    @JsonProperty(value = "ReadTimeout")
+    @JsonPropertyDescription("The maximum time allowed to wait for data.")
+    Duration readTimeout,
+
+    @JsonProperty(value = "Deadline")
+    @JsonPropertyDescription("The maximum time allowed for an entire probe.")
+    Duration deadline,
+
+    @JsonProperty(value = "FollowRedirects")
+    @JsonPropertyDescription("The redirect policy.")
+    HTTPRedirectPolicy followRedirects,
+
+    @JsonProperty(value = "HTTPVersion")
+    @JsonPropertyDescription("The preferred HTTP version.")
+    Optional<HTTPVersion> httpVersion,
+
+    @JsonProperty(value = "Proxy")
+    @JsonPropertyDescription("The address of an HTTP proxy.")
+    Optional<URI> proxy,
+
+    @JsonProperty(value = "AllAddresses")
+    @JsonPropertyDescription("Probe every resolved address of the host concurrently.")
+    Boolean allAddresses)
     implements CheckType
   {
     /**
@@ -112,6 +513,13 @@ public record ZuConfiguration(
       Objects.requireNonNull(type, "type");
       Objects.requireNonNull(uri, "uri");
 
+      followRedirects =
+        Objects.requireNonNullElse(followRedirects, HTTPRedirectPolicy.ALWAYS);
+      httpVersion =
+        Objects.requireNonNullElse(httpVersion, Optional.empty());
+      proxy =
+        Objects.requireNonNullElse(proxy, Optional.empty());
+
       pauseMinimum =
         Objects.requireNonNullElse(pauseMinimum, Duration.ofSeconds(60L));
       pauseMaximum =
@@ -121,6 +529,16 @@ public record ZuConfiguration(
         pauseMaximum = pauseMinimum;
       }
 
+      connectTimeout =
+        Objects.requireNonNullElse(connectTimeout, Duration.ofSeconds(10L));
+      readTimeout =
+        Objects.requireNonNullElse(readTimeout, Duration.ofSeconds(10L));
+      deadline =
+        Objects.requireNonNullElse(deadline, Duration.ofSeconds(30L));
+
+      allAddresses =
+        Objects.requireNonNullElse(allAddresses, Boolean.FALSE);
+
       if (!type.equals(TYPE)) {
         throw new IllegalArgumentException(
           "Type must be %s".formatted(TYPE));
@@ -128,6 +546,55 @@ public record ZuConfiguration(
     }
   }
 
+  /**
+   * The policy for following HTTP redirects.
+   */
+
+  public enum HTTPRedirectPolicy
+  {
+    /**
+     * Always follow redirects.
+     */
+
+    @JsonProperty("Always")
+    ALWAYS,
+
+    /**
+     * Follow redirects, except from HTTPS to HTTP.
+     */
+
+    @JsonProperty("Normal")
+    NORMAL,
+
+    /**
+     * Never follow redirects.
+     */
+
+    @JsonProperty("Never")
+    NEVER
+  }
+
+  /**
+   * The preferred HTTP version.
+   */
+
+  public enum HTTPVersion
+  {
+    /**
+     * HTTP/1.1
+     */
+
+    @JsonProperty("HTTP/1.1")
+    HTTP_1_1,
+
+    /**
+     * HTTP/2
+     */
+
+    @JsonProperty("HTTP/2")
+    HTTP_2
+  }
+
   public record CheckSMTPHELO(
     @JsonProperty(value = "Type", required = true)
     @JsonPropertyDescription("The check type.")
@@ -147,7 +614,27 @@ public record ZuConfiguration(
 
     @JsonProperty(value = "PauseMaximum")
     @JsonPropertyDescription("The maximum pause time.")
-    Duration pauseMaximum)
+    Duration pauseMaximum,
+
+    @JsonProperty(value = "ConnectTimeout")
+    @JsonPropertyDescription("The maximum time allowed to establish a connection.")
+    Duration connectTimeout,
+
+    @JsonProperty(value = "ReadTimeout")
+    @JsonPropertyDescription("The maximum time allowed to wait for data.")
+    Duration readTimeout,
+
+    @JsonProperty(value = "Deadline")
+    @JsonPropertyDescription("The maximum time allowed for an entire probe.")
+    Duration deadline,
+
+    @JsonProperty(value = "AllAddresses")
+    @JsonPropertyDescription("Probe every resolved address of the host concurrently.")
+    Boolean allAddresses,
+
+    @JsonProperty(value = "StartTLS")
+    @JsonPropertyDescription("Require the server to offer STARTTLS, and perform a TLS handshake.")
+    Boolean startTLS)
     implements CheckType
   {
     /**
@@ -172,6 +659,18 @@ public record ZuConfiguration(
         pauseMaximum = pauseMinimum;
       }
 
+      connectTimeout =
+        Objects.requireNonNullElse(connectTimeout, Duration.ofSeconds(10L));
+      readTimeout =
+        Objects.requireNonNullElse(readTimeout, Duration.ofSeconds(10L));
+      deadline =
+        Objects.requireNonNullElse(deadline, Duration.ofSeconds(30L));
+
+      allAddresses =
+        Objects.requireNonNullElse(allAddresses, Boolean.FALSE);
+      startTLS =
+        Objects.requireNonNullElse(startTLS, Boolean.FALSE);
+
       if (!type.equals(TYPE)) {
         throw new IllegalArgumentException(
           "Type must be %s".formatted(TYPE));
@@ -194,7 +693,27 @@ public record ZuConfiguration(
 
     @JsonProperty(value = "PauseMaximum")
     @JsonPropertyDescription("The maximum pause time.")
-    Duration pauseMaximum)
+    Duration pauseMaximum,
+
+    @JsonProperty(value = "ConnectTimeout")
+    @JsonPropertyDescription("The maximum time allowed to establish a connection.")
+    Duration connectTimeout,
+
+    @JsonProperty(value = "ReadTimeout")
+    @JsonPropertyDescription("The maximum time allowed to wait for data.")
+    Duration readTimeout,
+
+    @JsonProperty(value = "Deadline")
+    @JsonPropertyDescription("The maximum time allowed for an entire probe.")
+    Duration deadline,
+
+    @JsonProperty(value = "AllAddresses")
+    @JsonPropertyDescription("Probe every resolved address of the host concurrently.")
+    Boolean allAddresses,
+
+    @JsonProperty(value = "SessionResumption")
+    @JsonPropertyDescription("Alternate between full handshakes and attempts to resume the previous session.")
+    Boolean sessionResumption)
     implements CheckType
   {
     /**
@@ -218,6 +737,83 @@ public record ZuConfiguration(
         pauseMaximum = pauseMinimum;
       }
 
+      connectTimeout =
+        Objects.requireNonNullElse(connectTimeout, Duration.ofSeconds(10L));
+      readTimeout =
+        Objects.requireNonNullElse(readTimeout, Duration.ofSeconds(10L));
+      deadline =
+        Objects.requireNonNullElse(deadline, Duration.ofSeconds(30L));
+
+      allAddresses =
+        Objects.requireNonNullElse(allAddresses, Boolean.FALSE);
+      sessionResumption =
+        Objects.requireNonNullElse(sessionResumption, Boolean.FALSE);
+
+      if (!type.equals(TYPE)) {
+        throw new IllegalArgumentException(
+          "Type must be %s".formatted(TYPE));
+      }
+    }
+  }
+
+  public record CheckTCP(
+    @JsonProperty(value = "Type", required = true)
+    @JsonPropertyDescription("The check type.")
+    String type,
+
+    @JsonProperty(value = "URI", required = true)
+    @JsonPropertyDescription("The target address.")
+    URI uri,
+
+    @JsonProperty(value = "PauseMinimum")
+    @JsonPropertyDescription("The minimum pause time.")
+    Duration pauseMinimum,
+
+    @JsonProperty(value = "PauseMaximum")
+    @JsonPropertyDescription("The maximum pause time.")
+    Duration pauseMaximum,
+
+    @JsonProperty(value = "ConnectTimeout")
+    @JsonPropertyDescription("The maximum time allowed to establish a connection.")
+    Duration connectTimeout,
+
+    @JsonProperty(value = "ReadTimeout")
+    @JsonPropertyDescription("The maximum time allowed to wait for data (unused by TCP checks).")
+    Duration readTimeout,
+
+    @JsonProperty(value = "Deadline")
+    @JsonPropertyDescription("The maximum time allowed for an entire probe.")
+    Duration deadline)
+    implements CheckType
+  {
+    /**
+     * The check type.
+     */
+
+    public static final String TYPE =
+      "TCP";
+
+    public CheckTCP
+    {
+      Objects.requireNonNull(type, "type");
+      Objects.requireNonNull(uri, "uri");
+
+      pauseMinimum =
+        Objects.requireNonNullElse(pauseMinimum, Duration.ofSeconds(60L));
+      pauseMaximum =
+        Objects.requireNonNullElse(pauseMaximum, Duration.ofMinutes(10L));
+
+      if (pauseMaximum.compareTo(pauseMinimum) < 0) {
+        pauseMaximum = pauseMinimum;
+      }
+
+      connectTimeout =
+        Objects.requireNonNullElse(connectTimeout, Duration.ofSeconds(10L));
+      readTimeout =
+        Objects.requireNonNullElse(readTimeout, Duration.ofSeconds(10L));
+      deadline =
+        Objects.requireNonNullElse(deadline, Duration.ofSeconds(30L));
+
       if (!type.equals(TYPE)) {
         throw new IllegalArgumentException(
           "Type must be %s".formatted(TYPE));
@@ -269,6 +865,9 @@ public record ZuConfiguration(
         case CheckTLS.TYPE -> {
           yield ctx.readTreeAsValue(node, CheckTLS.class);
         }
+        case CheckTCP.TYPE -> {
+          yield ctx.readTreeAsValue(node, CheckTCP.class);
+        }
         default -> {
           throw MismatchedInputException.from(
             jsonParser,
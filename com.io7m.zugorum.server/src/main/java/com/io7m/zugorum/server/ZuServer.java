@@ -21,10 +21,15 @@ import com.io7m.jmulticlose.core.CloseableCollection;
 import com.io7m.jmulticlose.core.CloseableCollectionType;
 import com.io7m.jmulticlose.core.ClosingResourceFailedException;
 import com.io7m.zugorum.server.internal.ZuCheckRunner;
+import com.io7m.zugorum.server.internal.ZuConfigurationWatcher;
 import com.io7m.zugorum.server.internal.ZuMetrics;
 import com.io7m.zugorum.server.internal.ZuMetricsServer;
+import com.io7m.zugorum.server.internal.ZuRemoteWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Objects;
 
 /**
@@ -33,8 +38,12 @@ import java.util.Objects;
 
 public final class ZuServer implements AutoCloseable
 {
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuServer.class);
+
   private final CloseableCollectionType<ClosingResourceFailedException> resources;
-  private final ZuConfiguration configuration;
+  private ZuConfiguration configuration;
+  private ZuCheckRunner checkRunner;
 
   private ZuServer(
     final ZuConfiguration inConfiguration)
@@ -65,18 +74,98 @@ public final class ZuServer implements AutoCloseable
    * @throws Exception On errors
    */
 
-  public void start()
+  public synchronized void start()
     throws Exception
   {
-    final var metrics = new ZuMetrics();
+    final var metrics =
+      new ZuMetrics(
+        this.configuration.durationBuckets(),
+        this.configuration.availabilityWindows(),
+        this.configuration.historySize().intValue(),
+        System::nanoTime
+      );
     this.resources.add(this.createHTTPServer(metrics));
     this.resources.add(this.createCheckRunner(metrics));
+
+    final var remoteWrite = this.configuration.remoteWrite();
+    if (remoteWrite.isPresent()) {
+      this.resources.add(ZuRemoteWriter.create(remoteWrite.get(), metrics));
+    }
   }
 
   private AutoCloseable createCheckRunner(
     final ZuMetrics metrics)
+    throws IOException
+  {
+    this.checkRunner = ZuCheckRunner.create(this.configuration, metrics);
+    return this.checkRunner;
+  }
+
+  /**
+   * Apply a new configuration to a running server. Checks that are
+   * unchanged keep running undisturbed, added checks are started, removed
+   * checks are stopped and their metrics are removed, and modified checks
+   * are replaced. The listen address, listen port, duration buckets,
+   * availability windows, history size and remote-write endpoint cannot be
+   * changed without a restart.
+   *
+   * @param newConfiguration The new configuration
+   *
+   * @throws IOException On errors
+   */
+
+  public synchronized void reload(
+    final ZuConfiguration newConfiguration)
+    throws IOException
+  {
+    Objects.requireNonNull(newConfiguration, "configuration");
+
+    if (this.checkRunner == null) {
+      throw new IllegalStateException("Server has not been started.");
+    }
+
+    final var old = this.configuration;
+    if (!Objects.equals(old.listenAddress(), newConfiguration.listenAddress())
+        || old.listenPort() != newConfiguration.listenPort()) {
+      LOG.warn("Changes to the listen address require a restart.");
+    }
+    if (!Objects.equals(old.durationBuckets(), newConfiguration.durationBuckets())) {
+      LOG.warn("Changes to the duration buckets require a restart.");
+    }
+    if (!Objects.equals(old.availabilityWindows(), newConfiguration.availabilityWindows())) {
+      LOG.warn("Changes to the availability windows require a restart.");
+    }
+    if (!Objects.equals(old.historySize(), newConfiguration.historySize())) {
+      LOG.warn("Changes to the history size require a restart.");
+    }
+    if (!Objects.equals(old.remoteWrite(), newConfiguration.remoteWrite())) {
+      LOG.warn("Changes to the remote-write endpoint require a restart.");
+    }
+
+    this.checkRunner.reconcile(newConfiguration);
+    this.configuration = newConfiguration;
+  }
+
+  /**
+   * Reload the configuration each time the given file changes. Files that
+   * cannot be parsed are logged and ignored.
+   *
+   * @param file The configuration file
+   *
+   * @throws IOException On errors
+   */
+
+  public synchronized void watchConfiguration(
+    final Path file)
+    throws IOException
   {
-    return ZuCheckRunner.create(this.configuration, metrics);
+    this.resources.add(ZuConfigurationWatcher.create(file, newConfiguration -> {
+      try {
+        this.reload(newConfiguration);
+      } catch (final IOException e) {
+        LOG.error("Failed to apply configuration: ", e);
+      }
+    }));
   }
 
   private AutoCloseable createHTTPServer(
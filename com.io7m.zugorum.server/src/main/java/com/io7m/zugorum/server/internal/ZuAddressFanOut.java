@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>The addresses probed by a check.</p>
+ *
+ * <p>By default, a check probes only the first address to which its host
+ * resolves, and publishes the outcome as the outcome of the check. When
+ * every address is probed, the addresses are probed concurrently, each on
+ * its own virtual thread and bounded by the same deadline, so a probe takes
+ * as long as its slowest address rather than the sum of all of them. The
+ * outcome of each address is published as a separate series with an
+ * {@code address} label, and the worst outcome is published as the outcome
+ * of the check.</p>
+ *
+ * <p>Each address probe counts against the {@link ZuProbeLimiter}. The first
+ * address is probed under the permit already held by the probe of the check,
+ * and every other address takes a permit of its own. An address that cannot
+ * take a permit without exceeding the limit or overtaking a queued probe is
+ * instead probed in turn under the permit of the check, so a probe of every
+ * address never waits for a permit and never exceeds the limit.</p>
+ */
+
+public final class ZuAddressFanOut
+  implements AutoCloseable
+{
+  private final ZuMetrics metrics;
+  private final ZuMetrics.Check check;
+  private final ZuResolver resolver;
+  private final ZuProbeLimiter limiter;
+  private final boolean all;
+  private final Map<String, ZuMetrics.Check> addresses;
+
+  private ZuAddressFanOut(
+    final ZuMetrics inMetrics,
+    final ZuMetrics.Check inCheck,
+    final ZuResolver inResolver,
+    final ZuProbeLimiter inLimiter,
+    final boolean inAll)
+  {
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.check =
+      Objects.requireNonNull(inCheck, "check");
+    this.resolver =
+      Objects.requireNonNull(inResolver, "resolver");
+    this.limiter =
+      Objects.requireNonNull(inLimiter, "limiter");
+    this.all =
+      inAll;
+    this.addresses =
+      new LinkedHashMap<>();
+  }
+
+  /**
+   * Create a fan-out.
+   *
+   * @param metrics  The metrics store
+   * @param check    The check as a whole
+   * @param resolver The resolver
+   * @param limiter  The probe limiter
+   * @param all      {@code true} if every address should be probed
+   *
+   * @return A fan-out
+   */
+
+  public static ZuAddressFanOut create(
+    final ZuMetrics metrics,
+    final ZuMetrics.Check check,
+    final ZuResolver resolver,
+    final ZuProbeLimiter limiter,
+    final boolean all)
+  {
+    return new ZuAddressFanOut(metrics, check, resolver, limiter, all);
+  }
+
+  /**
+   * Resolve the host and probe its addresses. The given probe is expected
+   * to publish its outcome to the series it is given, and not to raise
+   * exceptions.
+   *
+   * @param host     The host
+   * @param deadline The probe deadline
+   * @param probe    The probe of a single address
+   *
+   * @throws IOException If the host cannot be resolved
+   */
+
+  public void probe(
+    final String host,
+    final ZuDeadline deadline,
+    final AddressProbeType probe)
+    throws IOException
+  {
+    final var resolved =
+      this.resolver.resolve(host, deadline);
+
+    if (!this.all) {
+      probe.probe(this.check, resolved.getFirst(), deadline);
+      return;
+    }
+
+    final var distinct = resolved.stream().distinct().toList();
+    final var targets = this.targets(distinct);
+    final var context = MDC.getCopyOfContextMap();
+    final var threads = new ArrayList<Thread>(targets.size());
+    final var inTurn = new ArrayList<Integer>(targets.size());
+
+    for (int index = 1; index < targets.size(); ++index) {
+      if (!this.limiter.tryAcquireAdditional()) {
+        inTurn.add(Integer.valueOf(index));
+        continue;
+      }
+
+      final var target = targets.get(index);
+      final var address = distinct.get(index);
+      threads.add(Thread.ofVirtual().start(() -> {
+        if (context != null) {
+          MDC.setContextMap(context);
+        }
+        try {
+          this.probeAddress(probe, target, address, deadline);
+        } finally {
+          this.limiter.release();
+          MDC.clear();
+        }
+      }));
+    }
+
+    this.probeAddress(probe, targets.getFirst(), distinct.getFirst(), deadline);
+    for (final var index : inTurn) {
+      this.probeAddress(
+        probe,
+        targets.get(index.intValue()),
+        distinct.get(index.intValue()),
+        deadline
+      );
+    }
+
+    joinAll(threads);
+    this.metrics.aggregate(this.check, targets);
+  }
+
+  private void probeAddress(
+    final AddressProbeType probe,
+    final ZuMetrics.Check target,
+    final InetAddress address,
+    final ZuDeadline deadline)
+  {
+    MDC.put("Address", target.address());
+
+    final var timeStart = System.nanoTime();
+    try {
+      probe.probe(target, address, deadline.fork());
+    } finally {
+      this.metrics.count(target, System.nanoTime() - timeStart);
+      MDC.remove("Address");
+    }
+  }
+
+  private synchronized List<ZuMetrics.Check> targets(
+    final List<InetAddress> resolved)
+  {
+    final var current = new HashSet<String>(resolved.size());
+    final var targets = new ArrayList<ZuMetrics.Check>(resolved.size());
+
+    for (final var address : resolved) {
+      final var text = address.getHostAddress();
+      current.add(text);
+      targets.add(this.addresses.computeIfAbsent(text, a -> {
+        return this.metrics.register(this.check.kind(), this.check.uri(), a);
+      }));
+    }
+
+    /*
+     * Addresses that the host no longer resolves to are no longer exposed.
+     */
+
+    final var iterator = this.addresses.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final var entry = iterator.next();
+      if (!current.contains(entry.getKey())) {
+        this.metrics.unregister(entry.getValue());
+        iterator.remove();
+      }
+    }
+    return targets;
+  }
+
+  private static void joinAll(
+    final List<Thread> threads)
+  {
+    var interrupted = false;
+    for (final var thread : threads) {
+      while (true) {
+        try {
+          thread.join();
+          break;
+        } catch (final InterruptedException e) {
+          interrupted = true;
+          threads.forEach(Thread::interrupt);
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Stop publishing the series of individual addresses.
+   */
+
+  @Override
+  public synchronized void close()
+  {
+    for (final var address : this.addresses.values()) {
+      this.metrics.unregister(address);
+    }
+    this.addresses.clear();
+  }
+
+  /**
+   * A probe of a single address.
+   */
+
+  @FunctionalInterface
+  public interface AddressProbeType
+  {
+    /**
+     * Probe a single address.
+     *
+     * @param target   The series to which the outcome is published
+     * @param address  The address
+     * @param deadline The probe deadline
+     */
+
+    void probe(
+      ZuMetrics.Check target,
+      InetAddress address,
+      ZuDeadline deadline);
+  }
+}
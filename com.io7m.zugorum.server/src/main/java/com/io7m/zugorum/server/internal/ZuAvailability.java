@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>The success ratios of a check over a set of sliding windows.</p>
+ *
+ * <p>Each window is divided into a fixed number of buckets held in a ring,
+ * and each bucket packs the number of successful probes and the number of
+ * probes into a single long. Recording a probe touches one bucket per
+ * window, clearing any buckets that have expired since the previous probe;
+ * it does not allocate. The ratio of a window therefore covers between
+ * {@code (BUCKETS - 1) / BUCKETS} of the window and the whole window.</p>
+ *
+ * <p>Probes of a check are recorded by one thread at a time, whereas ratios
+ * may be read concurrently by any number of threads.</p>
+ */
+
+public final class ZuAvailability
+{
+  /**
+   * The number of buckets into which each window is divided.
+   */
+
+  public static final int BUCKETS = 30;
+
+  private static final int STRIDE = BUCKETS + 1;
+  private static final long NO_BUCKET = Long.MIN_VALUE;
+  private static final long SUCCESS = 1L << 32;
+  private static final long ATTEMPT = 1L;
+  private static final long ATTEMPT_MASK = 0xffff_ffffL;
+
+  private final long[] widthsNanos;
+  private final AtomicLongArray slots;
+
+  /**
+   * The success ratios of a check over a set of sliding windows.
+   *
+   * @param windowsNanos The sizes of the windows in nanoseconds
+   */
+
+  public ZuAvailability(
+    final long[] windowsNanos)
+  {
+    Objects.requireNonNull(windowsNanos, "windowsNanos");
+
+    this.widthsNanos = new long[windowsNanos.length];
+    for (int index = 0; index < windowsNanos.length; ++index) {
+      this.widthsNanos[index] = Math.max(1L, windowsNanos[index] / BUCKETS);
+    }
+
+    this.slots = new AtomicLongArray(windowsNanos.length * STRIDE);
+    for (int index = 0; index < windowsNanos.length; ++index) {
+      this.slots.set(index * STRIDE, NO_BUCKET);
+    }
+  }
+
+  /**
+   * Record the result of a probe.
+   *
+   * @param timeNanos The monotonic time of the probe
+   * @param success   {@code true} if the probe succeeded
+   */
+
+  public void record(
+    final long timeNanos,
+    final boolean success)
+  {
+    final var delta = success ? SUCCESS | ATTEMPT : ATTEMPT;
+
+    for (int window = 0; window < this.widthsNanos.length; ++window) {
+      final var base = window * STRIDE;
+      final var bucket = Math.floorDiv(timeNanos, this.widthsNanos[window]);
+      final var head = this.slots.get(base);
+
+      if (head == NO_BUCKET || bucket > head) {
+        final var expired =
+          head == NO_BUCKET ? BUCKETS : (int) Math.min(bucket - head, BUCKETS);
+        for (int index = 0; index < expired; ++index) {
+          this.slots.set(base + 1 + slot(bucket - index), 0L);
+        }
+        this.slots.set(base, bucket);
+        this.slots.addAndGet(base + 1 + slot(bucket), delta);
+      } else {
+        this.slots.addAndGet(base + 1 + slot(head), delta);
+      }
+    }
+  }
+
+  private static int slot(
+    final long bucket)
+  {
+    return (int) Math.floorMod(bucket, (long) BUCKETS);
+  }
+
+  /**
+   * @return The number of windows
+   */
+
+  public int windowCount()
+  {
+    return this.widthsNanos.length;
+  }
+
+  /**
+   * @param window    The window index
+   * @param timeNanos The current monotonic time
+   *
+   * @return The ratio of successful probes to probes in the given window,
+   * or {@code NaN} if there were no probes in the window
+   */
+
+  public double ratio(
+    final int window,
+    final long timeNanos)
+  {
+    final var base = window * STRIDE;
+    final var head = this.slots.get(base);
+    if (head == NO_BUCKET) {
+      return Double.NaN;
+    }
+
+    final var bucket = Math.floorDiv(timeNanos, this.widthsNanos[window]);
+    final var oldest = Math.max(head, bucket) - BUCKETS + 1;
+
+    var successes = 0L;
+    var attempts = 0L;
+    for (var index = oldest; index <= head; ++index) {
+      final var value = this.slots.get(base + 1 + slot(index));
+      successes += value >>> 32;
+      attempts += value & ATTEMPT_MASK;
+    }
+
+    if (attempts == 0L) {
+      return Double.NaN;
+    }
+    return (double) successes / (double) attempts;
+  }
+
+  /**
+   * A value that changes whenever the bucket boundary of any window is
+   * crossed. The ratios at two times with the same epoch differ only if
+   * probes were recorded in between.
+   *
+   * @param timeNanos The current monotonic time
+   *
+   * @return The epoch
+   */
+
+  public long epoch(
+    final long timeNanos)
+  {
+    var sum = 0L;
+    for (final var width : this.widthsNanos) {
+      sum += Math.floorDiv(timeNanos, width);
+    }
+    return sum;
+  }
+}
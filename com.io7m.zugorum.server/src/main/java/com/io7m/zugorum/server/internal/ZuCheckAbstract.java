@@ -17,29 +17,40 @@
 
 package com.io7m.zugorum.server.internal;
 
+import com.io7m.zugorum.server.ZuConfiguration;
 import org.slf4j.Logger;
+import org.slf4j.MDC;
 
-import java.time.Duration;
 import java.util.Objects;
 
 /**
  * A convenient abstract base class for checks.
+ *
+ * @param <C> The type of check configuration
  */
 
-public abstract class ZuCheckAbstract
+public abstract class ZuCheckAbstract<C extends ZuConfiguration.CheckType>
   implements ZuCheckType
 {
   private final Logger logger;
   private final ZuMetrics metrics;
+  private final C config;
+  private final ZuMetrics.Check metricsCheck;
 
   protected ZuCheckAbstract(
     final Logger inLogger,
-    final ZuMetrics inMetrics)
+    final ZuMetrics inMetrics,
+    final ZuMetrics.Check inMetricsCheck,
+    final C inConfig)
   {
     this.logger =
       Objects.requireNonNull(inLogger, "logger");
     this.metrics =
       Objects.requireNonNull(inMetrics, "metrics");
+    this.config =
+      Objects.requireNonNull(inConfig, "config");
+    this.metricsCheck =
+      Objects.requireNonNull(inMetricsCheck, "metricsCheck");
   }
 
   protected final ZuMetrics metrics()
@@ -47,16 +58,117 @@ public abstract class ZuCheckAbstract
     return this.metrics;
   }
 
-  protected final void pauseRandom(
-    final Duration min,
-    final Duration max)
+  /**
+   * @return The registration of this check in the metrics store
+   */
+
+  protected final ZuMetrics.Check metricsCheck()
+  {
+    return this.metricsCheck;
+  }
+
+  @Override
+  public final C configuration()
+  {
+    return this.config;
+  }
+
+  @Override
+  public final void start()
   {
     try {
-      final var duration = ZuPauses.randomPauseOf(min, max);
-      this.logger.debug("Pausing for {}", duration);
-      Thread.sleep(duration);
-    } catch (final InterruptedException e) {
-      Thread.currentThread().interrupt();
+      this.putMDC();
+      this.logger.info("Check started.");
+      this.onStart();
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  @Override
+  public final void stop()
+  {
+    try {
+      this.putMDC();
+      this.logger.info("Check stopped.");
+      this.onStop();
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  @Override
+  public final void probe(
+    final ZuDeadline deadline)
+  {
+    try {
+      this.putMDC();
+      this.logger.debug("Sending request.");
+
+      final var timeStart = System.nanoTime();
+      try {
+        this.onProbe(deadline);
+      } finally {
+        this.metrics.count(this.metricsCheck, System.nanoTime() - timeStart);
+      }
+    } finally {
+      MDC.clear();
     }
   }
+
+  /**
+   * Put the check's diagnostic context into the MDC of the current thread.
+   */
+
+  protected final void putMDC()
+  {
+    MDC.put("URI", this.config.uri().toString());
+    MDC.put("Type", this.config.type());
+  }
+
+  /**
+   * Publish the failure of a probe.
+   *
+   * @param target   The series to which the failure is published
+   * @param deadline The probe deadline
+   * @param e        The exception raised by the probe
+   */
+
+  protected final void failed(
+    final ZuMetrics.Check target,
+    final ZuDeadline deadline,
+    final Exception e)
+  {
+    if (deadline.isTimeout(e)) {
+      this.logger.error("Request timed out during phase {}.", deadline.phase());
+      this.metrics.timeout(target, deadline.phase());
+      return;
+    }
+    this.logger.error("Request exception: ", e);
+    this.metrics.exception(target, e);
+  }
+
+  /**
+   * Publish the initial state of the check.
+   */
+
+  protected abstract void onStart();
+
+  /**
+   * Release any resources held by the check. The default implementation
+   * does nothing.
+   */
+
+  protected void onStop()
+  {
+
+  }
+
+  /**
+   * Execute a single probe.
+   *
+   * @param deadline The probe deadline
+   */
+
+  protected abstract void onProbe(ZuDeadline deadline);
 }
@@ -23,84 +23,293 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
-import java.net.http.HttpClient;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.URI;
+import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 final class ZuCheckHTTP2xx
-  extends ZuCheckAbstract
+  extends ZuCheckAbstract<ZuConfiguration.CheckHTTP2xx>
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(ZuCheckHTTP2xx.class);
 
-  private final ZuConfiguration.CheckHTTP2xx config;
-  private final HttpClient client;
+  /**
+   * The maximum length of a status line read when probing an address.
+   */
+
+  private static final int MAXIMUM_STATUS_LINE_LENGTH =
+    4096;
+
+  private final ZuHTTPClients.Lease client;
+  private final ZuResolver resolver;
+  private final ZuAddressFanOut addresses;
+  private final SSLSocketFactory sockets;
 
   ZuCheckHTTP2xx(
     final ZuMetrics m,
+    final ZuMetrics.Check mc,
+    final ZuHTTPClients clients,
+    final ZuResolver inResolver,
+    final ZuProbeLimiter limiter,
     final ZuConfiguration.CheckHTTP2xx inConfig)
   {
-    super(LOG, m);
-
-    this.config =
-      Objects.requireNonNull(inConfig, "config");
-    this.client =
-      HttpClient.newBuilder()
-        .followRedirects(HttpClient.Redirect.ALWAYS)
-        .build();
+    super(LOG, m, mc, inConfig);
+
+    this.client = clients.acquire(inConfig);
+    this.resolver = Objects.requireNonNull(inResolver, "resolver");
+    this.sockets = (SSLSocketFactory) SSLSocketFactory.getDefault();
+
+    /*
+     * Through a proxy, the proxy chooses the address of the host.
+     */
+
+    final var all =
+      inConfig.allAddresses().booleanValue() && inConfig.proxy().isEmpty();
+
+    if (inConfig.allAddresses().booleanValue() && !all) {
+      LOG.warn("AllAddresses is ignored for checks that use a proxy.");
+    }
+
+    this.addresses =
+      all ? ZuAddressFanOut.create(m, mc, inResolver, limiter, true) : null;
   }
 
   @Override
-  public void run()
+  protected void onStart()
   {
-    MDC.put("URI", this.config.uri().toString());
-    MDC.put("Type", this.config.type());
-    LOG.info("Check started.");
-
-    final var metrics = this.metrics();
-    metrics.httpStatus(this.config.uri(), 0);
+    this.metrics().status(this.metricsCheck(), 0);
+  }
 
-    while (true) {
-      this.makeRequest();
-      this.pauseRandom(this.config.pauseMinimum(), this.config.pauseMaximum());
+  @Override
+  protected void onStop()
+  {
+    this.client.close();
+    if (this.addresses != null) {
+      this.addresses.close();
     }
   }
 
-  private void makeRequest()
+  @Override
+  protected void onProbe(
+    final ZuDeadline deadline)
   {
+    if (this.addresses != null) {
+      try {
+        this.addresses.probe(
+          this.configuration().uri().getHost(),
+          deadline,
+          this::probeAddress
+        );
+      } catch (final Exception e) {
+        this.failed(this.metricsCheck(), deadline, e);
+      }
+      return;
+    }
+
     final var metrics =
       this.metrics();
+    final var config =
+      this.configuration();
 
     try {
-      MDC.put("URI", this.config.uri().toString());
-      MDC.put("Type", this.config.type());
-      LOG.debug("Sending request.");
-
       final var request =
-        HttpRequest.newBuilder(this.config.uri())
+        HttpRequest.newBuilder(config.uri())
           .header("User-Agent", userAgent())
+          .timeout(deadline.readTimeout())
           .GET()
           .build();
 
-      final var response =
-        this.client.send(request, HttpResponse.BodyHandlers.discarding());
+      /*
+       * The HTTP client resolves the host itself, but resolving it here first
+       * attributes slow and failing lookups to the DNS phase, caches failed
+       * lookups, and leaves the platform resolver cache warm for the client.
+       * With a proxy, the proxy resolves the host instead.
+       */
 
-      MDC.put("Status", Integer.toString(response.statusCode()));
-      if (response.statusCode() >= 400) {
-        LOG.error("Request received an error.");
-      } else {
-        LOG.info("Request succeeded.");
+      if (config.proxy().isEmpty()) {
+        this.resolver.resolve(config.uri().getHost(), deadline);
       }
-      MDC.remove("Status");
 
-      metrics.httpStatus(this.config.uri(), response.statusCode());
+      deadline.enter(ZuProbePhase.EXCHANGE);
+      final var response =
+        this.client.send(
+          request,
+          HttpResponse.BodyHandlers.discarding(),
+          deadline.remaining()
+        );
+
+      this.received(this.metricsCheck(), response.statusCode());
     } catch (final InterruptedException e) {
-      Thread.currentThread().interrupt();
+      if (deadline.isExpired()) {
+        LOG.error("Request timed out during phase {}.", deadline.phase());
+        metrics.timeout(this.metricsCheck(), deadline.phase());
+      } else {
+        Thread.currentThread().interrupt();
+      }
     } catch (final Exception e) {
+      if (deadline.isTimeout(e)) {
+        final var phase = phaseOf(e, deadline);
+        LOG.error("Request timed out during phase {}.", phase);
+        metrics.timeout(this.metricsCheck(), phase);
+        return;
+      }
       LOG.error("Request exception: ", e);
-      metrics.httpException(this.config.uri(), e);
+      metrics.exception(this.metricsCheck(), e);
+    }
+  }
+
+  /**
+   * Probe a single address with a minimal HTTP/1.1 request. The HTTP client
+   * cannot be directed at a particular address, so the request is written
+   * directly to a socket connected to the address; TLS is negotiated using
+   * the host name of the URI. Redirects are not followed, because the
+   * target of a redirect is not necessarily served by the same addresses.
+   */
+
+  private void probeAddress(
+    final ZuMetrics.Check target,
+    final InetAddress address,
+    final ZuDeadline deadline)
+  {
+    final var uri =
+      this.configuration().uri();
+    final var secure =
+      "https".equalsIgnoreCase(uri.getScheme());
+    final var port =
+      uri.getPort() == -1 ? defaultPort(secure) : uri.getPort();
+
+    try (final var socket = ZuSockets.connect(address, port, deadline)) {
+      final var connection =
+        secure
+          ? ZuSockets.handshake(this.sockets, socket, uri.getHost(), port, deadline)
+          : socket;
+
+      deadline.enter(ZuProbePhase.EXCHANGE);
+
+      final var out = connection.getOutputStream();
+      out.write(request(uri, port, secure).getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+
+      final var in =
+        new BufferedInputStream(connection.getInputStream());
+      this.received(target, statusCode(readStatusLine(in)));
+    } catch (final Exception e) {
+      this.failed(target, deadline, e);
+    }
+  }
+
+  private static int defaultPort(
+    final boolean secure)
+  {
+    return secure ? 443 : 80;
+  }
+
+  private static String request(
+    final URI uri,
+    final int port,
+    final boolean secure)
+  {
+    final var rawPath =
+      Objects.requireNonNullElse(uri.getRawPath(), "");
+    final var path =
+      rawPath.isEmpty() ? "/" : rawPath;
+    final var query =
+      uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery();
+    final var host =
+      port == defaultPort(secure)
+        ? uri.getHost()
+        : "%s:%d".formatted(uri.getHost(), port);
+
+    return ("GET %s%s HTTP/1.1\r\n"
+            + "Host: %s\r\n"
+            + "User-Agent: %s\r\n"
+            + "Connection: close\r\n"
+            + "\r\n")
+      .formatted(path, query, host, userAgent());
+  }
+
+  private static String readStatusLine(
+    final InputStream input)
+    throws IOException
+  {
+    final var buffer = new ByteArrayOutputStream(128);
+    while (true) {
+      final var octet = input.read();
+      if (octet == -1) {
+        throw new ProtocolException("Connection closed during HTTP status line.");
+      }
+      if (octet == '\n') {
+        final var line = buffer.toString(StandardCharsets.US_ASCII);
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+      }
+      if (buffer.size() >= MAXIMUM_STATUS_LINE_LENGTH) {
+        throw new ProtocolException("HTTP status line too long.");
+      }
+      buffer.write(octet);
+    }
+  }
+
+  /**
+   * Parse the three-digit status code of a status line. The digits are
+   * checked explicitly, because {@link Integer#parseInt(String)} would also
+   * accept a sign and codes of any length.
+   */
+
+  private static int statusCode(
+    final String statusLine)
+    throws ProtocolException
+  {
+    final var parts =
+      statusLine.split(" ", 3);
+
+    if (parts.length < 2 || !parts[0].startsWith("HTTP/") || parts[1].length() != 3) {
+      throw new ProtocolException("Malformed status line: %s".formatted(statusLine));
+    }
+
+    var code = 0;
+    for (int index = 0; index < 3; ++index) {
+      final var digit = parts[1].charAt(index);
+      if (digit < '0' || digit > '9') {
+        throw new ProtocolException("Malformed status code: %s".formatted(statusLine));
+      }
+      code = (code * 10) + (digit - '0');
+    }
+    return code;
+  }
+
+  private void received(
+    final ZuMetrics.Check target,
+    final int statusCode)
+  {
+    MDC.put("Status", Integer.toString(statusCode));
+    if (statusCode >= 400) {
+      LOG.error("Request received an error.");
+    } else {
+      LOG.info("Request succeeded.");
+    }
+    MDC.remove("Status");
+
+    this.metrics().status(target, statusCode);
+  }
+
+  private static ZuProbePhase phaseOf(
+    final Exception e,
+    final ZuDeadline deadline)
+  {
+    if (e instanceof HttpConnectTimeoutException) {
+      return ZuProbePhase.CONNECT;
     }
+    return deadline.phase();
   }
 
   private static String userAgent()
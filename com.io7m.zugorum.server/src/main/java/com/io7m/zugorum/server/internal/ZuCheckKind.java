@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.Objects;
+
+/**
+ * The kinds of checks, as they appear in metric names.
+ */
+
+public enum ZuCheckKind
+{
+  /**
+   * HTTP/HTTPS checks.
+   */
+
+  HTTP("http", "HTTP/HTTPS"),
+
+  /**
+   * SMTP checks.
+   */
+
+  SMTP("smtp", "SMTP"),
+
+  /**
+   * TLS checks.
+   */
+
+  TLS("tls", "TLS"),
+
+  /**
+   * TCP connect checks.
+   */
+
+  TCP("tcp", "TCP");
+
+  private final String label;
+  private final String description;
+
+  ZuCheckKind(
+    final String inLabel,
+    final String inDescription)
+  {
+    this.label =
+      Objects.requireNonNull(inLabel, "label");
+    this.description =
+      Objects.requireNonNull(inDescription, "description");
+  }
+
+  /**
+   * @return The kind as it appears in metric names
+   */
+
+  public String label()
+  {
+    return this.label;
+  }
+
+  /**
+   * @return A humanly-readable description of the kind
+   */
+
+  public String description()
+  {
+    return this.description;
+  }
+
+  /**
+   * @return The prefix of the names of metrics that describe the TLS
+   * sessions of the kind; TLS checks do not repeat "tls" in the name
+   */
+
+  public String tlsFamily()
+  {
+    return switch (this) {
+      case TLS -> "zu_tls";
+      case HTTP, SMTP, TCP -> "zu_%s_tls".formatted(this.label);
+    };
+  }
+}
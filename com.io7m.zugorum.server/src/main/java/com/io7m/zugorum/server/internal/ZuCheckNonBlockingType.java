@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+/**
+ * The type of checks whose probes complete without holding the calling
+ * thread. The check runner starts the probe and the check reports completion
+ * through a callback.
+ */
+
+public interface ZuCheckNonBlockingType extends ZuCheckType
+{
+  /**
+   * Start a single probe. The given callback is executed exactly once, on an
+   * arbitrary thread, when the probe has completed. The callback must not
+   * block.
+   *
+   * @param deadline     The probe deadline
+   * @param onCompletion The completion callback
+   */
+
+  void probeNonBlocking(
+    ZuDeadline deadline,
+    Runnable onCompletion);
+}
@@ -14,30 +14,114 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
-
 package com.io7m.zugorum.server.internal;
 
 import com.io7m.zugorum.server.ZuConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * The check runner.
+ * <p>The check runner.</p>
+ *
+ * <p>The runner owns a single timing wheel that holds the next deadline of
+ * every check. When a deadline arrives, the probe is dispatched onto a fresh
+ * virtual thread, and the check is rescheduled when the probe completes. An
+ * idle check therefore holds no thread.</p>
+ *
+ * <p>Checks that implement {@link ZuCheckNonBlockingType} release the
+ * virtual thread as soon as their probe has started, and are rescheduled
+ * from the probe's completion callback.</p>
+ *
+ * <p>Due probes pass through a {@link ZuProbeLimiter} that bounds the number
+ * of probes in flight across all checks. The timing wheel itself only hands
+ * due checks to the limiter, and interrupts overdue probes; both are cheap
+ * enough to run directly on the wheel thread.</p>
+ *
+ * <p>Before a due probe reaches the limiter, it takes a token from the
+ * bucket of its target host, if a configured limit applies to the host (see
+ * {@link ZuHostLimits}). A probe to a host
+ * whose budget is exhausted is put back on the wheel until its token becomes
+ * available, so probes to a busy host are spread out rather than sent in a
+ * burst, and a delayed probe holds no probe slot.</p>
+ *
+ * <p>Checks are identified by their type and URI. When the runner is given
+ * a new configuration, checks that are unchanged are left alone, added
+ * checks are started, removed checks are stopped and their series are
+ * removed from the metrics store, and modified checks are replaced while
+ * keeping their series.</p>
  */
 
 public final class ZuCheckRunner implements AutoCloseable
 {
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuCheckRunner.class);
+
+  private static final Duration WHEEL_TICK =
+    Duration.ofMillis(10L);
+  private static final int WHEEL_BUCKETS =
+    4096;
+
   private final AtomicBoolean closed;
   private final ExecutorService executor;
+  private final ZuTimingWheel wheel;
+  private final Map<Key, ScheduledCheck> checks;
+  private final ZuHTTPClients httpClients;
+  private final ZuMetrics metrics;
+  private final ZuProbeLimiter limiter;
+  private final ZuHistogram hostDelays;
+  private final ZuResolver resolver;
+  private volatile ZuHostLimits hostLimits;
+  private ZuConfiguration.JitterStrategy jitter;
+  private ZuTCPConnector tcpConnector;
 
-  private ZuCheckRunner()
+  private ZuCheckRunner(
+    final ZuMetrics inMetrics,
+    final ZuHTTPClients inHttpClients,
+    final int inProbeLimit)
   {
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.httpClients =
+      Objects.requireNonNull(inHttpClients, "httpClients");
     this.closed =
       new AtomicBoolean(false);
     this.executor =
       Executors.newVirtualThreadPerTaskExecutor();
+    this.limiter =
+      ZuProbeLimiter.create(this.executor, inMetrics, inProbeLimit);
+    this.hostDelays =
+      inMetrics.registerHistogram(
+        "zu_host_limit_delay_seconds",
+        "The delays imposed on probes by per-host rate limits"
+      );
+    this.hostLimits =
+      ZuHostLimits.create(List.of());
+    this.resolver =
+      ZuResolver.create(
+        new ZuConfiguration.DNSCache(null, null),
+        inMetrics,
+        this.executor
+      );
+    this.wheel =
+      ZuTimingWheel.create(Runnable::run, WHEEL_TICK, WHEEL_BUCKETS);
+    this.checks =
+      new LinkedHashMap<>();
   }
 
   /**
@@ -47,34 +131,532 @@ public final class ZuCheckRunner implements AutoCloseable
    * @param metrics       The metrics store
    *
    * @return A new check runner
+   *
+   * @throws IOException On I/O errors
    */
 
   public static ZuCheckRunner create(
     final ZuConfiguration configuration,
     final ZuMetrics metrics)
+    throws IOException
+  {
+    final var runner =
+      new ZuCheckRunner(
+        metrics,
+        ZuHTTPClients.create(metrics),
+        configuration.maximumConcurrentProbes().intValue()
+      );
+
+    runner.reconcile(configuration);
+    return runner;
+  }
+
+  /**
+   * Bring the set of running checks into line with the given configuration.
+   *
+   * @param configuration The configuration
+   *
+   * @return A summary of the changes made
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public synchronized Reconciliation reconcile(
+    final ZuConfiguration configuration)
+    throws IOException
+  {
+    Objects.requireNonNull(configuration, "configuration");
+
+    final var jitterChanged =
+      this.jitter != configuration.jitter();
+    this.jitter =
+      configuration.jitter();
+    this.limiter.setLimit(configuration.maximumConcurrentProbes().intValue());
+    this.resolver.setConfiguration(configuration.dnsCache());
+
+    final var wanted = wantedChecks(configuration);
+    this.reconcileHostLimits(configuration, wanted.values());
+
+    final var removed = this.removeChecks(wanted);
+
+    var added = 0;
+    var modified = 0;
+    var unchanged = 0;
+    final var next = new LinkedHashMap<Key, ScheduledCheck>();
+    for (final var entry : wanted.entrySet()) {
+      final var checkConfig = entry.getValue();
+      final var existing = this.checks.get(entry.getKey());
+
+      final ScheduledCheck scheduled;
+      if (existing == null) {
+        scheduled = this.addCheck(checkConfig);
+        ++added;
+      } else if (!existing.check.configuration().equals(checkConfig)) {
+        scheduled = this.replaceCheck(existing, checkConfig);
+        ++modified;
+      } else {
+        scheduled = this.keepCheck(existing, checkConfig, jitterChanged);
+        ++unchanged;
+      }
+      next.put(entry.getKey(), scheduled);
+    }
+
+    this.checks.clear();
+    this.checks.putAll(next);
+
+    final var result =
+      new Reconciliation(added, removed, modified, unchanged);
+    LOG.info(
+      "Checks: {} added, {} removed, {} modified, {} unchanged",
+      Integer.valueOf(result.added()),
+      Integer.valueOf(result.removed()),
+      Integer.valueOf(result.modified()),
+      Integer.valueOf(result.unchanged())
+    );
+    return result;
+  }
+
+  private static LinkedHashMap<Key, ZuConfiguration.CheckType> wantedChecks(
+    final ZuConfiguration configuration)
   {
-    final var runner = new ZuCheckRunner();
+    final var wanted = new LinkedHashMap<Key, ZuConfiguration.CheckType>();
     for (final var checkConfig : configuration.checks()) {
-      switch (checkConfig) {
-        case final ZuConfiguration.CheckHTTP2xx checkHTTP2xx -> {
-          runner.executor.execute(new ZuCheckHTTP2xx(metrics, checkHTTP2xx));
-        }
-        case final ZuConfiguration.CheckSMTPHELO checkSMTPHELO -> {
-          runner.executor.execute(new ZuCheckSMTPHELO(metrics, checkSMTPHELO));
-        }
-        case final ZuConfiguration.CheckTLS checkTLS -> {
-          runner.executor.execute(new ZuCheckTLS(metrics, checkTLS));
-        }
+      final var key = Key.of(checkConfig);
+      if (wanted.putIfAbsent(key, checkConfig) != null) {
+        LOG.warn(
+          "Ignoring duplicate {} check for {}",
+          key.type(),
+          key.uri()
+        );
       }
     }
-    return runner;
+    return wanted;
+  }
+
+  /**
+   * Replace the host limits if they have changed, and otherwise discard
+   * the buckets of hosts that are no longer checked.
+   */
+
+  private void reconcileHostLimits(
+    final ZuConfiguration configuration,
+    final Collection<ZuConfiguration.CheckType> wanted)
+  {
+    if (!this.hostLimits.limits().equals(configuration.hostLimits())) {
+      this.hostLimits = ZuHostLimits.create(configuration.hostLimits());
+      return;
+    }
+
+    final var hosts = new HashSet<String>();
+    for (final var checkConfig : wanted) {
+      hosts.add(hostOf(checkConfig.uri()));
+    }
+    this.hostLimits.retainHosts(hosts);
+  }
+
+  /**
+   * Stop the checks that are no longer wanted, and remove their series.
+   *
+   * @return The number of checks removed
+   */
+
+  private int removeChecks(
+    final Map<Key, ZuConfiguration.CheckType> wanted)
+  {
+    var removed = 0;
+    final var iterator = this.checks.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final var entry = iterator.next();
+      if (!wanted.containsKey(entry.getKey())) {
+        final var existing = entry.getValue();
+        iterator.remove();
+        existing.cancel();
+        existing.check.stop();
+        this.metrics.unregister(existing.metricsCheck);
+        ++removed;
+      }
+    }
+    return removed;
+  }
+
+  private ScheduledCheck addCheck(
+    final ZuConfiguration.CheckType checkConfig)
+    throws IOException
+  {
+    final var metricsCheck =
+      this.metrics.register(kindOf(checkConfig), checkConfig.uri());
+    final var scheduled =
+      this.scheduledCheck(checkConfig, metricsCheck);
+    scheduled.start();
+    return scheduled;
+  }
+
+  /**
+   * Replace a check whose configuration has changed. The replacement
+   * inherits the metrics registration of the existing check, so the series
+   * and its current state are kept. The replacement is not started, because
+   * starting a check publishes its initial state.
+   */
+
+  private ScheduledCheck replaceCheck(
+    final ScheduledCheck existing,
+    final ZuConfiguration.CheckType checkConfig)
+    throws IOException
+  {
+    existing.cancel();
+    existing.check.stop();
+    final var scheduled =
+      this.scheduledCheck(checkConfig, existing.metricsCheck);
+    scheduled.resume();
+    return scheduled;
+  }
+
+  /**
+   * Keep a check whose configuration is unchanged, rescheduling it with a
+   * new jitter if the jitter strategy has changed.
+   */
+
+  private ScheduledCheck keepCheck(
+    final ScheduledCheck existing,
+    final ZuConfiguration.CheckType checkConfig,
+    final boolean jitterChanged)
+  {
+    if (!jitterChanged) {
+      return existing;
+    }
+
+    existing.cancel();
+    final var scheduled =
+      new ScheduledCheck(
+        this,
+        existing.check,
+        existing.metricsCheck,
+        ZuJitters.create(this.jitter, checkConfig)
+      );
+    scheduled.resume();
+    return scheduled;
+  }
+
+  private static String hostOf(
+    final URI uri)
+  {
+    return Objects.requireNonNullElse(uri.getHost(), "")
+      .toLowerCase(Locale.ROOT);
+  }
+
+  private ScheduledCheck scheduledCheck(
+    final ZuConfiguration.CheckType checkConfig,
+    final ZuMetrics.Check metricsCheck)
+    throws IOException
+  {
+    final var m = this.metrics;
+    final ZuCheckType check = switch (checkConfig) {
+      case final ZuConfiguration.CheckHTTP2xx checkHTTP2xx -> {
+        yield new ZuCheckHTTP2xx(m, metricsCheck, this.httpClients, this.resolver, this.limiter, checkHTTP2xx);
+      }
+      case final ZuConfiguration.CheckSMTPHELO checkSMTPHELO -> {
+        yield new ZuCheckSMTPHELO(m, metricsCheck, this.resolver, this.limiter, checkSMTPHELO);
+      }
+      case final ZuConfiguration.CheckTLS checkTLS -> {
+        yield new ZuCheckTLS(m, metricsCheck, this.resolver, this.limiter, checkTLS);
+      }
+      case final ZuConfiguration.CheckTCP checkTCP -> {
+        yield new ZuCheckTCP(m, metricsCheck, this.tcpConnector(), this.resolver, checkTCP);
+      }
+    };
+
+    return new ScheduledCheck(
+      this,
+      check,
+      metricsCheck,
+      ZuJitters.create(this.jitter, checkConfig)
+    );
+  }
+
+  private static ZuCheckKind kindOf(
+    final ZuConfiguration.CheckType checkConfig)
+  {
+    return switch (checkConfig) {
+      case final ZuConfiguration.CheckHTTP2xx c -> ZuCheckKind.HTTP;
+      case final ZuConfiguration.CheckSMTPHELO c -> ZuCheckKind.SMTP;
+      case final ZuConfiguration.CheckTLS c -> ZuCheckKind.TLS;
+      case final ZuConfiguration.CheckTCP c -> ZuCheckKind.TCP;
+    };
+  }
+
+  /**
+   * The TCP connect engine is only started if at least one TCP check is
+   * configured.
+   */
+
+  private ZuTCPConnector tcpConnector()
+    throws IOException
+  {
+    if (this.tcpConnector == null) {
+      this.tcpConnector = ZuTCPConnector.create(this.metrics);
+    }
+    return this.tcpConnector;
+  }
+
+  private Optional<ZuTimingWheel.Timeout> schedule(
+    final Runnable task,
+    final Duration delay)
+  {
+    if (this.closed.get()) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(this.wheel.schedule(task, delay));
+    } catch (final RejectedExecutionException e) {
+      LOG.debug("Scheduling rejected: ", e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Interrupt the given probe thread if it is still running when the
+   * deadline expires. Blocking socket operations on virtual threads are
+   * interruptible, so this bounds every probe even if a phase does not
+   * honour its own timeout.
+   */
+
+  private Optional<ZuTimingWheel.Timeout> watch(
+    final Thread thread,
+    final ZuDeadline deadline)
+  {
+    try {
+      return Optional.of(
+        this.wheel.schedule(thread::interrupt, deadline.remaining())
+      );
+    } catch (final RejectedExecutionException e) {
+      return Optional.empty();
+    }
   }
 
   @Override
   public void close()
   {
     if (this.closed.compareAndSet(false, true)) {
+      this.wheel.close();
+      this.executor.shutdownNow();
       this.executor.close();
+      this.httpClients.close();
+      if (this.tcpConnector != null) {
+        this.tcpConnector.close();
+      }
+    }
+  }
+
+  /**
+   * A summary of the changes made by a reconciliation.
+   *
+   * @param added     The number of checks started
+   * @param removed   The number of checks stopped
+   * @param modified  The number of checks replaced
+   * @param unchanged The number of checks left running
+   */
+
+  public record Reconciliation(
+    int added,
+    int removed,
+    int modified,
+    int unchanged)
+  {
+
+  }
+
+  /**
+   * The identity of a check across configurations.
+   */
+
+  private record Key(
+    String type,
+    URI uri)
+  {
+    static Key of(
+      final ZuConfiguration.CheckType checkConfig)
+    {
+      return new Key(checkConfig.type(), checkConfig.uri());
+    }
+  }
+
+  /**
+   * A check as seen by the timing wheel. Each time the wheel dispatches the
+   * check, a single probe is submitted to the limiter. When the probe has
+   * completed, its permit is released and the check is rescheduled.
+   */
+
+  private static final class ScheduledCheck implements Runnable
+  {
+    private final ZuCheckRunner runner;
+    private final ZuCheckType check;
+    private final ZuMetrics.Check metricsCheck;
+    private final ZuJitterType jitter;
+    private final String host;
+    private final Runnable submitTask;
+    private final Runnable probeTask;
+    private final Runnable probeCompletion;
+    private volatile boolean cancelled;
+    private volatile ZuTimingWheel.Timeout next;
+
+    ScheduledCheck(
+      final ZuCheckRunner inRunner,
+      final ZuCheckType inCheck,
+      final ZuMetrics.Check inMetricsCheck,
+      final ZuJitterType inJitter)
+    {
+      this.runner =
+        Objects.requireNonNull(inRunner, "runner");
+      this.check =
+        Objects.requireNonNull(inCheck, "check");
+      this.metricsCheck =
+        Objects.requireNonNull(inMetricsCheck, "metricsCheck");
+      this.jitter =
+        Objects.requireNonNull(inJitter, "jitter");
+      this.host =
+        hostOf(inCheck.configuration().uri());
+      this.submitTask =
+        this::submit;
+      this.probeTask =
+        this::probe;
+      this.probeCompletion =
+        this::complete;
+    }
+
+    void start()
+    {
+      this.check.start();
+      this.scheduleAfter(this.jitter.initialDelay(System.nanoTime()));
+    }
+
+    /**
+     * Schedule a check that replaces an existing check. The replacement
+     * waits for a full pause rather than probing immediately, so that a
+     * reload does not cause a burst of probes.
+     */
+
+    void resume()
+    {
+      this.scheduleAfter(this.jitter.nextPause(System.nanoTime()));
+    }
+
+    /**
+     * Prevent any further probes. A probe that is in progress completes,
+     * but the check is not rescheduled.
+     */
+
+    void cancel()
+    {
+      this.cancelled = true;
+      final var timeout = this.next;
+      if (timeout != null) {
+        timeout.cancel();
+      }
+    }
+
+    @Override
+    public void run()
+    {
+      if (this.cancelled) {
+        return;
+      }
+
+      final var bucket =
+        this.runner.hostLimits.bucketFor(this.host);
+
+      if (bucket.isPresent()) {
+        final var wait = bucket.get().reserve(System.nanoTime());
+        if (wait > 0L) {
+          this.runner.hostDelays.record(wait);
+          this.scheduleTask(this.submitTask, Duration.ofNanos(wait));
+          return;
+        }
+      }
+      this.submit();
+    }
+
+    private void submit()
+    {
+      if (this.cancelled) {
+        return;
+      }
+      this.runner.limiter.submit(this.probeTask);
+    }
+
+    private void probe()
+    {
+      if (this.cancelled) {
+        this.runner.limiter.release();
+        return;
+      }
+
+      final var deadline =
+        ZuDeadline.start(this.check.configuration());
+
+      if (this.check instanceof final ZuCheckNonBlockingType nonBlocking) {
+        try {
+          nonBlocking.probeNonBlocking(deadline, this.probeCompletion);
+        } catch (final RuntimeException e) {
+          LOG.error("Probe failed to start: ", e);
+          this.complete();
+        }
+        return;
+      }
+
+      final var watchdog =
+        this.runner.watch(Thread.currentThread(), deadline);
+
+      try {
+        this.check.probe(deadline);
+      } finally {
+        watchdog.ifPresent(ZuTimingWheel.Timeout::cancel);
+        Thread.interrupted();
+        this.complete();
+      }
+    }
+
+    private void complete()
+    {
+      this.runner.limiter.release();
+      this.reschedule();
+    }
+
+    private void reschedule()
+    {
+      final var pause =
+        this.jitter.nextPause(System.nanoTime());
+      LOG.debug(
+        "[{}] Pausing for {}",
+        this.check.configuration().uri(),
+        pause
+      );
+      this.scheduleAfter(pause);
+    }
+
+    private void scheduleAfter(
+      final Duration delay)
+    {
+      this.scheduleTask(this, delay);
+    }
+
+    private void scheduleTask(
+      final Runnable task,
+      final Duration delay)
+    {
+      if (this.cancelled) {
+        return;
+      }
+
+      final var timeout = this.runner.schedule(task, delay);
+      if (timeout.isEmpty()) {
+        return;
+      }
+
+      this.next = timeout.get();
+      if (this.cancelled) {
+        this.next.cancel();
+      }
     }
   }
 }
@@ -18,111 +18,290 @@
 package com.io7m.zugorum.server.internal;
 
 import com.io7m.zugorum.server.ZuConfiguration;
-import com.io7m.zugorum.server.ZuVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.Socket;
-import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * <p>A check that performs an ESMTP greeting.</p>
+ *
+ * <p>The check waits for the banner, greets the server with EHLO, and
+ * optionally upgrades the connection with STARTTLS. The time taken for the
+ * banner to arrive, the EHLO exchange, the TLS handshake, and the session
+ * as a whole are recorded as phases; a slow banner is usually the first
+ * sign of an overloaded server.</p>
+ */
 
 final class ZuCheckSMTPHELO
-  extends ZuCheckAbstract
+  extends ZuCheckAbstract<ZuConfiguration.CheckSMTPHELO>
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(ZuCheckSMTPHELO.class);
 
-  private final ZuConfiguration.CheckSMTPHELO config;
+  private static final String PHASE_BANNER =
+    "banner";
+  private static final String PHASE_EHLO =
+    "ehlo";
+  private static final String PHASE_SESSION =
+    "session";
+  private static final byte[] CRLF =
+    {'\r', '\n'};
+
+  private final ZuAddressFanOut addresses;
+  private final SSLSocketFactory sockets;
+  private final ZuTLSInspector inspector;
 
   ZuCheckSMTPHELO(
     final ZuMetrics m,
+    final ZuMetrics.Check mc,
+    final ZuResolver inResolver,
+    final ZuProbeLimiter limiter,
     final ZuConfiguration.CheckSMTPHELO inConfig)
   {
-    super(LOG, m);
+    super(LOG, m, mc, inConfig);
 
-    this.config =
-      Objects.requireNonNull(inConfig, "config");
+    this.addresses =
+      ZuAddressFanOut.create(m, mc, inResolver, limiter, inConfig.allAddresses());
+    this.sockets =
+      (SSLSocketFactory) SSLSocketFactory.getDefault();
+    this.inspector =
+      new ZuTLSInspector();
   }
 
   @Override
-  public void run()
+  protected void onStart()
   {
-    MDC.put("URI", this.config.uri().toString());
-    MDC.put("Type", this.config.type());
-    LOG.info("Check started.");
+    this.metrics().success(this.metricsCheck());
+  }
 
-    final var metrics = this.metrics();
-    metrics.smtpOK(this.config.uri(), "");
+  @Override
+  protected void onStop()
+  {
+    this.addresses.close();
+  }
 
-    while (true) {
-      this.makeRequest();
-      this.pauseRandom(this.config.pauseMinimum(), this.config.pauseMaximum());
+  @Override
+  protected void onProbe(
+    final ZuDeadline deadline)
+  {
+    try {
+      this.addresses.probe(
+        this.configuration().uri().getHost(),
+        deadline,
+        this::probeAddress
+      );
+    } catch (final Exception e) {
+      this.failed(this.metricsCheck(), deadline, e);
     }
   }
 
-  private void makeRequest()
+  private void probeAddress(
+    final ZuMetrics.Check target,
+    final InetAddress address,
+    final ZuDeadline deadline)
   {
     final var metrics =
       this.metrics();
+    final var uriPort =
+      this.configuration().uri().getPort();
+    final var port =
+      uriPort == -1 ? 25 : uriPort;
 
     try {
-      MDC.put("URI", this.config.uri().toString());
-      MDC.put("Type", this.config.type());
-      LOG.debug("Sending request.");
+      final var timeStart = System.nanoTime();
+      try (final var socket = ZuSockets.connect(address, port, deadline)) {
+        metrics.phaseDurations(target, ZuProbePhase.CONNECT.label())
+          .record(System.nanoTime() - timeStart);
 
-      final var host =
-        this.config.uri().getHost();
-      var port =
-        this.config.uri().getPort();
+        if (!this.converse(target, Exchange.open(socket), port, deadline)) {
+          return;
+        }
 
-      if (port == -1) {
-        port = 25;
+        metrics.phaseDurations(target, PHASE_SESSION)
+          .record(System.nanoTime() - timeStart);
       }
 
-      try (final var socket = new Socket(host, port)) {
-        final var out =
-          new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-        final var in =
-          new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      LOG.info("Request succeeded.");
+      metrics.success(target);
+    } catch (final Exception e) {
+      this.failed(target, deadline, e);
+    }
+  }
 
-        {
-          in.readLine();
-        }
+  /**
+   * Wait for the banner, greet the server, and optionally upgrade the
+   * connection.
+   *
+   * @return {@code true} if the session completed successfully
+   */
 
-        out.write("EHLO %s\n".formatted(this.config.helo()));
-        out.write("\n");
-        out.flush();
-
-        {
-          final var r = in.readLine();
-          if (!r.startsWith("250")) {
-            LOG.error("Request failed: {}", r);
-            metrics.smtpError(this.config.uri(), r);
-            return;
-          }
-        }
+  private boolean converse(
+    final ZuMetrics.Check target,
+    final Exchange exchange,
+    final int port,
+    final ZuDeadline deadline)
+    throws IOException
+  {
+    final var metrics = this.metrics();
+    final var timeConnected = System.nanoTime();
+    deadline.enter(ZuProbePhase.EXCHANGE);
 
-        out.write("QUIT\n");
-        out.flush();
+    final var banner = ZuSMTPReply.read(exchange.in());
+    final var timeBanner = System.nanoTime();
+    metrics.phaseDurations(target, PHASE_BANNER)
+      .record(timeBanner - timeConnected);
+
+    if (banner.code() != 220) {
+      this.rejected(target, banner);
+      return false;
+    }
+
+    final var ehlo = this.ehlo(exchange);
+    metrics.phaseDurations(target, PHASE_EHLO)
+      .record(System.nanoTime() - timeBanner);
+
+    if (!ehlo.isPositive()) {
+      this.rejected(target, ehlo);
+      return false;
+    }
+
+    if (this.configuration().startTLS().booleanValue()) {
+      return this.startTLS(target, exchange, ehlo, port, deadline);
+    }
+
+    quit(exchange);
+    return true;
+  }
+
+  /**
+   * Upgrade the connection with STARTTLS, and greet the server again.
+   *
+   * @return {@code true} if the session completed successfully
+   */
+
+  private boolean startTLS(
+    final ZuMetrics.Check target,
+    final Exchange exchange,
+    final ZuSMTPReply ehlo,
+    final int port,
+    final ZuDeadline deadline)
+    throws IOException
+  {
+    final var metrics = this.metrics();
+    if (!ehlo.hasExtension("STARTTLS")) {
+      LOG.error("Request failed: STARTTLS is not offered.");
+      metrics.failure(target, "STARTTLS is not offered.");
+      return false;
+    }
+
+    final var startTLS = command(exchange, "STARTTLS");
+    if (startTLS.code() != 220) {
+      this.rejected(target, startTLS);
+      return false;
+    }
+
+    final var timeHandshake = System.nanoTime();
+    try (final var tlsSocket =
+           ZuSockets.handshake(
+             this.sockets,
+             exchange.socket(),
+             this.configuration().uri().getHost(),
+             port,
+             deadline
+           )) {
+      metrics.phaseDurations(target, ZuProbePhase.TLS_HANDSHAKE.label())
+        .record(System.nanoTime() - timeHandshake);
+      metrics.tls(target, this.inspector.inspect(tlsSocket.getSession()));
+
+      /*
+       * The server forgets everything it learned from the client before
+       * the handshake (RFC 3207, section 4.2), so the client greets it
+       * again.
+       */
+
+      deadline.enter(ZuProbePhase.EXCHANGE);
+      final var secure = Exchange.open(tlsSocket);
+      final var again = this.ehlo(secure);
+      if (!again.isPositive()) {
+        this.rejected(target, again);
+        return false;
       }
 
-      LOG.info("Request succeeded.");
-      metrics.smtpOK(this.config.uri(), "");
-    } catch (final Exception e) {
-      LOG.error("Request exception: ", e);
-      metrics.smtpException(this.config.uri(), e);
+      quit(secure);
+      return true;
     }
   }
 
-  private static String userAgent()
+  private static void quit(
+    final Exchange exchange)
+    throws IOException
   {
-    return "com.io7m.zugorum %s %s".formatted(
-      ZuVersion.MAIN_VERSION,
-      ZuVersion.MAIN_BUILD
-    );
+    final var quit = command(exchange, "QUIT");
+    if (quit.code() != 221) {
+      LOG.warn("Unexpected reply to QUIT: {}", quit.text());
+    }
+  }
+
+  private ZuSMTPReply ehlo(
+    final Exchange exchange)
+    throws IOException
+  {
+    return command(exchange, "EHLO %s".formatted(this.configuration().helo()));
+  }
+
+  private static ZuSMTPReply command(
+    final Exchange exchange,
+    final String command)
+    throws IOException
+  {
+    final var out = exchange.out();
+    out.write(command.getBytes(US_ASCII));
+    out.write(CRLF);
+    out.flush();
+    return ZuSMTPReply.read(exchange.in());
+  }
+
+  private void rejected(
+    final ZuMetrics.Check target,
+    final ZuSMTPReply reply)
+  {
+    final var text = reply.text();
+    LOG.error("Request failed: {}", text);
+    this.metrics().failure(target, text);
+  }
+
+  /**
+   * Buffered streams over a connection.
+   *
+   * @param socket The connection
+   * @param in     The input stream
+   * @param out    The output stream
+   */
+
+  private record Exchange(
+    Socket socket,
+    InputStream in,
+    OutputStream out)
+  {
+    static Exchange open(
+      final Socket socket)
+      throws IOException
+    {
+      return new Exchange(
+        socket,
+        new BufferedInputStream(socket.getInputStream()),
+        new BufferedOutputStream(socket.getOutputStream())
+      );
+    }
   }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import io.helidon.common.parameters.Parameters;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>A selection of checks by kind, by label, and by shard.</p>
+ *
+ * <p>A check is selected if its kind is one of the given kinds, its
+ * {@code url} label is one of the given URLs, its {@code address} label is
+ * one of the given addresses, and it belongs to the given shard. An empty
+ * set places no restriction on the corresponding property.</p>
+ *
+ * <p>Checks are assigned to shards by a hash of their {@code url} label,
+ * so that the series of every address of a check belong to the same shard,
+ * and a check stays in the same shard across restarts.</p>
+ *
+ * @param kinds     The selected kinds
+ * @param urls      The selected URLs
+ * @param addresses The selected addresses
+ * @param shard     The selected shard
+ * @param shards    The number of shards
+ */
+
+public record ZuCheckSelector(
+  Set<ZuCheckKind> kinds,
+  Set<String> urls,
+  Set<String> addresses,
+  int shard,
+  int shards)
+{
+  private static final ZuCheckSelector ALL =
+    new ZuCheckSelector(Set.of(), Set.of(), Set.of(), 0, 1);
+
+  /**
+   * A selection of checks by kind, by label, and by shard.
+   *
+   * @param kinds     The selected kinds
+   * @param urls      The selected URLs
+   * @param addresses The selected addresses
+   * @param shard     The selected shard
+   * @param shards    The number of shards
+   */
+
+  public ZuCheckSelector
+  {
+    kinds = Set.copyOf(kinds);
+    urls = Set.copyOf(urls);
+    addresses = Set.copyOf(addresses);
+
+    if (shards <= 0) {
+      throw new IllegalArgumentException("Number of shards must be positive.");
+    }
+    if (shard < 0 || shard >= shards) {
+      throw new IllegalArgumentException(
+        "Shard must be in the range [0, %d).".formatted(shards));
+    }
+  }
+
+  /**
+   * @return A selector that selects every check
+   */
+
+  public static ZuCheckSelector all()
+  {
+    return ALL;
+  }
+
+  /**
+   * Parse a selector from the repeatable query parameters {@code kind},
+   * {@code url}, and {@code address}, and the query parameters
+   * {@code shard} and {@code of}.
+   *
+   * @param query The query parameters
+   *
+   * @return A selector
+   *
+   * @throws IllegalArgumentException If the parameters are malformed
+   */
+
+  public static ZuCheckSelector parse(
+    final Parameters query)
+  {
+    final var kinds = EnumSet.noneOf(ZuCheckKind.class);
+    for (final var name : query.all("kind", List::of)) {
+      kinds.add(kindOf(name));
+    }
+
+    final var shard = query.first("shard");
+    final var shards = query.first("of");
+    if (shard.isPresent() != shards.isPresent()) {
+      throw new IllegalArgumentException(
+        "The shard and of parameters must be given together.");
+    }
+
+    return new ZuCheckSelector(
+      kinds,
+      Set.copyOf(query.all("url", List::of)),
+      Set.copyOf(query.all("address", List::of)),
+      Integer.parseInt(shard.orElse("0")),
+      Integer.parseInt(shards.orElse("1"))
+    );
+  }
+
+  private static ZuCheckKind kindOf(
+    final String name)
+  {
+    for (final var kind : ZuCheckKind.values()) {
+      if (kind.label().equals(name)) {
+        return kind;
+      }
+    }
+    throw new IllegalArgumentException("Unrecognized check kind: %s".formatted(name));
+  }
+
+  /**
+   * @param check  The check
+   * @param shards The number of shards
+   *
+   * @return The shard to which the given check belongs
+   */
+
+  public static int shardOf(
+    final ZuMetrics.Check check,
+    final int shards)
+  {
+    return Math.floorMod(check.uri().toString().hashCode(), shards);
+  }
+
+  /**
+   * @return {@code true} if this selector selects every check
+   */
+
+  public boolean isAll()
+  {
+    return this.kinds.isEmpty()
+           && this.urls.isEmpty()
+           && this.addresses.isEmpty()
+           && this.shards == 1;
+  }
+
+  /**
+   * @return {@code true} if this selector restricts checks only by shard,
+   * and selects the first shard
+   */
+
+  public boolean isFirstShard()
+  {
+    return this.kinds.isEmpty()
+           && this.urls.isEmpty()
+           && this.addresses.isEmpty()
+           && this.shard == 0;
+  }
+
+  /**
+   * @param check The check
+   *
+   * @return {@code true} if the given check is selected
+   */
+
+  public boolean matches(
+    final ZuMetrics.Check check)
+  {
+    Objects.requireNonNull(check, "check");
+
+    return this.matchesKind(check)
+           && this.matchesURL(check)
+           && this.matchesAddress(check)
+           && this.matchesShard(check);
+  }
+
+  private boolean matchesKind(
+    final ZuMetrics.Check check)
+  {
+    return this.kinds.isEmpty() || this.kinds.contains(check.kind());
+  }
+
+  private boolean matchesURL(
+    final ZuMetrics.Check check)
+  {
+    return this.urls.isEmpty() || this.urls.contains(check.uri().toString());
+  }
+
+  private boolean matchesAddress(
+    final ZuMetrics.Check check)
+  {
+    return this.addresses.isEmpty() || this.addresses.contains(check.address());
+  }
+
+  private boolean matchesShard(
+    final ZuMetrics.Check check)
+  {
+    return this.shards == 1 || shardOf(check, this.shards) == this.shard;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A check that measures whether a TCP connection can be established. The
+ * connection attempt is driven by the shared {@link ZuTCPConnector}, so a
+ * probe holds a thread only while a host name that is not already in the
+ * {@link ZuResolver} cache is resolved.
+ */
+
+final class ZuCheckTCP
+  extends ZuCheckAbstract<ZuConfiguration.CheckTCP>
+  implements ZuCheckNonBlockingType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuCheckTCP.class);
+
+  private final ZuTCPConnector connector;
+  private final ZuResolver resolver;
+
+  ZuCheckTCP(
+    final ZuMetrics m,
+    final ZuMetrics.Check mc,
+    final ZuTCPConnector inConnector,
+    final ZuResolver inResolver,
+    final ZuConfiguration.CheckTCP inConfig)
+  {
+    super(LOG, m, mc, inConfig);
+
+    this.connector =
+      Objects.requireNonNull(inConnector, "connector");
+    this.resolver =
+      Objects.requireNonNull(inResolver, "resolver");
+  }
+
+  @Override
+  protected void onStart()
+  {
+    this.metrics().success(this.metricsCheck());
+  }
+
+  @Override
+  protected void onProbe(
+    final ZuDeadline deadline)
+  {
+    final var done = new CountDownLatch(1);
+    this.submit(deadline, done::countDown);
+
+    try {
+      done.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void probeNonBlocking(
+    final ZuDeadline deadline,
+    final Runnable onCompletion)
+  {
+    Objects.requireNonNull(onCompletion, "onCompletion");
+
+    final var timeStart = System.nanoTime();
+    try {
+      this.putMDC();
+      LOG.debug("Sending request.");
+      this.submit(deadline, () -> {
+        this.metrics().count(this.metricsCheck(), System.nanoTime() - timeStart);
+        onCompletion.run();
+      });
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  private void submit(
+    final ZuDeadline deadline,
+    final Runnable onCompletion)
+  {
+    final var config = this.configuration();
+
+    try {
+      final var host =
+        config.uri().getHost();
+      final var port =
+        config.uri().getPort();
+
+      if (port == -1) {
+        throw new IllegalArgumentException("Missing port in URI!");
+      }
+
+      final var address =
+        this.resolver.resolve(host, deadline).getFirst();
+
+      deadline.enter(ZuProbePhase.CONNECT);
+      this.connector.connect(
+        new InetSocketAddress(address, port),
+        deadline.connectTimeout().toNanos(),
+        new Completion(this, deadline, onCompletion)
+      );
+    } catch (final Exception e) {
+      this.onFailed(deadline, e);
+      onCompletion.run();
+    }
+  }
+
+  private void onFailed(
+    final ZuDeadline deadline,
+    final Exception e)
+  {
+    final var uri = this.configuration().uri();
+    if (deadline.isTimeout(e)) {
+      LOG.error("[{}] Request timed out during phase {}.", uri, deadline.phase());
+      this.metrics().timeout(this.metricsCheck(), deadline.phase());
+      return;
+    }
+    LOG.error("[{}] Request exception: ", uri, e);
+    this.metrics().exception(this.metricsCheck(), e);
+  }
+
+  private record Completion(
+    ZuCheckTCP check,
+    ZuDeadline deadline,
+    Runnable onCompletion)
+    implements ZuTCPConnector.CallbackType
+  {
+    @Override
+    public void onConnected(
+      final long connectNanos)
+    {
+      try {
+        LOG.debug(
+          "[{}] Connected in {}ns",
+          this.check.configuration().uri(),
+          Long.valueOf(connectNanos)
+        );
+        this.check.metrics().success(this.check.metricsCheck());
+      } finally {
+        this.onCompletion.run();
+      }
+    }
+
+    @Override
+    public void onFailed(
+      final Exception e)
+    {
+      try {
+        this.check.onFailed(this.deadline, e);
+      } finally {
+        this.onCompletion.run();
+      }
+    }
+  }
+}
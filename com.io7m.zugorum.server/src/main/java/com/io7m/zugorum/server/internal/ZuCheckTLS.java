@@ -18,87 +18,279 @@
 package com.io7m.zugorum.server.internal;
 
 import com.io7m.zugorum.server.ZuConfiguration;
-import com.io7m.zugorum.server.ZuVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 
-import javax.net.SocketFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
-import java.util.Objects;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>A check that performs a TLS handshake.</p>
+ *
+ * <p>With session resumption enabled, the check uses a separate
+ * {@link SSLContext} (and therefore a separate client session cache) for
+ * each address it probes, and alternates between full handshakes and
+ * attempts to resume the session established by the previous full handshake
+ * with the same address. The durations of full and resumed handshakes are
+ * recorded as separate phases.</p>
+ */
 
 final class ZuCheckTLS
-  extends ZuCheckAbstract
+  extends ZuCheckAbstract<ZuConfiguration.CheckTLS>
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(ZuCheckTLS.class);
 
-  private final ZuConfiguration.CheckTLS config;
-  private final SocketFactory sockets;
+  private static final String PHASE_FULL =
+    ZuProbePhase.TLS_HANDSHAKE.label();
+  private static final String PHASE_RESUMED =
+    ZuProbePhase.TLS_HANDSHAKE.label() + "_resumed";
+  private static final int TICKET_WAIT_MILLIS =
+    250;
+
+  private final ZuAddressFanOut addresses;
+  private final ZuTLSInspector inspector;
+  private final ConcurrentHashMap<String, AddressState> states;
+  private long generation;
 
   ZuCheckTLS(
     final ZuMetrics m,
+    final ZuMetrics.Check mc,
+    final ZuResolver inResolver,
+    final ZuProbeLimiter limiter,
     final ZuConfiguration.CheckTLS inConfig)
   {
-    super(LOG, m);
+    super(LOG, m, mc, inConfig);
 
-    this.config =
-      Objects.requireNonNull(inConfig, "config");
-    this.sockets =
-      SSLSocketFactory.getDefault();
+    this.states =
+      new ConcurrentHashMap<>();
+    this.addresses =
+      ZuAddressFanOut.create(m, mc, inResolver, limiter, inConfig.allAddresses());
+    this.inspector =
+      new ZuTLSInspector();
   }
 
   @Override
-  public void run()
+  protected void onStart()
   {
-    MDC.put("URI", this.config.uri().toString());
-    MDC.put("Type", this.config.type());
-    LOG.info("Check started.");
+    this.metrics().success(this.metricsCheck());
+  }
 
-    final var metrics = this.metrics();
-    metrics.tlsOK(this.config.uri());
+  @Override
+  protected void onStop()
+  {
+    this.addresses.close();
+    this.states.clear();
+  }
 
-    while (true) {
-      this.makeRequest();
-      this.pauseRandom(this.config.pauseMinimum(), this.config.pauseMaximum());
+  @Override
+  protected void onProbe(
+    final ZuDeadline deadline)
+  {
+    try {
+      if (this.configuration().uri().getPort() == -1) {
+        throw new IllegalArgumentException("Missing port in URI!");
+      }
+
+      ++this.generation;
+      this.addresses.probe(
+        this.configuration().uri().getHost(),
+        deadline,
+        this::probeAddress
+      );
+
+      /*
+       * Every address is probed on every probe, so the state of any address
+       * that was not probed belongs to an address the host no longer
+       * resolves to.
+       */
+
+      final var current = this.generation;
+      this.states.values().removeIf(state -> state.generation != current);
+    } catch (final Exception e) {
+      this.failed(this.metricsCheck(), deadline, e);
+    }
+  }
+
+  private AddressState stateFor(
+    final ZuMetrics.Check target)
+    throws GeneralSecurityException
+  {
+    final var existing = this.states.get(target.address());
+    if (existing != null) {
+      return existing;
+    }
+
+    final AddressState state;
+    if (this.configuration().sessionResumption().booleanValue()) {
+      final var context = SSLContext.getInstance("TLS");
+      context.init(null, null, null);
+      state = new AddressState(context, true);
+    } else {
+      state = new AddressState(SSLContext.getDefault(), false);
     }
+
+    final var previous = this.states.putIfAbsent(target.address(), state);
+    return previous != null ? previous : state;
   }
 
-  private void makeRequest()
+  private void probeAddress(
+    final ZuMetrics.Check target,
+    final InetAddress address,
+    final ZuDeadline deadline)
   {
     final var metrics =
       this.metrics();
+    final var config =
+      this.configuration();
 
     try {
-      MDC.put("URI", this.config.uri().toString());
-      MDC.put("Type", this.config.type());
-      LOG.debug("Sending request.");
-
       final var host =
-        this.config.uri().getHost();
+        config.uri().getHost();
       final var port =
-        this.config.uri().getPort();
+        config.uri().getPort();
 
-      if (port == -1) {
-        throw new IllegalArgumentException("Missing port in URI!");
+      final var state = this.stateFor(target);
+      state.generation = this.generation;
+      state.handshakes += 1L;
+
+      final var resuming =
+        state.resumption && (state.handshakes & 1L) == 0L;
+
+      if (state.resumption && !resuming) {
+        state.forgetSessions();
       }
 
-      try (final var ignored = this.sockets.createSocket(host, port)) {
-        LOG.info("Request succeeded.");
+      final var timeConnect = System.nanoTime();
+      try (final var socket =
+             ZuSockets.connect(address, port, deadline)) {
+        final var timeHandshake = System.nanoTime();
+        final var cached = state.sessionIds();
+        metrics.phaseDurations(target, ZuProbePhase.CONNECT.label())
+          .record(timeHandshake - timeConnect);
+
+        try (final var tlsSocket =
+               ZuSockets.handshake(state.sockets, socket, host, port, deadline)) {
+          final var timeHandshakeEnd = System.nanoTime();
+          final var session = tlsSocket.getSession();
+          final var resumed = isResumed(session, cached);
+
+          metrics.phaseDurations(target, resumed ? PHASE_RESUMED : PHASE_FULL)
+            .record(timeHandshakeEnd - timeHandshake);
+          metrics.tls(target, this.inspector.inspect(session));
+
+          if (resuming) {
+            metrics.resumption(target, resumed);
+            LOG.info("Request succeeded: {} (resumed: {})", session.getProtocol(), resumed);
+          } else {
+            LOG.info("Request succeeded: {}", session.getProtocol());
+            if (state.resumption) {
+              awaitTickets(tlsSocket, deadline);
+            }
+          }
+        }
       }
 
-      metrics.tlsOK(this.config.uri());
+      metrics.success(target);
     } catch (final Exception e) {
-      LOG.error("Request exception: ", e);
-      metrics.tlsException(this.config.uri(), e);
+      this.failed(target, deadline, e);
     }
   }
 
-  private static String userAgent()
+  /**
+   * Determine whether a handshake resumed an existing session. The JSSE
+   * does not report this directly. A resumed handshake continues a session
+   * that was in the client session cache before the handshake began: in TLS
+   * 1.2 the session itself, and in TLS 1.3 the session created from the
+   * ticket that was presented. A full handshake always establishes a
+   * session with a new ID.
+   */
+
+  private static boolean isResumed(
+    final SSLSession session,
+    final Set<ByteBuffer> cached)
   {
-    return "com.io7m.zugorum %s %s".formatted(
-      ZuVersion.MAIN_VERSION,
-      ZuVersion.MAIN_BUILD
-    );
+    return cached.contains(ByteBuffer.wrap(session.getId()));
+  }
+
+  /**
+   * TLS 1.3 servers issue session tickets after the handshake completes,
+   * and the JSSE only processes them when reading from the connection.
+   * Without this, a check that closes the connection immediately after the
+   * handshake would never have a session to resume.
+   */
+
+  private static void awaitTickets(
+    final SSLSocket socket,
+    final ZuDeadline deadline)
+  {
+    try {
+      socket.setSoTimeout(
+        Math.min(TICKET_WAIT_MILLIS, deadline.readTimeoutMillis())
+      );
+      socket.getInputStream().read();
+    } catch (final SocketTimeoutException e) {
+      // Expected: the server has nothing more to send.
+    } catch (final IOException e) {
+      LOG.debug("Failed waiting for session tickets: ", e);
+    }
+  }
+
+  /**
+   * The TLS state of a single address. An address is probed by at most one
+   * thread at a time, and successive probes are ordered by the starting and
+   * joining of the threads that run them.
+   */
+
+  private static final class AddressState
+  {
+    private final SSLSocketFactory sockets;
+    private final SSLSessionContext sessions;
+    private final boolean resumption;
+    private long handshakes;
+    private long generation;
+
+    AddressState(
+      final SSLContext context,
+      final boolean inResumption)
+    {
+      this.sockets =
+        context.getSocketFactory();
+      this.sessions =
+        context.getClientSessionContext();
+      this.resumption =
+        inResumption;
+    }
+
+    private Set<ByteBuffer> sessionIds()
+    {
+      final var ids = new HashSet<ByteBuffer>();
+      for (final var id : Collections.list(this.sessions.getIds())) {
+        ids.add(ByteBuffer.wrap(id));
+      }
+      return ids;
+    }
+
+    private void forgetSessions()
+    {
+      for (final var id : Collections.list(this.sessions.getIds())) {
+        final var session = this.sessions.getSession(id);
+        if (session != null) {
+          session.invalidate();
+        }
+      }
+    }
   }
 }
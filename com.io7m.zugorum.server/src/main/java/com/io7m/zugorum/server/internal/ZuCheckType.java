@@ -17,12 +17,39 @@
 
 package com.io7m.zugorum.server.internal;
 
+import com.io7m.zugorum.server.ZuConfiguration;
+
 /**
- * The type of liveness checks.
+ * The type of liveness checks. A check does not own a thread; the check
+ * runner calls {@link #probe(ZuDeadline)} each time the check is due.
  */
 
 public interface ZuCheckType
-  extends Runnable
 {
+  /**
+   * @return The check configuration
+   */
+
+  ZuConfiguration.CheckType configuration();
+
+  /**
+   * Start the check. This is called exactly once, before the first probe.
+   */
+
+  void start();
+
+  /**
+   * Stop the check, releasing any resources it holds. A probe that is in
+   * progress may still complete after this method returns.
+   */
+
+  void stop();
+
+  /**
+   * Execute a single probe.
+   *
+   * @param deadline The probe deadline
+   */
 
+  void probe(ZuDeadline deadline);
 }
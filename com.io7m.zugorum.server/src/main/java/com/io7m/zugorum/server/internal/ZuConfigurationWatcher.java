@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * <p>A watcher that delivers the configuration each time the configuration
+ * file changes.</p>
+ *
+ * <p>The directory containing the file is watched, and any event in the
+ * directory causes the attributes of the file to be compared with those seen
+ * at the last load. Comparing attributes rather than matching event file
+ * names means that files replaced by renaming, or by swapping symbolic
+ * links, are noticed. The attributes are also compared periodically in case
+ * events are lost. A file that cannot be parsed is logged and ignored; the
+ * running configuration stays in effect.</p>
+ */
+
+public final class ZuConfigurationWatcher implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuConfigurationWatcher.class);
+
+  private static final Duration POLL_INTERVAL =
+    Duration.ofSeconds(5L);
+  private static final Duration SETTLE_TIME =
+    Duration.ofMillis(250L);
+
+  private final AtomicBoolean closed;
+  private final Path file;
+  private final Consumer<ZuConfiguration> onChange;
+  private final WatchService watchService;
+  private final Thread thread;
+  private Optional<Stamp> loaded;
+
+  private ZuConfigurationWatcher(
+    final Path inFile,
+    final Consumer<ZuConfiguration> inOnChange,
+    final WatchService inWatchService)
+  {
+    this.file =
+      Objects.requireNonNull(inFile, "file");
+    this.onChange =
+      Objects.requireNonNull(inOnChange, "onChange");
+    this.watchService =
+      Objects.requireNonNull(inWatchService, "watchService");
+    this.closed =
+      new AtomicBoolean(false);
+    this.thread =
+      Thread.ofPlatform()
+        .name("com.io7m.zugorum.configuration-watcher")
+        .daemon()
+        .unstarted(this::run);
+  }
+
+  /**
+   * Start watching the given configuration file. The current state of the
+   * file is assumed to already be loaded.
+   *
+   * @param file     The configuration file
+   * @param onChange The receiver of changed configurations
+   *
+   * @return A running watcher
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static ZuConfigurationWatcher create(
+    final Path file,
+    final Consumer<ZuConfiguration> onChange)
+    throws IOException
+  {
+    final var absolute =
+      file.toAbsolutePath();
+    final var directory =
+      absolute.getParent();
+    final var watchService =
+      directory.getFileSystem().newWatchService();
+
+    directory.register(
+      watchService,
+      StandardWatchEventKinds.ENTRY_CREATE,
+      StandardWatchEventKinds.ENTRY_MODIFY,
+      StandardWatchEventKinds.ENTRY_DELETE
+    );
+
+    final var watcher =
+      new ZuConfigurationWatcher(absolute, onChange, watchService);
+    watcher.loaded = stampOf(absolute);
+    watcher.thread.start();
+    return watcher;
+  }
+
+  private static Optional<Stamp> stampOf(
+    final Path file)
+    throws IOException
+  {
+    try {
+      final var attributes =
+        Files.readAttributes(file, BasicFileAttributes.class);
+      return Optional.of(new Stamp(
+        attributes.lastModifiedTime().toMillis(),
+        attributes.size(),
+        Optional.ofNullable(attributes.fileKey())
+      ));
+    } catch (final NoSuchFileException e) {
+      return Optional.empty();
+    }
+  }
+
+  private void run()
+  {
+    LOG.debug("Watching {}", this.file);
+
+    try {
+      while (!this.closed.get()) {
+        final var key =
+          this.watchService.poll(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+        if (key != null) {
+          /*
+           * Editors and deployment tools often write a file in several
+           * steps; wait for the writes to settle and consume the burst of
+           * events they produce.
+           */
+
+          Thread.sleep(SETTLE_TIME.toMillis());
+          key.pollEvents();
+          key.reset();
+          while (true) {
+            final var more = this.watchService.poll();
+            if (more == null) {
+              break;
+            }
+            more.pollEvents();
+            more.reset();
+          }
+        }
+
+        this.checkForChanges();
+      }
+    } catch (final ClosedWatchServiceException e) {
+      // Closed.
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    LOG.debug("Stopped watching {}", this.file);
+  }
+
+  private void checkForChanges()
+  {
+    try {
+      final var stamp = stampOf(this.file);
+      if (stamp.isEmpty() || stamp.equals(this.loaded)) {
+        return;
+      }
+
+      this.loaded = stamp;
+      LOG.info("Configuration file {} changed; reloading", this.file);
+      this.onChange.accept(ZuConfiguration.ofFile(this.file));
+    } catch (final Exception e) {
+      LOG.error(
+        "Failed to reload configuration file {}; the running configuration is unchanged: ",
+        this.file,
+        e
+      );
+    }
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (this.closed.compareAndSet(false, true)) {
+      this.watchService.close();
+      this.thread.interrupt();
+    }
+  }
+
+  private record Stamp(
+    long modified,
+    long size,
+    Optional<Object> fileKey)
+  {
+
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>The deadline of a single probe.</p>
+ *
+ * <p>A probe moves through a sequence of phases. Each blocking operation is
+ * bounded by its per-phase timeout, and every per-phase timeout is in turn
+ * bounded by the time remaining before the overall deadline.</p>
+ */
+
+public final class ZuDeadline
+{
+  private final long deadlineNanos;
+  private final Duration connectTimeout;
+  private final Duration readTimeout;
+  private volatile ZuProbePhase phase;
+
+  private ZuDeadline(
+    final long inDeadlineNanos,
+    final Duration inConnectTimeout,
+    final Duration inReadTimeout)
+  {
+    this.deadlineNanos =
+      inDeadlineNanos;
+    this.connectTimeout =
+      Objects.requireNonNull(inConnectTimeout, "connectTimeout");
+    this.readTimeout =
+      Objects.requireNonNull(inReadTimeout, "readTimeout");
+    this.phase =
+      ZuProbePhase.DNS;
+  }
+
+  /**
+   * Start the deadline for a probe of the given check.
+   *
+   * @param check The check
+   *
+   * @return A deadline
+   */
+
+  public static ZuDeadline start(
+    final ZuConfiguration.CheckType check)
+  {
+    return new ZuDeadline(
+      System.nanoTime() + check.deadline().toNanos(),
+      check.connectTimeout(),
+      check.readTimeout()
+    );
+  }
+
+  /**
+   * Create a deadline that expires at the same time as this one, but that
+   * tracks its phase independently. This allows a probe to run several
+   * operations concurrently.
+   *
+   * @return A deadline
+   */
+
+  public ZuDeadline fork()
+  {
+    final var deadline =
+      new ZuDeadline(this.deadlineNanos, this.connectTimeout, this.readTimeout);
+    deadline.phase = this.phase;
+    return deadline;
+  }
+
+  /**
+   * Enter the given phase.
+   *
+   * @param newPhase The phase
+   *
+   * @throws ZuTimeoutException If the deadline has already passed
+   */
+
+  public void enter(
+    final ZuProbePhase newPhase)
+    throws ZuTimeoutException
+  {
+    if (this.isExpired()) {
+      throw new ZuTimeoutException(this.phase);
+    }
+    this.phase = Objects.requireNonNull(newPhase, "phase");
+  }
+
+  /**
+   * @return The current phase
+   */
+
+  public ZuProbePhase phase()
+  {
+    return this.phase;
+  }
+
+  /**
+   * @return The time remaining before the deadline
+   */
+
+  public Duration remaining()
+  {
+    return Duration.ofNanos(
+      Math.max(0L, this.deadlineNanos - System.nanoTime())
+    );
+  }
+
+  /**
+   * @return {@code true} if the deadline has passed
+   */
+
+  public boolean isExpired()
+  {
+    return System.nanoTime() - this.deadlineNanos >= 0L;
+  }
+
+  /**
+   * @return The connect timeout, bounded by the remaining time
+   */
+
+  public Duration connectTimeout()
+  {
+    return bounded(this.connectTimeout, this.remaining());
+  }
+
+  /**
+   * @return The read timeout, bounded by the remaining time
+   */
+
+  public Duration readTimeout()
+  {
+    return bounded(this.readTimeout, this.remaining());
+  }
+
+  /**
+   * @return The connect timeout in milliseconds, suitable for socket APIs
+   */
+
+  public int connectTimeoutMillis()
+  {
+    return toSocketMillis(this.connectTimeout());
+  }
+
+  /**
+   * @return The read timeout in milliseconds, suitable for socket APIs
+   */
+
+  public int readTimeoutMillis()
+  {
+    return toSocketMillis(this.readTimeout());
+  }
+
+  /**
+   * Determine whether the given exception represents a timeout. Any failure
+   * that occurs after the deadline has passed is considered to be a timeout,
+   * because the probe thread is interrupted when the deadline expires.
+   *
+   * @param e The exception
+   *
+   * @return {@code true} if the exception represents a timeout
+   */
+
+  public boolean isTimeout(
+    final Throwable e)
+  {
+    return isTimeoutException(e) || this.isExpired();
+  }
+
+  private static boolean isTimeoutException(
+    final Throwable e)
+  {
+    return switch (e) {
+      case final ZuTimeoutException x -> true;
+      case final SocketTimeoutException x -> true;
+      case final HttpTimeoutException x -> true;
+      case final TimeoutException x -> true;
+      default -> false;
+    };
+  }
+
+  private static Duration bounded(
+    final Duration timeout,
+    final Duration remaining)
+  {
+    final var r = timeout.compareTo(remaining) < 0 ? timeout : remaining;
+    return r.compareTo(Duration.ofMillis(1L)) < 0 ? Duration.ofMillis(1L) : r;
+  }
+
+  private static int toSocketMillis(
+    final Duration duration)
+  {
+    return (int) Math.min(Integer.MAX_VALUE, duration.toMillis());
+  }
+}
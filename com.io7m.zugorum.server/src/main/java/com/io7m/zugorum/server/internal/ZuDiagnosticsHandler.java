@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import io.helidon.webserver.http.Handler;
+import io.helidon.webserver.http.ServerRequest;
+import io.helidon.webserver.http.ServerResponse;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>The diagnostics handler.</p>
+ *
+ * <p>Metric labels carry only the bounded outcome class of each probe. The
+ * full text of the most recent error of each check is published here, as
+ * JSON, for humans investigating a failure.</p>
+ */
+
+public final class ZuDiagnosticsHandler implements Handler
+{
+  private final ZuMetrics metrics;
+  private final JsonMapper mapper;
+
+  /**
+   * The diagnostics handler.
+   *
+   * @param inMetrics The metrics store
+   */
+
+  public ZuDiagnosticsHandler(
+    final ZuMetrics inMetrics)
+  {
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.mapper =
+      JsonMapper.builder()
+        .build();
+  }
+
+  /**
+   * @param metrics The metrics store
+   *
+   * @return The diagnostics of every registered check, in ID order
+   */
+
+  public static List<Diagnostic> diagnostics(
+    final ZuMetrics metrics)
+  {
+    final var limit = metrics.idLimit();
+    final var results = new ArrayList<Diagnostic>(limit);
+    for (int id = 0; id < limit; ++id) {
+      final var check = metrics.check(id);
+      if (check == null) {
+        continue;
+      }
+      results.add(
+        new Diagnostic(
+          id,
+          check.kind().label(),
+          check.uri(),
+          check.address(),
+          metrics.outcome(id).label(),
+          metrics.code(id),
+          metrics.timeout(id),
+          metrics.message(id)
+        )
+      );
+    }
+    return results;
+  }
+
+  @Override
+  public void handle(
+    final ServerRequest serverRequest,
+    final ServerResponse serverResponse)
+    throws Exception
+  {
+    serverResponse.header("Content-Type", "application/json");
+    serverResponse.send(
+      this.mapper.writeValueAsBytes(diagnostics(this.metrics))
+    );
+  }
+
+  /**
+   * The diagnostics of a single check.
+   *
+   * @param id      The check ID
+   * @param kind    The kind of check
+   * @param uri     The URI
+   * @param address The address, or the empty string for the whole check
+   * @param outcome The outcome class of the most recent probe
+   * @param code    The most recent status code (HTTP checks)
+   * @param timeout {@code true} if the most recent probe timed out
+   * @param message The message of the most recent probe, if any
+   */
+
+  public record Diagnostic(
+    @JsonProperty(value = "ID")
+    @JsonPropertyDescription("The check ID, as used by /checks/{id}/history.")
+    int id,
+
+    @JsonProperty(value = "Kind")
+    @JsonPropertyDescription("The kind of check.")
+    String kind,
+
+    @JsonProperty(value = "URI")
+    @JsonPropertyDescription("The target address.")
+    URI uri,
+
+    @JsonProperty(value = "Address")
+    @JsonPropertyDescription("The probed address, or empty for the check as a whole.")
+    String address,
+
+    @JsonProperty(value = "Outcome")
+    @JsonPropertyDescription("The outcome class of the most recent probe.")
+    String outcome,
+
+    @JsonProperty(value = "Code")
+    @JsonPropertyDescription("The most recent status code (HTTP checks).")
+    int code,
+
+    @JsonProperty(value = "Timeout")
+    @JsonPropertyDescription("True if the most recent probe timed out.")
+    boolean timeout,
+
+    @JsonProperty(value = "Message")
+    @JsonPropertyDescription("The message of the most recent probe, if any.")
+    String message)
+  {
+    /**
+     * The diagnostics of a single check.
+     *
+     * @param id      The check ID
+     * @param kind    The kind of check
+     * @param uri     The URI
+     * @param address The address, or the empty string for the whole check
+     * @param outcome The outcome class of the most recent probe
+     * @param code    The most recent status code (HTTP checks)
+     * @param timeout {@code true} if the most recent probe timed out
+     * @param message The message of the most recent probe, if any
+     */
+
+    public Diagnostic
+    {
+      Objects.requireNonNull(kind, "kind");
+      Objects.requireNonNull(uri, "uri");
+      Objects.requireNonNull(address, "address");
+      Objects.requireNonNull(outcome, "outcome");
+    }
+  }
+}
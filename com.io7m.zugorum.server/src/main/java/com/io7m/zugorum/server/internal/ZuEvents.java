@@ -0,0 +1,315 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>The distribution of probe results to subscribers.</p>
+ *
+ * <p>Each subscription has a bounded buffer, and publishing never waits
+ * for a subscriber: when the buffer of a subscription is full, further
+ * results are dropped and counted, and the subscriber is told how many
+ * results it missed. State changes are never dropped; those that do not
+ * fit in the buffer are coalesced so that only the most recent state
+ * change of each check is retained. A slow subscriber therefore costs
+ * memory bounded by its buffer and the number of checks, and never delays
+ * the recording of results.</p>
+ *
+ * <p>Each event is numbered in the order in which it was accepted by a
+ * subscription, and events are delivered in that order, so the last event
+ * delivered for a check always carries its most recent state.</p>
+ */
+
+public final class ZuEvents
+{
+  private final CopyOnWriteArrayList<Subscription> subscriptions;
+
+  /**
+   * The distribution of probe results to subscribers.
+   */
+
+  public ZuEvents()
+  {
+    this.subscriptions =
+      new CopyOnWriteArrayList<>();
+  }
+
+  /**
+   * @return {@code true} if there are any subscriptions
+   */
+
+  public boolean hasSubscriptions()
+  {
+    return !this.subscriptions.isEmpty();
+  }
+
+  /**
+   * Subscribe to the results of the selected checks.
+   *
+   * @param selector   The selected checks
+   * @param statesOnly {@code true} if only state changes are delivered
+   * @param capacity   The number of events buffered for the subscriber
+   *
+   * @return A subscription that must be closed
+   */
+
+  public Subscription subscribe(
+    final ZuCheckSelector selector,
+    final boolean statesOnly,
+    final int capacity)
+  {
+    final var subscription =
+      new Subscription(this, selector, statesOnly, capacity);
+    this.subscriptions.add(subscription);
+    return subscription;
+  }
+
+  /**
+   * Publish an event to all interested subscribers.
+   *
+   * @param event The event
+   */
+
+  public void publish(
+    final Event event)
+  {
+    for (final var subscription : this.subscriptions) {
+      subscription.offer(event);
+    }
+  }
+
+  /**
+   * A single probe result.
+   *
+   * @param probe         The sequence number of the probe
+   * @param check         The check
+   * @param timeMillis    The time at which the probe completed
+   * @param durationNanos The duration of the probe
+   * @param outcome       The outcome of the probe
+   * @param code          The status code of the probe (HTTP checks)
+   * @param changed       {@code true} if the outcome differs from that of
+   *                      the previous probe of the check
+   */
+
+  public record Event(
+    long probe,
+    ZuMetrics.Check check,
+    long timeMillis,
+    long durationNanos,
+    ZuOutcome outcome,
+    int code,
+    boolean changed)
+  {
+    /**
+     * A single probe result.
+     *
+     * @param probe         The sequence number of the probe
+     * @param check         The check
+     * @param timeMillis    The time at which the probe completed
+     * @param durationNanos The duration of the probe
+     * @param outcome       The outcome of the probe
+     * @param code          The status code of the probe (HTTP checks)
+     * @param changed       {@code true} if the outcome differs from that of
+     *                      the previous probe of the check
+     */
+
+    public Event
+    {
+      Objects.requireNonNull(check, "check");
+      Objects.requireNonNull(outcome, "outcome");
+    }
+  }
+
+  /**
+   * An event delivered to a subscriber.
+   *
+   * @param sequence The number of the event within its subscription
+   * @param event    The event
+   */
+
+  public record Delivery(
+    long sequence,
+    Event event)
+  {
+    /**
+     * An event delivered to a subscriber.
+     *
+     * @param sequence The number of the event within its subscription
+     * @param event    The event
+     */
+
+    public Delivery
+    {
+      Objects.requireNonNull(event, "event");
+    }
+  }
+
+  /**
+   * A subscription to probe results.
+   */
+
+  public static final class Subscription implements AutoCloseable
+  {
+    private final ZuEvents events;
+    private final ZuCheckSelector selector;
+    private final boolean statesOnly;
+    private final int capacity;
+    private final ReentrantLock lock;
+    private final Condition available;
+    private final ArrayDeque<Delivery> buffer;
+    private final LinkedHashMap<Integer, Delivery> coalesced;
+    private long dropped;
+    private long sequence;
+
+    private Subscription(
+      final ZuEvents inEvents,
+      final ZuCheckSelector inSelector,
+      final boolean inStatesOnly,
+      final int inCapacity)
+    {
+      if (inCapacity <= 0) {
+        throw new IllegalArgumentException("Capacity must be positive.");
+      }
+
+      this.events =
+        Objects.requireNonNull(inEvents, "events");
+      this.selector =
+        Objects.requireNonNull(inSelector, "selector");
+      this.statesOnly =
+        inStatesOnly;
+      this.capacity =
+        inCapacity;
+      this.lock =
+        new ReentrantLock();
+      this.available =
+        this.lock.newCondition();
+      this.buffer =
+        new ArrayDeque<>();
+      this.coalesced =
+        new LinkedHashMap<>();
+    }
+
+    private void offer(
+      final Event event)
+    {
+      if (this.statesOnly && !event.changed()) {
+        return;
+      }
+      if (!this.selector.matches(event.check())) {
+        return;
+      }
+
+      this.lock.lock();
+      try {
+        final var id = Integer.valueOf(event.check().id());
+        if (this.buffer.size() < this.capacity) {
+          this.coalesced.remove(id);
+          this.buffer.addLast(this.number(event));
+        } else if (event.changed()) {
+          this.coalesced.remove(id);
+          this.coalesced.put(id, this.number(event));
+        } else {
+          this.dropped += 1L;
+        }
+        this.available.signal();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    private Delivery number(
+      final Event event)
+    {
+      this.sequence += 1L;
+      return new Delivery(this.sequence, event);
+    }
+
+    /**
+     * Wait for the next event.
+     *
+     * @param timeout The maximum time to wait
+     * @param unit    The unit of the timeout
+     *
+     * @return The next event, or {@code null} if none arrived in time
+     *
+     * @throws InterruptedException If interrupted
+     */
+
+    public Delivery poll(
+      final long timeout,
+      final TimeUnit unit)
+      throws InterruptedException
+    {
+      var remaining = unit.toNanos(timeout);
+
+      this.lock.lock();
+      try {
+        while (this.buffer.isEmpty() && this.coalesced.isEmpty()) {
+          if (remaining <= 0L) {
+            return null;
+          }
+          remaining = this.available.awaitNanos(remaining);
+        }
+
+        final var buffered = this.buffer.peekFirst();
+        if (!this.coalesced.isEmpty()) {
+          final var iterator = this.coalesced.values().iterator();
+          final var state = iterator.next();
+          if (buffered == null || state.sequence() < buffered.sequence()) {
+            iterator.remove();
+            return state;
+          }
+        }
+        return this.buffer.pollFirst();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    /**
+     * Take the number of results dropped since the last call.
+     *
+     * @return The number of dropped results
+     */
+
+    public long takeDropped()
+    {
+      this.lock.lock();
+      try {
+        final var result = this.dropped;
+        this.dropped = 0L;
+        return result;
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    @Override
+    public void close()
+    {
+      this.events.subscriptions.remove(this);
+    }
+  }
+}
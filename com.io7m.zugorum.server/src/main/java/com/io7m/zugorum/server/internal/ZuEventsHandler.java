@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import io.helidon.http.Status;
+import io.helidon.webserver.http.Handler;
+import io.helidon.webserver.http.ServerRequest;
+import io.helidon.webserver.http.ServerResponse;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>The events handler.</p>
+ *
+ * <p>Streams probe results as server-sent events from {@code /events}.
+ * Each result is sent as a {@code result} event; with
+ * {@code events=states}, only results whose outcome differs from that of
+ * the previous probe of the same check are sent, as {@code state} events.
+ * The checks may be restricted with the query parameters described by
+ * {@link ZuCheckSelector#parse}. A subscriber that cannot keep up
+ * receives a {@code dropped} event stating how many results it missed.
+ * Event IDs count the events of a stream in the order they are sent.</p>
+ */
+
+public final class ZuEventsHandler implements Handler
+{
+  private static final int CAPACITY = 1024;
+
+  private static final Duration KEEPALIVE =
+    Duration.ofSeconds(15L);
+
+  private final ZuMetrics metrics;
+  private final JsonMapper mapper;
+
+  /**
+   * The events handler.
+   *
+   * @param inMetrics The metrics store
+   */
+
+  public ZuEventsHandler(
+    final ZuMetrics inMetrics)
+  {
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.mapper =
+      JsonMapper.builder()
+        .build();
+  }
+
+  /**
+   * @param event The event
+   *
+   * @return The message sent for the given event
+   */
+
+  public static Message message(
+    final ZuEvents.Event event)
+  {
+    final var check = event.check();
+    return new Message(
+      check.id(),
+      check.kind().label(),
+      check.uri(),
+      check.address(),
+      event.probe(),
+      Instant.ofEpochMilli(event.timeMillis()),
+      event.durationNanos() / 1_000_000_000.0,
+      event.outcome().label(),
+      event.code(),
+      event.changed()
+    );
+  }
+
+  @Override
+  public void handle(
+    final ServerRequest serverRequest,
+    final ServerResponse serverResponse)
+    throws Exception
+  {
+    final var query = serverRequest.query();
+    final ZuCheckSelector selector;
+    final boolean statesOnly;
+
+    try {
+      selector = ZuCheckSelector.parse(query);
+      statesOnly = switch (query.first("events").orElse("results")) {
+        case "results" -> false;
+        case "states" -> true;
+        default -> throw new IllegalArgumentException(
+          "Events must be one of: results, states");
+      };
+    } catch (final IllegalArgumentException e) {
+      serverResponse.status(Status.BAD_REQUEST_400);
+      serverResponse.send(e.getMessage());
+      return;
+    }
+
+    serverResponse.header("Content-Type", "text/event-stream; charset=utf-8");
+    serverResponse.header("Cache-Control", "no-cache");
+
+    final var eventName = statesOnly ? "state" : "result";
+    try (final var subscription =
+           this.metrics.events().subscribe(selector, statesOnly, CAPACITY);
+         final var output =
+           new BufferedOutputStream(serverResponse.outputStream(), 8192)) {
+
+      output.write(": subscribed\n\n".getBytes(UTF_8));
+      output.flush();
+
+      while (true) {
+        var delivery = subscription.poll(0L, TimeUnit.NANOSECONDS);
+        if (delivery == null) {
+          output.flush();
+          delivery = subscription.poll(KEEPALIVE.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        final var dropped = subscription.takeDropped();
+        if (dropped > 0L) {
+          output.write(
+            "event: dropped\ndata: {\"Dropped\":%d}\n\n"
+              .formatted(dropped)
+              .getBytes(UTF_8)
+          );
+        }
+
+        if (delivery == null) {
+          output.write(": keepalive\n\n".getBytes(UTF_8));
+        } else {
+          this.writeEvent(output, eventName, delivery);
+        }
+      }
+    } catch (final IOException | UncheckedIOException e) {
+      // The subscriber went away.
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeEvent(
+    final OutputStream output,
+    final String eventName,
+    final ZuEvents.Delivery delivery)
+    throws IOException
+  {
+    output.write(
+      "id: %d\nevent: %s\ndata: ".formatted(delivery.sequence(), eventName)
+        .getBytes(UTF_8)
+    );
+    output.write(this.mapper.writeValueAsBytes(message(delivery.event())));
+    output.write('\n');
+    output.write('\n');
+  }
+
+  /**
+   * A probe result, as sent to subscribers.
+   *
+   * @param id       The check ID
+   * @param kind     The kind of check
+   * @param uri      The URI
+   * @param address  The address, or the empty string for the whole check
+   * @param probe    The sequence number of the probe, as used by exemplars
+   * @param time     The time at which the probe completed
+   * @param duration The duration of the probe in seconds
+   * @param outcome  The outcome class of the probe
+   * @param code     The status code of the probe (HTTP checks)
+   * @param changed  Whether the outcome differs from the previous probe
+   */
+
+  public record Message(
+    @JsonProperty(value = "ID")
+    @JsonPropertyDescription("The check ID.")
+    int id,
+
+    @JsonProperty(value = "Kind")
+    @JsonPropertyDescription("The kind of check.")
+    String kind,
+
+    @JsonProperty(value = "URI")
+    @JsonPropertyDescription("The target address.")
+    URI uri,
+
+    @JsonProperty(value = "Address")
+    @JsonPropertyDescription("The probed address, or empty for the check as a whole.")
+    String address,
+
+    @JsonProperty(value = "Probe")
+    @JsonPropertyDescription("The sequence number of the probe.")
+    long probe,
+
+    @JsonProperty(value = "Time")
+    @JsonPropertyDescription("The time at which the probe completed.")
+    Instant time,
+
+    @JsonProperty(value = "Duration")
+    @JsonPropertyDescription("The duration of the probe in seconds.")
+    double duration,
+
+    @JsonProperty(value = "Outcome")
+    @JsonPropertyDescription("The outcome class of the probe.")
+    String outcome,
+
+    @JsonProperty(value = "Code")
+    @JsonPropertyDescription("The status code of the probe (HTTP checks).")
+    int code,
+
+    @JsonProperty(value = "Changed")
+    @JsonPropertyDescription("Whether the outcome differs from that of the previous probe.")
+    boolean changed)
+  {
+    /**
+     * A probe result, as sent to subscribers.
+     *
+     * @param id       The check ID
+     * @param kind     The kind of check
+     * @param uri      The URI
+     * @param address  The address, or the empty string for the whole check
+     * @param probe    The sequence number of the probe, as used by exemplars
+     * @param time     The time at which the probe completed
+     * @param duration The duration of the probe in seconds
+     * @param outcome  The outcome class of the probe
+     * @param code     The status code of the probe (HTTP checks)
+     * @param changed  Whether the outcome differs from the previous probe
+     */
+
+    public Message
+    {
+      Objects.requireNonNull(kind, "kind");
+      Objects.requireNonNull(uri, "uri");
+      Objects.requireNonNull(address, "address");
+      Objects.requireNonNull(time, "time");
+      Objects.requireNonNull(outcome, "outcome");
+    }
+  }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A registry of shared HTTP clients.</p>
+ *
+ * <p>Each HTTP client owns a selector thread and a connection pool. Checks
+ * whose client settings are equal share a single client, and therefore a
+ * single connection pool. Clients are reference counted and closed when the
+ * last check using them is released.</p>
+ *
+ * <p>Every client uses the TLS context of the registry, because checks have
+ * no TLS settings of their own. The context is therefore not one of the
+ * settings that determine whether checks can share a client.</p>
+ */
+
+public final class ZuHTTPClients implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuHTTPClients.class);
+
+  private final HashMap<Settings, Shared> clients;
+  private final AtomicLong inFlight;
+  private final SSLContext sslContext;
+
+  private ZuHTTPClients(
+    final SSLContext inSSLContext)
+  {
+    this.sslContext =
+      Objects.requireNonNull(inSSLContext, "sslContext");
+    this.clients =
+      new HashMap<>();
+    this.inFlight =
+      new AtomicLong();
+  }
+
+  /**
+   * Create a client registry, registering gauges with the given metrics
+   * store.
+   *
+   * @param metrics The metrics store
+   *
+   * @return A client registry
+   */
+
+  public static ZuHTTPClients create(
+    final ZuMetrics metrics)
+  {
+    final SSLContext sslContext;
+    try {
+      sslContext = SSLContext.getDefault();
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    final var clients = new ZuHTTPClients(sslContext);
+    metrics.registerGauge(
+      "zu_http_clients",
+      "The number of live shared HTTP clients",
+      clients::clientCount
+    );
+    metrics.registerGauge(
+      "zu_http_client_checks",
+      "The number of HTTP checks using shared HTTP clients",
+      clients::referenceCount
+    );
+    metrics.registerGauge(
+      "zu_http_client_requests_in_flight",
+      "The number of HTTP requests in flight on shared HTTP clients",
+      clients.inFlight::get
+    );
+    return clients;
+  }
+
+  /**
+   * Acquire a client suitable for the given check. The returned lease must
+   * be closed when the check no longer needs the client.
+   *
+   * @param check The check
+   *
+   * @return A client lease
+   */
+
+  public Lease acquire(
+    final ZuConfiguration.CheckHTTP2xx check)
+  {
+    final var settings = this.settingsOf(check);
+    synchronized (this.clients) {
+      final var shared =
+        this.clients.computeIfAbsent(settings, this::createClient);
+      ++shared.references;
+      return new Lease(this, settings, shared);
+    }
+  }
+
+  private Settings settingsOf(
+    final ZuConfiguration.CheckHTTP2xx check)
+  {
+    final var redirect = switch (check.followRedirects()) {
+      case ALWAYS -> HttpClient.Redirect.ALWAYS;
+      case NORMAL -> HttpClient.Redirect.NORMAL;
+      case NEVER -> HttpClient.Redirect.NEVER;
+    };
+
+    final var version =
+      check.httpVersion().map(v -> {
+        return switch (v) {
+          case HTTP_1_1 -> HttpClient.Version.HTTP_1_1;
+          case HTTP_2 -> HttpClient.Version.HTTP_2;
+        };
+      });
+
+    final var proxy =
+      check.proxy().map(uri -> {
+        final var port = uri.getPort() == -1 ? 80 : uri.getPort();
+        return InetSocketAddress.createUnresolved(uri.getHost(), port);
+      });
+
+    return new Settings(
+      redirect,
+      version,
+      proxy,
+      check.connectTimeout()
+    );
+  }
+
+  private Shared createClient(
+    final Settings settings)
+  {
+    LOG.debug("Creating HTTP client for {}", settings);
+
+    final var builder =
+      HttpClient.newBuilder()
+        .followRedirects(settings.redirect())
+        .connectTimeout(settings.connectTimeout())
+        .sslContext(this.sslContext);
+
+    settings.version().ifPresent(builder::version);
+    settings.proxy().ifPresent(p -> builder.proxy(ProxySelector.of(p)));
+    return new Shared(builder.build());
+  }
+
+  private void release(
+    final Settings settings,
+    final Shared shared)
+  {
+    synchronized (this.clients) {
+      --shared.references;
+      if (shared.references != 0L) {
+        return;
+      }
+      this.clients.remove(settings, shared);
+    }
+
+    /*
+     * Closing a client waits for its requests in flight to complete, so it
+     * must not hold up other checks acquiring or releasing clients.
+     */
+
+    LOG.debug("Closing HTTP client for {}", settings);
+    shared.client.close();
+  }
+
+  private long clientCount()
+  {
+    synchronized (this.clients) {
+      return this.clients.size();
+    }
+  }
+
+  private long referenceCount()
+  {
+    synchronized (this.clients) {
+      var count = 0L;
+      for (final var shared : this.clients.values()) {
+        count += shared.references;
+      }
+      return count;
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    synchronized (this.clients) {
+      for (final var shared : this.clients.values()) {
+        shared.client.shutdownNow();
+      }
+      this.clients.clear();
+    }
+  }
+
+  /**
+   * The settings that determine whether two checks can share a client.
+   *
+   * @param redirect       The redirect policy
+   * @param version        The preferred HTTP version
+   * @param proxy          The proxy address
+   * @param connectTimeout The connect timeout
+   */
+
+  private record Settings(
+    HttpClient.Redirect redirect,
+    Optional<HttpClient.Version> version,
+    Optional<InetSocketAddress> proxy,
+    Duration connectTimeout)
+  {
+
+  }
+
+  private static final class Shared
+  {
+    private final HttpClient client;
+    private long references;
+
+    Shared(
+      final HttpClient inClient)
+    {
+      this.client = Objects.requireNonNull(inClient, "client");
+    }
+  }
+
+  /**
+   * A lease on a shared client.
+   */
+
+  public static final class Lease implements AutoCloseable
+  {
+    private final ZuHTTPClients owner;
+    private final Settings settings;
+    private final Shared shared;
+    private boolean closed;
+
+    private Lease(
+      final ZuHTTPClients inOwner,
+      final Settings inSettings,
+      final Shared inShared)
+    {
+      this.owner = inOwner;
+      this.settings = inSettings;
+      this.shared = inShared;
+    }
+
+    /**
+     * Send a request using the shared client. The request is cancelled if
+     * no response has been received within the given time limit.
+     *
+     * @param request The request
+     * @param handler The response body handler
+     * @param limit   The time limit
+     * @param <T>     The type of response bodies
+     *
+     * @return The response
+     *
+     * @throws IOException          On I/O errors
+     * @throws InterruptedException On interruption
+     */
+
+    public <T> HttpResponse<T> send(
+      final HttpRequest request,
+      final HttpResponse.BodyHandler<T> handler,
+      final Duration limit)
+      throws IOException, InterruptedException
+    {
+      this.owner.inFlight.incrementAndGet();
+      final var future = this.shared.client.sendAsync(request, handler);
+      try {
+        return future.get(limit.toNanos(), TimeUnit.NANOSECONDS);
+      } catch (final TimeoutException e) {
+        future.cancel(true);
+        throw new HttpTimeoutException("Request exceeded its deadline.");
+      } catch (final InterruptedException e) {
+        future.cancel(true);
+        throw e;
+      } catch (final ExecutionException e) {
+        final var cause = e.getCause();
+        if (cause instanceof final IOException ioe) {
+          throw ioe;
+        }
+        if (cause instanceof final RuntimeException re) {
+          throw re;
+        }
+        throw new IOException(cause);
+      } finally {
+        this.owner.inFlight.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void close()
+    {
+      synchronized (this) {
+        if (this.closed) {
+          return;
+        }
+        this.closed = true;
+      }
+      this.owner.release(this.settings, this.shared);
+    }
+  }
+}
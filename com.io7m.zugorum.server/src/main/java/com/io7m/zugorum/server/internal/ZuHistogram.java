@@ -0,0 +1,257 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A lock-free histogram of durations with fixed bucket bounds.</p>
+ *
+ * <p>Recording a value performs a binary search over the bucket bounds and
+ * two atomic additions; it does not allocate. A value may be recorded with
+ * an exemplar, in which case the histogram also retains, for each bucket,
+ * the most recent exemplar to land in it.</p>
+ */
+
+public final class ZuHistogram
+{
+  private final long[] boundsNanos;
+  private final double[] boundsSeconds;
+  private final AtomicLongArray counts;
+  private final AtomicLong sumNanos;
+  private volatile AtomicLongArray exemplars;
+
+  /**
+   * A lock-free histogram of durations with fixed bucket bounds.
+   *
+   * @param inBoundsSeconds The upper bounds of the buckets in seconds, in
+   *                        strictly ascending order
+   */
+
+  public ZuHistogram(
+    final double[] inBoundsSeconds)
+  {
+    Objects.requireNonNull(inBoundsSeconds, "boundsSeconds");
+
+    this.boundsSeconds =
+      inBoundsSeconds.clone();
+    this.boundsNanos =
+      new long[this.boundsSeconds.length];
+
+    for (int index = 0; index < this.boundsSeconds.length; ++index) {
+      final var bound = this.boundsSeconds[index];
+      if (index > 0 && bound <= this.boundsSeconds[index - 1]) {
+        throw new IllegalArgumentException(
+          "Bucket bounds must be strictly ascending: %s"
+            .formatted(Arrays.toString(this.boundsSeconds)));
+      }
+      this.boundsNanos[index] = (long) (bound * 1_000_000_000.0);
+    }
+
+    this.counts =
+      new AtomicLongArray(this.boundsNanos.length + 1);
+    this.sumNanos =
+      new AtomicLong();
+  }
+
+  /**
+   * Record a duration.
+   *
+   * @param nanos The duration in nanoseconds
+   */
+
+  public void record(
+    final long nanos)
+  {
+    final var index = this.bucketOf(nanos);
+    this.counts.incrementAndGet(index);
+    this.sumNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Record a duration along with an exemplar.
+   *
+   * @param nanos      The duration in nanoseconds
+   * @param exemplar   The exemplar, a non-negative identifier of the event
+   *                   that produced the duration
+   * @param timeMillis The time of the event
+   */
+
+  public void record(
+    final long nanos,
+    final long exemplar,
+    final long timeMillis)
+  {
+    final var index = this.bucketOf(nanos);
+
+    var current = this.exemplars;
+    if (current == null) {
+      current = new AtomicLongArray(this.counts.length() * 3);
+      this.exemplars = current;
+    }
+
+    /*
+     * The exemplar is published before the count so that a reader that
+     * observes the new count also observes the exemplar.
+     */
+
+    final var base = index * 3;
+    current.set(base, exemplar + 1L);
+    current.set(base + 1, nanos);
+    current.set(base + 2, timeMillis);
+
+    this.counts.incrementAndGet(index);
+    this.sumNanos.addAndGet(nanos);
+  }
+
+  /**
+   * @param index The bucket index, where {@link #bucketCount()} denotes the
+   *              {@code +Inf} bucket
+   *
+   * @return The most recent exemplar recorded in the given bucket, if any
+   */
+
+  public Exemplar exemplar(
+    final int index)
+  {
+    final var current = this.exemplars;
+    if (current == null) {
+      return null;
+    }
+
+    final var base = index * 3;
+    final var exemplar = current.get(base);
+    if (exemplar == 0L) {
+      return null;
+    }
+    return new Exemplar(
+      exemplar - 1L,
+      current.get(base + 1),
+      current.get(base + 2)
+    );
+  }
+
+  private int bucketOf(
+    final long nanos)
+  {
+    var low = 0;
+    var high = this.boundsNanos.length;
+    while (low < high) {
+      final var middle = (low + high) >>> 1;
+      if (nanos <= this.boundsNanos[middle]) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return The number of finite buckets
+   */
+
+  public int bucketCount()
+  {
+    return this.boundsSeconds.length;
+  }
+
+  /**
+   * @param index The bucket index
+   *
+   * @return The upper bound of the given finite bucket in seconds
+   */
+
+  public double bucketBoundSeconds(
+    final int index)
+  {
+    return this.boundsSeconds[index];
+  }
+
+  /**
+   * @param index The bucket index, where {@link #bucketCount()} denotes the
+   *              {@code +Inf} bucket
+   *
+   * @return The number of values recorded in the given bucket alone
+   */
+
+  public long bucketValue(
+    final int index)
+  {
+    return this.counts.get(index);
+  }
+
+  /**
+   * @return The total number of recorded values
+   */
+
+  public long count()
+  {
+    var total = 0L;
+    for (int index = 0; index < this.counts.length(); ++index) {
+      total += this.counts.get(index);
+    }
+    return total;
+  }
+
+  /**
+   * @return The sum of all recorded values in seconds
+   */
+
+  public double sumSeconds()
+  {
+    return this.sumNanos.get() / 1_000_000_000.0;
+  }
+
+  /**
+   * Copy the cumulative bucket counts into the given array. The last element
+   * is the total count.
+   *
+   * @param output The output array, of length at least
+   *               {@code bucketCount() + 1}
+   */
+
+  public void cumulativeCounts(
+    final long[] output)
+  {
+    var total = 0L;
+    for (int index = 0; index < this.counts.length(); ++index) {
+      total += this.counts.get(index);
+      output[index] = total;
+    }
+  }
+
+  /**
+   * An exemplar of a bucket.
+   *
+   * @param id         The identifier of the event
+   * @param nanos      The duration recorded by the event
+   * @param timeMillis The time of the event
+   */
+
+  public record Exemplar(
+    long id,
+    long nanos,
+    long timeMillis)
+  {
+
+  }
+}
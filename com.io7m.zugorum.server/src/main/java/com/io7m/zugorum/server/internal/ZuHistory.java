@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A fixed-size ring of the most recent probe results of a check.</p>
+ *
+ * <p>Each result occupies three slots of a single primitive array: the time
+ * at which the probe completed, the duration of the probe, and the outcome
+ * and status code packed together. The array is allocated when the first
+ * result is recorded, so checks that never complete a probe cost nothing,
+ * and the memory used by a check never grows beyond the ring.</p>
+ *
+ * <p>Results of a check are recorded by one thread at a time, whereas the
+ * ring may be read concurrently by any number of threads. Readers discard
+ * any result that was overwritten while it was being read.</p>
+ */
+
+public final class ZuHistory
+{
+  private static final int STRIDE = 3;
+
+  private final int capacity;
+  private final AtomicLong claimed;
+  private final AtomicLong published;
+  private volatile AtomicLongArray slots;
+
+  /**
+   * A fixed-size ring of the most recent probe results of a check.
+   *
+   * @param inCapacity The maximum number of results retained
+   */
+
+  public ZuHistory(
+    final int inCapacity)
+  {
+    if (inCapacity < 0) {
+      throw new IllegalArgumentException("Capacity must be non-negative.");
+    }
+
+    this.capacity = inCapacity;
+    this.claimed = new AtomicLong();
+    this.published = new AtomicLong();
+  }
+
+  /**
+   * @return The maximum number of results retained
+   */
+
+  public int capacity()
+  {
+    return this.capacity;
+  }
+
+  /**
+   * Record the result of a probe.
+   *
+   * @param timeMillis    The time at which the probe completed
+   * @param durationNanos The duration of the probe
+   * @param outcome       The outcome of the probe
+   * @param code          The status code of the probe
+   *
+   * @return The sequence number of the probe; the first probe recorded is
+   * numbered zero
+   */
+
+  public long record(
+    final long timeMillis,
+    final long durationNanos,
+    final ZuOutcome outcome,
+    final int code)
+  {
+    if (this.capacity == 0) {
+      return this.claimed.getAndIncrement();
+    }
+
+    var current = this.slots;
+    if (current == null) {
+      current = new AtomicLongArray(this.capacity * STRIDE);
+      this.slots = current;
+    }
+
+    final var index = this.claimed.getAndIncrement();
+    final var base = (int) (index % this.capacity) * STRIDE;
+    current.set(base, timeMillis);
+    current.set(base + 1, durationNanos);
+    current.set(base + 2, ((long) outcome.ordinal() << 32) | (code & 0xffff_ffffL));
+    this.published.set(index + 1);
+    return index;
+  }
+
+  /**
+   * @param fromMillis The inclusive lower bound of result times
+   * @param toMillis   The exclusive upper bound of result times
+   *
+   * @return The retained results within the given range, oldest first
+   */
+
+  public List<Entry> entries(
+    final long fromMillis,
+    final long toMillis)
+  {
+    final var current = this.slots;
+    if (current == null) {
+      return List.of();
+    }
+
+    final var end = this.published.get();
+    final var start = Math.max(0L, end - this.capacity);
+    final var count = (int) (end - start);
+    final var times = new long[count];
+    final var durations = new long[count];
+    final var packed = new long[count];
+
+    for (int index = 0; index < count; ++index) {
+      final var base = (int) ((start + index) % this.capacity) * STRIDE;
+      times[index] = current.get(base);
+      durations[index] = current.get(base + 1);
+      packed[index] = current.get(base + 2);
+    }
+
+    /*
+     * Any result older than the ring, as of the most recently claimed
+     * index, may have been overwritten while it was being read.
+     */
+
+    final var valid = Math.max(0L, this.claimed.get() - this.capacity);
+    final var results = new ArrayList<Entry>(count);
+    for (var index = (int) Math.max(0L, valid - start); index < count; ++index) {
+      final var time = times[index];
+      if (time < fromMillis || time >= toMillis) {
+        continue;
+      }
+      results.add(
+        new Entry(
+          start + index,
+          time,
+          durations[index],
+          ZuOutcome.ofOrdinal((int) (packed[index] >>> 32)),
+          (int) packed[index]
+        )
+      );
+    }
+    return results;
+  }
+
+  /**
+   * A single probe result.
+   *
+   * @param probe         The sequence number of the probe
+   * @param timeMillis    The time at which the probe completed
+   * @param durationNanos The duration of the probe
+   * @param outcome       The outcome of the probe
+   * @param code          The status code of the probe
+   */
+
+  public record Entry(
+    long probe,
+    long timeMillis,
+    long durationNanos,
+    ZuOutcome outcome,
+    int code)
+  {
+    /**
+     * A single probe result.
+     *
+     * @param probe         The sequence number of the probe
+     * @param timeMillis    The time at which the probe completed
+     * @param durationNanos The duration of the probe
+     * @param outcome       The outcome of the probe
+     * @param code          The status code of the probe
+     */
+
+    public Entry
+    {
+      Objects.requireNonNull(outcome, "outcome");
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import io.helidon.http.Status;
+import io.helidon.webserver.http.Handler;
+import io.helidon.webserver.http.ServerRequest;
+import io.helidon.webserver.http.ServerResponse;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>The history handler.</p>
+ *
+ * <p>Serves the recent probe results of a single check, as JSON, from
+ * {@code /checks/{id}/history}. The results may be restricted to a range
+ * of times with the {@code from} (inclusive) and {@code to} (exclusive)
+ * query parameters, given as ISO-8601 instants. Check IDs are listed by
+ * the diagnostics handler.</p>
+ */
+
+public final class ZuHistoryHandler implements Handler
+{
+  private final ZuMetrics metrics;
+  private final JsonMapper mapper;
+
+  /**
+   * The history handler.
+   *
+   * @param inMetrics The metrics store
+   */
+
+  public ZuHistoryHandler(
+    final ZuMetrics inMetrics)
+  {
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.mapper =
+      JsonMapper.builder()
+        .build();
+  }
+
+  /**
+   * @param metrics    The metrics store
+   * @param id         The check ID
+   * @param fromMillis The inclusive lower bound of result times
+   * @param toMillis   The exclusive upper bound of result times
+   *
+   * @return The history of the given check, or {@code null} if no such
+   * check is registered
+   */
+
+  public static History history(
+    final ZuMetrics metrics,
+    final int id,
+    final long fromMillis,
+    final long toMillis)
+  {
+    if (id < 0 || id >= metrics.idLimit()) {
+      return null;
+    }
+    final var check = metrics.check(id);
+    if (check == null) {
+      return null;
+    }
+
+    final var results =
+      check.history()
+        .entries(fromMillis, toMillis)
+        .stream()
+        .map(e -> new Result(
+          e.probe(),
+          Instant.ofEpochMilli(e.timeMillis()),
+          e.durationNanos() / 1_000_000_000.0,
+          e.outcome().label(),
+          e.code()
+        ))
+        .toList();
+
+    return new History(
+      id,
+      check.kind().label(),
+      check.uri(),
+      check.address(),
+      results
+    );
+  }
+
+  @Override
+  public void handle(
+    final ServerRequest serverRequest,
+    final ServerResponse serverResponse)
+    throws Exception
+  {
+    final int id;
+    final long from;
+    final long to;
+
+    try {
+      id = Integer.parseInt(serverRequest.path().pathParameters().get("id"));
+      from = timeMillis(serverRequest, "from", Long.MIN_VALUE);
+      to = timeMillis(serverRequest, "to", Long.MAX_VALUE);
+    } catch (final NumberFormatException
+                   | DateTimeParseException
+                   | ArithmeticException e) {
+      serverResponse.status(Status.BAD_REQUEST_400);
+      serverResponse.send(e.getMessage());
+      return;
+    }
+
+    final var history = history(this.metrics, id, from, to);
+    if (history == null) {
+      serverResponse.status(Status.NOT_FOUND_404);
+      serverResponse.send("No such check: %d".formatted(id));
+      return;
+    }
+
+    serverResponse.header("Content-Type", "application/json");
+    serverResponse.send(this.mapper.writeValueAsBytes(history));
+  }
+
+  private static long timeMillis(
+    final ServerRequest serverRequest,
+    final String name,
+    final long defaultValue)
+  {
+    final var query = serverRequest.query();
+    if (!query.contains(name)) {
+      return defaultValue;
+    }
+    return Instant.parse(query.get(name)).toEpochMilli();
+  }
+
+  /**
+   * The history of a single check.
+   *
+   * @param id      The check ID
+   * @param kind    The kind of check
+   * @param uri     The URI
+   * @param address The address, or the empty string for the whole check
+   * @param results The recent probe results, oldest first
+   */
+
+  public record History(
+    @JsonProperty(value = "ID")
+    @JsonPropertyDescription("The check ID.")
+    int id,
+
+    @JsonProperty(value = "Kind")
+    @JsonPropertyDescription("The kind of check.")
+    String kind,
+
+    @JsonProperty(value = "URI")
+    @JsonPropertyDescription("The target address.")
+    URI uri,
+
+    @JsonProperty(value = "Address")
+    @JsonPropertyDescription("The probed address, or empty for the check as a whole.")
+    String address,
+
+    @JsonProperty(value = "Results")
+    @JsonPropertyDescription("The recent probe results, oldest first.")
+    List<Result> results)
+  {
+    /**
+     * The history of a single check.
+     *
+     * @param id      The check ID
+     * @param kind    The kind of check
+     * @param uri     The URI
+     * @param address The address, or the empty string for the whole check
+     * @param results The recent probe results, oldest first
+     */
+
+    public History
+    {
+      Objects.requireNonNull(kind, "kind");
+      Objects.requireNonNull(uri, "uri");
+      Objects.requireNonNull(address, "address");
+      results = List.copyOf(results);
+    }
+  }
+
+  /**
+   * A single probe result.
+   *
+   * @param probe    The sequence number of the probe, as used by exemplars
+   * @param time     The time at which the probe completed
+   * @param duration The duration of the probe in seconds
+   * @param outcome  The outcome class of the probe
+   * @param code     The status code of the probe (HTTP checks)
+   */
+
+  public record Result(
+    @JsonProperty(value = "Probe")
+    @JsonPropertyDescription("The sequence number of the probe.")
+    long probe,
+
+    @JsonProperty(value = "Time")
+    @JsonPropertyDescription("The time at which the probe completed.")
+    Instant time,
+
+    @JsonProperty(value = "Duration")
+    @JsonPropertyDescription("The duration of the probe in seconds.")
+    double duration,
+
+    @JsonProperty(value = "Outcome")
+    @JsonPropertyDescription("The outcome class of the probe.")
+    String outcome,
+
+    @JsonProperty(value = "Code")
+    @JsonPropertyDescription("The status code of the probe (HTTP checks).")
+    int code)
+  {
+    /**
+     * A single probe result.
+     *
+     * @param probe    The sequence number of the probe, as used by exemplars
+     * @param time     The time at which the probe completed
+     * @param duration The duration of the probe in seconds
+     * @param outcome  The outcome class of the probe
+     * @param code     The status code of the probe (HTTP checks)
+     */
+
+    public Result
+    {
+      Objects.requireNonNull(time, "time");
+      Objects.requireNonNull(outcome, "outcome");
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The per-host rate limits. Hosts are only limited if a configured limit
+ * matches them. Each distinct limited host name has its own token bucket,
+ * configured by the first limit whose pattern matches the host, and shared
+ * by every check that targets the host. Hosts that match no limit have no
+ * bucket.
+ */
+
+public final class ZuHostLimits
+{
+  private static final Optional<ZuTokenBucket> UNLIMITED =
+    Optional.empty();
+
+  private final List<ZuConfiguration.HostLimit> limits;
+  private final ConcurrentHashMap<String, Optional<ZuTokenBucket>> buckets;
+
+  private ZuHostLimits(
+    final List<ZuConfiguration.HostLimit> inLimits)
+  {
+    this.limits =
+      List.copyOf(inLimits);
+    this.buckets =
+      new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Create host limits.
+   *
+   * @param limits The configured limits, in order of precedence
+   *
+   * @return The host limits
+   */
+
+  public static ZuHostLimits create(
+    final List<ZuConfiguration.HostLimit> limits)
+  {
+    return new ZuHostLimits(limits);
+  }
+
+  /**
+   * @return The configured limits
+   */
+
+  public List<ZuConfiguration.HostLimit> limits()
+  {
+    return this.limits;
+  }
+
+  /**
+   * @param host The host name
+   *
+   * @return The limit that applies to the given host, if any
+   */
+
+  public Optional<ZuConfiguration.HostLimit> limitFor(
+    final String host)
+  {
+    for (final var limit : this.limits) {
+      if (limit.matches(host)) {
+        return Optional.of(limit);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @param host The host name
+   *
+   * @return The token bucket shared by all checks that target the host, or
+   * nothing if the host is not limited
+   */
+
+  public Optional<ZuTokenBucket> bucketFor(
+    final String host)
+  {
+    Objects.requireNonNull(host, "host");
+
+    if (this.limits.isEmpty()) {
+      return UNLIMITED;
+    }
+
+    final var name = host.toLowerCase(Locale.ROOT);
+    final var existing = this.buckets.get(name);
+    if (existing != null) {
+      return existing;
+    }
+
+    return this.buckets.computeIfAbsent(
+      name,
+      h -> this.limitFor(h).map(ZuHostLimits::bucket)
+    );
+  }
+
+  private static ZuTokenBucket bucket(
+    final ZuConfiguration.HostLimit limit)
+  {
+    return new ZuTokenBucket(limit.rate(), limit.burst().intValue());
+  }
+
+  /**
+   * Discard the buckets of hosts that are no longer targeted by any check.
+   *
+   * @param hosts The host names that are still targeted
+   */
+
+  public void retainHosts(
+    final Collection<String> hosts)
+  {
+    final var names = new HashSet<String>(hosts.size());
+    for (final var host : hosts) {
+      names.add(host.toLowerCase(Locale.ROOT));
+    }
+    this.buckets.keySet().retainAll(names);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Decorrelated jitter: each pause is drawn uniformly from
+ * {@code [minimum, min(maximum, previous * 3)]}.</p>
+ *
+ * <p>The first probe is made at a random point within the minimum pause so
+ * that checks created together do not fire together.</p>
+ */
+
+final class ZuJitterDecorrelated implements ZuJitterType
+{
+  private final long minimumNanos;
+  private final long maximumNanos;
+  private long previousNanos;
+
+  ZuJitterDecorrelated(
+    final Duration minimum,
+    final Duration maximum)
+  {
+    this.minimumNanos =
+      minimum.toNanos();
+    this.maximumNanos =
+      Math.max(this.minimumNanos, maximum.toNanos());
+    this.previousNanos =
+      this.minimumNanos;
+  }
+
+  @Override
+  public Duration initialDelay(
+    final long nowNanos)
+  {
+    return Duration.ofNanos(
+      ThreadLocalRandom.current().nextLong(this.minimumNanos + 1L)
+    );
+  }
+
+  @Override
+  public Duration nextPause(
+    final long nowNanos)
+  {
+    final long upper;
+    if (this.previousNanos > this.maximumNanos / 3L) {
+      upper = this.maximumNanos;
+    } else {
+      upper = Math.max(this.minimumNanos, this.previousNanos * 3L);
+    }
+
+    this.previousNanos =
+      ThreadLocalRandom.current().nextLong(this.minimumNanos, upper + 1L);
+    return Duration.ofNanos(this.previousNanos);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.time.Duration;
+
+/**
+ * <p>Probes started at a fixed period (the midpoint of the pause range),
+ * at a phase within that period derived from the identity of the check.</p>
+ *
+ * <p>Checks that share a pause range are spread evenly across the period,
+ * and each check keeps its phase regardless of how long its probes take, so
+ * the aggregate probe rate stays flat.</p>
+ */
+
+final class ZuJitterSpread implements ZuJitterType
+{
+  private final long periodNanos;
+  private final long phaseNanos;
+
+  ZuJitterSpread(
+    final long identity,
+    final Duration minimum,
+    final Duration maximum)
+  {
+    this.periodNanos =
+      Math.max(1L, (minimum.toNanos() / 2L) + (maximum.toNanos() / 2L));
+    this.phaseNanos =
+      Long.remainderUnsigned(identity, this.periodNanos);
+  }
+
+  @Override
+  public Duration initialDelay(
+    final long nowNanos)
+  {
+    return Duration.ofNanos(this.untilNextSlot(nowNanos));
+  }
+
+  @Override
+  public Duration nextPause(
+    final long nowNanos)
+  {
+    final var untilNext = this.untilNextSlot(nowNanos);
+
+    /*
+     * If the probe overran far into the period, skip a slot rather than
+     * probing again almost immediately.
+     */
+
+    if (untilNext < this.periodNanos / 2L) {
+      return Duration.ofNanos(untilNext + this.periodNanos);
+    }
+    return Duration.ofNanos(untilNext);
+  }
+
+  private long untilNextSlot(
+    final long nowNanos)
+  {
+    final var position =
+      Math.floorMod(nowNanos - this.phaseNanos, this.periodNanos);
+    return this.periodNanos - position;
+  }
+}
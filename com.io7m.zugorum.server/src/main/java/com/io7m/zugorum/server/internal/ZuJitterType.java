@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.time.Duration;
+
+/**
+ * A jitter schedule for a single check. Instances may carry per-check state
+ * and are only ever accessed by one probe at a time.
+ */
+
+public interface ZuJitterType
+{
+  /**
+   * @param nowNanos The current time (as per {@link System#nanoTime()})
+   *
+   * @return The delay before the first probe of the check
+   */
+
+  Duration initialDelay(long nowNanos);
+
+  /**
+   * @param nowNanos The current time (as per {@link System#nanoTime()})
+   *
+   * @return The pause before the next probe of the check
+   */
+
+  Duration nextPause(long nowNanos);
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.time.Duration;
+
+/**
+ * Pauses drawn uniformly from the pause range. The first probe is made
+ * immediately.
+ */
+
+final class ZuJitterUniform implements ZuJitterType
+{
+  private final Duration minimum;
+  private final Duration maximum;
+
+  ZuJitterUniform(
+    final Duration inMinimum,
+    final Duration inMaximum)
+  {
+    this.minimum = inMinimum;
+    this.maximum = inMaximum;
+  }
+
+  @Override
+  public Duration initialDelay(
+    final long nowNanos)
+  {
+    return Duration.ZERO;
+  }
+
+  @Override
+  public Duration nextPause(
+    final long nowNanos)
+  {
+    return ZuPauses.randomPauseOf(this.minimum, this.maximum);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Functions to create jitter schedules.
+ */
+
+public final class ZuJitters
+{
+  private ZuJitters()
+  {
+
+  }
+
+  /**
+   * Create a jitter schedule for the given check.
+   *
+   * @param strategy The jitter strategy
+   * @param check    The check
+   *
+   * @return A jitter schedule
+   */
+
+  public static ZuJitterType create(
+    final ZuConfiguration.JitterStrategy strategy,
+    final ZuConfiguration.CheckType check)
+  {
+    Objects.requireNonNull(strategy, "strategy");
+    Objects.requireNonNull(check, "check");
+
+    return switch (strategy) {
+      case UNIFORM -> {
+        yield new ZuJitterUniform(check.pauseMinimum(), check.pauseMaximum());
+      }
+      case SPREAD -> {
+        yield new ZuJitterSpread(
+          identityOf(check),
+          check.pauseMinimum(),
+          check.pauseMaximum()
+        );
+      }
+      case DECORRELATED -> {
+        yield new ZuJitterDecorrelated(
+          check.pauseMinimum(),
+          check.pauseMaximum()
+        );
+      }
+    };
+  }
+
+  /**
+   * Derive a well-distributed 64-bit identity from the type and target of
+   * a check. The identity is stable across restarts.
+   *
+   * @param check The check
+   *
+   * @return The identity
+   */
+
+  public static long identityOf(
+    final ZuConfiguration.CheckType check)
+  {
+    Objects.requireNonNull(check, "check");
+
+    final var text =
+      "%s %s".formatted(check.type(), check.uri());
+
+    /*
+     * FNV-1a followed by the MurmurHash3 finalizer.
+     */
+
+    var hash = 0xcbf29ce484222325L;
+    for (final var b : text.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xffL;
+      hash *= 0x100000001b3L;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
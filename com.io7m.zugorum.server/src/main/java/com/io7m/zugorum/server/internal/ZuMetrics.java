@@ -17,175 +17,837 @@
 
 package com.io7m.zugorum.server.internal;
 
+import com.io7m.zugorum.server.ZuConfiguration;
+
 import java.net.URI;
+import java.time.Duration;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
 
 /**
- * The metrics store.
+ * <p>The metrics store.</p>
+ *
+ * <p>Each check is assigned a dense integer ID when it is registered. The
+ * state of every check is held in fixed-size pages of primitive arrays
+ * indexed by ID, and is updated with plain atomic writes; recording the
+ * result of a probe does not allocate. Pages are never moved once created,
+ * so the store can grow without disturbing concurrent writers. IDs of
+ * unregistered checks are reused.</p>
  */
 
 public final class ZuMetrics
 {
-  private final ConcurrentSkipListMap<URI, MetricType> metrics;
-  private final SortedMap<URI, MetricType> metricsRead;
+  private static final int PAGE_SHIFT = 10;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  private static final int OUTCOMES = ZuOutcome.values().length;
+
+  /*
+   * The per-outcome counters of each check are a block within a shared
+   * array. The array itself is only guaranteed to be aligned to eight
+   * bytes, so each block is followed by at least seven unused slots, and the
+   * stride is a whole number of 64-byte cache lines. A cache line can then
+   * never hold the counters of two checks, whatever the alignment.
+   */
+
+  private static final int COUNTER_STRIDE = ((OUTCOMES + 7) + 7) & ~7;
+
+  private static final int FLAG_FAILURE = 1;
+  private static final int FLAG_TIMEOUT = 1 << 1;
+
+  /**
+   * No attempt has been made to resume a TLS session.
+   */
+
+  public static final int RESUMPTION_NONE = -1;
+
+  /**
+   * The most recent attempt to resume a TLS session failed.
+   */
+
+  public static final int RESUMPTION_FAILED = 0;
+
+  /**
+   * The most recent attempt to resume a TLS session succeeded.
+   */
+
+  public static final int RESUMPTION_SUCCEEDED = 1;
+
+  /**
+   * The expiry time of a certificate is not known, because the certificate
+   * is not an X.509 certificate.
+   */
+
+  public static final long EXPIRY_UNKNOWN = Long.MAX_VALUE;
+
+  private final Object lock;
+  private final BitSet idsFree;
+  private final BitSet idsLive;
+  private final EnumMap<ZuCheckKind, BitSet> idsByKind;
+  private final HashMap<String, BitSet> idsByURL;
+  private final HashMap<String, BitSet> idsByAddress;
+  private final ConcurrentSkipListMap<String, Gauge> gauges;
+  private final SortedMap<String, Gauge> gaugesRead;
+  private final ConcurrentSkipListMap<String, Counter> counters;
+  private final SortedMap<String, Counter> countersRead;
+  private final ConcurrentSkipListMap<String, Histogram> histograms;
+  private final SortedMap<String, Histogram> histogramsRead;
+  private final double[] durationBuckets;
+  private final List<Duration> availabilityWindows;
+  private final long[] availabilityWindowsNanos;
+  private final int historySize;
+  private final LongSupplier clock;
+  private final long clockOrigin;
+  private final long clockOriginMillis;
+  private final ZuEvents events;
+  private volatile Page[] pages;
+  private volatile int idLimit;
+  private volatile long membership;
 
   /**
    * The metrics store.
+   *
+   * @param inDurationBuckets The upper bounds of the probe duration buckets
    */
 
-  public ZuMetrics()
+  public ZuMetrics(
+    final List<Double> inDurationBuckets)
   {
-    this.metrics =
+    this(
+      inDurationBuckets,
+      ZuConfiguration.DEFAULT_AVAILABILITY_WINDOWS,
+      ZuConfiguration.DEFAULT_HISTORY_SIZE,
+      System::nanoTime
+    );
+  }
+
+  /**
+   * The metrics store.
+   *
+   * @param inDurationBuckets     The upper bounds of the probe duration buckets
+   * @param inAvailabilityWindows The availability windows
+   * @param inHistorySize         The number of results retained per check
+   * @param inClock               The monotonic clock, in nanoseconds
+   */
+
+  public ZuMetrics(
+    final List<Double> inDurationBuckets,
+    final List<Duration> inAvailabilityWindows,
+    final int inHistorySize,
+    final LongSupplier inClock)
+  {
+    this.durationBuckets =
+      inDurationBuckets.stream()
+        .mapToDouble(Double::doubleValue)
+        .toArray();
+    this.availabilityWindows =
+      List.copyOf(inAvailabilityWindows);
+    this.availabilityWindowsNanos =
+      this.availabilityWindows.stream()
+        .mapToLong(Duration::toNanos)
+        .toArray();
+    this.historySize =
+      inHistorySize;
+    this.clock =
+      Objects.requireNonNull(inClock, "clock");
+    this.clockOrigin =
+      this.clock.getAsLong();
+    this.clockOriginMillis =
+      System.currentTimeMillis();
+    this.events =
+      new ZuEvents();
+    this.gauges =
       new ConcurrentSkipListMap<>();
-    this.metricsRead =
-      Collections.unmodifiableSortedMap(this.metrics);
+    this.gaugesRead =
+      Collections.unmodifiableSortedMap(this.gauges);
+    this.counters =
+      new ConcurrentSkipListMap<>();
+    this.countersRead =
+      Collections.unmodifiableSortedMap(this.counters);
+    this.histograms =
+      new ConcurrentSkipListMap<>();
+    this.histogramsRead =
+      Collections.unmodifiableSortedMap(this.histograms);
+    this.lock =
+      new Object();
+    this.idsFree =
+      new BitSet();
+    this.idsLive =
+      new BitSet();
+    this.idsByKind =
+      new EnumMap<>(ZuCheckKind.class);
+    this.idsByURL =
+      new HashMap<>();
+    this.idsByAddress =
+      new HashMap<>();
+    this.pages =
+      new Page[0];
+    this.idLimit =
+      0;
   }
 
   /**
-   * @return A read-only view of the metric store
+   * Register a check, assigning it a dense ID.
+   *
+   * @param kind The kind of check
+   * @param uri  The URI
+   *
+   * @return The check
    */
 
-  public SortedMap<URI, MetricType> metrics()
+  public Check register(
+    final ZuCheckKind kind,
+    final URI uri)
   {
-    return this.metricsRead;
+    return this.register(kind, uri, "");
   }
 
   /**
-   * Report an HTTP status.
+   * Register the series of a single address of a check, assigning it a
+   * dense ID.
    *
-   * @param uri        The URI
-   * @param statusCode The status code
+   * @param kind    The kind of check
+   * @param uri     The URI
+   * @param address The address, or the empty string for the check as a whole
+   *
+   * @return The check
    */
 
-  public void httpStatus(
+  public Check register(
+    final ZuCheckKind kind,
     final URI uri,
-    final int statusCode)
+    final String address)
   {
+    Objects.requireNonNull(kind, "kind");
     Objects.requireNonNull(uri, "uri");
+    Objects.requireNonNull(address, "address");
 
-    this.metrics.put(
-      uri,
-      new HTTPMetricStatus(uri, statusCode, Optional.empty())
-    );
+    synchronized (this.lock) {
+      final int id;
+      final var free = this.idsFree.nextSetBit(0);
+      if (free >= 0) {
+        this.idsFree.clear(free);
+        id = free;
+      } else {
+        id = this.idLimit;
+        this.ensurePage(id >>> PAGE_SHIFT);
+      }
+
+      final var check =
+        new Check(
+          id,
+          kind,
+          uri,
+          address,
+          new ZuHistogram(this.durationBuckets),
+          new ConcurrentSkipListMap<>(),
+          new ZuAvailability(this.availabilityWindowsNanos),
+          new ZuHistory(this.historySize)
+        );
+
+      final var page = this.pages[id >>> PAGE_SHIFT];
+      final var index = id & PAGE_MASK;
+      page.codes.set(index, 0);
+      page.flags.set(index, 0);
+      page.outcomes.set(index, ZuOutcome.SUCCESS.ordinal());
+      page.counted.set(index, -1);
+      page.messages.set(index, null);
+      page.tls.set(index, null);
+      page.resumptions.set(index, RESUMPTION_NONE);
+      for (int outcome = 0; outcome < OUTCOMES; ++outcome) {
+        page.counters.set(index * COUNTER_STRIDE + outcome, 0L);
+      }
+      page.versions.incrementAndGet(index);
+      page.checks.set(index, check);
+
+      if (id >= this.idLimit) {
+        this.idLimit = id + 1;
+      }
+
+      this.idsLive.set(id);
+      this.idsByKind.computeIfAbsent(kind, k -> new BitSet()).set(id);
+      this.idsByURL.computeIfAbsent(uri.toString(), k -> new BitSet()).set(id);
+      this.idsByAddress.computeIfAbsent(address, k -> new BitSet()).set(id);
+      ++this.membership;
+      return check;
+    }
   }
 
   /**
-   * Report an HTTP exception.
+   * Unregister a check. The ID of the check may be reused by checks
+   * registered later.
    *
-   * @param uri       The URI
-   * @param exception The exception
+   * @param check The check
    */
 
-  public void httpException(
-    final URI uri,
-    final Exception exception)
+  public void unregister(
+    final Check check)
   {
-    Objects.requireNonNull(uri, "uri");
-    Objects.requireNonNull(exception, "e");
+    Objects.requireNonNull(check, "check");
 
-    final var message =
-      Objects.requireNonNullElse(
-        exception.getMessage(),
-        exception.getClass().getName()
-      );
+    synchronized (this.lock) {
+      final var page = this.pages[check.id >>> PAGE_SHIFT];
+      final var index = check.id & PAGE_MASK;
+      if (page.checks.compareAndSet(index, check, null)) {
+        page.versions.incrementAndGet(index);
+        this.idsFree.set(check.id);
 
-    this.metrics.put(uri, new SMTPMetricStatus(uri, true, message));
+        this.idsLive.clear(check.id);
+        this.idsByKind.get(check.kind).clear(check.id);
+        unindex(this.idsByURL, check.uri.toString(), check.id);
+        unindex(this.idsByAddress, check.address, check.id);
+        ++this.membership;
+      }
+    }
+  }
+
+  private static void unindex(
+    final HashMap<String, BitSet> index,
+    final String key,
+    final int id)
+  {
+    final var ids = index.get(key);
+    ids.clear(id);
+    if (ids.isEmpty()) {
+      index.remove(key);
+    }
+  }
+
+  /**
+   * @return A value that changes each time a check is registered or
+   * unregistered
+   */
+
+  public long membership()
+  {
+    return this.membership;
   }
 
   /**
-   * Report an HTTP error.
+   * Find the IDs of the checks chosen by a selector, using the indexes of
+   * checks by kind and by label. Only the checks that remain after the
+   * indexes have been consulted are examined individually, and only if the
+   * selector chooses a shard.
    *
-   * @param uri     The URI
-   * @param message The message
+   * @param selector The selector
+   *
+   * @return The selected IDs
    */
 
-  public void smtpError(
-    final URI uri,
-    final String message)
+  public Selection select(
+    final ZuCheckSelector selector)
   {
-    Objects.requireNonNull(uri, "uri");
+    Objects.requireNonNull(selector, "selector");
+
+    synchronized (this.lock) {
+      final var ids = (BitSet) this.idsLive.clone();
+      if (!selector.kinds().isEmpty()) {
+        final var union = new BitSet();
+        for (final var kind : selector.kinds()) {
+          final var kindIds = this.idsByKind.get(kind);
+          if (kindIds != null) {
+            union.or(kindIds);
+          }
+        }
+        ids.and(union);
+      }
+      if (!selector.urls().isEmpty()) {
+        ids.and(union(this.idsByURL, selector.urls()));
+      }
+      if (!selector.addresses().isEmpty()) {
+        ids.and(union(this.idsByAddress, selector.addresses()));
+      }
+
+      final var shards = selector.shards();
+      if (shards > 1) {
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+          if (ZuCheckSelector.shardOf(this.check(id), shards) != selector.shard()) {
+            ids.clear(id);
+          }
+        }
+      }
+      return new Selection(this.membership, ids);
+    }
+  }
+
+  private static BitSet union(
+    final HashMap<String, BitSet> index,
+    final Iterable<String> keys)
+  {
+    final var union = new BitSet();
+    for (final var key : keys) {
+      final var ids = index.get(key);
+      if (ids != null) {
+        union.or(ids);
+      }
+    }
+    return union;
+  }
+
+  private void ensurePage(
+    final int pageIndex)
+  {
+    final var current = this.pages;
+    if (pageIndex < current.length) {
+      return;
+    }
+
+    final var next = new Page[pageIndex + 1];
+    System.arraycopy(current, 0, next, 0, current.length);
+    for (int index = current.length; index < next.length; ++index) {
+      next[index] = new Page();
+    }
+    this.pages = next;
+  }
+
+  /**
+   * @return The exclusive upper bound of all assigned IDs
+   */
+
+  public int idLimit()
+  {
+    return this.idLimit;
+  }
+
+  /**
+   * @param id The check ID
+   *
+   * @return The check with the given ID, or {@code null} if no check is
+   * registered with that ID
+   */
 
-    this.metrics.put(
-      uri,
-      new SMTPMetricStatus(uri, true, message)
+  public Check check(
+    final int id)
+  {
+    return this.pages[id >>> PAGE_SHIFT].checks.get(id & PAGE_MASK);
+  }
+
+  /**
+   * @param id The check ID
+   *
+   * @return The version of the state of the check; the version changes each
+   * time the state changes
+   */
+
+  public long version(
+    final int id)
+  {
+    return this.pages[id >>> PAGE_SHIFT].versions.get(id & PAGE_MASK);
+  }
+
+  /**
+   * @param id The check ID
+   *
+   * @return The most recent status code (HTTP checks) of the check
+   */
+
+  public int code(
+    final int id)
+  {
+    return this.pages[id >>> PAGE_SHIFT].codes.get(id & PAGE_MASK);
+  }
+
+  /**
+   * @param id The check ID
+   *
+   * @return {@code true} if the most recent probe failed
+   */
+
+  public boolean failure(
+    final int id)
+  {
+    final var flags = this.pages[id >>> PAGE_SHIFT].flags.get(id & PAGE_MASK);
+    return (flags & FLAG_FAILURE) != 0;
+  }
+
+  /**
+   * @param id The check ID
+   *
+   * @return {@code true} if the most recent probe timed out
+   */
+
+  public boolean timeout(
+    final int id)
+  {
+    final var flags = this.pages[id >>> PAGE_SHIFT].flags.get(id & PAGE_MASK);
+    return (flags & FLAG_TIMEOUT) != 0;
+  }
+
+  /**
+   * @param id The check ID
+   *
+   * @return The outcome class of the most recent probe
+   */
+
+  public ZuOutcome outcome(
+    final int id)
+  {
+    return ZuOutcome.ofOrdinal(
+      this.pages[id >>> PAGE_SHIFT].outcomes.get(id & PAGE_MASK)
     );
   }
 
   /**
-   * Report an SMTP exception.
+   * @param id      The check ID
+   * @param outcome The outcome
    *
-   * @param uri       The URI
-   * @param exception The exception
+   * @return The number of probes of the check that had the given outcome
    */
 
-  public void smtpException(
-    final URI uri,
-    final Exception exception)
+  public long counter(
+    final int id,
+    final ZuOutcome outcome)
   {
-    Objects.requireNonNull(uri, "uri");
-    Objects.requireNonNull(exception, "e");
+    return this.pages[id >>> PAGE_SHIFT].counters.get(
+      (id & PAGE_MASK) * COUNTER_STRIDE + outcome.ordinal()
+    );
+  }
 
-    final var message =
-      Objects.requireNonNullElse(
-        exception.getMessage(),
-        exception.getClass().getName()
+  /**
+   * @param id The check ID
+   *
+   * @return The number of probes of the check
+   */
+
+  public long attempts(
+    final int id)
+  {
+    final var values = this.pages[id >>> PAGE_SHIFT].counters;
+    final var base = (id & PAGE_MASK) * COUNTER_STRIDE;
+
+    var sum = 0L;
+    for (int outcome = 0; outcome < OUTCOMES; ++outcome) {
+      sum += values.get(base + outcome);
+    }
+    return sum;
+  }
+
+  /**
+   * @return The distribution of probe results to subscribers
+   */
+
+  public ZuEvents events()
+  {
+    return this.events;
+  }
+
+  /**
+   * Count a completed probe of a check, and record its duration. The probe
+   * is counted under the outcome most recently reported for the check, so
+   * this should be called once the probe has reported its outcome. The
+   * result is published to any subscribers.
+   *
+   * @param check         The check
+   * @param durationNanos The duration of the probe
+   */
+
+  public void count(
+    final Check check,
+    final long durationNanos)
+  {
+    final var page = this.pages[check.id >>> PAGE_SHIFT];
+    final var index = check.id & PAGE_MASK;
+    if (page.checks.get(index) != check) {
+      return;
+    }
+
+    final var outcome = page.outcomes.get(index);
+    final var time = this.clock.getAsLong();
+    final var timeMillis = this.timeMillis(time);
+    page.counters.incrementAndGet(index * COUNTER_STRIDE + outcome);
+    check.availability.record(time, outcome == ZuOutcome.SUCCESS.ordinal());
+
+    final var probe =
+      check.history.record(
+        timeMillis,
+        durationNanos,
+        ZuOutcome.ofOrdinal(outcome),
+        page.codes.get(index)
       );
+    check.durations.record(durationNanos, probe, timeMillis);
 
-    this.metrics.put(uri, new SMTPMetricStatus(uri, true, message));
+    final var previous = page.counted.getAndSet(index, outcome);
+    if (this.events.hasSubscriptions()) {
+      this.events.publish(new ZuEvents.Event(
+        probe,
+        check,
+        timeMillis,
+        durationNanos,
+        ZuOutcome.ofOrdinal(outcome),
+        page.codes.get(index),
+        previous != outcome
+      ));
+    }
   }
 
   /**
-   * Report that SMTP is OK.
+   * @param time A time of the monotonic clock
    *
-   * @param uri     The URI
-   * @param message The message
+   * @return The wall clock time corresponding to the given time
    */
 
-  public void smtpOK(
-    final URI uri,
-    final String message)
+  private long timeMillis(
+    final long time)
   {
-    Objects.requireNonNull(uri, "uri");
+    return this.clockOriginMillis + (time - this.clockOrigin) / 1_000_000L;
+  }
 
-    this.metrics.put(
-      uri,
-      new SMTPMetricStatus(uri, false, message)
-    );
+  /**
+   * @return The availability windows
+   */
+
+  public List<Duration> availabilityWindows()
+  {
+    return this.availabilityWindows;
   }
 
   /**
-   * Report that TLS is OK.
+   * @param check  The check
+   * @param window The index of the window in {@link #availabilityWindows()}
    *
-   * @param uri The URI
+   * @return The ratio of successful probes of the check to probes of the
+   * check in the given window, or {@code NaN} if there were no probes
    */
 
-  public void tlsOK(
-    final URI uri)
+  public double availability(
+    final Check check,
+    final int window)
   {
-    Objects.requireNonNull(uri, "uri");
+    return check.availability.ratio(window, this.clock.getAsLong());
+  }
+
+  /**
+   * @param check The check
+   *
+   * @return A value that changes whenever the availability of the check may
+   * have changed without any probes having been counted
+   *
+   * @see ZuAvailability#epoch(long)
+   */
+
+  public long availabilityEpoch(
+    final Check check)
+  {
+    return check.availability.epoch(this.clock.getAsLong());
+  }
 
-    this.metrics.put(
-      uri,
-      new SMTPMetricStatus(uri, false, "")
+  /**
+   * @param id The check ID
+   *
+   * @return The message of the most recent probe, or {@code null}
+   */
+
+  public String message(
+    final int id)
+  {
+    return this.pages[id >>> PAGE_SHIFT].messages.get(id & PAGE_MASK);
+  }
+
+  /**
+   * @param id The check ID
+   *
+   * @return The TLS parameters of the most recent handshake, or {@code null}
+   */
+
+  public TLS tls(
+    final int id)
+  {
+    return this.pages[id >>> PAGE_SHIFT].tls.get(id & PAGE_MASK);
+  }
+
+  /**
+   * Report the TLS parameters of a handshake. The state of the check only
+   * changes if the parameters differ from those most recently reported.
+   *
+   * @param check The check
+   * @param tls   The TLS parameters
+   */
+
+  public void tls(
+    final Check check,
+    final TLS tls)
+  {
+    Objects.requireNonNull(tls, "tls");
+
+    final var page = this.pages[check.id >>> PAGE_SHIFT];
+    final var index = check.id & PAGE_MASK;
+    if (page.checks.get(index) != check) {
+      return;
+    }
+
+    final var previous = page.tls.getAndSet(index, tls);
+    if (!tls.equals(previous)) {
+      page.versions.incrementAndGet(index);
+    }
+  }
+
+  /**
+   * @param id The check ID
+   *
+   * @return The outcome of the most recent attempt to resume a TLS session
+   * ({@link #RESUMPTION_NONE}, {@link #RESUMPTION_FAILED}, or
+   * {@link #RESUMPTION_SUCCEEDED})
+   */
+
+  public int resumption(
+    final int id)
+  {
+    return this.pages[id >>> PAGE_SHIFT].resumptions.get(id & PAGE_MASK);
+  }
+
+  /**
+   * Report the outcome of an attempt to resume a TLS session.
+   *
+   * @param check   The check
+   * @param resumed {@code true} if the session was resumed
+   */
+
+  public void resumption(
+    final Check check,
+    final boolean resumed)
+  {
+    final var page = this.pages[check.id >>> PAGE_SHIFT];
+    final var index = check.id & PAGE_MASK;
+    if (page.checks.get(index) != check) {
+      return;
+    }
+
+    final var value = resumed ? RESUMPTION_SUCCEEDED : RESUMPTION_FAILED;
+    if (page.resumptions.getAndSet(index, value) != value) {
+      page.versions.incrementAndGet(index);
+    }
+  }
+
+  /**
+   * Obtain the histogram of the durations of a single phase of the probes
+   * of a check, creating it if necessary. The histogram uses the configured
+   * duration buckets.
+   *
+   * @param check The check
+   * @param phase The phase name, as it appears in metric labels
+   *
+   * @return The histogram
+   */
+
+  public ZuHistogram phaseDurations(
+    final Check check,
+    final String phase)
+  {
+    Objects.requireNonNull(phase, "phase");
+
+    return check.phases.computeIfAbsent(
+      phase,
+      p -> new ZuHistogram(this.durationBuckets)
     );
   }
 
+  private void update(
+    final Check check,
+    final int code,
+    final int flags,
+    final ZuOutcome outcome,
+    final String message)
+  {
+    final var page = this.pages[check.id >>> PAGE_SHIFT];
+    final var index = check.id & PAGE_MASK;
+
+    /*
+     * A probe that completes after its check has been unregistered must not
+     * write into an ID that may since have been reused.
+     */
+
+    if (page.checks.get(index) != check) {
+      return;
+    }
+
+    page.codes.set(index, code);
+    page.flags.set(index, flags);
+    page.outcomes.set(index, outcome.ordinal());
+    page.messages.set(index, message);
+    page.versions.incrementAndGet(index);
+  }
+
+  /**
+   * Report a status code (HTTP checks).
+   *
+   * @param check      The check
+   * @param statusCode The status code
+   */
+
+  public void status(
+    final Check check,
+    final int statusCode)
+  {
+    this.update(check, statusCode, 0, ZuOutcome.ofStatus(statusCode), null);
+  }
+
+  /**
+   * Report that a probe succeeded.
+   *
+   * @param check The check
+   */
+
+  public void success(
+    final Check check)
+  {
+    this.update(check, 0, 0, ZuOutcome.SUCCESS, null);
+  }
+
+  /**
+   * Report that a probe failed at the protocol level.
+   *
+   * @param check   The check
+   * @param message The failure message
+   */
+
+  public void failure(
+    final Check check,
+    final String message)
+  {
+    this.failure(check, ZuOutcome.PROTOCOL, message);
+  }
+
+  /**
+   * Report that a probe failed.
+   *
+   * @param check   The check
+   * @param outcome The outcome class
+   * @param message The failure message
+   */
+
+  public void failure(
+    final Check check,
+    final ZuOutcome outcome,
+    final String message)
+  {
+    Objects.requireNonNull(outcome, "outcome");
+    Objects.requireNonNull(message, "message");
+    this.update(check, 0, FLAG_FAILURE, outcome, message);
+  }
+
   /**
-   * Report a TLS exception.
+   * Report that a probe raised an exception.
    *
-   * @param uri       The URI
+   * @param check     The check
    * @param exception The exception
    */
 
-  public void tlsException(
-    final URI uri,
+  public void exception(
+    final Check check,
     final Exception exception)
   {
-    Objects.requireNonNull(uri, "uri");
+    Objects.requireNonNull(exception, "exception");
 
     final var message =
       Objects.requireNonNullElse(
@@ -193,109 +855,387 @@ public final class ZuMetrics
         exception.getClass().getName()
       );
 
-    this.metrics.put(
-      uri,
-      new SMTPMetricStatus(uri, false, message)
+    this.update(
+      check,
+      0,
+      FLAG_FAILURE,
+      ZuOutcome.ofException(exception),
+      message
     );
   }
 
   /**
-   * The type of recorded metrics.
+   * Report that a probe timed out.
+   *
+   * @param check The check
+   * @param phase The phase during which the timeout occurred
    */
 
-  public sealed interface MetricType
+  public void timeout(
+    final Check check,
+    final ZuProbePhase phase)
   {
-    /**
-     * @return The URI
-     */
+    Objects.requireNonNull(phase, "phase");
+
+    this.update(
+      check,
+      0,
+      FLAG_FAILURE | FLAG_TIMEOUT,
+      ZuOutcome.ofTimeout(phase),
+      phase.timeoutMessage()
+    );
+  }
+
+  /**
+   * Report the worst outcome of a set of checks as the outcome of another.
+   * The first failure (in the order given) is reported, prefixed with the
+   * address of the check that failed; if nothing failed, the highest status
+   * code is reported.
+   *
+   * @param check The check
+   * @param parts The checks whose outcomes are aggregated
+   */
+
+  public void aggregate(
+    final Check check,
+    final List<Check> parts)
+  {
+    Objects.requireNonNull(parts, "parts");
+
+    var code = 0;
+    for (final var part : parts) {
+      final var id = part.id;
+      final var page = this.pages[id >>> PAGE_SHIFT];
+      final var index = id & PAGE_MASK;
+      if (page.checks.get(index) != part) {
+        continue;
+      }
 
-    URI uri();
+      final var flags = page.flags.get(index);
+      if ((flags & FLAG_FAILURE) != 0) {
+        this.update(
+          check,
+          0,
+          flags,
+          ZuOutcome.ofOrdinal(page.outcomes.get(index)),
+          "%s: %s".formatted(part.address, page.messages.get(index))
+        );
+        return;
+      }
+      code = Math.max(code, page.codes.get(index));
+    }
+    this.update(check, code, 0, ZuOutcome.ofStatus(code), null);
   }
 
   /**
-   * An HTTP status metric.
+   * @return A read-only view of the registered internal gauges
+   */
+
+  public SortedMap<String, Gauge> gauges()
+  {
+    return this.gaugesRead;
+  }
+
+  /**
+   * Register an internal gauge. The value of the gauge is sampled each time
+   * metrics are published.
    *
-   * @param uri            The URI
-   * @param code           The status code
-   * @param failureMessage The failure message, if any
+   * @param name  The metric name
+   * @param help  The metric help text
+   * @param value The gauge value
    */
 
-  public record HTTPMetricStatus(
+  public void registerGauge(
+    final String name,
+    final String help,
+    final LongSupplier value)
+  {
+    this.gauges.put(name, new Gauge(name, help, value));
+  }
+
+  /**
+   * @return A read-only view of the registered internal counters
+   */
+
+  public SortedMap<String, Counter> counters()
+  {
+    return this.countersRead;
+  }
+
+  /**
+   * Register an internal counter. The value of the counter is sampled each
+   * time metrics are published, and must never decrease. The counter is
+   * published as a series named with the given name and a {@code _total}
+   * suffix.
+   *
+   * @param name  The metric name, without the {@code _total} suffix
+   * @param help  The metric help text
+   * @param value The counter value
+   */
+
+  public void registerCounter(
+    final String name,
+    final String help,
+    final LongSupplier value)
+  {
+    this.counters.put(name, new Counter(name, help, value));
+  }
+
+  /**
+   * @return A read-only view of the registered internal histograms
+   */
+
+  public SortedMap<String, Histogram> histograms()
+  {
+    return this.histogramsRead;
+  }
+
+  /**
+   * Register an internal histogram of durations. The histogram uses the
+   * configured duration buckets. Registering a name that is already
+   * registered returns the existing histogram.
+   *
+   * @param name The metric name
+   * @param help The metric help text
+   *
+   * @return The histogram
+   */
+
+  public ZuHistogram registerHistogram(
+    final String name,
+    final String help)
+  {
+    return this.histograms.computeIfAbsent(
+      name,
+      n -> new Histogram(n, help, new ZuHistogram(this.durationBuckets))
+    ).histogram();
+  }
+
+  /**
+   * A registered check.
+   *
+   * @param id           The dense check ID
+   * @param kind         The kind of check
+   * @param uri          The URI
+   * @param address      The address, or the empty string for the whole check
+   * @param durations    The probe duration histogram
+   * @param phases       The phase duration histograms, by phase name
+   * @param availability The availability windows
+   * @param history      The recent probe results
+   */
+
+  public record Check(
+    int id,
+    ZuCheckKind kind,
     URI uri,
-    int code,
-    Optional<String> failureMessage)
-    implements MetricType
+    String address,
+    ZuHistogram durations,
+    SortedMap<String, ZuHistogram> phases,
+    ZuAvailability availability,
+    ZuHistory history)
   {
     /**
-     * An HTTP status metric.
+     * A registered check.
      *
-     * @param uri            The URI
-     * @param code           The status code
-     * @param failureMessage The failure message, if any
+     * @param id           The dense check ID
+     * @param kind         The kind of check
+     * @param uri          The URI
+     * @param address      The address, or the empty string for the whole check
+     * @param durations    The probe duration histogram
+     * @param phases       The phase duration histograms, by phase name
+     * @param availability The availability windows
+     * @param history      The recent probe results
      */
 
-    public HTTPMetricStatus
+    public Check
     {
+      Objects.requireNonNull(kind, "kind");
       Objects.requireNonNull(uri, "uri");
-      Objects.requireNonNull(failureMessage, "failureMessage");
+      Objects.requireNonNull(address, "address");
+      Objects.requireNonNull(durations, "durations");
+      Objects.requireNonNull(phases, "phases");
+      Objects.requireNonNull(availability, "availability");
+      Objects.requireNonNull(history, "history");
     }
   }
 
   /**
-   * An SMTP status metric.
+   * The parameters of a TLS handshake.
    *
-   * @param uri     The URI
-   * @param failure @{code true} if the request failed
-   * @param message The message
+   * @param protocol    The negotiated protocol
+   * @param cipherSuite The negotiated cipher suite
+   * @param leafExpiry  The expiry time of the leaf certificate, in seconds
+   *                    since the epoch, or {@link #EXPIRY_UNKNOWN}
+   * @param chainExpiry The earliest expiry time of any certificate in the
+   *                    chain, in seconds since the epoch, or
+   *                    {@link #EXPIRY_UNKNOWN}
    */
 
-  public record SMTPMetricStatus(
-    URI uri,
-    boolean failure,
-    String message)
-    implements MetricType
+  public record TLS(
+    String protocol,
+    String cipherSuite,
+    long leafExpiry,
+    long chainExpiry)
   {
     /**
-     * An SMTP status metric.
+     * The parameters of a TLS handshake.
      *
-     * @param uri     The URI
-     * @param failure @{code true} if the request failed
-     * @param message The message
+     * @param protocol    The negotiated protocol
+     * @param cipherSuite The negotiated cipher suite
+     * @param leafExpiry  The expiry time of the leaf certificate, in seconds
+     *                    since the epoch, or {@link #EXPIRY_UNKNOWN}
+     * @param chainExpiry The earliest expiry time of any certificate in the
+     *                    chain, in seconds since the epoch, or
+     *                    {@link #EXPIRY_UNKNOWN}
      */
 
-    public SMTPMetricStatus
+    public TLS
     {
-      Objects.requireNonNull(uri, "uri");
-      Objects.requireNonNull(message, "message");
+      Objects.requireNonNull(protocol, "protocol");
+      Objects.requireNonNull(cipherSuite, "cipherSuite");
     }
   }
 
   /**
-   * A TLS status metric.
+   * An internal gauge.
    *
-   * @param uri     The URI
-   * @param failure @{code true} if the request failed
-   * @param message The message
+   * @param name  The metric name
+   * @param help  The metric help text
+   * @param value The gauge value
    */
 
-  public record TLSMetricStatus(
-    URI uri,
-    boolean failure,
-    String message)
-    implements MetricType
+  public record Gauge(
+    String name,
+    String help,
+    LongSupplier value)
   {
     /**
-     * A TLS status metric.
+     * An internal gauge.
      *
-     * @param uri     The URI
-     * @param failure @{code true} if the request failed
-     * @param message The message
+     * @param name  The metric name
+     * @param help  The metric help text
+     * @param value The gauge value
      */
 
-    public TLSMetricStatus
+    public Gauge
     {
-      Objects.requireNonNull(uri, "uri");
-      Objects.requireNonNull(message, "message");
+      Objects.requireNonNull(name, "name");
+      Objects.requireNonNull(help, "help");
+      Objects.requireNonNull(value, "value");
+    }
+  }
+
+  /**
+   * An internal counter.
+   *
+   * @param name  The metric name, without the {@code _total} suffix
+   * @param help  The metric help text
+   * @param value The counter value
+   */
+
+  public record Counter(
+    String name,
+    String help,
+    LongSupplier value)
+  {
+    /**
+     * An internal counter.
+     *
+     * @param name  The metric name, without the {@code _total} suffix
+     * @param help  The metric help text
+     * @param value The counter value
+     */
+
+    public Counter
+    {
+      Objects.requireNonNull(name, "name");
+      Objects.requireNonNull(help, "help");
+      Objects.requireNonNull(value, "value");
+    }
+  }
+
+  /**
+   * An internal histogram.
+   *
+   * @param name      The metric name
+   * @param help      The metric help text
+   * @param histogram The histogram
+   */
+
+  public record Histogram(
+    String name,
+    String help,
+    ZuHistogram histogram)
+  {
+    /**
+     * An internal histogram.
+     *
+     * @param name      The metric name
+     * @param help      The metric help text
+     * @param histogram The histogram
+     */
+
+    public Histogram
+    {
+      Objects.requireNonNull(name, "name");
+      Objects.requireNonNull(help, "help");
+      Objects.requireNonNull(histogram, "histogram");
+    }
+  }
+
+  /**
+   * The IDs of the checks chosen by a selector.
+   *
+   * @param membership The membership value at the time of selection
+   * @param ids        The selected IDs
+   */
+
+  public record Selection(
+    long membership,
+    BitSet ids)
+  {
+    /**
+     * The IDs of the checks chosen by a selector.
+     *
+     * @param membership The membership value at the time of selection
+     * @param ids        The selected IDs
+     */
+
+    public Selection
+    {
+      Objects.requireNonNull(ids, "ids");
+    }
+  }
+
+  /**
+   * A page of check state, stored as a structure of arrays.
+   */
+
+  private static final class Page
+  {
+    private final AtomicReferenceArray<Check> checks;
+    private final AtomicIntegerArray codes;
+    private final AtomicIntegerArray flags;
+    private final AtomicIntegerArray outcomes;
+    private final AtomicIntegerArray counted;
+    private final AtomicReferenceArray<String> messages;
+    private final AtomicReferenceArray<TLS> tls;
+    private final AtomicIntegerArray resumptions;
+    private final AtomicLongArray counters;
+    private final AtomicLongArray versions;
+
+    Page()
+    {
+      this.checks = new AtomicReferenceArray<>(PAGE_SIZE);
+      this.codes = new AtomicIntegerArray(PAGE_SIZE);
+      this.flags = new AtomicIntegerArray(PAGE_SIZE);
+      this.outcomes = new AtomicIntegerArray(PAGE_SIZE);
+      this.counted = new AtomicIntegerArray(PAGE_SIZE);
+      this.messages = new AtomicReferenceArray<>(PAGE_SIZE);
+      this.tls = new AtomicReferenceArray<>(PAGE_SIZE);
+      this.resumptions = new AtomicIntegerArray(PAGE_SIZE);
+      this.counters = new AtomicLongArray(PAGE_SIZE * COUNTER_STRIDE);
+      this.versions = new AtomicLongArray(PAGE_SIZE);
     }
   }
 }
@@ -0,0 +1,1276 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>The Prometheus or OpenMetrics text exposition of a metrics store.</p>
+ *
+ * <p>Each series is rendered once into a cached, pre-encoded UTF-8 fragment
+ * that is only re-rendered when the value of the series changes. Producing
+ * the exposition is then mostly a matter of copying cached fragments, with
+ * the header of each metric family written once.</p>
+ *
+ * <p>The gzip-compressed exposition is assembled from independently
+ * compressed chunks, each holding the series of one metric family for a
+ * fixed range of check IDs. A chunk is only recompressed when one of its
+ * fragments has been re-rendered with different content; the other chunks
+ * are copied as they are, and only the checksum of the uncompressed body is
+ * computed afresh for each scrape.</p>
+ *
+ * <p>An exposition may be restricted to the checks chosen by a selector.
+ * The chosen IDs are found through the indexes of the metrics store, and
+ * are only found again when checks are registered or unregistered; the
+ * fragments of other checks are neither rendered nor kept. The internal
+ * metrics of the server are only included in expositions that are not
+ * restricted by kind or label, and then only in the first shard, so that
+ * the shards of a store partition its series.</p>
+ */
+
+public final class ZuMetricsExposition
+{
+  private static final String STATUS_HEADER = """
+    # HELP zu_%1$s_status The most recent result of %2$s status check
+    # TYPE zu_%1$s_status gauge
+    """;
+
+  private static final String TIMEOUT_HEADER = """
+    # HELP zu_%1$s_timeout 1 if the most recent %2$s check timed out
+    # TYPE zu_%1$s_timeout gauge
+    """;
+
+  private static final String DURATION_HEADER = """
+    # HELP zu_%1$s_duration_seconds The duration of %2$s probes
+    # TYPE zu_%1$s_duration_seconds histogram
+    """;
+
+  private static final String PHASE_HEADER = """
+    # HELP zu_%1$s_phase_duration_seconds The duration of the phases of %2$s probes
+    # TYPE zu_%1$s_phase_duration_seconds histogram
+    """;
+
+  private static final String TLS_INFO_HEADER = """
+    # HELP %1$s_info The TLS parameters negotiated by the most recent %2$s probe
+    # TYPE %1$s_info gauge
+    """;
+
+  private static final String CERT_EXPIRY_HEADER = """
+    # HELP zu_%1$s_cert_expiry_seconds The expiry time of the certificates presented to %2$s probes
+    # TYPE zu_%1$s_cert_expiry_seconds gauge
+    """;
+
+  private static final String RESUMED_HEADER = """
+    # HELP %1$s_resumed 1 if the most recent attempt by %2$s probes to resume a TLS session succeeded
+    # TYPE %1$s_resumed gauge
+    """;
+
+  private static final String ATTEMPTS_HEADER = """
+    # HELP zu_%1$s_attempts_total The number of %2$s probes
+    # TYPE zu_%1$s_attempts_total counter
+    """;
+
+  private static final String SUCCESSES_HEADER = """
+    # HELP zu_%1$s_successes_total The number of successful %2$s probes
+    # TYPE zu_%1$s_successes_total counter
+    """;
+
+  private static final String FAILURES_HEADER = """
+    # HELP zu_%1$s_failures_total The number of failed %2$s probes by outcome
+    # TYPE zu_%1$s_failures_total counter
+    """;
+
+  private static final String AVAILABILITY_HEADER = """
+    # HELP zu_%1$s_availability_ratio The ratio of successful %2$s probes to probes over a sliding window
+    # TYPE zu_%1$s_availability_ratio gauge
+    """;
+
+  private static final String OM_TLS_INFO_HEADER = """
+    # HELP %1$s The TLS parameters negotiated by the most recent %2$s probe
+    # TYPE %1$s info
+    """;
+
+  private static final String OM_ATTEMPTS_HEADER = """
+    # HELP zu_%1$s_attempts The number of %2$s probes
+    # TYPE zu_%1$s_attempts counter
+    """;
+
+  private static final String OM_SUCCESSES_HEADER = """
+    # HELP zu_%1$s_successes The number of successful %2$s probes
+    # TYPE zu_%1$s_successes counter
+    """;
+
+  private static final String OM_FAILURES_HEADER = """
+    # HELP zu_%1$s_failures The number of failed %2$s probes by outcome
+    # TYPE zu_%1$s_failures counter
+    """;
+
+  /**
+   * The number of check IDs covered by each compressed chunk.
+   */
+
+  private static final int CHUNK_SIZE = 256;
+
+  /**
+   * A gzip header with no file name, no modification time, and an unknown
+   * operating system.
+   */
+
+  private static final byte[] GZIP_HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff,
+  };
+
+  /**
+   * An empty, final, fixed-Huffman deflate block.
+   */
+
+  private static final byte[] DEFLATE_END = {
+    0x03, 0x00,
+  };
+
+  private static final byte[] EOF =
+    "# EOF\n".getBytes(UTF_8);
+
+  private static final byte[] EMPTY =
+    new byte[0];
+
+  private static final Map<ZuCheckKind, byte[]> STATUS_HEADERS =
+    headers(STATUS_HEADER, true);
+  private static final Map<ZuCheckKind, byte[]> TIMEOUT_HEADERS =
+    headers(TIMEOUT_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> DURATION_HEADERS =
+    headers(DURATION_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> PHASE_HEADERS =
+    headers(PHASE_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> TLS_INFO_HEADERS =
+    tlsHeaders(TLS_INFO_HEADER);
+  private static final Map<ZuCheckKind, byte[]> CERT_EXPIRY_HEADERS =
+    headers(CERT_EXPIRY_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> RESUMED_HEADERS =
+    tlsHeaders(RESUMED_HEADER);
+  private static final Map<ZuCheckKind, byte[]> ATTEMPTS_HEADERS =
+    headers(ATTEMPTS_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> SUCCESSES_HEADERS =
+    headers(SUCCESSES_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> FAILURES_HEADERS =
+    headers(FAILURES_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> AVAILABILITY_HEADERS =
+    headers(AVAILABILITY_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> OM_TLS_INFO_HEADERS =
+    tlsHeaders(OM_TLS_INFO_HEADER);
+  private static final Map<ZuCheckKind, byte[]> OM_ATTEMPTS_HEADERS =
+    headers(OM_ATTEMPTS_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> OM_SUCCESSES_HEADERS =
+    headers(OM_SUCCESSES_HEADER, false);
+  private static final Map<ZuCheckKind, byte[]> OM_FAILURES_HEADERS =
+    headers(OM_FAILURES_HEADER, false);
+
+  private final ZuMetrics metrics;
+  private final ZuMetricsFormat format;
+  private final ZuCheckSelector selector;
+  private final String[] windows;
+  private final List<Family> families;
+  private final Deflater deflater;
+  private final CRC32 crc;
+  private final byte[][] parts;
+  private final byte[] buffer;
+  private final ByteArrayOutputStream compressed;
+  private Fragment[] fragments;
+  private ZuMetrics.Selection selection;
+
+  /**
+   * The Prometheus text exposition of a metrics store.
+   *
+   * @param inMetrics The metrics store
+   */
+
+  public ZuMetricsExposition(
+    final ZuMetrics inMetrics)
+  {
+    this(inMetrics, ZuMetricsFormat.PROMETHEUS_TEXT);
+  }
+
+  /**
+   * The exposition of a metrics store.
+   *
+   * @param inMetrics The metrics store
+   * @param inFormat  The exposition format
+   */
+
+  public ZuMetricsExposition(
+    final ZuMetrics inMetrics,
+    final ZuMetricsFormat inFormat)
+  {
+    this(inMetrics, inFormat, ZuCheckSelector.all());
+  }
+
+  /**
+   * The exposition of the selected checks of a metrics store.
+   *
+   * @param inMetrics  The metrics store
+   * @param inFormat   The exposition format
+   * @param inSelector The selector of checks
+   */
+
+  public ZuMetricsExposition(
+    final ZuMetrics inMetrics,
+    final ZuMetricsFormat inFormat,
+    final ZuCheckSelector inSelector)
+  {
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.format =
+      Objects.requireNonNull(inFormat, "format");
+    this.selector =
+      Objects.requireNonNull(inSelector, "selector");
+
+    final var openMetrics =
+      this.format == ZuMetricsFormat.OPENMETRICS_TEXT;
+
+    this.families =
+      List.of(
+        new Family(STATUS_HEADERS, f -> f.status),
+        new Family(TIMEOUT_HEADERS, f -> f.timeout),
+        new Family(DURATION_HEADERS, f -> f.durations),
+        new Family(PHASE_HEADERS, f -> f.phases),
+        new Family(
+          openMetrics ? OM_TLS_INFO_HEADERS : TLS_INFO_HEADERS,
+          f -> f.tlsInfo),
+        new Family(CERT_EXPIRY_HEADERS, f -> f.certExpiry),
+        new Family(RESUMED_HEADERS, f -> f.resumed),
+        new Family(
+          openMetrics ? OM_ATTEMPTS_HEADERS : ATTEMPTS_HEADERS,
+          f -> f.attempts),
+        new Family(
+          openMetrics ? OM_SUCCESSES_HEADERS : SUCCESSES_HEADERS,
+          f -> f.successes),
+        new Family(
+          openMetrics ? OM_FAILURES_HEADERS : FAILURES_HEADERS,
+          f -> f.failures),
+        new Family(AVAILABILITY_HEADERS, f -> f.availability)
+      );
+
+    this.deflater =
+      new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    this.crc =
+      new CRC32();
+    this.parts =
+      new byte[CHUNK_SIZE][];
+    this.buffer =
+      new byte[8192];
+    this.compressed =
+      new ByteArrayOutputStream();
+    this.windows =
+      this.metrics.availabilityWindows()
+        .stream()
+        .map(ZuMetricsExposition::windowLabel)
+        .toArray(String[]::new);
+    this.fragments =
+      new Fragment[0];
+  }
+
+  /**
+   * Render a window in the largest unit that divides it exactly, in the
+   * style of Prometheus durations.
+   */
+
+  static String windowLabel(
+    final Duration window)
+  {
+    final var seconds = window.toSeconds();
+    if (seconds > 0L && window.getNano() == 0) {
+      if (seconds % 86400L == 0L) {
+        return "%dd".formatted(seconds / 86400L);
+      }
+      if (seconds % 3600L == 0L) {
+        return "%dh".formatted(seconds / 3600L);
+      }
+      if (seconds % 60L == 0L) {
+        return "%dm".formatted(seconds / 60L);
+      }
+      return "%ds".formatted(seconds);
+    }
+    return "%dms".formatted(window.toMillis());
+  }
+
+  private static Map<ZuCheckKind, byte[]> headers(
+    final String format,
+    final boolean article)
+  {
+    final var map = new EnumMap<ZuCheckKind, byte[]>(ZuCheckKind.class);
+    for (final var kind : ZuCheckKind.values()) {
+      final String description;
+      if (article) {
+        description = switch (kind) {
+          case HTTP -> "an HTTP/HTTPS";
+          case SMTP -> "an SMTP";
+          case TLS -> "a TLS";
+          case TCP -> "a TCP";
+        };
+      } else {
+        description = kind.description();
+      }
+      map.put(kind, format.formatted(kind.label(), description).getBytes(UTF_8));
+    }
+    return map;
+  }
+
+  private static Map<ZuCheckKind, byte[]> tlsHeaders(
+    final String format)
+  {
+    final var map = new EnumMap<ZuCheckKind, byte[]>(ZuCheckKind.class);
+    for (final var kind : ZuCheckKind.values()) {
+      map.put(
+        kind,
+        format.formatted(kind.tlsFamily(), kind.description()).getBytes(UTF_8)
+      );
+    }
+    return map;
+  }
+
+  /**
+   * @return The exposition format
+   */
+
+  public ZuMetricsFormat format()
+  {
+    return this.format;
+  }
+
+  /**
+   * @return The selector of checks
+   */
+
+  public ZuCheckSelector selector()
+  {
+    return this.selector;
+  }
+
+  /**
+   * Write the exposition to the given output stream. Series are written in
+   * check ID order within each metric family.
+   *
+   * @param output The output stream
+   *
+   * @throws IOException On errors
+   */
+
+  public synchronized void write(
+    final OutputStream output)
+    throws IOException
+  {
+    final var limit = this.refresh();
+
+    for (final var family : this.families) {
+      this.writeFamily(output, limit, family);
+    }
+    this.writeTail(output);
+  }
+
+  /**
+   * Write the gzip-compressed exposition to the given output stream. The
+   * uncompressed content is identical to that written by
+   * {@link #write(OutputStream)}.
+   *
+   * @param output The output stream
+   *
+   * @throws IOException On errors
+   */
+
+  public synchronized void writeGzip(
+    final OutputStream output)
+    throws IOException
+  {
+    final var limit = this.refresh();
+
+    this.crc.reset();
+    output.write(GZIP_HEADER);
+
+    var size = 0L;
+    for (final var family : this.families) {
+      size += this.writeFamilyCompressed(output, limit, family);
+    }
+
+    final var tail = new ByteArrayOutputStream();
+    this.writeTail(tail);
+    final var tailBytes = tail.toByteArray();
+    this.parts[0] = tailBytes;
+    output.write(this.compress(this.parts, 1));
+    this.parts[0] = null;
+    this.crc.update(tailBytes);
+    size += tailBytes.length;
+
+    output.write(DEFLATE_END);
+
+    final var checksum = this.crc.getValue();
+    output.write(new byte[]{
+      (byte) checksum,
+      (byte) (checksum >>> 8),
+      (byte) (checksum >>> 16),
+      (byte) (checksum >>> 24),
+      (byte) size,
+      (byte) (size >>> 8),
+      (byte) (size >>> 16),
+      (byte) (size >>> 24),
+    });
+  }
+
+  private void writeFamily(
+    final OutputStream output,
+    final int limit,
+    final Family family)
+    throws IOException
+  {
+    for (final var kind : ZuCheckKind.values()) {
+      var headerWritten = false;
+      for (int id = 0; id < limit; ++id) {
+        final var fragment = this.fragments[id];
+        if (fragment == null || fragment.owner.kind() != kind) {
+          continue;
+        }
+        final var bytes = family.series.apply(fragment);
+        if (bytes.length == 0) {
+          continue;
+        }
+        if (!headerWritten) {
+          output.write(family.headers.get(kind));
+          headerWritten = true;
+        }
+        output.write(bytes);
+      }
+    }
+  }
+
+  /**
+   * Write the compressed series of a family, reusing the compressed chunks
+   * of the previous scrape wherever the fragments of a chunk are the same
+   * arrays that were compressed then.
+   *
+   * @return The number of uncompressed bytes written
+   */
+
+  private long writeFamilyCompressed(
+    final OutputStream output,
+    final int limit,
+    final Family family)
+    throws IOException
+  {
+    final var blocks = (limit + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+    var size = 0L;
+    for (final var kind : ZuCheckKind.values()) {
+      final var chunks = family.chunks(kind, blocks);
+      var headerWritten = false;
+
+      for (int block = 0; block < blocks; ++block) {
+        final var start = block * CHUNK_SIZE;
+        final var end = Math.min(limit, start + CHUNK_SIZE);
+
+        var count = 0;
+        for (int id = start; id < end; ++id) {
+          final var fragment = this.fragments[id];
+          if (fragment == null || fragment.owner.kind() != kind) {
+            continue;
+          }
+          final var bytes = family.series.apply(fragment);
+          if (bytes.length == 0) {
+            continue;
+          }
+          this.parts[count] = bytes;
+          ++count;
+        }
+
+        if (count == 0) {
+          chunks[block] = null;
+          continue;
+        }
+
+        if (!headerWritten) {
+          final var header = family.headers.get(kind);
+          output.write(family.headerCompressed(kind, this));
+          this.crc.update(header);
+          size += header.length;
+          headerWritten = true;
+        }
+
+        var chunk = chunks[block];
+        if (chunk == null || !chunk.matches(this.parts, count)) {
+          chunk = new Chunk(
+            Arrays.copyOf(this.parts, count),
+            this.compress(this.parts, count)
+          );
+          chunks[block] = chunk;
+        }
+
+        output.write(chunk.compressed);
+        for (int index = 0; index < count; ++index) {
+          this.crc.update(this.parts[index]);
+          size += this.parts[index].length;
+          this.parts[index] = null;
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Compress the given arrays into a sequence of raw deflate blocks that
+   * ends on a byte boundary and does not refer to any earlier output, so
+   * that it can be concatenated with other such sequences.
+   */
+
+  private byte[] compress(
+    final byte[][] inputs,
+    final int count)
+  {
+    this.deflater.reset();
+    this.compressed.reset();
+
+    for (int index = 0; index < count; ++index) {
+      this.deflater.setInput(inputs[index]);
+      while (!this.deflater.needsInput()) {
+        final var size = this.deflater.deflate(this.buffer);
+        this.compressed.write(this.buffer, 0, size);
+      }
+    }
+
+    int size;
+    do {
+      size = this.deflater.deflate(
+        this.buffer,
+        0,
+        this.buffer.length,
+        Deflater.SYNC_FLUSH
+      );
+      this.compressed.write(this.buffer, 0, size);
+    } while (size == this.buffer.length);
+
+    return this.compressed.toByteArray();
+  }
+
+  private void writeTail(
+    final OutputStream output)
+    throws IOException
+  {
+    if (this.selector.isFirstShard()) {
+      this.writeGauges(output);
+      this.writeCounters(output);
+      this.writeHistograms(output);
+    }
+
+    if (this.format == ZuMetricsFormat.OPENMETRICS_TEXT) {
+      output.write(EOF);
+    }
+  }
+
+  /**
+   * Bring the cached fragments up to date with the metrics store. Only the
+   * fragments of series whose values have changed are re-rendered.
+   *
+   * @return The exclusive upper bound of check IDs
+   */
+
+  private int refresh()
+  {
+    final var limit = this.metrics.idLimit();
+    if (this.fragments.length < limit) {
+      this.fragments = Arrays.copyOf(this.fragments, limit);
+    }
+
+    if (this.selector.isAll()) {
+      for (int id = 0; id < limit; ++id) {
+        this.refreshFragment(id);
+      }
+      return limit;
+    }
+
+    final var ids = this.selected();
+    for (int id = ids.nextSetBit(0);
+         id >= 0 && id < limit;
+         id = ids.nextSetBit(id + 1)) {
+      this.refreshFragment(id);
+    }
+    return limit;
+  }
+
+  /**
+   * @return The IDs of the selected checks, selecting them again if checks
+   * have been registered or unregistered since the last selection
+   */
+
+  private BitSet selected()
+  {
+    final var previous = this.selection;
+    if (previous != null
+        && previous.membership() == this.metrics.membership()) {
+      return previous.ids();
+    }
+
+    final var next = this.metrics.select(this.selector);
+    if (previous != null) {
+      final var removed = (BitSet) previous.ids().clone();
+      removed.andNot(next.ids());
+      for (int id = removed.nextSetBit(0);
+           id >= 0 && id < this.fragments.length;
+           id = removed.nextSetBit(id + 1)) {
+        this.fragments[id] = null;
+      }
+    }
+    this.selection = next;
+    return next.ids();
+  }
+
+  private void refreshFragment(
+    final int id)
+  {
+    final var check = this.metrics.check(id);
+    if (check == null) {
+      this.fragments[id] = null;
+      return;
+    }
+
+    final var fragment = this.fragmentFor(id, check);
+    if (fragment == null) {
+      return;
+    }
+
+    this.refreshState(check, fragment);
+    this.refreshDurations(check, fragment);
+    this.refreshCounters(check, fragment);
+    refreshPhases(check, fragment);
+  }
+
+  /**
+   * @return The fragment of the given check, creating it if the ID is new
+   * or has been reused, or {@code null} if the check is not selected
+   */
+
+  private Fragment fragmentFor(
+    final int id,
+    final ZuMetrics.Check check)
+  {
+    final var fragment = this.fragments[id];
+    if (fragment != null && fragment.owner == check) {
+      return fragment;
+    }
+
+    /*
+     * The ID may have been reused since the checks were selected; the
+     * new owner appears in the next selection if it is chosen.
+     */
+
+    if (!this.selector.isAll() && !this.selector.matches(check)) {
+      this.fragments[id] = null;
+      return null;
+    }
+
+    final var created = new Fragment(check);
+    this.fragments[id] = created;
+    return created;
+  }
+
+  /**
+   * Refresh the status, timeout, and TLS series, which change only when
+   * the version of the check changes.
+   */
+
+  private void refreshState(
+    final ZuMetrics.Check check,
+    final Fragment fragment)
+  {
+    final var version = this.metrics.version(check.id());
+    if (fragment.version != version) {
+      fragment.version = version;
+      fragment.status =
+        retain(fragment.status, this.renderStatus(check).getBytes(UTF_8));
+      fragment.timeout =
+        retain(fragment.timeout, this.renderTimeout(check).getBytes(UTF_8));
+      this.renderTLS(check, fragment);
+    }
+  }
+
+  private void refreshDurations(
+    final ZuMetrics.Check check,
+    final Fragment fragment)
+  {
+    final var histogram = check.durations();
+    final var count = histogram.count();
+    if (fragment.durationCount != count) {
+      fragment.durationCount = count;
+      fragment.durations = this.renderDuration(check, histogram);
+    }
+  }
+
+  /**
+   * Refresh the probe counters and the availability, which change when
+   * probes are counted, or, for the availability, when a window moves on.
+   */
+
+  private void refreshCounters(
+    final ZuMetrics.Check check,
+    final Fragment fragment)
+  {
+    final var attempts = this.metrics.attempts(check.id());
+    if (fragment.attemptCount != attempts) {
+      fragment.attemptCount = attempts;
+      this.renderCounters(check, attempts, fragment);
+    }
+
+    final var epoch = this.metrics.availabilityEpoch(check);
+    if (fragment.availabilityAttempts != attempts
+        || fragment.availabilityEpoch != epoch) {
+      fragment.availabilityAttempts = attempts;
+      fragment.availabilityEpoch = epoch;
+      fragment.availability =
+        retain(fragment.availability, this.renderAvailability(check));
+    }
+  }
+
+  private static void refreshPhases(
+    final ZuMetrics.Check check,
+    final Fragment fragment)
+  {
+    final var phases = check.phases();
+    if (phases.isEmpty()) {
+      return;
+    }
+
+    var phaseCount = 0L;
+    for (final var phase : phases.values()) {
+      phaseCount += phase.count();
+    }
+    if (fragment.phaseCount != phaseCount) {
+      fragment.phaseCount = phaseCount;
+      fragment.phases = renderPhases(check);
+    }
+  }
+
+  private String renderStatus(
+    final ZuMetrics.Check check)
+  {
+    final var id = check.id();
+    final var outcome = this.metrics.outcome(id).label();
+
+    return switch (check.kind()) {
+      case HTTP -> {
+        yield "zu_http_status{%s,outcome=\"%s\"} %d\n"
+          .formatted(labels(check), outcome, this.metrics.code(id));
+      }
+      case SMTP, TLS, TCP -> {
+        yield "zu_%s_status{%s,outcome=\"%s\"} %d\n"
+          .formatted(
+            check.kind().label(),
+            labels(check),
+            outcome,
+            this.metrics.failure(id) ? 1 : 0
+          );
+      }
+    };
+  }
+
+  private String renderTimeout(
+    final ZuMetrics.Check check)
+  {
+    return "zu_%s_timeout{%s} %d\n"
+      .formatted(
+        check.kind().label(),
+        labels(check),
+        this.metrics.timeout(check.id()) ? 1 : 0
+      );
+  }
+
+  /**
+   * Keep the previous rendering of a series if the new rendering is
+   * identical, so that compressed chunks can be reused by identity.
+   */
+
+  private static byte[] retain(
+    final byte[] previous,
+    final byte[] next)
+  {
+    if (Arrays.equals(previous, next)) {
+      return previous;
+    }
+    return next;
+  }
+
+  private byte[] renderDuration(
+    final ZuMetrics.Check check,
+    final ZuHistogram histogram)
+  {
+    final String exemplars;
+    if (this.format == ZuMetricsFormat.OPENMETRICS_TEXT) {
+      exemplars = "check=\"%d\"".formatted(check.id());
+    } else {
+      exemplars = null;
+    }
+
+    return renderHistogram(
+      "zu_%s_duration_seconds".formatted(check.kind().label()),
+      labels(check),
+      histogram,
+      exemplars
+    ).getBytes(UTF_8);
+  }
+
+  /**
+   * Render the probe counters of a check. Failures are broken down by
+   * outcome, and only outcomes that have actually occurred are rendered.
+   */
+
+  private void renderCounters(
+    final ZuMetrics.Check check,
+    final long attempts,
+    final Fragment fragment)
+  {
+    final var kind = check.kind().label();
+    final var labels = labels(check);
+
+    fragment.attempts =
+      "zu_%s_attempts_total{%s} %d\n"
+        .formatted(kind, labels, attempts)
+        .getBytes(UTF_8);
+    fragment.successes = retain(
+      fragment.successes,
+      "zu_%s_successes_total{%s} %d\n"
+        .formatted(kind, labels, this.metrics.counter(check.id(), ZuOutcome.SUCCESS))
+        .getBytes(UTF_8)
+    );
+
+    final var text = new StringBuilder();
+    for (final var outcome : ZuOutcome.values()) {
+      if (outcome == ZuOutcome.SUCCESS) {
+        continue;
+      }
+      final var count = this.metrics.counter(check.id(), outcome);
+      if (count == 0L) {
+        continue;
+      }
+      text.append(
+        "zu_%s_failures_total{%s,outcome=\"%s\"} %d\n"
+          .formatted(kind, labels, outcome.label(), count)
+      );
+    }
+    fragment.failures =
+      retain(fragment.failures, text.toString().getBytes(UTF_8));
+  }
+
+  /**
+   * Render the availability of a check over each window. Windows that
+   * contain no probes are omitted.
+   */
+
+  private byte[] renderAvailability(
+    final ZuMetrics.Check check)
+  {
+    final var text = new StringBuilder();
+    for (int window = 0; window < this.windows.length; ++window) {
+      final var ratio = this.metrics.availability(check, window);
+      if (Double.isNaN(ratio)) {
+        continue;
+      }
+      text.append(
+        "zu_%s_availability_ratio{%s,window=\"%s\"} %s\n"
+          .formatted(check.kind().label(), labels(check), this.windows[window], ratio)
+      );
+    }
+    return text.toString().getBytes(UTF_8);
+  }
+
+  private void renderTLS(
+    final ZuMetrics.Check check,
+    final Fragment fragment)
+  {
+    final var resumption = this.metrics.resumption(check.id());
+    if (resumption == ZuMetrics.RESUMPTION_NONE) {
+      fragment.resumed = EMPTY;
+    } else {
+      fragment.resumed = retain(
+        fragment.resumed,
+        "%s_resumed{%s} %d\n"
+          .formatted(check.kind().tlsFamily(), labels(check), resumption)
+          .getBytes(UTF_8)
+      );
+    }
+
+    final var tls = this.metrics.tls(check.id());
+    if (tls == null) {
+      fragment.tlsInfo = EMPTY;
+      fragment.certExpiry = EMPTY;
+      return;
+    }
+
+    final var kind = check.kind().label();
+    final var labels = labels(check);
+    fragment.tlsInfo = retain(
+      fragment.tlsInfo,
+      "%s_info{%s,protocol=\"%s\",cipher=\"%s\"} 1\n"
+        .formatted(
+          check.kind().tlsFamily(),
+          labels,
+          escape(tls.protocol()),
+          escape(tls.cipherSuite()))
+        .getBytes(UTF_8)
+    );
+    fragment.certExpiry = retain(
+      fragment.certExpiry,
+      (certExpiry(kind, labels, "leaf", tls.leafExpiry())
+       + certExpiry(kind, labels, "chain", tls.chainExpiry()))
+        .getBytes(UTF_8)
+    );
+  }
+
+  private static String certExpiry(
+    final String kind,
+    final String labels,
+    final String certificate,
+    final long expiry)
+  {
+    if (expiry == ZuMetrics.EXPIRY_UNKNOWN) {
+      return "";
+    }
+    return "zu_%s_cert_expiry_seconds{%s,certificate=\"%s\"} %d\n"
+      .formatted(kind, labels, certificate, expiry);
+  }
+
+  private static byte[] renderPhases(
+    final ZuMetrics.Check check)
+  {
+    final var name =
+      "zu_%s_phase_duration_seconds".formatted(check.kind().label());
+    final var labels =
+      labels(check);
+    final var text =
+      new StringBuilder();
+
+    for (final var entry : check.phases().entrySet()) {
+      text.append(
+        renderHistogram(
+          name,
+          "%s,phase=\"%s\"".formatted(labels, entry.getKey()),
+          entry.getValue(),
+          null
+        )
+      );
+    }
+    return text.toString().getBytes(UTF_8);
+  }
+
+  private static String labels(
+    final ZuMetrics.Check check)
+  {
+    final var url = escape(check.uri().toString());
+    if (check.address().isEmpty()) {
+      return "url=\"%s\"".formatted(url);
+    }
+    return "url=\"%s\",address=\"%s\"".formatted(url, check.address());
+  }
+
+  /**
+   * Escape a label value as required by the text exposition format.
+   */
+
+  private static String escape(
+    final String value)
+  {
+    if (value.indexOf('\\') == -1
+        && value.indexOf('"') == -1
+        && value.indexOf('\n') == -1) {
+      return value;
+    }
+
+    final var text = new StringBuilder(value.length() + 8);
+    for (int index = 0; index < value.length(); ++index) {
+      final var c = value.charAt(index);
+      switch (c) {
+        case '\\' -> text.append("\\\\");
+        case '"' -> text.append("\\\"");
+        case '\n' -> text.append("\\n");
+        default -> text.append(c);
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * Render a histogram. If exemplar labels are given, each bucket that has
+   * an exemplar is annotated with it, identifying the probe by its sequence
+   * number.
+   */
+
+  private static String renderHistogram(
+    final String name,
+    final String labels,
+    final ZuHistogram histogram,
+    final String exemplarLabels)
+  {
+    final var bucketCount = histogram.bucketCount();
+    final var cumulative = new long[bucketCount + 1];
+    histogram.cumulativeCounts(cumulative);
+
+    final var bucketLabels = labels.isEmpty() ? "" : labels + ",";
+    final var totalLabels = labels.isEmpty() ? "" : "{" + labels + "}";
+    final var text = new StringBuilder(128 * (bucketCount + 3));
+
+    for (int index = 0; index < bucketCount; ++index) {
+      text.append(
+        "%s_bucket{%sle=\"%s\"} %d"
+          .formatted(
+            name,
+            bucketLabels,
+            histogram.bucketBoundSeconds(index),
+            cumulative[index]
+          )
+      );
+      appendExemplar(text, histogram, index, exemplarLabels);
+    }
+
+    final var count = cumulative[bucketCount];
+    text.append(
+      "%s_bucket{%sle=\"+Inf\"} %d"
+        .formatted(name, bucketLabels, count)
+    );
+    appendExemplar(text, histogram, bucketCount, exemplarLabels);
+    text.append(
+      "%s_sum%s %s\n"
+        .formatted(name, totalLabels, histogram.sumSeconds())
+    );
+    text.append(
+      "%s_count%s %d\n"
+        .formatted(name, totalLabels, count)
+    );
+    return text.toString();
+  }
+
+  private static void appendExemplar(
+    final StringBuilder text,
+    final ZuHistogram histogram,
+    final int index,
+    final String exemplarLabels)
+  {
+    if (exemplarLabels != null) {
+      final var exemplar = histogram.exemplar(index);
+      if (exemplar != null) {
+        text.append(
+          " # {%s,probe=\"%d\"} %s %d.%03d"
+            .formatted(
+              exemplarLabels,
+              exemplar.id(),
+              exemplar.nanos() / 1_000_000_000.0,
+              exemplar.timeMillis() / 1000L,
+              exemplar.timeMillis() % 1000L
+            )
+        );
+      }
+    }
+    text.append('\n');
+  }
+
+  private void writeGauges(
+    final OutputStream output)
+    throws IOException
+  {
+    for (final var gauge : this.metrics.gauges().values()) {
+      final var text = """
+        # HELP %1$s %2$s
+        # TYPE %1$s gauge
+        %1$s %3$d
+        """.formatted(gauge.name(), gauge.help(), gauge.value().getAsLong());
+      output.write(text.getBytes(UTF_8));
+    }
+  }
+
+  /**
+   * Write the internal counters. As with the probe counters, the family
+   * is named without the {@code _total} suffix in OpenMetrics.
+   */
+
+  private void writeCounters(
+    final OutputStream output)
+    throws IOException
+  {
+    final var openMetrics =
+      this.format == ZuMetricsFormat.OPENMETRICS_TEXT;
+
+    for (final var counter : this.metrics.counters().values()) {
+      final var name = counter.name();
+      final var family = openMetrics ? name : name + "_total";
+      final var text = """
+        # HELP %1$s %2$s
+        # TYPE %1$s counter
+        %3$s_total %4$d
+        """.formatted(family, counter.help(), name, counter.value().getAsLong());
+      output.write(text.getBytes(UTF_8));
+    }
+  }
+
+  private void writeHistograms(
+    final OutputStream output)
+    throws IOException
+  {
+    for (final var histogram : this.metrics.histograms().values()) {
+      final var text = """
+        # HELP %1$s %2$s
+        # TYPE %1$s histogram
+        """.formatted(histogram.name(), histogram.help());
+      output.write(text.getBytes(UTF_8));
+      output.write(
+        renderHistogram(histogram.name(), "", histogram.histogram(), null)
+          .getBytes(UTF_8)
+      );
+    }
+  }
+
+  /**
+   * A metric family: its headers by kind of check, the series of each
+   * fragment that belong to it, and its compressed chunks.
+   */
+
+  private static final class Family
+  {
+    private final Map<ZuCheckKind, byte[]> headers;
+    private final Function<Fragment, byte[]> series;
+    private final EnumMap<ZuCheckKind, byte[]> headersCompressed;
+    private final EnumMap<ZuCheckKind, Chunk[]> chunks;
+
+    Family(
+      final Map<ZuCheckKind, byte[]> inHeaders,
+      final Function<Fragment, byte[]> inSeries)
+    {
+      this.headers = inHeaders;
+      this.series = inSeries;
+      this.headersCompressed = new EnumMap<>(ZuCheckKind.class);
+      this.chunks = new EnumMap<>(ZuCheckKind.class);
+    }
+
+    byte[] headerCompressed(
+      final ZuCheckKind kind,
+      final ZuMetricsExposition exposition)
+    {
+      var header = this.headersCompressed.get(kind);
+      if (header == null) {
+        header = exposition.compress(
+          new byte[][]{this.headers.get(kind)},
+          1
+        );
+        this.headersCompressed.put(kind, header);
+      }
+      return header;
+    }
+
+    Chunk[] chunks(
+      final ZuCheckKind kind,
+      final int blocks)
+    {
+      var existing = this.chunks.get(kind);
+      if (existing == null || existing.length < blocks) {
+        existing = existing == null
+          ? new Chunk[blocks]
+          : Arrays.copyOf(existing, blocks);
+        this.chunks.put(kind, existing);
+      }
+      return existing;
+    }
+  }
+
+  /**
+   * The compressed form of a run of fragments, along with the fragments
+   * from which it was compressed.
+   */
+
+  private static final class Chunk
+  {
+    private final byte[][] parts;
+    private final byte[] compressed;
+
+    Chunk(
+      final byte[][] inParts,
+      final byte[] inCompressed)
+    {
+      this.parts = inParts;
+      this.compressed = inCompressed;
+    }
+
+    boolean matches(
+      final byte[][] others,
+      final int count)
+    {
+      if (this.parts.length != count) {
+        return false;
+      }
+      for (int index = 0; index < count; ++index) {
+        if (this.parts[index] != others[index]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final class Fragment
+  {
+    private final ZuMetrics.Check owner;
+    private long version;
+    private byte[] status;
+    private byte[] timeout;
+    private long durationCount;
+    private byte[] durations;
+    private long phaseCount;
+    private byte[] phases;
+    private byte[] tlsInfo;
+    private byte[] certExpiry;
+    private byte[] resumed;
+    private long attemptCount;
+    private byte[] attempts;
+    private byte[] successes;
+    private byte[] failures;
+    private long availabilityAttempts;
+    private long availabilityEpoch;
+    private byte[] availability;
+
+    Fragment(
+      final ZuMetrics.Check inOwner)
+    {
+      this.owner = inOwner;
+      this.version = -1L;
+      this.durationCount = -1L;
+      this.phaseCount = -1L;
+      this.phases = EMPTY;
+      this.tlsInfo = EMPTY;
+      this.certExpiry = EMPTY;
+      this.resumed = EMPTY;
+      this.attemptCount = -1L;
+      this.availabilityAttempts = -1L;
+      this.availability = EMPTY;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.Objects;
+
+/**
+ * The formats in which metrics can be exposed.
+ */
+
+public enum ZuMetricsFormat
+{
+  /**
+   * The classic Prometheus text format.
+   */
+
+  PROMETHEUS_TEXT("text/plain; version=0.0.4; charset=utf-8"),
+
+  /**
+   * The OpenMetrics text format. Duration histogram buckets carry exemplars
+   * that identify the most recent probe to land in each bucket.
+   */
+
+  OPENMETRICS_TEXT("application/openmetrics-text; version=1.0.0; charset=utf-8");
+
+  private final String contentType;
+
+  ZuMetricsFormat(
+    final String inContentType)
+  {
+    this.contentType =
+      Objects.requireNonNull(inContentType, "contentType");
+  }
+
+  /**
+   * @return The content type of the format
+   */
+
+  public String contentType()
+  {
+    return this.contentType;
+  }
+}
@@ -17,24 +17,49 @@
 
 package com.io7m.zugorum.server.internal;
 
+import io.helidon.http.HeaderNames;
+import io.helidon.http.Status;
 import io.helidon.webserver.http.Handler;
 import io.helidon.webserver.http.ServerRequest;
 import io.helidon.webserver.http.ServerResponse;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.BufferedOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
 import java.util.Objects;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 /**
- * The metrics handler.
+ * <p>The metrics handler.</p>
+ *
+ * <p>The exposition format is negotiated with the {@code Accept} header:
+ * OpenMetrics text is served to clients that prefer it, and the classic
+ * Prometheus text format otherwise. The body is compressed with gzip for
+ * clients that accept it.</p>
+ *
+ * <p>The exposition may be restricted with the query parameters described
+ * by {@link ZuCheckSelector#parse}, such as {@code ?kind=http} or
+ * {@code ?shard=3&of=8}, so that a large set of checks can be scraped by
+ * several jobs. Each distinct selection keeps its own exposition, and so
+ * its own cached fragments, up to a fixed number of selections.</p>
  */
 
 public final class ZuMetricsHandler implements Handler
 {
+  private static final String OPENMETRICS_TYPE =
+    "application/openmetrics-text";
+
+  /**
+   * The maximum number of restricted expositions that are retained.
+   */
+
+  private static final int SELECTIONS_MAX = 64;
+
   private final ZuMetrics metrics;
+  private final ZuMetricsExposition exposition;
+  private final ZuMetricsExposition expositionOpenMetrics;
+  private final LinkedHashMap<Selection, ZuMetricsExposition> selections;
 
   /**
    * The metrics handler.
@@ -47,128 +72,171 @@ public final class ZuMetricsHandler implements Handler
   {
     this.metrics =
       Objects.requireNonNull(inMetrics, "metrics");
+    this.exposition =
+      new ZuMetricsExposition(inMetrics, ZuMetricsFormat.PROMETHEUS_TEXT);
+    this.expositionOpenMetrics =
+      new ZuMetricsExposition(inMetrics, ZuMetricsFormat.OPENMETRICS_TEXT);
+    this.selections =
+      new LinkedHashMap<>(16, 0.75f, true)
+      {
+        @Override
+        protected boolean removeEldestEntry(
+          final Map.Entry<Selection, ZuMetricsExposition> eldest)
+        {
+          return this.size() > SELECTIONS_MAX;
+        }
+      };
   }
 
-  private static final String HTTP_METRIC_TEXT = """
-    # HELP zu_http_status The most recent result of an HTTP/HTTPS status check
-    # TYPE zu_http_status gauge
-    """.trim();
+  /**
+   * Choose an exposition format given the values of the {@code Accept}
+   * headers of a request. OpenMetrics is chosen if it is accepted with a
+   * quality at least as high as that of any other acceptable type.
+   *
+   * @param accept The header values
+   *
+   * @return The format
+   */
 
-  private static final String SMTP_METRIC_TEXT = """
-    # HELP zu_smtp_status The most recent result of an SMTP status check
-    # TYPE zu_smtp_status gauge
-    """.trim();
+  public static ZuMetricsFormat negotiateFormat(
+    final List<String> accept)
+  {
+    var qualityOpenMetrics = 0.0;
+    var qualityOther = 0.0;
+
+    for (final var header : accept) {
+      for (final var range : header.split(",")) {
+        final var parameters = range.split(";");
+        final var type = parameters[0].trim().toLowerCase(Locale.ROOT);
+        final var quality = quality(parameters);
+        if (type.equals(OPENMETRICS_TYPE)) {
+          qualityOpenMetrics = Math.max(qualityOpenMetrics, quality);
+        } else if (!type.isEmpty()) {
+          qualityOther = Math.max(qualityOther, quality);
+        }
+      }
+    }
 
+    if (qualityOpenMetrics > 0.0 && qualityOpenMetrics >= qualityOther) {
+      return ZuMetricsFormat.OPENMETRICS_TEXT;
+    }
+    return ZuMetricsFormat.PROMETHEUS_TEXT;
+  }
 
-  private static final String TLS_METRIC_TEXT = """
-    # HELP zu_tls_status The most recent result of a TLS status check
-    # TYPE zu_tls_status gauge
-    """.trim();
+  /**
+   * Determine whether a request accepts gzip content coding. A coding that
+   * is named explicitly overrides {@code *} (RFC 9110, section 12.5.3), so
+   * {@code *} only applies when neither gzip nor x-gzip is named.
+   *
+   * @param acceptEncoding The values of the {@code Accept-Encoding} headers
+   *                       of a request
+   *
+   * @return {@code true} if the request accepts gzip content coding
+   */
 
-  @Override
-  public void handle(
-    final ServerRequest serverRequest,
-    final ServerResponse serverResponse)
-    throws Exception
+  public static boolean acceptsGzip(
+    final List<String> acceptEncoding)
   {
-    serverResponse.header("Content-Type", "text/plain");
-
-    try (final var output = serverResponse.outputStream()) {
-      try (final var writer =
-             new BufferedWriter(new OutputStreamWriter(output, UTF_8))) {
-        this.writeMetrics(writer);
+    var qualityGzip = -1.0;
+    var qualityAny = -1.0;
+
+    for (final var header : acceptEncoding) {
+      for (final var coding : header.split(",")) {
+        final var parameters = coding.split(";");
+        final var name = parameters[0].trim().toLowerCase(Locale.ROOT);
+        if (name.equals("gzip") || name.equals("x-gzip")) {
+          qualityGzip = Math.max(qualityGzip, quality(parameters));
+        } else if (name.equals("*")) {
+          qualityAny = Math.max(qualityAny, quality(parameters));
+        }
       }
     }
+
+    if (qualityGzip >= 0.0) {
+      return qualityGzip > 0.0;
+    }
+    return qualityAny > 0.0;
   }
 
-  private void writeMetrics(
-    final BufferedWriter writer)
-    throws IOException
+  private static double quality(
+    final String[] parameters)
   {
-    final var metricMap = this.metrics.metrics();
-    for (final var metric : metricMap.entrySet()) {
-      switch (metric.getValue()) {
-        case final ZuMetrics.HTTPMetricStatus httpMetricStatus -> {
-          writeMetricHTTP(writer, httpMetricStatus);
-        }
-        case final ZuMetrics.SMTPMetricStatus smtpMetricStatus -> {
-          writeMetricSMTP(writer, smtpMetricStatus);
-        }
-        case final ZuMetrics.TLSMetricStatus tlsMetricStatus -> {
-          writeMetricTLS(writer, tlsMetricStatus);
+    for (int index = 1; index < parameters.length; ++index) {
+      final var parameter = parameters[index].trim();
+      if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2));
+        } catch (final NumberFormatException e) {
+          return 0.0;
         }
       }
     }
+    return 1.0;
   }
 
-  private static void writeMetricTLS(
-    final BufferedWriter writer,
-    final ZuMetrics.TLSMetricStatus tlsMetricStatus)
-    throws IOException
+  private ZuMetricsExposition exposition(
+    final ZuMetricsFormat format,
+    final ZuCheckSelector selector)
   {
-    writer.write(TLS_METRIC_TEXT);
-    writer.write("\n");
-
-    final var metricText =
-      "zu_tls_status{url=\"%s\",message=\"%s\"} %d"
-        .formatted(
-          tlsMetricStatus.uri(),
-          tlsMetricStatus.message(),
-          tlsMetricStatus.failure() ? 1 : 0
-        );
-
-    writer.append(metricText);
-    writer.append("\n");
+    if (selector.isAll()) {
+      return switch (format) {
+        case PROMETHEUS_TEXT -> this.exposition;
+        case OPENMETRICS_TEXT -> this.expositionOpenMetrics;
+      };
+    }
+
+    synchronized (this.selections) {
+      return this.selections.computeIfAbsent(
+        new Selection(format, selector),
+        s -> new ZuMetricsExposition(this.metrics, format, selector)
+      );
+    }
   }
 
-  private static void writeMetricSMTP(
-    final BufferedWriter writer,
-    final ZuMetrics.SMTPMetricStatus smtpMetricStatus)
-    throws IOException
+  @Override
+  public void handle(
+    final ServerRequest serverRequest,
+    final ServerResponse serverResponse)
+    throws Exception
   {
-    writer.write(SMTP_METRIC_TEXT);
-    writer.write("\n");
-
-    final var metricText =
-      "zu_smtp_status{url=\"%s\",message=\"%s\"} %d"
-        .formatted(
-          smtpMetricStatus.uri(),
-          smtpMetricStatus.message(),
-          smtpMetricStatus.failure() ? 1 : 0
-        );
-
-    writer.append(metricText);
-    writer.append("\n");
+    final ZuCheckSelector selector;
+    try {
+      selector = ZuCheckSelector.parse(serverRequest.query());
+    } catch (final IllegalArgumentException e) {
+      serverResponse.status(Status.BAD_REQUEST_400);
+      serverResponse.send(e.getMessage());
+      return;
+    }
+
+    final var headers =
+      serverRequest.headers();
+    final var format =
+      negotiateFormat(headers.all(HeaderNames.ACCEPT, List::of));
+    final var gzip =
+      acceptsGzip(headers.all(HeaderNames.ACCEPT_ENCODING, List::of));
+    final var target =
+      this.exposition(format, selector);
+
+    serverResponse.header("Content-Type", format.contentType());
+    serverResponse.header("Vary", "Accept, Accept-Encoding");
+    if (gzip) {
+      serverResponse.header("Content-Encoding", "gzip");
+    }
+
+    try (final var output =
+           new BufferedOutputStream(serverResponse.outputStream(), 65536)) {
+      if (gzip) {
+        target.writeGzip(output);
+      } else {
+        target.write(output);
+      }
+    }
   }
 
-  private static void writeMetricHTTP(
-    final BufferedWriter writer,
-    final ZuMetrics.HTTPMetricStatus httpMetricStatus)
-    throws IOException
+  private record Selection(
+    ZuMetricsFormat format,
+    ZuCheckSelector selector)
   {
-    writer.write(HTTP_METRIC_TEXT);
-    writer.write("\n");
-
-    final var messageOpt =
-      httpMetricStatus.failureMessage();
-
-    final String metricText;
-    metricText = messageOpt.map(message -> {
-      return "zu_http_status{url=\"%s\",message=\"%s\"} %d"
-        .formatted(
-          httpMetricStatus.uri(),
-          message,
-          httpMetricStatus.code()
-        );
-    }).orElseGet(() -> {
-      return "zu_http_status{url=\"%s\"} %d"
-        .formatted(
-          httpMetricStatus.uri(),
-          httpMetricStatus.code()
-        );
-    });
-
-    writer.append(metricText);
-    writer.append("\n");
+
   }
 }
@@ -0,0 +1,328 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>The samples of a metrics store.</p>
+ *
+ * <p>Every series of the classic text exposition of the store is visited
+ * with the same name, labels, and value, read directly from the store
+ * rather than from rendered text. Label values are not escaped. Series are
+ * visited in the order of the exposition, except that the series of all
+ * families are visited together for each check.</p>
+ */
+
+public final class ZuMetricsSamples
+{
+  private final ZuMetrics metrics;
+  private final String[] windows;
+
+  /**
+   * The samples of a metrics store.
+   *
+   * @param inMetrics The metrics store
+   */
+
+  public ZuMetricsSamples(
+    final ZuMetrics inMetrics)
+  {
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.windows =
+      this.metrics.availabilityWindows()
+        .stream()
+        .map(ZuMetricsExposition::windowLabel)
+        .toArray(String[]::new);
+  }
+
+  /**
+   * Visit every sample of the metrics store.
+   *
+   * @param consumer The consumer of samples
+   */
+
+  public void forEach(
+    final ConsumerType consumer)
+  {
+    Objects.requireNonNull(consumer, "consumer");
+
+    final var limit = this.metrics.idLimit();
+    for (int id = 0; id < limit; ++id) {
+      final var check = this.metrics.check(id);
+      if (check != null) {
+        this.check(check, consumer);
+      }
+    }
+
+    for (final var gauge : this.metrics.gauges().values()) {
+      consumer.sample(gauge.name(), List.of(), gauge.value().getAsLong());
+    }
+    for (final var counter : this.metrics.counters().values()) {
+      consumer.sample(
+        counter.name() + "_total",
+        List.of(),
+        counter.value().getAsLong()
+      );
+    }
+    for (final var histogram : this.metrics.histograms().values()) {
+      histogram(
+        histogram.name(),
+        List.of(),
+        histogram.histogram(),
+        consumer
+      );
+    }
+  }
+
+  private void check(
+    final ZuMetrics.Check check,
+    final ConsumerType consumer)
+  {
+    final var prefix = "zu_" + check.kind().label();
+    final var labels = labels(check);
+
+    this.status(check, prefix, labels, consumer);
+    consumer.sample(
+      prefix + "_timeout",
+      labels,
+      this.metrics.timeout(check.id()) ? 1.0 : 0.0
+    );
+    histogram(
+      prefix + "_duration_seconds",
+      labels,
+      check.durations(),
+      consumer
+    );
+    for (final var entry : check.phases().entrySet()) {
+      histogram(
+        prefix + "_phase_duration_seconds",
+        with(labels, "phase", entry.getKey()),
+        entry.getValue(),
+        consumer
+      );
+    }
+    this.tls(check, prefix, labels, consumer);
+    this.counters(check, prefix, labels, consumer);
+    this.availability(check, prefix, labels, consumer);
+  }
+
+  private void status(
+    final ZuMetrics.Check check,
+    final String prefix,
+    final List<Label> labels,
+    final ConsumerType consumer)
+  {
+    final var id = check.id();
+    final var value = switch (check.kind()) {
+      case HTTP -> this.metrics.code(id);
+      case SMTP, TLS, TCP -> this.metrics.failure(id) ? 1 : 0;
+    };
+
+    consumer.sample(
+      prefix + "_status",
+      with(labels, "outcome", this.metrics.outcome(id).label()),
+      value
+    );
+  }
+
+  private void tls(
+    final ZuMetrics.Check check,
+    final String prefix,
+    final List<Label> labels,
+    final ConsumerType consumer)
+  {
+    final var tls = this.metrics.tls(check.id());
+    if (tls != null) {
+      final var info = new ArrayList<>(labels);
+      info.add(new Label("protocol", tls.protocol()));
+      info.add(new Label("cipher", tls.cipherSuite()));
+      consumer.sample(check.kind().tlsFamily() + "_info", info, 1.0);
+
+      final var name = prefix + "_cert_expiry_seconds";
+      if (tls.leafExpiry() != ZuMetrics.EXPIRY_UNKNOWN) {
+        consumer.sample(
+          name,
+          with(labels, "certificate", "leaf"),
+          tls.leafExpiry()
+        );
+      }
+      if (tls.chainExpiry() != ZuMetrics.EXPIRY_UNKNOWN) {
+        consumer.sample(
+          name,
+          with(labels, "certificate", "chain"),
+          tls.chainExpiry()
+        );
+      }
+    }
+
+    final var resumption = this.metrics.resumption(check.id());
+    if (resumption != ZuMetrics.RESUMPTION_NONE) {
+      consumer.sample(
+        check.kind().tlsFamily() + "_resumed",
+        labels,
+        resumption
+      );
+    }
+  }
+
+  private void counters(
+    final ZuMetrics.Check check,
+    final String prefix,
+    final List<Label> labels,
+    final ConsumerType consumer)
+  {
+    final var id = check.id();
+    consumer.sample(
+      prefix + "_attempts_total",
+      labels,
+      this.metrics.attempts(id)
+    );
+    consumer.sample(
+      prefix + "_successes_total",
+      labels,
+      this.metrics.counter(id, ZuOutcome.SUCCESS)
+    );
+
+    for (final var outcome : ZuOutcome.values()) {
+      if (outcome == ZuOutcome.SUCCESS) {
+        continue;
+      }
+      final var count = this.metrics.counter(id, outcome);
+      if (count != 0L) {
+        consumer.sample(
+          prefix + "_failures_total",
+          with(labels, "outcome", outcome.label()),
+          count
+        );
+      }
+    }
+  }
+
+  private void availability(
+    final ZuMetrics.Check check,
+    final String prefix,
+    final List<Label> labels,
+    final ConsumerType consumer)
+  {
+    for (int window = 0; window < this.windows.length; ++window) {
+      final var ratio = this.metrics.availability(check, window);
+      if (!Double.isNaN(ratio)) {
+        consumer.sample(
+          prefix + "_availability_ratio",
+          with(labels, "window", this.windows[window]),
+          ratio
+        );
+      }
+    }
+  }
+
+  private static void histogram(
+    final String name,
+    final List<Label> labels,
+    final ZuHistogram histogram,
+    final ConsumerType consumer)
+  {
+    final var bucketCount = histogram.bucketCount();
+    final var cumulative = new long[bucketCount + 1];
+    histogram.cumulativeCounts(cumulative);
+
+    final var bucket = name + "_bucket";
+    for (int index = 0; index < bucketCount; ++index) {
+      consumer.sample(
+        bucket,
+        with(labels, "le", Double.toString(histogram.bucketBoundSeconds(index))),
+        cumulative[index]
+      );
+    }
+
+    final var count = cumulative[bucketCount];
+    consumer.sample(bucket, with(labels, "le", "+Inf"), count);
+    consumer.sample(name + "_sum", labels, histogram.sumSeconds());
+    consumer.sample(name + "_count", labels, count);
+  }
+
+  private static List<Label> labels(
+    final ZuMetrics.Check check)
+  {
+    final var url = new Label("url", check.uri().toString());
+    if (check.address().isEmpty()) {
+      return List.of(url);
+    }
+    return List.of(url, new Label("address", check.address()));
+  }
+
+  private static List<Label> with(
+    final List<Label> labels,
+    final String name,
+    final String value)
+  {
+    final var result = new ArrayList<Label>(labels.size() + 1);
+    result.addAll(labels);
+    result.add(new Label(name, value));
+    return result;
+  }
+
+  /**
+   * A consumer of samples.
+   */
+
+  public interface ConsumerType
+  {
+    /**
+     * Consume a sample.
+     *
+     * @param name   The metric name of the series
+     * @param labels The labels of the series, in exposition order
+     * @param value  The value
+     */
+
+    void sample(
+      String name,
+      List<Label> labels,
+      double value);
+  }
+
+  /**
+   * A label of a series.
+   *
+   * @param name  The label name
+   * @param value The unescaped label value
+   */
+
+  public record Label(
+    String name,
+    String value)
+  {
+    /**
+     * A label of a series.
+     *
+     * @param name  The label name
+     * @param value The unescaped label value
+     */
+
+    public Label
+    {
+      Objects.requireNonNull(name, "name");
+      Objects.requireNonNull(value, "value");
+    }
+  }
+}
@@ -72,6 +72,18 @@ public final class ZuMetricsServer
       "/",
       new ZuMetricsHandler(metrics)
     );
+    routingBuilder.get(
+      "/diagnostics",
+      new ZuDiagnosticsHandler(metrics)
+    );
+    routingBuilder.get(
+      "/checks/{id}/history",
+      new ZuHistoryHandler(metrics)
+    );
+    routingBuilder.get(
+      "/events",
+      new ZuEventsHandler(metrics)
+    );
 
     final var webServerBuilder =
       WebServerConfig.builder();
@@ -0,0 +1,272 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.ProtocolException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateException;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * <p>The outcome classes of probes.</p>
+ *
+ * <p>The set of outcomes is fixed, so that the number of series that can be
+ * produced by a check is bounded regardless of what errors a target can
+ * provoke. The text of the most recent error is available through the
+ * diagnostics endpoint instead.</p>
+ */
+
+public enum ZuOutcome
+{
+  /**
+   * The probe succeeded.
+   */
+
+  SUCCESS("success"),
+
+  /**
+   * The host name could not be resolved.
+   */
+
+  DNS("dns"),
+
+  /**
+   * The connection was refused.
+   */
+
+  CONNECT_REFUSED("connect_refused"),
+
+  /**
+   * The connection could not be established for another reason, such as
+   * there being no route to the host or the network being unreachable.
+   */
+
+  CONNECT_FAILED("connect_failed"),
+
+  /**
+   * The connection could not be established in time.
+   */
+
+  CONNECT_TIMEOUT("connect_timeout"),
+
+  /**
+   * The TLS handshake failed or timed out.
+   */
+
+  TLS_HANDSHAKE("tls_handshake"),
+
+  /**
+   * The certificate presented by the target was rejected.
+   */
+
+  TLS_CERT("tls_cert"),
+
+  /**
+   * The target did not follow the protocol, or refused the request at the
+   * protocol level.
+   */
+
+  PROTOCOL("protocol"),
+
+  /**
+   * The target returned an HTTP 4xx status.
+   */
+
+  HTTP_4XX("http_4xx"),
+
+  /**
+   * The target returned an HTTP 5xx status.
+   */
+
+  HTTP_5XX("http_5xx"),
+
+  /**
+   * The probe timed out after a connection was established.
+   */
+
+  TIMEOUT("timeout"),
+
+  /**
+   * The probe failed for any other reason.
+   */
+
+  ERROR("error");
+
+  private static final ZuOutcome[] VALUES =
+    values();
+
+  private final String label;
+
+  ZuOutcome(
+    final String inLabel)
+  {
+    this.label =
+      Objects.requireNonNull(inLabel, "label");
+  }
+
+  /**
+   * @return The outcome as it appears in metric labels
+   */
+
+  public String label()
+  {
+    return this.label;
+  }
+
+  /**
+   * @param ordinal The ordinal
+   *
+   * @return The outcome with the given ordinal
+   */
+
+  public static ZuOutcome ofOrdinal(
+    final int ordinal)
+  {
+    return VALUES[ordinal];
+  }
+
+  /**
+   * @param statusCode An HTTP status code
+   *
+   * @return The outcome that the status code represents
+   */
+
+  public static ZuOutcome ofStatus(
+    final int statusCode)
+  {
+    if (statusCode >= 500) {
+      return HTTP_5XX;
+    }
+    if (statusCode >= 400) {
+      return HTTP_4XX;
+    }
+    return SUCCESS;
+  }
+
+  /**
+   * @param phase The phase during which a probe timed out
+   *
+   * @return The outcome that the timeout represents
+   */
+
+  public static ZuOutcome ofTimeout(
+    final ZuProbePhase phase)
+  {
+    return switch (phase) {
+      case DNS -> DNS;
+      case CONNECT -> CONNECT_TIMEOUT;
+      case TLS_HANDSHAKE -> TLS_HANDSHAKE;
+      case EXCHANGE -> TIMEOUT;
+    };
+  }
+
+  /**
+   * Classify an exception raised by a probe. The exception and its causes
+   * are examined in order, and the first that can be classified determines
+   * the outcome.
+   *
+   * @param exception The exception
+   *
+   * @return The outcome that the exception represents
+   */
+
+  public static ZuOutcome ofException(
+    final Throwable exception)
+  {
+    var current = exception;
+    for (int depth = 0; current != null && depth < 8; ++depth) {
+      final var outcome = ofExceptionOnly(current);
+      if (outcome != ERROR) {
+        return outcome;
+      }
+      current = current.getCause();
+    }
+    return ERROR;
+  }
+
+  private static ZuOutcome ofExceptionOnly(
+    final Throwable exception)
+  {
+    return switch (exception) {
+      case final ZuTimeoutException e -> ofTimeout(e.phase());
+      case final UnknownHostException e -> DNS;
+      case final UnresolvedAddressException e -> DNS;
+      case final HttpConnectTimeoutException e -> CONNECT_TIMEOUT;
+      case final ConnectException e -> ofConnectException(e);
+      case final NoRouteToHostException e -> CONNECT_FAILED;
+      case final SSLHandshakeException e -> isCertificate(e) ? TLS_CERT : TLS_HANDSHAKE;
+      case final SSLException e -> TLS_HANDSHAKE;
+      case final CertificateException e -> TLS_CERT;
+      case final CertPathValidatorException e -> TLS_CERT;
+      case final ProtocolException e -> PROTOCOL;
+      default -> ERROR;
+    };
+  }
+
+  /**
+   * The JDK raises {@link ConnectException} for every connection error that
+   * has no more specific type, including connections refused by the target
+   * and connections timed out by the kernel, and distinguishes them only by
+   * message. A message that says neither defers to the cause, if any.
+   */
+
+  private static ZuOutcome ofConnectException(
+    final ConnectException exception)
+  {
+    final var message =
+      Objects.requireNonNullElse(exception.getMessage(), "")
+        .toLowerCase(Locale.ROOT);
+
+    if (message.contains("refused")) {
+      return CONNECT_REFUSED;
+    }
+    if (message.contains("timed out")) {
+      return CONNECT_TIMEOUT;
+    }
+
+    final var cause = exception.getCause();
+    if (cause != null) {
+      final var outcome = ofException(cause);
+      if (outcome != ERROR) {
+        return outcome;
+      }
+    }
+    return CONNECT_FAILED;
+  }
+
+  private static boolean isCertificate(
+    final Throwable exception)
+  {
+    var current = exception.getCause();
+    for (int depth = 0; current != null && depth < 8; ++depth) {
+      if (current instanceof CertificateException
+          || current instanceof CertPathValidatorException) {
+        return true;
+      }
+      current = current.getCause();
+    }
+    return false;
+  }
+}
@@ -17,9 +17,8 @@
 
 package com.io7m.zugorum.server.internal;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Functions to generate pause durations.
@@ -27,23 +26,15 @@ import java.time.Duration;
 
 public final class ZuPauses
 {
-  private static final SecureRandom RNG;
-
-  static {
-    try {
-      RNG = SecureRandom.getInstanceStrong();
-    } catch (final NoSuchAlgorithmException e) {
-      throw new IllegalStateException(e);
-    }
-  }
-
   private ZuPauses()
   {
 
   }
 
   /**
-   * Generate a random pause duration in the given range.
+   * Generate a random pause duration in the given range. Pauses are drawn
+   * from the calling thread's random number generator; the generator never
+   * blocks and is not shared between threads.
    *
    * @param minimum The minimum duration
    * @param maximum The maximum duration
@@ -62,6 +53,8 @@ public final class ZuPauses
       maxMillis = minMillis;
     }
 
-    return Duration.ofMillis(RNG.nextLong(minMillis, maxMillis));
+    return Duration.ofMillis(
+      ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1L)
+    );
   }
 }
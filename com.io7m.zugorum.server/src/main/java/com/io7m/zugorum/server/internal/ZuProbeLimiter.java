@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A global limit on the number of probes in flight.</p>
+ *
+ * <p>Probes that are due are submitted to the limiter. A probe is dispatched
+ * to the executor as soon as it holds a permit, and releases the permit when
+ * it completes. Probes that cannot obtain a permit wait in a single FIFO
+ * queue; no thread is held on behalf of a queued probe, and probes never
+ * overtake one another, so a queued probe cannot be starved.</p>
+ */
+
+public final class ZuProbeLimiter
+{
+  private final Executor executor;
+  private final ConcurrentLinkedQueue<Entry> queue;
+  private final AtomicInteger queued;
+  private final AtomicInteger inFlight;
+  private final ZuHistogram queueWait;
+  private volatile int limit;
+
+  private ZuProbeLimiter(
+    final Executor inExecutor,
+    final ZuHistogram inQueueWait,
+    final int inLimit)
+  {
+    this.executor =
+      Objects.requireNonNull(inExecutor, "executor");
+    this.queueWait =
+      Objects.requireNonNull(inQueueWait, "queueWait");
+    this.queue =
+      new ConcurrentLinkedQueue<>();
+    this.queued =
+      new AtomicInteger(0);
+    this.inFlight =
+      new AtomicInteger(0);
+    this.limit =
+      checkLimit(inLimit);
+  }
+
+  /**
+   * Create a limiter.
+   *
+   * @param executor The executor onto which probes are dispatched
+   * @param metrics  The metrics store
+   * @param limit    The maximum number of probes in flight
+   *
+   * @return A limiter
+   */
+
+  public static ZuProbeLimiter create(
+    final Executor executor,
+    final ZuMetrics metrics,
+    final int limit)
+  {
+    final var limiter =
+      new ZuProbeLimiter(
+        executor,
+        metrics.registerHistogram(
+          "zu_probe_queue_wait_seconds",
+          "The time probes spent waiting for a probe slot"
+        ),
+        limit
+      );
+
+    metrics.registerGauge(
+      "zu_probes_in_flight",
+      "The number of probes in flight",
+      limiter::inFlight
+    );
+    metrics.registerGauge(
+      "zu_probe_queue_depth",
+      "The number of due probes waiting for a probe slot",
+      limiter::queueDepth
+    );
+    metrics.registerGauge(
+      "zu_probe_concurrency_limit",
+      "The maximum number of probes in flight",
+      limiter::limit
+    );
+    return limiter;
+  }
+
+  private static int checkLimit(
+    final int limit)
+  {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Limit must be positive.");
+    }
+    return limit;
+  }
+
+  /**
+   * @return The maximum number of probes in flight
+   */
+
+  public int limit()
+  {
+    return this.limit;
+  }
+
+  /**
+   * Change the maximum number of probes in flight. Lowering the limit does
+   * not affect probes already in flight.
+   *
+   * @param newLimit The new limit
+   */
+
+  public void setLimit(
+    final int newLimit)
+  {
+    this.limit = checkLimit(newLimit);
+    this.drain();
+  }
+
+  /**
+   * @return The number of probes in flight
+   */
+
+  public int inFlight()
+  {
+    return this.inFlight.get();
+  }
+
+  /**
+   * @return The number of probes waiting for a permit
+   */
+
+  public int queueDepth()
+  {
+    return this.queued.get();
+  }
+
+  /**
+   * Submit a probe. The probe is run on the executor once it holds a permit,
+   * and must call {@link #release()} exactly once when it completes.
+   *
+   * @param probe The probe
+   */
+
+  public void submit(
+    final Runnable probe)
+  {
+    Objects.requireNonNull(probe, "probe");
+
+    /*
+     * Every probe passes through the queue, even when a permit is free, so
+     * that a newly due probe can never barge ahead of a waiting one.
+     */
+
+    this.queued.incrementAndGet();
+    this.queue.add(new Entry(probe, System.nanoTime()));
+    this.drain();
+  }
+
+  /**
+   * Take an additional permit on behalf of a probe that already holds one,
+   * if a permit is free and no probe is waiting for one. A permit taken this
+   * way must be returned with {@link #release()}.
+   *
+   * @return {@code true} if a permit was taken
+   */
+
+  public boolean tryAcquireAdditional()
+  {
+    return this.queue.isEmpty() && this.tryAcquire();
+  }
+
+  /**
+   * Release the permit held by a completed probe.
+   */
+
+  public void release()
+  {
+    this.inFlight.decrementAndGet();
+    this.drain();
+  }
+
+  private void drain()
+  {
+    while (!this.queue.isEmpty() && this.tryAcquire()) {
+      final var entry = this.queue.poll();
+      if (entry == null) {
+        this.inFlight.decrementAndGet();
+        continue;
+      }
+
+      this.queued.decrementAndGet();
+      this.queueWait.record(System.nanoTime() - entry.queuedNanos);
+      try {
+        this.executor.execute(entry.probe);
+      } catch (final RuntimeException e) {
+        this.inFlight.decrementAndGet();
+        throw e;
+      }
+    }
+  }
+
+  private boolean tryAcquire()
+  {
+    while (true) {
+      final var current = this.inFlight.get();
+      if (current >= this.limit) {
+        return false;
+      }
+      if (this.inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private record Entry(
+    Runnable probe,
+    long queuedNanos)
+  {
+
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.Objects;
+
+/**
+ * The phases of a probe.
+ */
+
+public enum ZuProbePhase
+{
+  /**
+   * Resolving the target host name.
+   */
+
+  DNS("dns"),
+
+  /**
+   * Establishing a connection to the target.
+   */
+
+  CONNECT("connect"),
+
+  /**
+   * Performing a TLS handshake.
+   */
+
+  TLS_HANDSHAKE("tls_handshake"),
+
+  /**
+   * Exchanging protocol messages with the target.
+   */
+
+  EXCHANGE("exchange");
+
+  private final String label;
+  private final String timeoutMessage;
+
+  ZuProbePhase(
+    final String inLabel)
+  {
+    this.label =
+      Objects.requireNonNull(inLabel, "label");
+    this.timeoutMessage =
+      "Timed out during phase %s".formatted(inLabel);
+  }
+
+  /**
+   * @return The phase name as used in metric labels
+   */
+
+  public String label()
+  {
+    return this.label;
+  }
+
+  /**
+   * @return A message describing a timeout during this phase
+   */
+
+  public String timeoutMessage()
+  {
+    return this.timeoutMessage;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>An encoder of Prometheus remote-write requests.</p>
+ *
+ * <p>Each sample given to the encoder becomes a time series with a single
+ * sample at the given time, encoded as part of a
+ * {@code prometheus.WriteRequest} protobuf message. The labels of each
+ * series, including the metric name as {@code __name__}, are sorted by name
+ * as the protocol requires. A new request is started whenever the current
+ * request reaches the maximum number of series.</p>
+ */
+
+public final class ZuRemoteWriteEncoder
+  implements ZuMetricsSamples.ConsumerType
+{
+  private static final int WIRE_VARINT = 0;
+  private static final int WIRE_FIXED64 = 1;
+  private static final int WIRE_LENGTH = 2;
+
+  private static final int WRITE_REQUEST_TIMESERIES = 1;
+  private static final int TIMESERIES_LABELS = 1;
+  private static final int TIMESERIES_SAMPLES = 2;
+  private static final int LABEL_NAME = 1;
+  private static final int LABEL_VALUE = 2;
+  private static final int SAMPLE_VALUE = 1;
+  private static final int SAMPLE_TIMESTAMP = 2;
+
+  private static final Comparator<ZuMetricsSamples.Label> LABEL_ORDER =
+    Comparator.comparing(ZuMetricsSamples.Label::name);
+
+  private final long timeMillis;
+  private final int maxSeries;
+  private final List<byte[]> requests;
+  private final ByteArrayOutputStream request;
+  private final ByteArrayOutputStream series;
+  private final ByteArrayOutputStream scratch;
+  private final ArrayList<ZuMetricsSamples.Label> sorted;
+  private int count;
+
+  /**
+   * An encoder of remote-write requests.
+   *
+   * @param inTimeMillis The timestamp of every sample
+   * @param inMaxSeries  The maximum number of series per request
+   */
+
+  public ZuRemoteWriteEncoder(
+    final long inTimeMillis,
+    final int inMaxSeries)
+  {
+    if (inMaxSeries <= 0) {
+      throw new IllegalArgumentException("Maximum series must be positive.");
+    }
+
+    this.timeMillis =
+      inTimeMillis;
+    this.maxSeries =
+      inMaxSeries;
+    this.requests =
+      new ArrayList<>();
+    this.request =
+      new ByteArrayOutputStream();
+    this.series =
+      new ByteArrayOutputStream();
+    this.scratch =
+      new ByteArrayOutputStream();
+    this.sorted =
+      new ArrayList<>();
+  }
+
+  @Override
+  public void sample(
+    final String name,
+    final List<ZuMetricsSamples.Label> labels,
+    final double value)
+  {
+    this.sorted.clear();
+    this.sorted.add(new ZuMetricsSamples.Label("__name__", name));
+    this.sorted.addAll(labels);
+    this.sorted.sort(LABEL_ORDER);
+
+    this.series.reset();
+    for (final var label : this.sorted) {
+      this.scratch.reset();
+      writeString(this.scratch, LABEL_NAME, label.name());
+      writeString(this.scratch, LABEL_VALUE, label.value());
+      writeMessage(this.series, TIMESERIES_LABELS, this.scratch);
+    }
+
+    this.scratch.reset();
+    writeTag(this.scratch, SAMPLE_VALUE, WIRE_FIXED64);
+    writeFixed64(this.scratch, Double.doubleToRawLongBits(value));
+    writeTag(this.scratch, SAMPLE_TIMESTAMP, WIRE_VARINT);
+    writeVarint(this.scratch, this.timeMillis);
+    writeMessage(this.series, TIMESERIES_SAMPLES, this.scratch);
+
+    writeMessage(this.request, WRITE_REQUEST_TIMESERIES, this.series);
+    this.count += 1;
+
+    if (this.count == this.maxSeries) {
+      this.finishRequest();
+    }
+  }
+
+  /**
+   * Finish encoding.
+   *
+   * @return The uncompressed bodies of the requests
+   */
+
+  public List<byte[]> finish()
+  {
+    if (this.count > 0) {
+      this.finishRequest();
+    }
+    return List.copyOf(this.requests);
+  }
+
+  private void finishRequest()
+  {
+    this.requests.add(this.request.toByteArray());
+    this.request.reset();
+    this.count = 0;
+  }
+
+  private static void writeMessage(
+    final ByteArrayOutputStream output,
+    final int field,
+    final ByteArrayOutputStream message)
+  {
+    writeTag(output, field, WIRE_LENGTH);
+    writeVarint(output, message.size());
+    output.writeBytes(message.toByteArray());
+  }
+
+  private static void writeString(
+    final ByteArrayOutputStream output,
+    final int field,
+    final String value)
+  {
+    final var bytes = value.getBytes(UTF_8);
+    writeTag(output, field, WIRE_LENGTH);
+    writeVarint(output, bytes.length);
+    output.write(bytes, 0, bytes.length);
+  }
+
+  private static void writeTag(
+    final ByteArrayOutputStream output,
+    final int field,
+    final int wireType)
+  {
+    writeVarint(output, (long) field << 3 | wireType);
+  }
+
+  private static void writeVarint(
+    final ByteArrayOutputStream output,
+    final long value)
+  {
+    var remaining = value;
+    while ((remaining & ~0x7fL) != 0L) {
+      output.write((int) ((remaining & 0x7fL) | 0x80L));
+      remaining >>>= 7;
+    }
+    output.write((int) remaining);
+  }
+
+  private static void writeFixed64(
+    final ByteArrayOutputStream output,
+    final long value)
+  {
+    for (int index = 0; index < 8; ++index) {
+      output.write((int) (value >>> (8 * index)));
+    }
+  }
+}
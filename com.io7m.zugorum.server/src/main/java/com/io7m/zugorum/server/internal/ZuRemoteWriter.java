@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.ZuVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A client that pushes metrics to a Prometheus remote-write endpoint.</p>
+ *
+ * <p>Once per interval, every series in the metrics store is sampled,
+ * split into requests of at most the configured number of series, and
+ * compressed. The number of requests per push therefore depends only on the
+ * number of series, and never on how often individual checks run. Requests
+ * that fail with a server error, a rate limit, or an I/O error are retried
+ * with exponential backoff; requests that still fail are held in a bounded
+ * in-memory backlog and sent ahead of the next push. When the backlog is
+ * full, the oldest requests are dropped. Requests rejected with any other
+ * client error are dropped immediately, as sending them again cannot
+ * succeed.</p>
+ */
+
+public final class ZuRemoteWriter implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuRemoteWriter.class);
+
+  private static final Duration BACKOFF_INITIAL =
+    Duration.ofMillis(500L);
+
+  private final AtomicBoolean closed;
+  private final ZuConfiguration.RemoteWrite configuration;
+  private final ZuMetricsSamples samples;
+  private final HttpClient client;
+  private final ArrayDeque<byte[]> backlog;
+  private final AtomicLong backlogSize;
+  private final AtomicLong sent;
+  private final AtomicLong dropped;
+  private final Thread thread;
+
+  private ZuRemoteWriter(
+    final ZuConfiguration.RemoteWrite inConfiguration,
+    final ZuMetrics inMetrics)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.samples =
+      new ZuMetricsSamples(inMetrics);
+    this.client =
+      HttpClient.newBuilder()
+        .connectTimeout(inConfiguration.timeout())
+        .build();
+    this.backlog =
+      new ArrayDeque<>();
+    this.backlogSize =
+      new AtomicLong();
+    this.sent =
+      new AtomicLong();
+    this.dropped =
+      new AtomicLong();
+    this.closed =
+      new AtomicBoolean(false);
+    this.thread =
+      Thread.ofPlatform()
+        .name("com.io7m.zugorum.remote-write")
+        .daemon()
+        .unstarted(this::run);
+  }
+
+  /**
+   * Start pushing metrics to the given endpoint. The first push happens one
+   * interval after the writer is started.
+   *
+   * @param configuration The remote-write configuration
+   * @param metrics       The metrics
+   *
+   * @return A running writer
+   */
+
+  public static ZuRemoteWriter create(
+    final ZuConfiguration.RemoteWrite configuration,
+    final ZuMetrics metrics)
+  {
+    final var writer = new ZuRemoteWriter(configuration, metrics);
+
+    metrics.registerGauge(
+      "zu_remote_write_backlog_requests",
+      "The number of remote-write requests waiting to be sent",
+      writer.backlogSize::get
+    );
+    metrics.registerCounter(
+      "zu_remote_write_sent_requests",
+      "The number of remote-write requests accepted by the endpoint",
+      writer.sent::get
+    );
+    metrics.registerCounter(
+      "zu_remote_write_dropped_requests",
+      "The number of remote-write requests dropped without being accepted",
+      writer.dropped::get
+    );
+
+    writer.thread.start();
+    return writer;
+  }
+
+  /**
+   * @return The number of requests waiting to be sent
+   */
+
+  public long backlogSize()
+  {
+    return this.backlogSize.get();
+  }
+
+  /**
+   * @return The number of requests accepted by the endpoint
+   */
+
+  public long sent()
+  {
+    return this.sent.get();
+  }
+
+  /**
+   * @return The number of requests dropped without being accepted
+   */
+
+  public long dropped()
+  {
+    return this.dropped.get();
+  }
+
+  private void run()
+  {
+    LOG.debug("Pushing metrics to {}", this.configuration.uri());
+
+    try {
+      while (!this.closed.get()) {
+        Thread.sleep(this.configuration.interval().toMillis());
+        this.push();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    LOG.debug("Stopped pushing metrics to {}", this.configuration.uri());
+  }
+
+  /**
+   * Sample the metrics now, and send the resulting requests along with any
+   * requests held in the backlog.
+   *
+   * @throws InterruptedException If interrupted
+   */
+
+  public synchronized void push()
+    throws InterruptedException
+  {
+    final var encoder =
+      new ZuRemoteWriteEncoder(
+        System.currentTimeMillis(),
+        this.configuration.maxSeriesPerRequest().intValue()
+      );
+    this.samples.forEach(encoder);
+
+    for (final var request : encoder.finish()) {
+      this.enqueue(ZuSnappy.compress(request));
+    }
+    this.drain();
+  }
+
+  private void enqueue(
+    final byte[] body)
+  {
+    if (this.backlog.size() >= this.configuration.maxBacklog().intValue()) {
+      this.backlog.pollFirst();
+      this.dropped.incrementAndGet();
+    }
+    this.backlog.addLast(body);
+    this.backlogSize.set(this.backlog.size());
+  }
+
+  private void drain()
+    throws InterruptedException
+  {
+    while (!this.backlog.isEmpty()) {
+      final var result = this.sendWithRetries(this.backlog.peekFirst());
+      switch (result) {
+        case ACCEPTED -> {
+          this.backlog.pollFirst();
+          this.sent.incrementAndGet();
+        }
+        case REJECTED -> {
+          this.backlog.pollFirst();
+          this.dropped.incrementAndGet();
+        }
+        case FAILED -> {
+          this.backlogSize.set(this.backlog.size());
+          return;
+        }
+      }
+      this.backlogSize.set(this.backlog.size());
+    }
+  }
+
+  private Result sendWithRetries(
+    final byte[] body)
+    throws InterruptedException
+  {
+    var backoff = BACKOFF_INITIAL;
+    final var retries = this.configuration.maxRetries().intValue();
+
+    for (int attempt = 0; attempt <= retries; ++attempt) {
+      if (attempt > 0) {
+        Thread.sleep(backoff.toMillis());
+        backoff = min(backoff.multipliedBy(2L), this.configuration.interval());
+      }
+
+      final var result = this.send(body);
+      if (result != Result.FAILED) {
+        return result;
+      }
+    }
+    return Result.FAILED;
+  }
+
+  private Result send(
+    final byte[] body)
+    throws InterruptedException
+  {
+    final var request =
+      HttpRequest.newBuilder(this.configuration.uri())
+        .timeout(this.configuration.timeout())
+        .header("Content-Encoding", "snappy")
+        .header("Content-Type", "application/x-protobuf")
+        .header("User-Agent", userAgent())
+        .header("X-Prometheus-Remote-Write-Version", "0.1.0")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+        .build();
+
+    try {
+      final var response =
+        this.client.send(request, HttpResponse.BodyHandlers.discarding());
+      final var status = response.statusCode();
+
+      if (status >= 200 && status < 300) {
+        return Result.ACCEPTED;
+      }
+      if (status == 429 || status >= 500) {
+        LOG.warn("Remote-write endpoint returned {}; retrying", status);
+        return Result.FAILED;
+      }
+
+      LOG.error("Remote-write endpoint rejected a request with {}", status);
+      return Result.REJECTED;
+    } catch (final IOException e) {
+      LOG.warn("Remote-write request failed: {}", e.getMessage());
+      return Result.FAILED;
+    }
+  }
+
+  private static Duration min(
+    final Duration x,
+    final Duration y)
+  {
+    return x.compareTo(y) <= 0 ? x : y;
+  }
+
+  private static String userAgent()
+  {
+    return "com.io7m.zugorum %s %s".formatted(
+      ZuVersion.MAIN_VERSION,
+      ZuVersion.MAIN_BUILD
+    );
+  }
+
+  @Override
+  public void close()
+  {
+    if (this.closed.compareAndSet(false, true)) {
+      this.thread.interrupt();
+      this.client.shutdownNow();
+    }
+  }
+
+  private enum Result
+  {
+    ACCEPTED,
+    REJECTED,
+    FAILED
+  }
+}
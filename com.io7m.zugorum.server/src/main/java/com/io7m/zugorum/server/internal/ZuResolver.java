@@ -0,0 +1,335 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>The DNS resolution cache shared by all checks.</p>
+ *
+ * <p>Successful lookups are cached for the positive TTL, and failed lookups
+ * for the (much shorter) negative TTL. Concurrent lookups of the same name
+ * share a single query. A name that is used more than once during the life
+ * of its entry is refreshed in the background once the entry has used
+ * {@link #PREFETCH_FRACTION} of its TTL, so popular names do not expire in
+ * the path of a probe.</p>
+ *
+ * <p>Lookups are performed on the dispatch executor, so a probe waiting for
+ * a slow resolver is bounded by its deadline even though the platform
+ * resolver itself cannot be interrupted. The platform resolver keeps its
+ * own cache (see the {@code networkaddress.cache.ttl} security property)
+ * beneath this one; the platform does not expose record TTLs, so the TTLs
+ * used here are configured rather than taken from the DNS records.</p>
+ */
+
+public final class ZuResolver
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuResolver.class);
+
+  /**
+   * The fraction of the TTL after which a popular entry is refreshed.
+   */
+
+  public static final double PREFETCH_FRACTION =
+    0.8;
+
+  private final ConcurrentHashMap<String, Entry> entries;
+  private final Executor executor;
+  private final LookupType lookup;
+  private final ZuHistogram lookupTimes;
+  private volatile ZuConfiguration.DNSCache configuration;
+
+  private ZuResolver(
+    final ZuConfiguration.DNSCache inConfiguration,
+    final Executor inExecutor,
+    final LookupType inLookup,
+    final ZuHistogram inLookupTimes)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.executor =
+      Objects.requireNonNull(inExecutor, "executor");
+    this.lookup =
+      Objects.requireNonNull(inLookup, "lookup");
+    this.lookupTimes =
+      Objects.requireNonNull(inLookupTimes, "lookupTimes");
+    this.entries =
+      new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Create a resolver that uses the platform resolver.
+   *
+   * @param configuration The cache configuration
+   * @param metrics       The metrics store
+   * @param executor      The executor on which lookups are performed
+   *
+   * @return A resolver
+   */
+
+  public static ZuResolver create(
+    final ZuConfiguration.DNSCache configuration,
+    final ZuMetrics metrics,
+    final Executor executor)
+  {
+    return create(configuration, metrics, executor, InetAddress::getAllByName);
+  }
+
+  /**
+   * Create a resolver.
+   *
+   * @param configuration The cache configuration
+   * @param metrics       The metrics store
+   * @param executor      The executor on which lookups are performed
+   * @param lookup        The underlying lookup function
+   *
+   * @return A resolver
+   */
+
+  public static ZuResolver create(
+    final ZuConfiguration.DNSCache configuration,
+    final ZuMetrics metrics,
+    final Executor executor,
+    final LookupType lookup)
+  {
+    final var resolver =
+      new ZuResolver(
+        configuration,
+        executor,
+        lookup,
+        metrics.registerHistogram(
+          "zu_dns_lookup_seconds",
+          "The duration of DNS lookups that missed the cache"
+        )
+      );
+
+    metrics.registerGauge(
+      "zu_dns_cache_entries",
+      "The number of names in the DNS cache",
+      resolver.entries::size
+    );
+    return resolver;
+  }
+
+  /**
+   * Change the cache configuration. Existing entries keep the TTLs with
+   * which they were loaded.
+   *
+   * @param newConfiguration The new configuration
+   */
+
+  public void setConfiguration(
+    final ZuConfiguration.DNSCache newConfiguration)
+  {
+    this.configuration =
+      Objects.requireNonNull(newConfiguration, "configuration");
+  }
+
+  /**
+   * Resolve a host name within the bounds of a probe deadline. The probe
+   * enters the DNS phase.
+   *
+   * @param host     The host name
+   * @param deadline The probe deadline
+   *
+   * @return The addresses of the host
+   *
+   * @throws IOException On errors, or if the deadline expires first
+   */
+
+  public List<InetAddress> resolve(
+    final String host,
+    final ZuDeadline deadline)
+    throws IOException
+  {
+    Objects.requireNonNull(host, "host");
+    deadline.enter(ZuProbePhase.DNS);
+
+    final var name = host.toLowerCase(Locale.ROOT);
+    final var now = System.nanoTime();
+
+    var entry = this.entries.get(name);
+    if (entry == null || entry.isExpired(now)) {
+      entry = this.startLookup(name, entry);
+    } else {
+      entry.hits.incrementAndGet();
+      this.maybePrefetch(name, entry, now);
+    }
+
+    try {
+      return entry.result.get(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS);
+    } catch (final TimeoutException e) {
+      throw new ZuTimeoutException(ZuProbePhase.DNS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ZuTimeoutException(ZuProbePhase.DNS);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof final UnknownHostException u) {
+        throw new UnknownHostException(u.getMessage());
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private Entry startLookup(
+    final String name,
+    final Entry stale)
+  {
+    final var created = new Entry[1];
+    final var entry = this.entries.compute(name, (k, current) -> {
+      if (current != null && current != stale) {
+        return current;
+      }
+      created[0] = new Entry();
+      return created[0];
+    });
+
+    if (created[0] != null) {
+      this.executor.execute(() -> this.load(name, created[0]));
+    }
+    return entry;
+  }
+
+  private void maybePrefetch(
+    final String name,
+    final Entry entry,
+    final long now)
+  {
+    if (entry.hits.get() < 2 || !entry.isPrefetchDue(now)) {
+      return;
+    }
+    if (!entry.refreshing.compareAndSet(false, true)) {
+      return;
+    }
+
+    final var next = new Entry();
+    this.executor.execute(() -> {
+      this.load(name, next);
+
+      /*
+       * A failed refresh does not replace an entry that is still valid; the
+       * entry expires normally and the next probe looks the name up again.
+       */
+
+      if (!next.result.isCompletedExceptionally()) {
+        this.entries.replace(name, entry, next);
+      }
+    });
+  }
+
+  private void load(
+    final String name,
+    final Entry entry)
+  {
+    final var config = this.configuration;
+    final var timeStart = System.nanoTime();
+    try {
+      final var addresses = List.of(this.lookup.lookup(name));
+      final var timeEnd = System.nanoTime();
+      this.lookupTimes.record(timeEnd - timeStart);
+      entry.complete(timeEnd, config.positiveTTL().toNanos());
+      entry.result.complete(addresses);
+    } catch (final UnknownHostException e) {
+      final var timeEnd = System.nanoTime();
+      this.lookupTimes.record(timeEnd - timeStart);
+      entry.complete(timeEnd, config.negativeTTL().toNanos());
+      entry.result.completeExceptionally(e);
+    } catch (final Throwable e) {
+      LOG.debug("Lookup of {} failed: ", name, e);
+      entry.complete(System.nanoTime(), 0L);
+      entry.result.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * The underlying lookup function.
+   */
+
+  @FunctionalInterface
+  public interface LookupType
+  {
+    /**
+     * Look up the addresses of a host.
+     *
+     * @param host The host name
+     *
+     * @return The addresses
+     *
+     * @throws UnknownHostException If the host cannot be resolved
+     */
+
+    InetAddress[] lookup(String host)
+      throws UnknownHostException;
+  }
+
+  private static final class Entry
+  {
+    private final CompletableFuture<List<InetAddress>> result;
+    private final AtomicInteger hits;
+    private final AtomicBoolean refreshing;
+    private volatile long loadedNanos;
+    private volatile long ttlNanos;
+
+    Entry()
+    {
+      this.result = new CompletableFuture<>();
+      this.hits = new AtomicInteger(0);
+      this.refreshing = new AtomicBoolean(false);
+    }
+
+    void complete(
+      final long inLoadedNanos,
+      final long inTtlNanos)
+    {
+      this.loadedNanos = inLoadedNanos;
+      this.ttlNanos = inTtlNanos;
+    }
+
+    boolean isExpired(
+      final long now)
+    {
+      return this.result.isDone()
+             && now - this.loadedNanos >= this.ttlNanos;
+    }
+
+    boolean isPrefetchDue(
+      final long now)
+    {
+      return this.result.isDone()
+             && !this.result.isCompletedExceptionally()
+             && now - this.loadedNanos >= (long) (this.ttlNanos * PREFETCH_FRACTION);
+    }
+  }
+}
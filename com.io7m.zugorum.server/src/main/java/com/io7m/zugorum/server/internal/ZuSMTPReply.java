@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * <p>A reply from an SMTP server (RFC 5321, section 4.2).</p>
+ *
+ * <p>A reply consists of one or more lines, each beginning with the same
+ * three-digit code. Every line but the last has a hyphen after the code;
+ * the last has a space (or nothing at all).</p>
+ *
+ * @param code  The reply code
+ * @param lines The text of each line of the reply, without the code
+ */
+
+public record ZuSMTPReply(
+  int code,
+  List<String> lines)
+{
+  /**
+   * The maximum length of a reply line, including the terminating CRLF.
+   * RFC 5321 requires servers to send no more than 512 octets, but some
+   * servers are generous with their banners.
+   */
+
+  public static final int MAXIMUM_LINE_LENGTH =
+    4096;
+
+  /**
+   * The maximum number of lines in a reply.
+   */
+
+  public static final int MAXIMUM_LINES =
+    256;
+
+  /**
+   * A reply from an SMTP server.
+   *
+   * @param code  The reply code
+   * @param lines The text of each line of the reply, without the code
+   */
+
+  public ZuSMTPReply
+  {
+    lines = List.copyOf(lines);
+  }
+
+  /**
+   * Read a complete reply from the given stream. The stream should be
+   * buffered; it is read one octet at a time.
+   *
+   * @param input The input stream
+   *
+   * @return A reply
+   *
+   * @throws IOException On I/O errors, or if the reply is malformed
+   */
+
+  public static ZuSMTPReply read(
+    final InputStream input)
+    throws IOException
+  {
+    Objects.requireNonNull(input, "input");
+
+    final var lines = new ArrayList<String>();
+    var line = readLine(input);
+    final var code = parseCode(line);
+
+    while (true) {
+      final var lineCode = parseCode(line);
+      if (code != lineCode) {
+        throw new ProtocolException(
+          "Inconsistent SMTP reply codes: %d, %d".formatted(code, lineCode)
+        );
+      }
+
+      lines.add(line.length() > 4 ? line.substring(4) : "");
+      if (isLastLine(line)) {
+        return new ZuSMTPReply(code, lines);
+      }
+      if (lines.size() >= MAXIMUM_LINES) {
+        throw new ProtocolException("Too many SMTP reply lines.");
+      }
+      line = readLine(input);
+    }
+  }
+
+  /**
+   * Parse the three-digit code at the start of a reply line. The digits are
+   * checked explicitly, because {@link Integer#parseInt(CharSequence, int,
+   * int, int)} would also accept a sign.
+   */
+
+  private static int parseCode(
+    final String line)
+    throws ProtocolException
+  {
+    if (line.length() < 3) {
+      throw new ProtocolException("Malformed SMTP reply line: %s".formatted(line));
+    }
+
+    var code = 0;
+    for (int index = 0; index < 3; ++index) {
+      final var digit = line.charAt(index);
+      if (digit < '0' || digit > '9') {
+        throw new ProtocolException("Malformed SMTP reply code: %s".formatted(line));
+      }
+      code = (code * 10) + (digit - '0');
+    }
+    return code;
+  }
+
+  /**
+   * Determine whether a reply line is the last line of the reply.
+   */
+
+  private static boolean isLastLine(
+    final String line)
+    throws ProtocolException
+  {
+    if (line.length() == 3) {
+      return true;
+    }
+
+    return switch (line.charAt(3)) {
+      case ' ' -> true;
+      case '-' -> false;
+      default -> {
+        throw new ProtocolException("Malformed SMTP reply line: %s".formatted(line));
+      }
+    };
+  }
+
+  /**
+   * Read a line terminated by CRLF. A bare LF is tolerated.
+   */
+
+  private static String readLine(
+    final InputStream input)
+    throws IOException
+  {
+    final var buffer = new ByteArrayOutputStream(128);
+    while (true) {
+      final var octet = input.read();
+      if (octet == -1) {
+        throw new EOFException("Connection closed during SMTP reply.");
+      }
+      if (octet == '\n') {
+        final var line = buffer.toString(US_ASCII);
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+      }
+      if (buffer.size() >= MAXIMUM_LINE_LENGTH) {
+        throw new ProtocolException("SMTP reply line too long.");
+      }
+      buffer.write(octet);
+    }
+  }
+
+  /**
+   * @return {@code true} if the reply code indicates completion (2yz)
+   */
+
+  public boolean isPositive()
+  {
+    return this.code >= 200 && this.code < 300;
+  }
+
+  /**
+   * Determine whether an EHLO reply advertises the given extension. The
+   * first line of an EHLO reply is a greeting; each later line names an
+   * extension, optionally followed by parameters.
+   *
+   * @param keyword The extension keyword (such as {@code STARTTLS})
+   *
+   * @return {@code true} if the extension is advertised
+   */
+
+  public boolean hasExtension(
+    final String keyword)
+  {
+    final var wanted = keyword.toUpperCase(Locale.ROOT);
+    for (int index = 1; index < this.lines.size(); ++index) {
+      final var line = this.lines.get(index).trim();
+      final var space = line.indexOf(' ');
+      final var name = space == -1 ? line : line.substring(0, space);
+      if (name.toUpperCase(Locale.ROOT).equals(wanted)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The reply as it would appear on the wire, with lines joined by
+   * spaces (suitable for use as a failure message)
+   */
+
+  public String text()
+  {
+    return "%d %s".formatted(this.code, String.join(" ", this.lines)).trim();
+  }
+}
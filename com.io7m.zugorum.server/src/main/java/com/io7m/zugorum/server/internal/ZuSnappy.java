@@ -0,0 +1,316 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * <p>The Snappy block format, as required by the Prometheus remote-write
+ * protocol.</p>
+ *
+ * <p>The compressor follows the original reference implementation: the
+ * input is split into 32KiB fragments, and each fragment is compressed with
+ * a hash table of four-byte sequences that is sized to the fragment. Lookups
+ * skip ahead faster the longer no match is found, and the final bytes of
+ * each fragment are always emitted as a literal. The output is therefore
+ * byte-for-byte identical to that of the original implementation and its
+ * direct ports. Later versions of the reference implementation use larger
+ * fragments and may produce different, equally valid, output.</p>
+ */
+
+public final class ZuSnappy
+{
+  private static final int BLOCK_SIZE = 1 << 15;
+  private static final int INPUT_MARGIN = 15;
+  private static final int TABLE_SIZE_MINIMUM = 1 << 8;
+  private static final int TABLE_SIZE_MAXIMUM = 1 << 14;
+  private static final int HASH_MULTIPLIER = 0x1e35a7bd;
+  private static final int SKIP_INITIAL = 32;
+  private static final int SKIP_SHIFT = 5;
+  private static final int MINIMUM_MATCH = 4;
+
+  private static final int TAG_LITERAL = 0;
+  private static final int TAG_COPY_1 = 1;
+  private static final int TAG_COPY_2 = 2;
+
+  private static final VarHandle INT_LITTLE_ENDIAN =
+    MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private ZuSnappy()
+  {
+
+  }
+
+  /**
+   * Compress the given data.
+   *
+   * @param data The data
+   *
+   * @return The compressed data
+   */
+
+  public static byte[] compress(
+    final byte[] data)
+  {
+    final var output = new ByteArrayOutputStream(data.length / 2 + 16);
+    writeVarint(output, data.length);
+
+    final var table = new int[TABLE_SIZE_MAXIMUM];
+    for (int start = 0; start < data.length; start += BLOCK_SIZE) {
+      final var end = Math.min(data.length, start + BLOCK_SIZE);
+      new Fragment(output, data, start, end, table).compress();
+    }
+    return output.toByteArray();
+  }
+
+  private static int readInt(
+    final byte[] data,
+    final int index)
+  {
+    return (int) INT_LITTLE_ENDIAN.get(data, index);
+  }
+
+  private static void writeLiteral(
+    final ByteArrayOutputStream output,
+    final byte[] data,
+    final int offset,
+    final int length)
+  {
+    if (length == 0) {
+      return;
+    }
+
+    final var n = length - 1;
+    if (n < 60) {
+      output.write(n << 2 | TAG_LITERAL);
+    } else if (n < 1 << 8) {
+      output.write(60 << 2 | TAG_LITERAL);
+      output.write(n);
+    } else if (n < 1 << 16) {
+      output.write(61 << 2 | TAG_LITERAL);
+      output.write(n);
+      output.write(n >>> 8);
+    } else {
+      output.write(62 << 2 | TAG_LITERAL);
+      output.write(n);
+      output.write(n >>> 8);
+      output.write(n >>> 16);
+    }
+    output.write(data, offset, length);
+  }
+
+  /**
+   * Write a copy, split into copies of at most 64 bytes in the same way as
+   * the reference implementation, so that no copy is shorter than four
+   * bytes.
+   */
+
+  private static void writeCopy(
+    final ByteArrayOutputStream output,
+    final int offset,
+    final int length)
+  {
+    var remaining = length;
+    while (remaining >= 68) {
+      writeCopyShort(output, offset, 64);
+      remaining -= 64;
+    }
+    if (remaining > 64) {
+      writeCopyShort(output, offset, 60);
+      remaining -= 60;
+    }
+    writeCopyShort(output, offset, remaining);
+  }
+
+  private static void writeCopyShort(
+    final ByteArrayOutputStream output,
+    final int offset,
+    final int length)
+  {
+    if (length < 12 && offset < 2048) {
+      output.write((offset >>> 8) << 5 | (length - 4) << 2 | TAG_COPY_1);
+      output.write(offset);
+      return;
+    }
+
+    output.write((length - 1) << 2 | TAG_COPY_2);
+    output.write(offset);
+    output.write(offset >>> 8);
+  }
+
+  private static void writeVarint(
+    final ByteArrayOutputStream output,
+    final int value)
+  {
+    var remaining = value;
+    while ((remaining & ~0x7f) != 0) {
+      output.write((remaining & 0x7f) | 0x80);
+      remaining >>>= 7;
+    }
+    output.write(remaining);
+  }
+
+  /**
+   * The state of the compression of a single fragment. Positions in the
+   * hash table are relative to the start of the fragment, and an empty
+   * entry refers to the start of the fragment.
+   */
+
+  private static final class Fragment
+  {
+    private final ByteArrayOutputStream output;
+    private final byte[] data;
+    private final int start;
+    private final int end;
+    private final int limit;
+    private final int[] table;
+    private final int shift;
+    private int index;
+    private int nextHash;
+    private int literal;
+    private int candidate;
+
+    Fragment(
+      final ByteArrayOutputStream inOutput,
+      final byte[] inData,
+      final int inStart,
+      final int inEnd,
+      final int[] inTable)
+    {
+      this.output = inOutput;
+      this.data = inData;
+      this.start = inStart;
+      this.end = inEnd;
+      this.limit = inEnd - INPUT_MARGIN;
+      this.table = inTable;
+
+      var size = TABLE_SIZE_MINIMUM;
+      while (size < TABLE_SIZE_MAXIMUM && size < inEnd - inStart) {
+        size <<= 1;
+      }
+      Arrays.fill(this.table, 0, size, 0);
+      this.shift = 32 - Integer.numberOfTrailingZeros(size);
+    }
+
+    void compress()
+    {
+      this.literal = this.start;
+
+      if (this.end - this.start >= INPUT_MARGIN) {
+        this.index = this.start + 1;
+        this.nextHash = this.hash(this.index);
+
+        while (this.findMatch() && this.writeMatches()) {
+          this.index += 1;
+          this.nextHash = this.hash(this.index);
+        }
+      }
+
+      writeLiteral(
+        this.output,
+        this.data,
+        this.literal,
+        this.end - this.literal
+      );
+    }
+
+    /**
+     * Search for the next match, leaving its position in {@code index} and
+     * the position of the earlier occurrence in {@code candidate}.
+     *
+     * @return {@code false} if the end of the fragment was reached first
+     */
+
+    private boolean findMatch()
+    {
+      var skip = SKIP_INITIAL;
+      var next = this.index;
+
+      do {
+        this.index = next;
+        final var hash = this.nextHash;
+        next = this.index + (skip >>> SKIP_SHIFT);
+        skip += 1;
+
+        if (next > this.limit) {
+          return false;
+        }
+        this.nextHash = this.hash(next);
+        this.candidate = this.start + this.table[hash];
+        this.table[hash] = this.index - this.start;
+      } while (readInt(this.data, this.index) != readInt(this.data, this.candidate));
+
+      return true;
+    }
+
+    /**
+     * Write the literal preceding the current match, the match, and any
+     * matches that immediately follow it.
+     *
+     * @return {@code false} if the end of the fragment was reached
+     */
+
+    private boolean writeMatches()
+    {
+      writeLiteral(
+        this.output,
+        this.data,
+        this.literal,
+        this.index - this.literal
+      );
+
+      do {
+        final var length = this.matchLength();
+        writeCopy(this.output, this.index - this.candidate, length);
+        this.index += length;
+        this.literal = this.index;
+
+        if (this.index >= this.limit) {
+          return false;
+        }
+
+        this.table[this.hash(this.index - 1)] = this.index - 1 - this.start;
+        final var hash = this.hash(this.index);
+        this.candidate = this.start + this.table[hash];
+        this.table[hash] = this.index - this.start;
+      } while (readInt(this.data, this.index) == readInt(this.data, this.candidate));
+
+      return true;
+    }
+
+    private int matchLength()
+    {
+      var length = MINIMUM_MATCH;
+      while (this.index + length < this.end
+             && this.data[this.candidate + length] == this.data[this.index + length]) {
+        length += 1;
+      }
+      return length;
+    }
+
+    private int hash(
+      final int position)
+    {
+      return (readInt(this.data, position) * HASH_MULTIPLIER) >>> this.shift;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Functions to open sockets within the bounds of a probe deadline.
+ */
+
+public final class ZuSockets
+{
+  private ZuSockets()
+  {
+
+  }
+
+  /**
+   * Resolve and connect to the given host and port. The returned socket has
+   * a read timeout set.
+   *
+   * @param resolver The resolver
+   * @param host     The host
+   * @param port     The port
+   * @param deadline The probe deadline
+   *
+   * @return A connected socket
+   *
+   * @throws IOException On errors
+   */
+
+  public static Socket connect(
+    final ZuResolver resolver,
+    final String host,
+    final int port,
+    final ZuDeadline deadline)
+    throws IOException
+  {
+    final var address = resolver.resolve(host, deadline).getFirst();
+    return connect(address, port, deadline);
+  }
+
+  /**
+   * Connect to the given address and port. The returned socket has a read
+   * timeout set.
+   *
+   * @param address  The address
+   * @param port     The port
+   * @param deadline The probe deadline
+   *
+   * @return A connected socket
+   *
+   * @throws IOException On errors
+   */
+
+  public static Socket connect(
+    final InetAddress address,
+    final int port,
+    final ZuDeadline deadline)
+    throws IOException
+  {
+    deadline.enter(ZuProbePhase.CONNECT);
+    final var socket = new Socket();
+    try {
+      socket.connect(
+        new InetSocketAddress(address, port),
+        deadline.connectTimeoutMillis()
+      );
+      socket.setSoTimeout(deadline.readTimeoutMillis());
+      return socket;
+    } catch (final SocketTimeoutException e) {
+      socket.close();
+      throw new ZuTimeoutException(ZuProbePhase.CONNECT);
+    } catch (final IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Layer TLS over a connected socket and perform the handshake.
+   *
+   * @param sockets  The TLS socket factory
+   * @param socket   The connected socket
+   * @param host     The host name (used for SNI and verification)
+   * @param port     The port
+   * @param deadline The probe deadline
+   *
+   * @return A TLS socket on which the handshake has completed
+   *
+   * @throws IOException On errors
+   */
+
+  public static SSLSocket handshake(
+    final SSLSocketFactory sockets,
+    final Socket socket,
+    final String host,
+    final int port,
+    final ZuDeadline deadline)
+    throws IOException
+  {
+    deadline.enter(ZuProbePhase.TLS_HANDSHAKE);
+    final var tlsSocket =
+      (SSLSocket) sockets.createSocket(socket, host, port, true);
+
+    try {
+      tlsSocket.setSoTimeout(deadline.readTimeoutMillis());
+      tlsSocket.startHandshake();
+      return tlsSocket;
+    } catch (final SocketTimeoutException e) {
+      tlsSocket.close();
+      throw new ZuTimeoutException(ZuProbePhase.TLS_HANDSHAKE);
+    } catch (final IOException e) {
+      tlsSocket.close();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A non-blocking TCP connect engine.</p>
+ *
+ * <p>A single thread drives a {@link Selector} over any number of
+ * non-blocking {@link SocketChannel#connect(java.net.SocketAddress)}
+ * attempts. An attempt costs one channel and one small object for as long
+ * as the connection is in progress; no thread is held on its behalf. The
+ * channel is closed as soon as the connection is established, because
+ * reachability is all that is measured.</p>
+ *
+ * <p>Completion callbacks are executed on the engine thread and must not
+ * block.</p>
+ */
+
+public final class ZuTCPConnector implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuTCPConnector.class);
+
+  private static final int MAXIMUM_OPEN_CHANNELS =
+    8192;
+
+  private final AtomicBoolean closed;
+  private final AtomicBoolean wakeupPending;
+  private final AtomicInteger inFlight;
+  private final ConcurrentLinkedQueue<Attempt> submitted;
+  private final ArrayDeque<Attempt> waiting;
+  private final PriorityQueue<Attempt> deadlines;
+  private final Selector selector;
+  private final Thread thread;
+  private int openChannels;
+
+  private ZuTCPConnector(
+    final Selector inSelector)
+  {
+    this.selector =
+      Objects.requireNonNull(inSelector, "selector");
+    this.closed =
+      new AtomicBoolean(false);
+    this.wakeupPending =
+      new AtomicBoolean(false);
+    this.inFlight =
+      new AtomicInteger(0);
+    this.submitted =
+      new ConcurrentLinkedQueue<>();
+    this.waiting =
+      new ArrayDeque<>();
+    this.deadlines =
+      new PriorityQueue<>(Comparator.comparingLong(a -> a.deadlineNanos));
+    this.thread =
+      Thread.ofPlatform()
+        .name("com.io7m.zugorum.tcp-connector")
+        .daemon()
+        .unstarted(this::runSelector);
+  }
+
+  /**
+   * Create and start a TCP connect engine.
+   *
+   * @param metrics The metrics store
+   *
+   * @return A running engine
+   *
+   * @throws IOException On errors opening the selector
+   */
+
+  public static ZuTCPConnector create(
+    final ZuMetrics metrics)
+    throws IOException
+  {
+    final var connector = new ZuTCPConnector(Selector.open());
+    metrics.registerGauge(
+      "zu_tcp_connects_in_flight",
+      "The number of TCP connection attempts in progress",
+      connector.inFlight::get
+    );
+    connector.thread.start();
+    return connector;
+  }
+
+  /**
+   * @return The number of connection attempts in progress
+   */
+
+  public int inFlight()
+  {
+    return this.inFlight.get();
+  }
+
+  /**
+   * Start a connection attempt. Exactly one of the callback methods will be
+   * called, on the engine thread, when the attempt completes or times out.
+   * Attempts that cannot start because too many channels are already open
+   * wait for earlier attempts to complete; the wait counts against the
+   * timeout.
+   *
+   * @param address  The resolved target address
+   * @param timeout  The time allowed for the connection, in nanoseconds
+   * @param callback The completion callback
+   */
+
+  public void connect(
+    final InetSocketAddress address,
+    final long timeout,
+    final CallbackType callback)
+  {
+    Objects.requireNonNull(address, "address");
+    Objects.requireNonNull(callback, "callback");
+
+    if (this.closed.get()) {
+      throw new RejectedExecutionException("TCP connector is closed.");
+    }
+
+    this.inFlight.incrementAndGet();
+    this.submitted.add(
+      new Attempt(address, System.nanoTime() + Math.max(0L, timeout), callback)
+    );
+
+    if (this.wakeupPending.compareAndSet(false, true)) {
+      this.selector.wakeup();
+    }
+  }
+
+  private void runSelector()
+  {
+    LOG.debug("TCP connector started");
+
+    try {
+      while (!this.closed.get()) {
+        this.selector.select(this.selectTimeoutMillis());
+        this.wakeupPending.set(false);
+
+        this.acceptSubmitted();
+        this.processSelected();
+        this.expire();
+        this.openWaiting();
+      }
+    } catch (final IOException | ClosedSelectorException e) {
+      if (!this.closed.get()) {
+        LOG.error("TCP connector failed: ", e);
+      }
+    } finally {
+      this.abandonAll();
+    }
+
+    LOG.debug("TCP connector stopped");
+  }
+
+  private long selectTimeoutMillis()
+  {
+    final var next = this.deadlines.peek();
+    if (next == null) {
+      return 0L;
+    }
+    final var remaining = next.deadlineNanos - System.nanoTime();
+    return Math.max(1L, (remaining + 999_999L) / 1_000_000L);
+  }
+
+  private void acceptSubmitted()
+  {
+    while (true) {
+      final var attempt = this.submitted.poll();
+      if (attempt == null) {
+        return;
+      }
+      this.deadlines.add(attempt);
+      this.waiting.add(attempt);
+    }
+  }
+
+  private void openWaiting()
+  {
+    while (this.openChannels < MAXIMUM_OPEN_CHANNELS) {
+      final var attempt = this.waiting.poll();
+      if (attempt == null) {
+        return;
+      }
+      if (attempt.completed) {
+        continue;
+      }
+      this.open(attempt);
+    }
+  }
+
+  private void open(
+    final Attempt attempt)
+  {
+    SocketChannel channel = null;
+    try {
+      channel = SocketChannel.open();
+      ++this.openChannels;
+      attempt.channel = channel;
+      channel.configureBlocking(false);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+
+      attempt.startNanos = System.nanoTime();
+      if (channel.connect(attempt.address)) {
+        this.succeed(attempt);
+        return;
+      }
+      channel.register(this.selector, SelectionKey.OP_CONNECT, attempt);
+    } catch (final IOException e) {
+      this.fail(attempt, e);
+    }
+  }
+
+  private void processSelected()
+  {
+    final var selected = this.selector.selectedKeys();
+    for (final var key : selected) {
+      final var attempt = (Attempt) key.attachment();
+      if (attempt.completed) {
+        continue;
+      }
+      try {
+        if (attempt.channel.finishConnect()) {
+          this.succeed(attempt);
+        }
+      } catch (final IOException e) {
+        this.fail(attempt, e);
+      }
+    }
+    selected.clear();
+  }
+
+  private void expire()
+  {
+    final var now = System.nanoTime();
+    while (true) {
+      final var attempt = this.deadlines.peek();
+      if (attempt == null) {
+        return;
+      }
+      if (attempt.completed) {
+        this.deadlines.poll();
+        continue;
+      }
+      if (attempt.deadlineNanos - now > 0L) {
+        return;
+      }
+      this.deadlines.poll();
+      this.fail(attempt, new ZuTimeoutException(ZuProbePhase.CONNECT));
+    }
+  }
+
+  private void succeed(
+    final Attempt attempt)
+  {
+    final var elapsed = System.nanoTime() - attempt.startNanos;
+    this.finish(attempt);
+    try {
+      attempt.callback.onConnected(elapsed);
+    } catch (final Throwable e) {
+      LOG.error("TCP connector callback raised an exception: ", e);
+    }
+  }
+
+  private void fail(
+    final Attempt attempt,
+    final Exception cause)
+  {
+    this.finish(attempt);
+    try {
+      attempt.callback.onFailed(cause);
+    } catch (final Throwable e) {
+      LOG.error("TCP connector callback raised an exception: ", e);
+    }
+  }
+
+  private void finish(
+    final Attempt attempt)
+  {
+    attempt.completed = true;
+    this.inFlight.decrementAndGet();
+
+    final var channel = attempt.channel;
+    if (channel != null) {
+      attempt.channel = null;
+      --this.openChannels;
+      try {
+        channel.close();
+      } catch (final IOException e) {
+        LOG.debug("Failed to close channel: ", e);
+      }
+    }
+  }
+
+  private void abandonAll()
+  {
+    this.acceptSubmitted();
+    for (final var attempt : this.deadlines) {
+      if (!attempt.completed) {
+        this.finish(attempt);
+      }
+    }
+    this.deadlines.clear();
+    this.waiting.clear();
+
+    try {
+      this.selector.close();
+    } catch (final IOException e) {
+      LOG.debug("Failed to close selector: ", e);
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    if (this.closed.compareAndSet(false, true)) {
+      this.selector.wakeup();
+      try {
+        this.thread.join();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * The callbacks for a single connection attempt.
+   */
+
+  public interface CallbackType
+  {
+    /**
+     * The connection was established.
+     *
+     * @param connectNanos The time taken to connect, in nanoseconds
+     */
+
+    void onConnected(long connectNanos);
+
+    /**
+     * The connection failed. A timeout is reported as a
+     * {@link ZuTimeoutException}.
+     *
+     * @param e The failure
+     */
+
+    void onFailed(Exception e);
+  }
+
+  private static final class Attempt
+  {
+    private final InetSocketAddress address;
+    private final long deadlineNanos;
+    private final CallbackType callback;
+    private SocketChannel channel;
+    private long startNanos;
+    private boolean completed;
+
+    Attempt(
+      final InetSocketAddress inAddress,
+      final long inDeadlineNanos,
+      final CallbackType inCallback)
+    {
+      this.address = inAddress;
+      this.deadlineNanos = inDeadlineNanos;
+      this.callback = inCallback;
+    }
+  }
+}
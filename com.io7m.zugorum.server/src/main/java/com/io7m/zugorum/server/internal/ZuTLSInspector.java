@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * <p>Extracts the parameters of TLS handshakes.</p>
+ *
+ * <p>A target almost always presents the same certificate chain from one
+ * probe to the next, so the expiry times are only extracted from the chain
+ * when the chain differs from the one seen most recently. Comparing chains
+ * compares their encoded forms, which the certificates already hold.</p>
+ *
+ * <p>Only X.509 certificates have expiry times. Any other certificates in
+ * the chain are ignored, and an expiry time is reported as
+ * {@link ZuMetrics#EXPIRY_UNKNOWN} if no certificate supplies one.</p>
+ */
+
+final class ZuTLSInspector
+{
+  private volatile Inspected last;
+
+  ZuTLSInspector()
+  {
+
+  }
+
+  /**
+   * Extract the parameters of a completed handshake.
+   *
+   * @param session The TLS session
+   *
+   * @return The parameters
+   *
+   * @throws SSLPeerUnverifiedException If the peer was not verified
+   */
+
+  ZuMetrics.TLS inspect(
+    final SSLSession session)
+    throws SSLPeerUnverifiedException
+  {
+    final var chain = session.getPeerCertificates();
+
+    final var previous = this.last;
+    final long leafExpiry;
+    final long chainExpiry;
+    if (previous != null && Arrays.equals(previous.chain, chain)) {
+      leafExpiry = previous.leafExpiry;
+      chainExpiry = previous.chainExpiry;
+    } else {
+      leafExpiry = expiry(chain[0]);
+      var earliest = leafExpiry;
+      for (final var certificate : chain) {
+        earliest = Math.min(earliest, expiry(certificate));
+      }
+      chainExpiry = earliest;
+      this.last = new Inspected(chain, leafExpiry, chainExpiry);
+    }
+
+    return new ZuMetrics.TLS(
+      session.getProtocol(),
+      session.getCipherSuite(),
+      leafExpiry,
+      chainExpiry
+    );
+  }
+
+  private static long expiry(
+    final Certificate certificate)
+  {
+    if (certificate instanceof final X509Certificate x509) {
+      return x509.getNotAfter().toInstant().getEpochSecond();
+    }
+    return ZuMetrics.EXPIRY_UNKNOWN;
+  }
+
+  private record Inspected(
+    Certificate[] chain,
+    long leafExpiry,
+    long chainExpiry)
+  {
+
+  }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.server.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>A hashed timing wheel.</p>
+ *
+ * <p>The wheel owns the deadlines of all scheduled tasks. A single thread
+ * advances the wheel once per tick and hands each task whose deadline has
+ * arrived to a dispatch executor. A scheduled task that has not yet expired
+ * costs a single small entry object linked into one of the wheel buckets;
+ * no thread is held on its behalf.</p>
+ *
+ * <p>Tasks are dispatched at most one tick after their deadlines.</p>
+ */
+
+public final class ZuTimingWheel implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(ZuTimingWheel.class);
+
+  private static final int MAXIMUM_TRANSFERS_PER_TICK =
+    100_000;
+
+  private final AtomicBoolean closed;
+  private final Bucket[] buckets;
+  private final ConcurrentLinkedQueue<Timeout> pending;
+  private final Executor dispatcher;
+  private final Thread thread;
+  private final int mask;
+  private final long startNanos;
+  private final long tickNanos;
+  private long tick;
+
+  private ZuTimingWheel(
+    final Executor inDispatcher,
+    final Duration inTick,
+    final int inBucketCount)
+  {
+    this.dispatcher =
+      Objects.requireNonNull(inDispatcher, "dispatcher");
+    this.tickNanos =
+      inTick.toNanos();
+
+    if (this.tickNanos <= 0L) {
+      throw new IllegalArgumentException("Tick duration must be positive.");
+    }
+    if (inBucketCount <= 0 || Integer.bitCount(inBucketCount) != 1) {
+      throw new IllegalArgumentException(
+        "Bucket count must be a positive power of two.");
+    }
+
+    this.buckets = new Bucket[inBucketCount];
+    for (int index = 0; index < inBucketCount; ++index) {
+      this.buckets[index] = new Bucket();
+    }
+
+    this.mask =
+      inBucketCount - 1;
+    this.pending =
+      new ConcurrentLinkedQueue<>();
+    this.closed =
+      new AtomicBoolean(false);
+    this.startNanos =
+      System.nanoTime();
+    this.tick =
+      0L;
+    this.thread =
+      Thread.ofPlatform()
+        .name("com.io7m.zugorum.timing-wheel")
+        .daemon()
+        .unstarted(this::runWheel);
+  }
+
+  /**
+   * Create and start a timing wheel. If the dispatcher runs tasks directly
+   * on the calling thread, tasks run on the wheel thread and must not
+   * block.
+   *
+   * @param dispatcher  The executor to which expired tasks are handed
+   * @param tick        The duration of a single tick
+   * @param bucketCount The number of buckets (must be a power of two)
+   *
+   * @return A running timing wheel
+   */
+
+  public static ZuTimingWheel create(
+    final Executor dispatcher,
+    final Duration tick,
+    final int bucketCount)
+  {
+    final var wheel = new ZuTimingWheel(dispatcher, tick, bucketCount);
+    wheel.thread.start();
+    return wheel;
+  }
+
+  /**
+   * @return The duration of a single tick
+   */
+
+  public Duration tick()
+  {
+    return Duration.ofNanos(this.tickNanos);
+  }
+
+  /**
+   * Schedule a task to be dispatched once the given delay has elapsed.
+   *
+   * @param task  The task
+   * @param delay The delay
+   *
+   * @return A handle that can be used to cancel the task
+   */
+
+  public Timeout schedule(
+    final Runnable task,
+    final Duration delay)
+  {
+    Objects.requireNonNull(task, "task");
+    Objects.requireNonNull(delay, "delay");
+
+    if (this.closed.get()) {
+      throw new RejectedExecutionException("Timing wheel is closed.");
+    }
+
+    final long delayNanos;
+    if (delay.isNegative()) {
+      delayNanos = 0L;
+    } else if (delay.compareTo(Duration.ofDays(365L)) > 0) {
+      delayNanos = Duration.ofDays(365L).toNanos();
+    } else {
+      delayNanos = delay.toNanos();
+    }
+
+    final var deadline =
+      (System.nanoTime() - this.startNanos) + delayNanos;
+    final var timeout =
+      new Timeout(task, deadline);
+
+    this.pending.add(timeout);
+    return timeout;
+  }
+
+  private void runWheel()
+  {
+    LOG.debug("Timing wheel started ({} buckets, tick {}ns)",
+              this.buckets.length, this.tickNanos);
+
+    while (!this.closed.get()) {
+      final var tickDeadline = this.waitForNextTick();
+      if (this.closed.get()) {
+        break;
+      }
+
+      this.transferPending();
+      final var bucket = this.buckets[(int) (this.tick & this.mask)];
+      this.expire(bucket, tickDeadline);
+      ++this.tick;
+    }
+
+    LOG.debug("Timing wheel stopped");
+  }
+
+  private long waitForNextTick()
+  {
+    final var tickDeadline = this.tickNanos * (this.tick + 1L);
+    while (!this.closed.get()) {
+      final var now = System.nanoTime() - this.startNanos;
+      final var remaining = tickDeadline - now;
+      if (remaining <= 0L) {
+        break;
+      }
+      LockSupport.parkNanos(this, remaining);
+    }
+    return tickDeadline;
+  }
+
+  private void transferPending()
+  {
+    for (int index = 0; index < MAXIMUM_TRANSFERS_PER_TICK; ++index) {
+      final var timeout = this.pending.poll();
+      if (timeout == null) {
+        return;
+      }
+      if (timeout.isCancelled()) {
+        continue;
+      }
+
+      final var expiryTick =
+        Math.max(timeout.deadline / this.tickNanos, this.tick);
+
+      timeout.remainingRounds =
+        (expiryTick - this.tick) / this.buckets.length;
+
+      this.buckets[(int) (expiryTick & this.mask)].add(timeout);
+    }
+  }
+
+  private void expire(
+    final Bucket bucket,
+    final long tickDeadline)
+  {
+    var timeout = bucket.head;
+    while (timeout != null) {
+      final var next = timeout.next;
+      if (timeout.isCancelled()) {
+        bucket.remove(timeout);
+      } else if (timeout.remainingRounds <= 0L) {
+        bucket.remove(timeout);
+        if (timeout.deadline <= tickDeadline) {
+          this.dispatch(timeout);
+        } else {
+          /*
+           * The timeout was placed into the wrong bucket; this can only
+           * happen if the deadline was not yet due, so reinsert it.
+           */
+          this.pending.add(timeout);
+        }
+      } else {
+        --timeout.remainingRounds;
+      }
+      timeout = next;
+    }
+  }
+
+  private void dispatch(
+    final Timeout timeout)
+  {
+    if (!timeout.expire()) {
+      return;
+    }
+
+    try {
+      this.dispatcher.execute(timeout.task);
+    } catch (final RejectedExecutionException e) {
+      LOG.debug("Dispatch rejected: ", e);
+    } catch (final RuntimeException e) {
+      LOG.error("Task raised an exception: ", e);
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    if (this.closed.compareAndSet(false, true)) {
+      LockSupport.unpark(this.thread);
+      try {
+        this.thread.join();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * A handle to a scheduled task.
+   */
+
+  public static final class Timeout
+  {
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final Runnable task;
+    private final long deadline;
+    private volatile int state;
+    private long remainingRounds;
+    private Timeout next;
+    private Timeout prev;
+
+    private Timeout(
+      final Runnable inTask,
+      final long inDeadline)
+    {
+      this.task = inTask;
+      this.deadline = inDeadline;
+      this.state = STATE_PENDING;
+    }
+
+    /**
+     * Cancel the task. Cancelling a task that has already been dispatched
+     * has no effect.
+     *
+     * @return {@code true} if the task was cancelled before being dispatched
+     */
+
+    public boolean cancel()
+    {
+      return STATE.compareAndSet(this, STATE_PENDING, STATE_CANCELLED);
+    }
+
+    /**
+     * @return {@code true} if the task has been cancelled
+     */
+
+    public boolean isCancelled()
+    {
+      return this.state == STATE_CANCELLED;
+    }
+
+    /**
+     * @return {@code true} if the task has been dispatched
+     */
+
+    public boolean isExpired()
+    {
+      return this.state == STATE_EXPIRED;
+    }
+
+    private boolean expire()
+    {
+      return STATE.compareAndSet(this, STATE_PENDING, STATE_EXPIRED);
+    }
+  }
+
+  /**
+   * A bucket is an intrusive doubly-linked list of timeouts. Buckets are
+   * only ever accessed by the wheel thread.
+   */
+
+  private static final class Bucket
+  {
+    private Timeout head;
+    private Timeout tail;
+
+    Bucket()
+    {
+
+    }
+
+    void add(
+      final Timeout timeout)
+    {
+      timeout.prev = this.tail;
+      timeout.next = null;
+      if (this.tail == null) {
+        this.head = timeout;
+      } else {
+        this.tail.next = timeout;
+      }
+      this.tail = timeout;
+    }
+
+    void remove(
+      final Timeout timeout)
+    {
+      final var prev = timeout.prev;
+      final var next = timeout.next;
+
+      if (prev == null) {
+        this.head = next;
+      } else {
+        prev.next = next;
+      }
+      if (next == null) {
+        this.tail = prev;
+      } else {
+        next.prev = prev;
+      }
+
+      timeout.prev = null;
+      timeout.next = null;
+    }
+  }
+}
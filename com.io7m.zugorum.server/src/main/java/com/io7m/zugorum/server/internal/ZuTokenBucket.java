@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.server.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A token bucket implemented as a generic cell rate algorithm.</p>
+ *
+ * <p>The bucket tracks a single theoretical arrival time. A caller reserves
+ * a token and is told how long to wait before using it; reservations are
+ * never refused, so callers that are delayed are spaced out at exactly the
+ * configured rate rather than retrying in a burst. Reservation is a single
+ * compare-and-set.</p>
+ */
+
+public final class ZuTokenBucket
+{
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final AtomicLong arrival;
+
+  /**
+   * A token bucket.
+   *
+   * @param rate  The sustained number of tokens per second
+   * @param burst The number of tokens available at once
+   */
+
+  public ZuTokenBucket(
+    final double rate,
+    final int burst)
+  {
+    if (!(rate > 0.0) || Double.isInfinite(rate)) {
+      throw new IllegalArgumentException("Rate must be positive and finite.");
+    }
+    if (burst <= 0) {
+      throw new IllegalArgumentException("Burst must be positive.");
+    }
+
+    this.intervalNanos =
+      Math.max(1L, (long) (1_000_000_000.0 / rate));
+    this.toleranceNanos =
+      this.intervalNanos * (burst - 1L);
+    this.arrival =
+      new AtomicLong(System.nanoTime() - this.toleranceNanos);
+  }
+
+  /**
+   * Reserve a token.
+   *
+   * @param nowNanos The current time, as given by {@link System#nanoTime()}
+   *
+   * @return The number of nanoseconds the caller must wait before using the
+   * token; zero if the token can be used immediately
+   */
+
+  public long reserve(
+    final long nowNanos)
+  {
+    while (true) {
+      final var current = this.arrival.get();
+      final var start = current - nowNanos > 0L ? current : nowNanos;
+      if (this.arrival.compareAndSet(current, start + this.intervalNanos)) {
+        return Math.max(0L, start - this.toleranceNanos - nowNanos);
+      }
+    }
+  }
+}
@@ -32,4 +32,7 @@ module com.io7m.zugorum.server
   requires tools.jackson.databind;
 
   exports com.io7m.zugorum.server;
+
+  exports com.io7m.zugorum.server.internal
+    to tools.jackson.databind;
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuAddressFanOut;
+import com.io7m.zugorum.server.internal.ZuCheckKind;
+import com.io7m.zugorum.server.internal.ZuDeadline;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuMetricsExposition;
+import com.io7m.zugorum.server.internal.ZuOutcome;
+import com.io7m.zugorum.server.internal.ZuProbeLimiter;
+import com.io7m.zugorum.server.internal.ZuResolver;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuAddressFanOutTest
+{
+  private static final URI URL =
+    URI.create("tls://www.example.com:443");
+
+  private static InetAddress loopback(
+    final int last)
+    throws Exception
+  {
+    return InetAddress.getByAddress(new byte[]{127, 0, 0, (byte) last});
+  }
+
+  private static ZuDeadline deadline()
+  {
+    return ZuDeadline.start(
+      new ZuConfiguration.CheckTLS(
+        ZuConfiguration.CheckTLS.TYPE,
+        URL,
+        Duration.ofSeconds(1L),
+        Duration.ofSeconds(1L),
+        Duration.ofSeconds(1L),
+        Duration.ofSeconds(1L),
+        Duration.ofSeconds(5L),
+        null,
+        null
+      )
+    );
+  }
+
+  /**
+   * A resolver that looks names up again on every probe, and returns the
+   * addresses currently held in the given reference.
+   */
+
+  private static ZuResolver resolver(
+    final ZuMetrics metrics,
+    final AtomicReference<InetAddress[]> addresses)
+  {
+    return ZuResolver.create(
+      new ZuConfiguration.DNSCache(Duration.ZERO, Duration.ZERO),
+      metrics,
+      Runnable::run,
+      host -> addresses.get().clone()
+    );
+  }
+
+  private static String render(
+    final ZuMetrics metrics)
+    throws Exception
+  {
+    final var output = new ByteArrayOutputStream();
+    new ZuMetricsExposition(metrics).write(output);
+    return output.toString(UTF_8);
+  }
+
+  /**
+   * Every address is published as its own series, the worst outcome is
+   * published as the outcome of the check, addresses that are no longer
+   * resolved are removed, and every additional permit is returned.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testAllAddresses()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var limiter =
+      ZuProbeLimiter.create(Runnable::run, metrics, 8);
+    final var check =
+      metrics.register(ZuCheckKind.TLS, URL);
+    final var addresses =
+      new AtomicReference<>(new InetAddress[]{
+        loopback(1),
+        loopback(2),
+        loopback(3),
+        loopback(1),
+      });
+
+    final var refused = loopback(2);
+    final var maximum = new AtomicInteger();
+    final var probed = ConcurrentHashMap.<String>newKeySet();
+    final ZuAddressFanOut.AddressProbeType probe = (target, address, deadline) -> {
+      maximum.accumulateAndGet(limiter.inFlight(), Math::max);
+      probed.add(target.address());
+      if (address.equals(refused)) {
+        metrics.exception(target, new ConnectException("Refused"));
+      } else {
+        metrics.success(target);
+      }
+    };
+
+    try (final var fanOut =
+           ZuAddressFanOut.create(metrics, check, resolver(metrics, addresses), limiter, true)) {
+      assertTrue(limiter.tryAcquireAdditional());
+      fanOut.probe("www.example.com", deadline(), probe);
+      limiter.release();
+
+      assertEquals(Set.of("127.0.0.1", "127.0.0.2", "127.0.0.3"), probed);
+      assertTrue(maximum.get() > 1, "Additional permits must be taken");
+      assertEquals(0, limiter.inFlight());
+
+      assertEquals(ZuOutcome.CONNECT_REFUSED, metrics.outcome(check.id()));
+      assertTrue(metrics.failure(check.id()));
+      assertTrue(metrics.message(check.id()).startsWith("127.0.0.2: "));
+
+      final var text = render(metrics);
+      for (final var address : probed) {
+        assertTrue(
+          text.contains("zu_tls_attempts_total{url=\"tls://www.example.com:443\",address=\"%s\"} 1\n"
+                          .formatted(address)),
+          address
+        );
+      }
+      assertTrue(text.contains("zu_tls_status{url=\"tls://www.example.com:443\",address=\"127.0.0.2\",outcome=\"connect_refused\"} 1\n"));
+      assertTrue(text.contains("zu_tls_status{url=\"tls://www.example.com:443\",address=\"127.0.0.1\",outcome=\"success\"} 0\n"));
+
+      addresses.set(new InetAddress[]{loopback(1), loopback(3)});
+      probed.clear();
+
+      assertTrue(limiter.tryAcquireAdditional());
+      fanOut.probe("www.example.com", deadline(), probe);
+      limiter.release();
+
+      assertEquals(Set.of("127.0.0.1", "127.0.0.3"), probed);
+      assertEquals(0, limiter.inFlight());
+      assertEquals(ZuOutcome.SUCCESS, metrics.outcome(check.id()));
+      assertFalse(metrics.failure(check.id()));
+
+      final var after = render(metrics);
+      assertFalse(after.contains("127.0.0.2"));
+      assertTrue(after.contains("address=\"127.0.0.1\""));
+      assertTrue(after.contains("address=\"127.0.0.3\""));
+    }
+
+    assertFalse(render(metrics).contains("address="));
+  }
+
+  /**
+   * When no permit is free, every address is probed in turn on the calling
+   * thread under the permit of the check, and the limit is never exceeded.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSaturated()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var limiter =
+      ZuProbeLimiter.create(Runnable::run, metrics, 1);
+    final var check =
+      metrics.register(ZuCheckKind.TLS, URL);
+    final var addresses =
+      new AtomicReference<>(new InetAddress[]{
+        loopback(1),
+        loopback(2),
+        loopback(3),
+      });
+
+    final var caller = Thread.currentThread();
+    final var maximum = new AtomicInteger();
+    final var threads = ConcurrentHashMap.<Thread>newKeySet();
+    final var count = new AtomicInteger();
+
+    try (final var fanOut =
+           ZuAddressFanOut.create(metrics, check, resolver(metrics, addresses), limiter, true)) {
+      assertTrue(limiter.tryAcquireAdditional());
+      fanOut.probe("www.example.com", deadline(), (target, address, deadline) -> {
+        maximum.accumulateAndGet(limiter.inFlight(), Math::max);
+        threads.add(Thread.currentThread());
+        count.incrementAndGet();
+        metrics.success(target);
+      });
+      limiter.release();
+    }
+
+    assertEquals(3, count.get());
+    assertEquals(Set.of(caller), threads);
+    assertEquals(1, maximum.get());
+    assertEquals(0, limiter.inFlight());
+  }
+}
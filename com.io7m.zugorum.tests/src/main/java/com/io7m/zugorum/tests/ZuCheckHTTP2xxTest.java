@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckRunner;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuCheckHTTP2xxTest
+{
+  /**
+   * Start a server on the loopback address that answers every connection
+   * with the given response, and then waits for the client to close the
+   * connection.
+   */
+
+  private static ServerSocket server(
+    final byte[] response)
+    throws IOException
+  {
+    final var server =
+      new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+    Thread.ofVirtual().start(() -> {
+      while (!server.isClosed()) {
+        try {
+          final var socket = server.accept();
+          Thread.ofVirtual().start(() -> {
+            try (socket) {
+              socket.getOutputStream().write(response);
+              socket.getOutputStream().flush();
+              socket.getInputStream().transferTo(OutputStream.nullOutputStream());
+            } catch (final IOException e) {
+              // The client may close the connection at any time.
+            }
+          });
+        } catch (final IOException e) {
+          // The server socket has been closed.
+        }
+      }
+    });
+    return server;
+  }
+
+  private static ZuConfiguration configuration(
+    final int port)
+  {
+    final var pause = Duration.ofMillis(50L);
+    return new ZuConfiguration(
+      "localhost",
+      8190,
+      List.of(
+        new ZuConfiguration.CheckHTTP2xx(
+          ZuConfiguration.CheckHTTP2xx.TYPE,
+          URI.create("http://127.0.0.1:%d/".formatted(port)),
+          pause,
+          pause,
+          null,
+          Duration.ofSeconds(2L),
+          null,
+          null,
+          null,
+          null,
+          Boolean.TRUE
+        )
+      ),
+      ZuConfiguration.JitterStrategy.SPREAD,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null
+    );
+  }
+
+  /**
+   * Probe every address of a local server that returns the given response,
+   * and wait for the check to report the given outcome.
+   */
+
+  private static ZuMetrics probe(
+    final String response,
+    final ZuOutcome expected)
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    try (var server = server(response.getBytes(US_ASCII));
+         var runner = ZuCheckRunner.create(configuration(server.getLocalPort()), metrics)) {
+      final var check = metrics.check(0);
+      final var deadline =
+        System.nanoTime() + Duration.ofSeconds(10L).toNanos();
+
+      while (metrics.attempts(check.id()) < 1L
+             || metrics.outcome(check.id()) != expected) {
+        assertTrue(
+          System.nanoTime() < deadline,
+          "Outcome must be %s (was %s: %s)".formatted(
+            expected,
+            metrics.outcome(check.id()),
+            metrics.message(check.id()))
+        );
+        Thread.sleep(10L);
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * A well-formed status line reports its status code.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testStatus()
+    throws Exception
+  {
+    final var metrics =
+      probe("HTTP/1.1 204 No Content\r\n\r\n", ZuOutcome.SUCCESS);
+    assertEquals(204, metrics.code(0));
+  }
+
+  /**
+   * A status line without a three-digit code is a protocol failure.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testMalformedCode()
+    throws Exception
+  {
+    probe("HTTP/1.1 abc OK\r\n\r\n", ZuOutcome.PROTOCOL);
+    probe("HTTP/1.1 +20 OK\r\n\r\n", ZuOutcome.PROTOCOL);
+    probe("HTTP/1.1 2000 OK\r\n\r\n", ZuOutcome.PROTOCOL);
+    probe("SMTP 220 OK\r\n\r\n", ZuOutcome.PROTOCOL);
+  }
+
+  /**
+   * A status line that never ends is not buffered without limit.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testStatusLineTooLong()
+    throws Exception
+  {
+    probe("HTTP/1.1 200 " + "a".repeat(8192), ZuOutcome.PROTOCOL);
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckRunner;
+import com.io7m.zugorum.server.internal.ZuHistogram;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuCheckRunnerTest
+{
+  private static ZuConfiguration.CheckTCP tcp(
+    final int port,
+    final Duration pause)
+  {
+    return new ZuConfiguration.CheckTCP(
+      ZuConfiguration.CheckTCP.TYPE,
+      URI.create("tcp://127.0.0.1:%d".formatted(port)),
+      pause,
+      pause,
+      null,
+      null,
+      null
+    );
+  }
+
+  private static ZuConfiguration configuration(
+    final List<ZuConfiguration.CheckType> checks)
+  {
+    return configuration(
+      checks,
+      ZuConfiguration.JitterStrategy.SPREAD,
+      List.of()
+    );
+  }
+
+  private static ZuConfiguration configuration(
+    final List<ZuConfiguration.CheckType> checks,
+    final ZuConfiguration.JitterStrategy jitter,
+    final List<ZuConfiguration.HostLimit> hostLimits)
+  {
+    return new ZuConfiguration(
+      "localhost",
+      8190,
+      checks,
+      jitter,
+      null,
+      null,
+      hostLimits,
+      null,
+      null,
+      null,
+      null
+    );
+  }
+
+  /**
+   * Run four checks of one host that all probe immediately, and wait for
+   * each to have probed once.
+   *
+   * @return The delays imposed by host limits
+   */
+
+  private static ZuHistogram probeFour(
+    final List<ZuConfiguration.HostLimit> hostLimits)
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var hour =
+      Duration.ofHours(1L);
+    final var checks =
+      List.<ZuConfiguration.CheckType>of(
+        tcp(1, hour),
+        tcp(2, hour),
+        tcp(3, hour),
+        tcp(4, hour)
+      );
+
+    try (var runner = ZuCheckRunner.create(
+      configuration(checks, ZuConfiguration.JitterStrategy.UNIFORM, hostLimits),
+      metrics)) {
+      final var deadline = System.nanoTime() + Duration.ofSeconds(10L).toNanos();
+      while (attempts(metrics) < 4L) {
+        assertTrue(System.nanoTime() < deadline, "Checks must probe");
+        Thread.sleep(10L);
+      }
+    }
+    return metrics.histograms()
+      .get("zu_host_limit_delay_seconds")
+      .histogram();
+  }
+
+  private static long attempts(
+    final ZuMetrics metrics)
+  {
+    var sum = 0L;
+    for (int id = 0; id < metrics.idLimit(); ++id) {
+      sum += metrics.attempts(id);
+    }
+    return sum;
+  }
+
+  private static Map<URI, ZuMetrics.Check> registered(
+    final ZuMetrics metrics)
+  {
+    final var results = new HashMap<URI, ZuMetrics.Check>();
+    for (int id = 0; id < metrics.idLimit(); ++id) {
+      final var check = metrics.check(id);
+      if (check != null) {
+        results.put(check.uri(), check);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Reconciling a new configuration touches only the checks that changed.
+   */
+
+  @Test
+  public void testReconcile()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var hour =
+      Duration.ofHours(1L);
+
+    final var a = tcp(1, hour);
+    final var b = tcp(2, hour);
+    final var c = tcp(3, hour);
+    final var d = tcp(4, hour);
+
+    try (final var runner =
+           ZuCheckRunner.create(configuration(List.of(a, b, c)), metrics)) {
+      final var before = registered(metrics);
+      assertEquals(3, before.size());
+
+      final var result =
+        runner.reconcile(configuration(List.of(a, tcp(2, Duration.ofHours(2L)), d)));
+
+      assertEquals(new ZuCheckRunner.Reconciliation(1, 1, 1, 1), result);
+
+      final var after = registered(metrics);
+      assertEquals(3, after.size());
+      assertSame(before.get(a.uri()), after.get(a.uri()));
+      assertSame(before.get(b.uri()), after.get(b.uri()));
+      assertFalse(after.containsKey(c.uri()));
+      assertTrue(after.containsKey(d.uri()));
+      assertEquals(before.get(c.uri()).id(), after.get(d.uri()).id());
+
+      final var again =
+        runner.reconcile(configuration(List.of(a, tcp(2, Duration.ofHours(2L)), d)));
+      assertEquals(new ZuCheckRunner.Reconciliation(0, 0, 0, 3), again);
+    }
+  }
+
+  /**
+   * Probes of a host that matches a limit are spread out at the configured
+   * rate, and probes of hosts that match no limit are not delayed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testHostLimits()
+    throws Exception
+  {
+    final var limited =
+      probeFour(List.of(
+        new ZuConfiguration.HostLimit("127.0.0.1", 4.0, Integer.valueOf(1))
+      ));
+
+    assertEquals(3L, limited.count());
+    assertTrue(
+      limited.sumSeconds() > 1.0,
+      "Delays of about 0.25s, 0.5s and 0.75s, not %s".formatted(limited.sumSeconds())
+    );
+
+    final var other =
+      probeFour(List.of(
+        new ZuConfiguration.HostLimit("*.example.com", 4.0, Integer.valueOf(1))
+      ));
+    assertEquals(0L, other.count());
+
+    final var none = probeFour(List.of());
+    assertEquals(0L, none.count());
+  }
+
+  /**
+   * Duplicate checks are ignored.
+   */
+
+  @Test
+  public void testDuplicates()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var a =
+      tcp(1, Duration.ofHours(1L));
+
+    try (final var runner =
+           ZuCheckRunner.create(configuration(List.of(a, a)), metrics)) {
+      assertEquals(1, registered(metrics).size());
+    }
+  }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckRunner;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuOutcome;
+import com.io7m.zugorum.server.internal.ZuProbePhase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuCheckSMTPHELOTest
+{
+  private static final String PASSWORD =
+    "changeit";
+
+  /**
+   * The behaviour of a scripted SMTP server.
+   *
+   * @param banner   The banner
+   * @param startTLS {@code true} if STARTTLS is offered
+   * @param tls      The context used to accept STARTTLS, if any
+   */
+
+  private record Script(
+    String banner,
+    boolean startTLS,
+    SSLContext tls)
+  {
+
+  }
+
+  /**
+   * A scripted SMTP server on the loopback address. The server counts the
+   * EHLO commands it receives over TLS.
+   */
+
+  private static final class Server
+    implements AutoCloseable
+  {
+    private final ServerSocket socket;
+    private final Script script;
+    private final AtomicInteger secureGreetings;
+
+    Server(
+      final Script inScript)
+      throws IOException
+    {
+      this.script =
+        inScript;
+      this.socket =
+        new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      this.secureGreetings =
+        new AtomicInteger();
+
+      Thread.ofVirtual().start(() -> {
+        while (!this.socket.isClosed()) {
+          try {
+            final var client = this.socket.accept();
+            Thread.ofVirtual().start(() -> this.serve(client));
+          } catch (final IOException e) {
+            // The server socket has been closed.
+          }
+        }
+      });
+    }
+
+    int port()
+    {
+      return this.socket.getLocalPort();
+    }
+
+    int secureGreetings()
+    {
+      return this.secureGreetings.get();
+    }
+
+    private void serve(
+      final Socket client)
+    {
+      try (client) {
+        final var out = client.getOutputStream();
+        reply(out, this.script.banner());
+        if (!this.script.banner().startsWith("220")) {
+          return;
+        }
+        if (this.converse(client, false)) {
+          final var tlsSocket =
+            (SSLSocket) this.script.tls()
+              .getSocketFactory()
+              .createSocket(client, null, client.getPort(), true);
+          tlsSocket.setUseClientMode(false);
+          try (tlsSocket) {
+            tlsSocket.startHandshake();
+            this.converse(tlsSocket, true);
+          }
+        }
+      } catch (final IOException e) {
+        // The client may close the connection at any time.
+      }
+    }
+
+    /**
+     * Answer commands until the client quits or asks for STARTTLS.
+     *
+     * @return {@code true} if the connection should be upgraded
+     */
+
+    private boolean converse(
+      final Socket client,
+      final boolean secure)
+      throws IOException
+    {
+      final var in =
+        new BufferedReader(new InputStreamReader(client.getInputStream(), US_ASCII));
+      final var out =
+        client.getOutputStream();
+
+      while (true) {
+        final var line = in.readLine();
+        if (line == null) {
+          return false;
+        }
+        if (line.startsWith("EHLO ")) {
+          if (secure) {
+            this.secureGreetings.incrementAndGet();
+          }
+          if (this.script.startTLS() && !secure) {
+            reply(out, "250-mx.example.com\r\n250-PIPELINING\r\n250 STARTTLS");
+          } else {
+            reply(out, "250-mx.example.com\r\n250 PIPELINING");
+          }
+        } else if (line.equals("STARTTLS")) {
+          reply(out, "220 2.0.0 Ready to start TLS");
+          return true;
+        } else if (line.equals("QUIT")) {
+          reply(out, "221 2.0.0 Bye");
+          return false;
+        } else {
+          reply(out, "502 5.5.2 Error: command not recognized");
+        }
+      }
+    }
+
+    private static void reply(
+      final OutputStream out,
+      final String text)
+      throws IOException
+    {
+      out.write((text + "\r\n").getBytes(US_ASCII));
+      out.flush();
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      this.socket.close();
+    }
+  }
+
+  /**
+   * Generate a keystore holding a self-signed certificate for the loopback
+   * address.
+   */
+
+  private static KeyStore keyStore(
+    final Path directory)
+    throws Exception
+  {
+    final var file =
+      directory.resolve("server.p12");
+    final var keytool =
+      Path.of(System.getProperty("java.home"), "bin", "keytool");
+
+    final var process =
+      new ProcessBuilder(
+        keytool.toString(),
+        "-genkeypair",
+        "-alias", "server",
+        "-keyalg", "EC",
+        "-groupname", "secp256r1",
+        "-dname", "CN=localhost",
+        "-ext", "san=ip:127.0.0.1",
+        "-validity", "2",
+        "-storetype", "PKCS12",
+        "-keystore", file.toString(),
+        "-storepass", PASSWORD
+      ).redirectErrorStream(true)
+        .redirectOutput(directory.resolve("keytool.log").toFile())
+        .start();
+
+    assertTrue(process.waitFor(60L, TimeUnit.SECONDS));
+    assertEquals(0, process.exitValue());
+
+    final var keyStore = KeyStore.getInstance("PKCS12");
+    try (var stream = Files.newInputStream(file)) {
+      keyStore.load(stream, PASSWORD.toCharArray());
+    }
+    return keyStore;
+  }
+
+  private static ZuConfiguration configuration(
+    final int port,
+    final boolean startTLS)
+  {
+    final var pause = Duration.ofMillis(50L);
+    return new ZuConfiguration(
+      "localhost",
+      8190,
+      List.of(
+        new ZuConfiguration.CheckSMTPHELO(
+          ZuConfiguration.CheckSMTPHELO.TYPE,
+          URI.create("smtp://127.0.0.1:%d".formatted(port)),
+          "probe.example.com",
+          pause,
+          pause,
+          null,
+          Duration.ofSeconds(2L),
+          null,
+          null,
+          Boolean.valueOf(startTLS)
+        )
+      ),
+      ZuConfiguration.JitterStrategy.SPREAD,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null
+    );
+  }
+
+  /**
+   * Probe a scripted server until the check has completed a probe.
+   */
+
+  private static ZuMetrics.Check probe(
+    final ZuMetrics metrics,
+    final Server server,
+    final boolean startTLS)
+    throws Exception
+  {
+    try (var runner =
+           ZuCheckRunner.create(configuration(server.port(), startTLS), metrics)) {
+      final var check = metrics.check(0);
+      final var deadline =
+        System.nanoTime() + Duration.ofSeconds(10L).toNanos();
+
+      while (metrics.attempts(check.id()) < 1L) {
+        assertTrue(System.nanoTime() < deadline, "Check must probe");
+        Thread.sleep(10L);
+      }
+      return check;
+    }
+  }
+
+  private static long phaseCount(
+    final ZuMetrics.Check check,
+    final String phase)
+  {
+    final var histogram = check.phases().get(phase);
+    return histogram == null ? 0L : histogram.count();
+  }
+
+  /**
+   * A session records the banner, EHLO, and session phases.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSession()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    try (var server =
+           new Server(new Script("220 mx.example.com ESMTP", false, null))) {
+      final var check = probe(metrics, server, false);
+
+      assertFalse(metrics.failure(check.id()), metrics.message(check.id()));
+      assertEquals(ZuOutcome.SUCCESS, metrics.outcome(check.id()));
+      assertTrue(phaseCount(check, ZuProbePhase.CONNECT.label()) >= 1L);
+      assertTrue(phaseCount(check, "banner") >= 1L);
+      assertTrue(phaseCount(check, "ehlo") >= 1L);
+      assertTrue(phaseCount(check, "session") >= 1L);
+      assertEquals(0L, phaseCount(check, ZuProbePhase.TLS_HANDSHAKE.label()));
+      assertNull(metrics.tls(check.id()));
+    }
+  }
+
+  /**
+   * A banner other than 220 is rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testBannerRejected()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    try (var server =
+           new Server(new Script("554 5.3.2 No service", false, null))) {
+      final var check = probe(metrics, server, false);
+
+      assertTrue(metrics.failure(check.id()));
+      assertEquals(ZuOutcome.PROTOCOL, metrics.outcome(check.id()));
+      assertTrue(metrics.message(check.id()).contains("No service"));
+      assertTrue(phaseCount(check, "banner") >= 1L);
+      assertEquals(0L, phaseCount(check, "ehlo"));
+      assertEquals(0L, phaseCount(check, "session"));
+    }
+  }
+
+  /**
+   * A server that does not offer STARTTLS fails a check that requires it.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testStartTLSMissing()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    try (var server =
+           new Server(new Script("220 mx.example.com ESMTP", false, null))) {
+      final var check = probe(metrics, server, true);
+
+      assertTrue(metrics.failure(check.id()));
+      assertEquals(ZuOutcome.PROTOCOL, metrics.outcome(check.id()));
+      assertEquals("STARTTLS is not offered.", metrics.message(check.id()));
+      assertEquals(0L, phaseCount(check, ZuProbePhase.TLS_HANDSHAKE.label()));
+      assertEquals(0L, phaseCount(check, "session"));
+    }
+  }
+
+  /**
+   * A connection upgraded with STARTTLS records the handshake, and the
+   * server is greeted again over TLS.
+   *
+   * @param directory A temporary directory
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testStartTLS(
+    final @TempDir Path directory)
+    throws Exception
+  {
+    final var keyStore = keyStore(directory);
+
+    final var keyManagers =
+      KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    keyManagers.init(keyStore, PASSWORD.toCharArray());
+    final var serverContext = SSLContext.getInstance("TLS");
+    serverContext.init(keyManagers.getKeyManagers(), null, null);
+
+    final var trustManagers =
+      TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    trustManagers.init(keyStore);
+    final var clientContext = SSLContext.getInstance("TLS");
+    clientContext.init(null, trustManagers.getTrustManagers(), null);
+
+    /*
+     * The check uses the default context, which is taken when the check
+     * is created.
+     */
+
+    final var saved = SSLContext.getDefault();
+    SSLContext.setDefault(clientContext);
+
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    try (var server =
+           new Server(new Script("220 mx.example.com ESMTP", true, serverContext))) {
+      final var check = probe(metrics, server, true);
+
+      assertFalse(metrics.failure(check.id()), metrics.message(check.id()));
+      assertEquals(ZuOutcome.SUCCESS, metrics.outcome(check.id()));
+      assertTrue(phaseCount(check, ZuProbePhase.TLS_HANDSHAKE.label()) >= 1L);
+      assertTrue(phaseCount(check, "session") >= 1L);
+      assertTrue(server.secureGreetings() >= 1);
+      assertNotNull(metrics.tls(check.id()));
+    } finally {
+      SSLContext.setDefault(saved);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckRunner;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuProbePhase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuCheckTLSTest
+{
+  private static final String PASSWORD =
+    "changeit";
+
+  private static final List<String> TRUST_PROPERTIES =
+    List.of(
+      "javax.net.ssl.trustStore",
+      "javax.net.ssl.trustStorePassword",
+      "javax.net.ssl.trustStoreType"
+    );
+
+  /**
+   * Generate a keystore holding a self-signed certificate for the loopback
+   * address.
+   */
+
+  private static Path keyStore(
+    final Path directory)
+    throws Exception
+  {
+    final var file =
+      directory.resolve("server.p12");
+    final var keytool =
+      Path.of(System.getProperty("java.home"), "bin", "keytool");
+
+    final var process =
+      new ProcessBuilder(
+        keytool.toString(),
+        "-genkeypair",
+        "-alias", "server",
+        "-keyalg", "EC",
+        "-groupname", "secp256r1",
+        "-dname", "CN=localhost",
+        "-ext", "san=ip:127.0.0.1",
+        "-validity", "2",
+        "-storetype", "PKCS12",
+        "-keystore", file.toString(),
+        "-storepass", PASSWORD
+      ).redirectErrorStream(true)
+        .redirectOutput(directory.resolve("keytool.log").toFile())
+        .start();
+
+    assertTrue(process.waitFor(60L, TimeUnit.SECONDS));
+    assertEquals(0, process.exitValue());
+    return file;
+  }
+
+  private static SSLServerSocket server(
+    final Path keyStoreFile,
+    final String protocol)
+    throws Exception
+  {
+    final var keyStore = KeyStore.getInstance("PKCS12");
+    try (var stream = Files.newInputStream(keyStoreFile)) {
+      keyStore.load(stream, PASSWORD.toCharArray());
+    }
+
+    final var keyManagers =
+      KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    keyManagers.init(keyStore, PASSWORD.toCharArray());
+
+    final var context = SSLContext.getInstance("TLS");
+    context.init(keyManagers.getKeyManagers(), null, null);
+
+    final var server =
+      (SSLServerSocket) context.getServerSocketFactory()
+        .createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    server.setEnabledProtocols(new String[]{protocol});
+
+    Thread.ofVirtual().start(() -> {
+      while (!server.isClosed()) {
+        try {
+          final var socket = (SSLSocket) server.accept();
+          Thread.ofVirtual().start(() -> {
+            try (socket) {
+              socket.startHandshake();
+              socket.getInputStream().read();
+            } catch (final IOException e) {
+              // The client may close the connection at any time.
+            }
+          });
+        } catch (final IOException e) {
+          // The server socket has been closed.
+        }
+      }
+    });
+    return server;
+  }
+
+  /**
+   * Probe a local TLS server until a resumption attempt has succeeded.
+   */
+
+  private static void checkResumption(
+    final Path directory,
+    final String protocol)
+    throws Exception
+  {
+    final var keyStoreFile = keyStore(directory);
+    final var saved = new HashMap<String, String>();
+    for (final var name : TRUST_PROPERTIES) {
+      saved.put(name, System.getProperty(name));
+    }
+
+    /*
+     * A check with session resumption enabled initializes its own context
+     * with the default trust managers, which read these properties.
+     */
+
+    System.setProperty("javax.net.ssl.trustStore", keyStoreFile.toString());
+    System.setProperty("javax.net.ssl.trustStorePassword", PASSWORD);
+    System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+
+    try (var server = server(keyStoreFile, protocol)) {
+      final var metrics =
+        new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+      final var pause =
+        Duration.ofMillis(50L);
+      final var check =
+        new ZuConfiguration.CheckTLS(
+          ZuConfiguration.CheckTLS.TYPE,
+          URI.create("tls://127.0.0.1:%d".formatted(server.getLocalPort())),
+          pause,
+          pause,
+          null,
+          null,
+          null,
+          null,
+          Boolean.TRUE
+        );
+
+      try (var runner = ZuCheckRunner.create(configuration(check), metrics)) {
+        final var registered = metrics.check(0);
+        final var deadline =
+          System.nanoTime() + Duration.ofSeconds(30L).toNanos();
+
+        while (metrics.resumption(registered.id()) != ZuMetrics.RESUMPTION_SUCCEEDED) {
+          assertTrue(System.nanoTime() < deadline, "Session must be resumed");
+          Thread.sleep(10L);
+        }
+
+        final var phases = registered.phases();
+        final var full = ZuProbePhase.TLS_HANDSHAKE.label();
+        assertTrue(phases.get(full).count() >= 1L);
+        assertTrue(phases.get(full + "_resumed").count() >= 1L);
+      }
+    } finally {
+      restore(saved);
+    }
+  }
+
+  private static void restore(
+    final Map<String, String> saved)
+  {
+    for (final var entry : saved.entrySet()) {
+      if (entry.getValue() == null) {
+        System.clearProperty(entry.getKey());
+      } else {
+        System.setProperty(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private static ZuConfiguration configuration(
+    final ZuConfiguration.CheckType check)
+  {
+    return new ZuConfiguration(
+      "localhost",
+      8190,
+      List.of(check),
+      ZuConfiguration.JitterStrategy.SPREAD,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null
+    );
+  }
+
+  /**
+   * A TLS 1.3 session is resumed, and is not mistaken for a full handshake.
+   *
+   * @param directory A temporary directory
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testResumptionTLS13(
+    final @TempDir Path directory)
+    throws Exception
+  {
+    checkResumption(directory, "TLSv1.3");
+  }
+
+  /**
+   * A TLS 1.2 session is resumed, and is not mistaken for a full handshake.
+   *
+   * @param directory A temporary directory
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testResumptionTLS12(
+    final @TempDir Path directory)
+    throws Exception
+  {
+    checkResumption(directory, "TLSv1.2");
+  }
+}
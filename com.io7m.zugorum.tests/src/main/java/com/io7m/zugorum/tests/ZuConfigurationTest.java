@@ -22,10 +22,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public final class ZuConfigurationTest
 {
@@ -42,6 +48,223 @@ public final class ZuConfigurationTest
 
     assertEquals("0.0.0.0", configuration.listenAddress());
     assertEquals(8190, configuration.listenPort());
+    assertEquals(5, configuration.checks().size());
+  }
+
+  /**
+   * Options that are not specified take their default values.
+   *
+   * @param directory A temporary directory
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testDefaults(
+    final @TempDir Path directory)
+    throws Exception
+  {
+    final var configuration =
+      ZuConfiguration.ofFile(this.resource(directory, "configuration-0.json"));
+
+    assertEquals(
+      ZuConfiguration.JitterStrategy.UNIFORM,
+      configuration.jitter()
+    );
+    assertEquals(
+      ZuConfiguration.DEFAULT_DURATION_BUCKETS,
+      configuration.durationBuckets()
+    );
+    assertEquals(
+      Integer.valueOf(ZuConfiguration.DEFAULT_MAXIMUM_CONCURRENT_PROBES),
+      configuration.maximumConcurrentProbes()
+    );
+    assertEquals(List.of(), configuration.hostLimits());
+    assertEquals(
+      new ZuConfiguration.DNSCache(Duration.ofSeconds(60L), Duration.ofSeconds(5L)),
+      configuration.dnsCache()
+    );
+    assertEquals(
+      ZuConfiguration.DEFAULT_AVAILABILITY_WINDOWS,
+      configuration.availabilityWindows()
+    );
+    assertEquals(
+      Integer.valueOf(ZuConfiguration.DEFAULT_HISTORY_SIZE),
+      configuration.historySize()
+    );
+    assertEquals(Optional.empty(), configuration.remoteWrite());
+
+    final var check =
+      (ZuConfiguration.CheckHTTP2xx) configuration.checks().getFirst();
+
+    assertEquals(Duration.ofSeconds(10L), check.connectTimeout());
+    assertEquals(Duration.ofSeconds(10L), check.readTimeout());
+    assertEquals(Duration.ofSeconds(30L), check.deadline());
+    assertEquals(ZuConfiguration.HTTPRedirectPolicy.ALWAYS, check.followRedirects());
+    assertEquals(Optional.empty(), check.httpVersion());
+    assertEquals(Optional.empty(), check.proxy());
+    assertEquals(Boolean.FALSE, check.allAddresses());
+  }
+
+  /**
+   * Every top-level option is read.
+   *
+   * @param directory A temporary directory
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testOptions(
+    final @TempDir Path directory)
+    throws Exception
+  {
+    final var configuration =
+      ZuConfiguration.ofFile(this.resource(directory, "configuration-1.json"));
+
+    assertEquals(
+      ZuConfiguration.JitterStrategy.SPREAD,
+      configuration.jitter()
+    );
+    assertEquals(
+      List.of(0.1, 0.5, 1.0, 5.0),
+      configuration.durationBuckets()
+    );
+    assertEquals(
+      Integer.valueOf(64),
+      configuration.maximumConcurrentProbes()
+    );
+    assertEquals(
+      List.of(
+        new ZuConfiguration.HostLimit("*.io7m.com", 0.5, Integer.valueOf(2)),
+        new ZuConfiguration.HostLimit("www.example.com", 1.0, Integer.valueOf(1))
+      ),
+      configuration.hostLimits()
+    );
+    assertEquals(
+      new ZuConfiguration.DNSCache(Duration.ofSeconds(30L), Duration.ofSeconds(1L)),
+      configuration.dnsCache()
+    );
+    assertEquals(
+      List.of(Duration.ofMinutes(5L), Duration.ofHours(1L)),
+      configuration.availabilityWindows()
+    );
+    assertEquals(
+      Integer.valueOf(16),
+      configuration.historySize()
+    );
+    assertEquals(
+      Optional.of(new ZuConfiguration.RemoteWrite(
+        URI.create("https://metrics.example.com/api/v1/write"),
+        Duration.ofSeconds(15L),
+        Duration.ofSeconds(5L),
+        Integer.valueOf(1000),
+        Integer.valueOf(4),
+        Integer.valueOf(0)
+      )),
+      configuration.remoteWrite()
+    );
+  }
+
+  /**
+   * Every check type, and every check option, is read.
+   *
+   * @param directory A temporary directory
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testChecks(
+    final @TempDir Path directory)
+    throws Exception
+  {
+    final var configuration =
+      ZuConfiguration.ofFile(this.resource(directory, "configuration-2.json"));
+
+    final var checks = configuration.checks();
+    assertEquals(4, checks.size());
+
+    assertEquals(
+      new ZuConfiguration.CheckHTTP2xx(
+        ZuConfiguration.CheckHTTP2xx.TYPE,
+        URI.create("https://www.io7m.com"),
+        Duration.ofSeconds(1L),
+        Duration.ofSeconds(10L),
+        Duration.ofSeconds(2L),
+        Duration.ofSeconds(3L),
+        Duration.ofSeconds(4L),
+        ZuConfiguration.HTTPRedirectPolicy.NEVER,
+        Optional.of(ZuConfiguration.HTTPVersion.HTTP_2),
+        Optional.of(URI.create("http://proxy.example.com:3128")),
+        Boolean.TRUE
+      ),
+      checks.get(0)
+    );
+    assertEquals(
+      new ZuConfiguration.CheckSMTPHELO(
+        ZuConfiguration.CheckSMTPHELO.TYPE,
+        URI.create("smtp://mail.example.com:587"),
+        "zugorum.example.com",
+        null,
+        null,
+        null,
+        null,
+        null,
+        Boolean.TRUE,
+        Boolean.TRUE
+      ),
+      checks.get(1)
+    );
+    assertEquals(
+      new ZuConfiguration.CheckTLS(
+        ZuConfiguration.CheckTLS.TYPE,
+        URI.create("tls://www.example.com:443"),
+        null,
+        null,
+        null,
+        null,
+        null,
+        Boolean.TRUE,
+        Boolean.TRUE
+      ),
+      checks.get(2)
+    );
+    assertEquals(
+      new ZuConfiguration.CheckTCP(
+        ZuConfiguration.CheckTCP.TYPE,
+        URI.create("tcp://www.example.com:22"),
+        null,
+        null,
+        Duration.ofSeconds(1L),
+        null,
+        null
+      ),
+      checks.get(3)
+    );
+  }
+
+  /**
+   * Invalid option values are rejected.
+   *
+   * @param directory A temporary directory
+   */
+
+  @Test
+  public void testInvalid(
+    final @TempDir Path directory)
+  {
+    for (final var name : List.of("configuration-error-0.json", "configuration-error-1.json")) {
+      final var ex = assertThrows(Exception.class, () -> {
+        ZuConfiguration.ofFile(this.resource(directory, name));
+      });
+
+      Throwable cause = ex;
+      while (cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      assertInstanceOf(IllegalArgumentException.class, cause, name);
+    }
   }
 
   private Path resource(
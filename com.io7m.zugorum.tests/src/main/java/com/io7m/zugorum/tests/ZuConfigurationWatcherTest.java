@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckRunner;
+import com.io7m.zugorum.server.internal.ZuConfigurationWatcher;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class ZuConfigurationWatcherTest
+{
+  private static String configuration(
+    final int... ports)
+  {
+    final var checks = new StringBuilder();
+    for (final var port : ports) {
+      if (!checks.isEmpty()) {
+        checks.append(",\n");
+      }
+      checks.append("""
+        {
+          "Type": "TCP",
+          "URI": "tcp://127.0.0.1:%d",
+          "PauseMinimum": "PT1H",
+          "PauseMaximum": "PT1H"
+        }""".formatted(port));
+    }
+
+    return """
+      {
+        "ListenAddress": "localhost",
+        "ListenPort": 8190,
+        "Checks": [
+      %s
+        ]
+      }
+      """.formatted(checks);
+  }
+
+  /**
+   * Rewriting the configuration file, in place or by renaming a new file
+   * over it, reconciles the running checks with the new configuration. A
+   * file that cannot be parsed is ignored.
+   *
+   * @param directory A temporary directory
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRewriteReconciles(
+    final @TempDir Path directory)
+    throws Exception
+  {
+    final var file = directory.resolve("configuration.json");
+    Files.writeString(file, configuration(1, 2));
+
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var results =
+      new LinkedBlockingQueue<ZuCheckRunner.Reconciliation>();
+
+    try (var runner =
+           ZuCheckRunner.create(ZuConfiguration.ofFile(file), metrics);
+         var watcher =
+           ZuConfigurationWatcher.create(file, configuration -> {
+             try {
+               results.add(runner.reconcile(configuration));
+             } catch (final Exception e) {
+               throw new IllegalStateException(e);
+             }
+           })) {
+
+      Files.writeString(file, configuration(1, 2, 3));
+      assertEquals(
+        new ZuCheckRunner.Reconciliation(1, 0, 0, 2),
+        results.poll(15L, TimeUnit.SECONDS)
+      );
+
+      final var replacement = directory.resolve("configuration.json.new");
+      Files.writeString(replacement, configuration(3));
+      Files.move(replacement, file, StandardCopyOption.ATOMIC_MOVE);
+      assertEquals(
+        new ZuCheckRunner.Reconciliation(0, 2, 0, 1),
+        results.poll(15L, TimeUnit.SECONDS)
+      );
+
+      Files.writeString(file, "{ \"ListenAddress\": ");
+      assertNull(results.poll(2L, TimeUnit.SECONDS));
+    }
+  }
+}
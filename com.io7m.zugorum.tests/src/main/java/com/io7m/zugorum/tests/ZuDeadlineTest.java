@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuDeadline;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuProbePhase;
+import com.io7m.zugorum.server.internal.ZuResolver;
+import com.io7m.zugorum.server.internal.ZuSockets;
+import com.io7m.zugorum.server.internal.ZuTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuDeadlineTest
+{
+  private static ZuConfiguration.CheckTLS check(
+    final Duration readTimeout,
+    final Duration deadline)
+  {
+    return new ZuConfiguration.CheckTLS(
+      ZuConfiguration.CheckTLS.TYPE,
+      URI.create("tls://localhost:443"),
+      Duration.ofSeconds(1L),
+      Duration.ofSeconds(1L),
+      Duration.ofSeconds(1L),
+      readTimeout,
+      deadline,
+      null,
+      null
+    );
+  }
+
+  /**
+   * A server that accepts connections and never responds causes the TLS
+   * handshake to time out.
+   */
+
+  @Test
+  public void testHandshakeBlackhole()
+    throws Exception
+  {
+    final var accepted = new ArrayList<Socket>();
+    try (final var server =
+           new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      final var acceptor = Thread.ofVirtual().start(() -> {
+        try {
+          accepted.add(server.accept());
+        } catch (final Exception e) {
+          // Ignored
+        }
+      });
+
+      final var deadline =
+        ZuDeadline.start(check(Duration.ofMillis(250L), Duration.ofSeconds(5L)));
+      final var host =
+        InetAddress.getLoopbackAddress().getHostAddress();
+
+      final var time0 = System.nanoTime();
+      final var socket =
+        ZuSockets.connect(
+          ZuResolver.create(
+            new ZuConfiguration.DNSCache(null, null),
+            new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS),
+            Runnable::run
+          ),
+          host,
+          server.getLocalPort(),
+          deadline
+        );
+
+      final var ex =
+        assertThrows(ZuTimeoutException.class, () -> {
+          ZuSockets.handshake(
+            (SSLSocketFactory) SSLSocketFactory.getDefault(),
+            socket,
+            host,
+            server.getLocalPort(),
+            deadline
+          );
+        });
+
+      final var elapsed = Duration.ofNanos(System.nanoTime() - time0);
+      assertEquals(ZuProbePhase.TLS_HANDSHAKE, ex.phase());
+      assertTrue(elapsed.compareTo(Duration.ofSeconds(5L)) < 0);
+      acceptor.join();
+    } finally {
+      for (final var socket : accepted) {
+        socket.close();
+      }
+    }
+  }
+
+  /**
+   * Per-phase timeouts are bounded by the overall deadline.
+   */
+
+  @Test
+  public void testPhaseTimeoutsBounded()
+    throws Exception
+  {
+    final var deadline =
+      ZuDeadline.start(check(Duration.ofSeconds(10L), Duration.ofMillis(100L)));
+
+    assertTrue(deadline.readTimeout().compareTo(Duration.ofMillis(100L)) <= 0);
+    assertTrue(deadline.connectTimeout().compareTo(Duration.ofMillis(100L)) <= 0);
+
+    Thread.sleep(150L);
+    assertTrue(deadline.isExpired());
+    assertTrue(deadline.isTimeout(new IllegalStateException()));
+
+    final var ex =
+      assertThrows(ZuTimeoutException.class, () -> {
+        deadline.enter(ZuProbePhase.EXCHANGE);
+      });
+    assertEquals(ZuProbePhase.DNS, ex.phase());
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckKind;
+import com.io7m.zugorum.server.internal.ZuCheckSelector;
+import com.io7m.zugorum.server.internal.ZuEvents;
+import com.io7m.zugorum.server.internal.ZuEventsHandler;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuEventsTest
+{
+  private static ZuEvents.Event next(
+    final ZuEvents.Subscription subscription)
+    throws InterruptedException
+  {
+    return subscription.poll(0L, TimeUnit.SECONDS).event();
+  }
+
+  /**
+   * Subscribers receive the results of the selected checks, and state
+   * subscribers receive only changes of outcome.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSelection()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var http =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://example.com"));
+    final var tcp =
+      metrics.register(ZuCheckKind.TCP, URI.create("tcp://example.com:25"));
+
+    final var events = metrics.events();
+    assertFalse(events.hasSubscriptions());
+
+    try (var results = events.subscribe(
+           new ZuCheckSelector(Set.of(ZuCheckKind.HTTP), Set.of(), Set.of(), 0, 1), false, 16);
+         var states = events.subscribe(ZuCheckSelector.all(), true, 16)) {
+      assertTrue(events.hasSubscriptions());
+
+      metrics.status(http, 200);
+      metrics.count(http, 1000L);
+      metrics.status(http, 200);
+      metrics.count(http, 1000L);
+      metrics.status(http, 503);
+      metrics.count(http, 1000L);
+      metrics.success(tcp);
+      metrics.count(tcp, 1000L);
+
+      final var first = next(results);
+      assertEquals(http, first.check());
+      assertTrue(first.changed());
+      assertFalse(next(results).changed());
+
+      final var message = ZuEventsHandler.message(next(results));
+      assertEquals("http_5xx", message.outcome());
+      assertEquals(503, message.code());
+      assertTrue(message.changed());
+      assertNull(results.poll(0L, TimeUnit.SECONDS));
+
+      assertEquals(200, next(states).code());
+      assertEquals(503, next(states).code());
+      assertEquals(tcp, next(states).check());
+      assertNull(states.poll(0L, TimeUnit.SECONDS));
+    }
+
+    assertFalse(events.hasSubscriptions());
+  }
+
+  /**
+   * A subscriber that falls behind loses results but not state changes,
+   * and is told how many results it lost.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSlowSubscriber()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var check =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://example.com"));
+
+    try (var subscription =
+           metrics.events().subscribe(ZuCheckSelector.all(), false, 2)) {
+      for (int index = 0; index < 10; ++index) {
+        metrics.status(check, 200);
+        metrics.count(check, 1000L);
+      }
+      metrics.status(check, 500);
+      metrics.count(check, 1000L);
+      metrics.status(check, 404);
+      metrics.count(check, 1000L);
+
+      assertEquals(8L, subscription.takeDropped());
+      assertEquals(0L, subscription.takeDropped());
+      assertEquals(200, next(subscription).code());
+      assertEquals(200, next(subscription).code());
+      assertEquals(404, next(subscription).code());
+      assertNull(subscription.poll(0L, TimeUnit.SECONDS));
+    }
+  }
+
+  /**
+   * Events are delivered in the order they were accepted, even when some
+   * were coalesced, so the last state delivered for each check is its most
+   * recent state.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testCoalescedOrder()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var a =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://a.example.com"));
+    final var b =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://b.example.com"));
+    final var c =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://c.example.com"));
+
+    try (var subscription =
+           metrics.events().subscribe(ZuCheckSelector.all(), true, 1)) {
+
+      /*
+       * The state of a is buffered, and the states of b and c overflow and
+       * are coalesced. Once a has been taken, newer states of b and c
+       * arrive while the older ones are still coalesced.
+       */
+
+      metrics.status(a, 200);
+      metrics.count(a, 1000L);
+      metrics.status(b, 200);
+      metrics.count(b, 1000L);
+      metrics.status(c, 200);
+      metrics.count(c, 1000L);
+      assertEquals(a, next(subscription).check());
+
+      metrics.status(b, 503);
+      metrics.count(b, 1000L);
+      metrics.status(c, 503);
+      metrics.count(c, 1000L);
+
+      final var received = new HashMap<ZuMetrics.Check, Integer>();
+      var previous = 0L;
+      while (true) {
+        final var delivery = subscription.poll(0L, TimeUnit.SECONDS);
+        if (delivery == null) {
+          break;
+        }
+        assertTrue(delivery.sequence() > previous);
+        previous = delivery.sequence();
+        received.put(delivery.event().check(), delivery.event().code());
+      }
+
+      assertEquals(Integer.valueOf(503), received.get(b));
+      assertEquals(Integer.valueOf(503), received.get(c));
+    }
+  }
+}
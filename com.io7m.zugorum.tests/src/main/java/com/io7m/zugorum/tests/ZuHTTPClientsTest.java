@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuHTTPClients;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuHTTPClientsTest
+{
+  private static ZuConfiguration.CheckHTTP2xx check(
+    final URI uri,
+    final Duration connectTimeout)
+  {
+    return new ZuConfiguration.CheckHTTP2xx(
+      ZuConfiguration.CheckHTTP2xx.TYPE,
+      uri,
+      Duration.ofSeconds(60L),
+      Duration.ofSeconds(60L),
+      connectTimeout,
+      Duration.ofSeconds(10L),
+      Duration.ofSeconds(30L),
+      ZuConfiguration.HTTPRedirectPolicy.NEVER,
+      Optional.empty(),
+      Optional.empty(),
+      null
+    );
+  }
+
+  private static long gauge(
+    final ZuMetrics metrics,
+    final String name)
+  {
+    return metrics.gauges().get(name).value().getAsLong();
+  }
+
+  /**
+   * Checks with equal client settings share a client, clients are
+   * reference counted, and the gauges track both.
+   */
+
+  @Test
+  public void testSharing()
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var tenSeconds =
+      Duration.ofSeconds(10L);
+
+    try (var clients = ZuHTTPClients.create(metrics)) {
+      final var a =
+        clients.acquire(check(URI.create("https://a.example.com"), tenSeconds));
+      final var b =
+        clients.acquire(check(URI.create("https://b.example.com"), tenSeconds));
+      assertEquals(1L, gauge(metrics, "zu_http_clients"));
+      assertEquals(2L, gauge(metrics, "zu_http_client_checks"));
+
+      final var c =
+        clients.acquire(check(URI.create("https://a.example.com"), Duration.ofSeconds(5L)));
+      assertEquals(2L, gauge(metrics, "zu_http_clients"));
+      assertEquals(3L, gauge(metrics, "zu_http_client_checks"));
+
+      a.close();
+      a.close();
+      assertEquals(2L, gauge(metrics, "zu_http_clients"));
+      assertEquals(2L, gauge(metrics, "zu_http_client_checks"));
+
+      b.close();
+      assertEquals(1L, gauge(metrics, "zu_http_clients"));
+      assertEquals(1L, gauge(metrics, "zu_http_client_checks"));
+
+      c.close();
+      assertEquals(0L, gauge(metrics, "zu_http_clients"));
+      assertEquals(0L, gauge(metrics, "zu_http_client_checks"));
+      assertEquals(0L, gauge(metrics, "zu_http_client_requests_in_flight"));
+    }
+  }
+
+  /**
+   * Closing a client that is waiting for a request in flight does not
+   * prevent other clients from being acquired.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testReleaseDoesNotBlock()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var entered =
+      new CountDownLatch(1);
+    final var respond =
+      new CountDownLatch(1);
+
+    final var server =
+      HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      try (exchange) {
+        entered.countDown();
+        respond.await(10L, TimeUnit.SECONDS);
+        exchange.sendResponseHeaders(200, -1L);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    server.start();
+
+    final var clients = ZuHTTPClients.create(metrics);
+    try {
+      final var uri =
+        URI.create("http://localhost:%d/".formatted(server.getAddress().getPort()));
+      final var lease =
+        clients.acquire(check(uri, Duration.ofSeconds(10L)));
+
+      final var request = Thread.ofVirtual().start(() -> {
+        try {
+          lease.send(
+            HttpRequest.newBuilder(uri).build(),
+            HttpResponse.BodyHandlers.discarding(),
+            Duration.ofSeconds(10L)
+          );
+        } catch (final Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+
+      assertTrue(entered.await(10L, TimeUnit.SECONDS));
+      assertEquals(1L, gauge(metrics, "zu_http_client_requests_in_flight"));
+
+      final var release = Thread.ofVirtual().start(lease::close);
+      final var deadline = System.nanoTime() + Duration.ofSeconds(10L).toNanos();
+      while (release.getState() == Thread.State.RUNNABLE) {
+        assertTrue(System.nanoTime() < deadline, "Release must wait");
+        Thread.sleep(10L);
+      }
+
+      assertTimeoutPreemptively(Duration.ofSeconds(2L), () -> {
+        clients.acquire(check(uri, Duration.ofSeconds(5L))).close();
+      });
+      assertEquals(0L, gauge(metrics, "zu_http_clients"));
+
+      respond.countDown();
+      request.join();
+      release.join();
+      assertEquals(0L, gauge(metrics, "zu_http_client_requests_in_flight"));
+    } finally {
+      respond.countDown();
+      clients.close();
+      server.stop(0);
+    }
+  }
+}
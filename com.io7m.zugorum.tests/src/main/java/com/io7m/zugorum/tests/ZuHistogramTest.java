@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.internal.ZuHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ZuHistogramTest
+{
+  private static final double[] BOUNDS = {0.01, 0.1, 1.0};
+
+  @Test
+  public void testBuckets()
+  {
+    final var histogram = new ZuHistogram(BOUNDS);
+    histogram.record(5_000_000L);
+    histogram.record(10_000_000L);
+    histogram.record(50_000_000L);
+    histogram.record(500_000_000L);
+    histogram.record(5_000_000_000L);
+
+    assertEquals(2L, histogram.bucketValue(0));
+    assertEquals(1L, histogram.bucketValue(1));
+    assertEquals(1L, histogram.bucketValue(2));
+    assertEquals(1L, histogram.bucketValue(3));
+
+    final var cumulative = new long[4];
+    histogram.cumulativeCounts(cumulative);
+    assertEquals(2L, cumulative[0]);
+    assertEquals(3L, cumulative[1]);
+    assertEquals(4L, cumulative[2]);
+    assertEquals(5L, cumulative[3]);
+    assertEquals(5.565, histogram.sumSeconds(), 0.000001);
+  }
+
+  @Test
+  public void testBoundsAscending()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new ZuHistogram(new double[]{1.0, 1.0});
+    });
+  }
+
+  @Test
+  public void testConcurrent()
+    throws Exception
+  {
+    final var histogram = new ZuHistogram(BOUNDS);
+    final var threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; ++t) {
+      threads.add(Thread.ofPlatform().start(() -> {
+        for (int index = 0; index < 100_000; ++index) {
+          histogram.record(index * 10_000L);
+        }
+      }));
+    }
+    for (final var thread : threads) {
+      thread.join();
+    }
+
+    final var cumulative = new long[4];
+    histogram.cumulativeCounts(cumulative);
+    assertEquals(800_000L, cumulative[3]);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckKind;
+import com.io7m.zugorum.server.internal.ZuHistory;
+import com.io7m.zugorum.server.internal.ZuHistoryHandler;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class ZuHistoryTest
+{
+  /**
+   * The ring retains only the most recent results, oldest first.
+   */
+
+  @Test
+  public void testRing()
+  {
+    final var history = new ZuHistory(4);
+    assertEquals(0, history.entries(Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+    for (int index = 0; index < 10; ++index) {
+      history.record(index, index * 1000L, ZuOutcome.HTTP_5XX, 500 + index);
+    }
+
+    final var entries = history.entries(Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals(4, entries.size());
+    for (int index = 0; index < 4; ++index) {
+      final var entry = entries.get(index);
+      assertEquals(6L + index, entry.timeMillis());
+      assertEquals((6L + index) * 1000L, entry.durationNanos());
+      assertEquals(ZuOutcome.HTTP_5XX, entry.outcome());
+      assertEquals(506 + index, entry.code());
+    }
+
+    assertEquals(2, history.entries(7L, 9L).size());
+    assertEquals(0, new ZuHistory(0).entries(Long.MIN_VALUE, Long.MAX_VALUE).size());
+  }
+
+  /**
+   * Counted probes are recorded with their outcome, status code, and time.
+   */
+
+  @Test
+  public void testMetrics()
+  {
+    final var time =
+      new AtomicLong();
+    final var metrics =
+      new ZuMetrics(
+        ZuConfiguration.DEFAULT_DURATION_BUCKETS,
+        ZuConfiguration.DEFAULT_AVAILABILITY_WINDOWS,
+        3,
+        time::get
+      );
+    final var check =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://example.com"));
+
+    metrics.status(check, 200);
+    metrics.count(check, 250_000_000L);
+    time.addAndGet(Duration.ofSeconds(10L).toNanos());
+    metrics.status(check, 404);
+    metrics.count(check, 500_000_000L);
+
+    final var all =
+      ZuHistoryHandler.history(metrics, check.id(), Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals(check.id(), all.id());
+    assertEquals(2, all.results().size());
+    assertEquals("success", all.results().get(0).outcome());
+    assertEquals(200, all.results().get(0).code());
+    assertEquals(0.25, all.results().get(0).duration());
+    assertEquals("http_4xx", all.results().get(1).outcome());
+    assertEquals(404, all.results().get(1).code());
+    assertEquals(
+      Duration.ofSeconds(10L),
+      Duration.between(all.results().get(0).time(), all.results().get(1).time())
+    );
+
+    final var later =
+      ZuHistoryHandler.history(
+        metrics,
+        check.id(),
+        all.results().get(1).time().toEpochMilli(),
+        Long.MAX_VALUE
+      );
+    assertEquals(1, later.results().size());
+    assertEquals(404, later.results().get(0).code());
+
+    assertNull(ZuHistoryHandler.history(metrics, check.id() + 1, 0L, 1L));
+    assertNull(ZuHistoryHandler.history(metrics, -1, 0L, 1L));
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuHostLimits;
+import com.io7m.zugorum.server.internal.ZuTokenBucket;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ZuHostLimitsTest
+{
+  /**
+   * A burst is allowed immediately, and later reservations are spaced out
+   * at the configured rate.
+   */
+
+  @Test
+  public void testBucketSpacing()
+  {
+    final var bucket = new ZuTokenBucket(10.0, 3);
+    final var now = System.nanoTime();
+
+    assertEquals(0L, bucket.reserve(now));
+    assertEquals(0L, bucket.reserve(now));
+    assertEquals(0L, bucket.reserve(now));
+    assertEquals(100_000_000L, bucket.reserve(now));
+    assertEquals(200_000_000L, bucket.reserve(now));
+    assertEquals(300_000_000L, bucket.reserve(now));
+  }
+
+  /**
+   * Tokens are replenished over time.
+   */
+
+  @Test
+  public void testBucketRefills()
+  {
+    final var bucket = new ZuTokenBucket(10.0, 1);
+    final var now = System.nanoTime();
+
+    assertEquals(0L, bucket.reserve(now));
+    assertEquals(50_000_000L, bucket.reserve(now + 50_000_000L));
+    assertEquals(0L, bucket.reserve(now + 1_000_000_000L));
+  }
+
+  /**
+   * The first matching pattern applies, and hosts matching no pattern are
+   * not limited.
+   */
+
+  @Test
+  public void testPatterns()
+  {
+    final var exact =
+      new ZuConfiguration.HostLimit("www.example.com", 5.0, null);
+    final var domain =
+      new ZuConfiguration.HostLimit("*.example.com", 1.0, Integer.valueOf(2));
+    final var limits =
+      ZuHostLimits.create(List.of(exact, domain));
+
+    assertEquals(Optional.of(exact), limits.limitFor("WWW.example.com"));
+    assertEquals(Optional.of(domain), limits.limitFor("mail.example.com"));
+    assertEquals(Optional.empty(), limits.limitFor("example.com"));
+    assertEquals(Optional.empty(), limits.limitFor("example.org"));
+    assertEquals(Optional.empty(), limits.bucketFor("example.org"));
+  }
+
+  /**
+   * No host has a bucket if no limits are configured.
+   */
+
+  @Test
+  public void testUnlimited()
+  {
+    final var limits = ZuHostLimits.create(List.of());
+    assertEquals(Optional.empty(), limits.limitFor("a.example.com"));
+    assertEquals(Optional.empty(), limits.bucketFor("a.example.com"));
+  }
+
+  /**
+   * Every check targeting a host shares one bucket.
+   */
+
+  @Test
+  public void testBucketsShared()
+  {
+    final var limits = ZuHostLimits.create(List.of(
+      new ZuConfiguration.HostLimit("*", 1.0, null)
+    ));
+
+    final var a = limits.bucketFor("a.example.com").orElseThrow();
+    assertSame(a, limits.bucketFor("a.example.com").orElseThrow());
+    assertSame(a, limits.bucketFor("A.Example.com").orElseThrow());
+    assertNotSame(a, limits.bucketFor("b.example.com").orElseThrow());
+  }
+
+  /**
+   * The buckets of hosts that are no longer targeted are discarded.
+   */
+
+  @Test
+  public void testRetainHosts()
+  {
+    final var limits = ZuHostLimits.create(List.of(
+      new ZuConfiguration.HostLimit("*", 1.0, null)
+    ));
+
+    final var a = limits.bucketFor("a.example.com").orElseThrow();
+    final var b = limits.bucketFor("b.example.com").orElseThrow();
+    limits.retainHosts(List.of("A.example.com"));
+
+    assertSame(a, limits.bucketFor("a.example.com").orElseThrow());
+    assertNotSame(b, limits.bucketFor("b.example.com").orElseThrow());
+  }
+
+  /**
+   * Malformed patterns are rejected.
+   */
+
+  @Test
+  public void testInvalidPatterns()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new ZuConfiguration.HostLimit("www.*.com", 1.0, null);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new ZuConfiguration.HostLimit("*example.com", 1.0, null);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new ZuConfiguration.HostLimit("*", 0.0, null);
+    });
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuJitters;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Optional;
+
+import static com.io7m.zugorum.server.ZuConfiguration.JitterStrategy.DECORRELATED;
+import static com.io7m.zugorum.server.ZuConfiguration.JitterStrategy.SPREAD;
+import static com.io7m.zugorum.server.ZuConfiguration.JitterStrategy.UNIFORM;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuJitterTest
+{
+  private static final Duration MINIMUM =
+    Duration.ofSeconds(50L);
+  private static final Duration MAXIMUM =
+    Duration.ofSeconds(70L);
+
+  private static ZuConfiguration.CheckHTTP2xx check(
+    final int index)
+  {
+    return new ZuConfiguration.CheckHTTP2xx(
+      ZuConfiguration.CheckHTTP2xx.TYPE,
+      URI.create("https://host-%d.example.com/".formatted(index)),
+      MINIMUM,
+      MAXIMUM,
+      Duration.ofSeconds(10L),
+      Duration.ofSeconds(10L),
+      Duration.ofSeconds(30L),
+      ZuConfiguration.HTTPRedirectPolicy.ALWAYS,
+      Optional.empty(),
+      Optional.empty(),
+      null
+    );
+  }
+
+  /**
+   * Checks that share a pause range are spread evenly across the period.
+   */
+
+  @Test
+  public void testSpreadIsFlat()
+  {
+    final var checkCount = 10_000;
+    final var binCount = 10;
+    final var bins = new int[binCount];
+    final var period = Duration.ofSeconds(60L).toNanos();
+    final var now = System.nanoTime();
+
+    for (int index = 0; index < checkCount; ++index) {
+      final var jitter = ZuJitters.create(SPREAD, check(index));
+      final var delay = jitter.initialDelay(now).toNanos();
+      assertTrue(delay > 0L && delay <= period);
+      ++bins[(int) (((delay - 1L) * binCount) / period)];
+    }
+
+    final var expected = checkCount / binCount;
+    for (final var bin : bins) {
+      assertTrue(
+        Math.abs(bin - expected) < expected / 5,
+        "Bin %d is within 20%% of %d".formatted(bin, expected)
+      );
+    }
+  }
+
+  /**
+   * A spread check keeps its phase regardless of the duration of probes.
+   */
+
+  @Test
+  public void testSpreadKeepsPhase()
+  {
+    final var jitter = ZuJitters.create(SPREAD, check(23));
+    final var period = Duration.ofSeconds(60L).toNanos();
+
+    var now = 1_000_000_000L;
+    final var first = now + jitter.initialDelay(now).toNanos();
+    now = first;
+
+    for (int index = 1; index < 100; ++index) {
+      final var probeTime = (index * 7_919_000_000L) % (period / 3L);
+      now += probeTime;
+      now += jitter.nextPause(now).toNanos();
+      assertEquals(0L, Math.floorMod(now - first, period));
+    }
+  }
+
+  @Test
+  public void testUniformWithinRange()
+  {
+    final var jitter = ZuJitters.create(UNIFORM, check(0));
+    assertEquals(Duration.ZERO, jitter.initialDelay(0L));
+
+    for (int index = 0; index < 10_000; ++index) {
+      final var pause = jitter.nextPause(0L);
+      assertTrue(pause.compareTo(MINIMUM) >= 0);
+      assertTrue(pause.compareTo(MAXIMUM) <= 0);
+    }
+  }
+
+  @Test
+  public void testDecorrelatedWithinRange()
+  {
+    final var jitter = ZuJitters.create(DECORRELATED, check(0));
+    assertTrue(jitter.initialDelay(0L).compareTo(MINIMUM) <= 0);
+
+    for (int index = 0; index < 10_000; ++index) {
+      final var pause = jitter.nextPause(0L);
+      assertTrue(pause.compareTo(MINIMUM) >= 0);
+      assertTrue(pause.compareTo(MAXIMUM) <= 0);
+    }
+  }
+
+  @Test
+  public void testIdentityStable()
+  {
+    assertEquals(
+      ZuJitters.identityOf(check(1)),
+      ZuJitters.identityOf(check(1))
+    );
+    assertTrue(
+      ZuJitters.identityOf(check(1)) != ZuJitters.identityOf(check(2))
+    );
+  }
+}
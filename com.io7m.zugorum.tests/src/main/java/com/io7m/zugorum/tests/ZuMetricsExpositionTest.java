@@ -0,0 +1,631 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckKind;
+import com.io7m.zugorum.server.internal.ZuCheckSelector;
+import com.io7m.zugorum.server.internal.ZuDiagnosticsHandler;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuMetricsExposition;
+import com.io7m.zugorum.server.internal.ZuMetricsFormat;
+import com.io7m.zugorum.server.internal.ZuMetricsHandler;
+import com.io7m.zugorum.server.internal.ZuOutcome;
+import com.io7m.zugorum.server.internal.ZuProbePhase;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuMetricsExpositionTest
+{
+  private static String render(
+    final ZuMetricsExposition exposition)
+    throws Exception
+  {
+    final var output = new ByteArrayOutputStream();
+    exposition.write(output);
+    return output.toString(UTF_8);
+  }
+
+  private static int occurrences(
+    final String text,
+    final String search)
+  {
+    var count = 0;
+    var index = text.indexOf(search);
+    while (index >= 0) {
+      ++count;
+      index = text.indexOf(search, index + 1);
+    }
+    return count;
+  }
+
+  /**
+   * Each family header is written once, regardless of the number of series.
+   */
+
+  @Test
+  public void testHeadersOnce()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    for (int index = 0; index < 10; ++index) {
+      final var http = metrics.register(
+        ZuCheckKind.HTTP,
+        URI.create("https://h%d.example.com".formatted(index))
+      );
+      final var tls = metrics.register(
+        ZuCheckKind.TLS,
+        URI.create("tls://t%d.example.com:443".formatted(index))
+      );
+      metrics.status(http, 200);
+      metrics.success(tls);
+    }
+
+    final var text = render(new ZuMetricsExposition(metrics));
+    assertEquals(1, occurrences(text, "# TYPE zu_http_status gauge"));
+    assertEquals(1, occurrences(text, "# TYPE zu_tls_status gauge"));
+    assertEquals(0, occurrences(text, "# TYPE zu_smtp_status gauge"));
+    assertEquals(10, occurrences(text, "zu_http_status{"));
+    assertEquals(10, occurrences(text, "zu_tls_timeout{"));
+  }
+
+  /**
+   * Cached series are re-rendered when their values change.
+   */
+
+  @Test
+  public void testInvalidation()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var uri =
+      URI.create("https://www.example.com");
+    final var exposition =
+      new ZuMetricsExposition(metrics);
+    final var check =
+      metrics.register(ZuCheckKind.HTTP, uri);
+    final var histogram =
+      check.durations();
+
+    metrics.status(check, 200);
+    histogram.record(1_000_000L);
+    var text = render(exposition);
+    assertTrue(text.contains("zu_http_status{url=\"https://www.example.com\",outcome=\"success\"} 200\n"));
+    assertTrue(text.contains("zu_http_duration_seconds_count{url=\"https://www.example.com\"} 1\n"));
+
+    metrics.status(check, 503);
+    histogram.record(1_000_000L);
+    text = render(exposition);
+    assertTrue(text.contains("zu_http_status{url=\"https://www.example.com\",outcome=\"http_5xx\"} 503\n"));
+    assertTrue(text.contains("zu_http_duration_seconds_count{url=\"https://www.example.com\"} 2\n"));
+  }
+
+  /**
+   * Checks of different types on the same URI are distinct series, and
+   * unregistered checks are no longer exposed.
+   */
+
+  @Test
+  public void testDistinctAndUnregister()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var uri =
+      URI.create("https://www.example.com");
+    final var exposition =
+      new ZuMetricsExposition(metrics);
+
+    final var http = metrics.register(ZuCheckKind.HTTP, uri);
+    final var tls = metrics.register(ZuCheckKind.TLS, uri);
+    metrics.status(http, 200);
+    metrics.failure(tls, "Expired");
+
+    var text = render(exposition);
+    assertTrue(text.contains("zu_http_status{url=\"https://www.example.com\",outcome=\"success\"} 200\n"));
+    assertTrue(text.contains("zu_tls_status{url=\"https://www.example.com\",outcome=\"protocol\"} 1\n"));
+
+    metrics.unregister(tls);
+    text = render(exposition);
+    assertEquals(0, occurrences(text, "zu_tls_"));
+
+    final var again = metrics.register(ZuCheckKind.SMTP, uri);
+    assertEquals(tls.id(), again.id());
+    text = render(exposition);
+    assertTrue(text.contains("zu_smtp_status{url=\"https://www.example.com\",outcome=\"success\"} 0\n"));
+  }
+
+  /**
+   * The series of individual addresses carry an address label, and the worst
+   * outcome of the addresses is the outcome of the check.
+   */
+
+  @Test
+  public void testAddressAggregate()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var uri =
+      URI.create("https://www.example.com");
+    final var exposition =
+      new ZuMetricsExposition(metrics);
+
+    final var check = metrics.register(ZuCheckKind.HTTP, uri);
+    final var a0 = metrics.register(ZuCheckKind.HTTP, uri, "192.0.2.1");
+    final var a1 = metrics.register(ZuCheckKind.HTTP, uri, "192.0.2.2");
+
+    metrics.status(a0, 200);
+    metrics.status(a1, 503);
+    metrics.aggregate(check, List.of(a0, a1));
+
+    var text = render(exposition);
+    assertTrue(text.contains("zu_http_status{url=\"https://www.example.com\",outcome=\"http_5xx\"} 503\n"));
+    assertTrue(text.contains("zu_http_status{url=\"https://www.example.com\",address=\"192.0.2.1\",outcome=\"success\"} 200\n"));
+    assertTrue(text.contains("zu_http_duration_seconds_count{url=\"https://www.example.com\",address=\"192.0.2.2\"} 0\n"));
+
+    metrics.exception(a1, new ConnectException("Connection refused"));
+    metrics.aggregate(check, List.of(a0, a1));
+    text = render(exposition);
+    assertTrue(text.contains("zu_http_status{url=\"https://www.example.com\",outcome=\"connect_refused\"} 0\n"));
+    assertEquals("192.0.2.2: Connection refused", metrics.message(check.id()));
+  }
+
+  /**
+   * Phase durations and TLS parameters are exposed only for checks that
+   * report them, and TLS parameters are re-rendered only when they change.
+   */
+
+  @Test
+  public void testPhasesAndTLS()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(List.of(0.5, 1.0));
+    final var exposition =
+      new ZuMetricsExposition(metrics);
+    final var tls =
+      metrics.register(ZuCheckKind.TLS, URI.create("tls://www.example.com:443"));
+    final var http =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://www.example.com"));
+
+    metrics.status(http, 200);
+    metrics.phaseDurations(tls, "connect").record(100_000_000L);
+    metrics.tls(tls, new ZuMetrics.TLS("TLSv1.3", "TLS_AES_128_GCM_SHA256", 2000L, 1000L));
+
+    metrics.resumption(tls, true);
+
+    final var version = metrics.version(tls.id());
+    metrics.tls(tls, new ZuMetrics.TLS("TLSv1.3", "TLS_AES_128_GCM_SHA256", 2000L, 1000L));
+    assertEquals(version, metrics.version(tls.id()));
+
+    final var text = render(exposition);
+    assertEquals(1, occurrences(text, "# TYPE zu_tls_phase_duration_seconds histogram"));
+    assertEquals(0, occurrences(text, "zu_http_phase_duration_seconds"));
+    assertEquals(0, occurrences(text, "zu_http_tls_info"));
+    assertTrue(text.contains("zu_tls_phase_duration_seconds_bucket{url=\"tls://www.example.com:443\",phase=\"connect\",le=\"0.5\"} 1\n"));
+    assertEquals(1, occurrences(text, "# TYPE zu_tls_info gauge"));
+    assertTrue(text.contains("zu_tls_info{url=\"tls://www.example.com:443\",protocol=\"TLSv1.3\",cipher=\"TLS_AES_128_GCM_SHA256\"} 1\n"));
+    assertTrue(text.contains("zu_tls_cert_expiry_seconds{url=\"tls://www.example.com:443\",certificate=\"leaf\"} 2000\n"));
+    assertTrue(text.contains("zu_tls_cert_expiry_seconds{url=\"tls://www.example.com:443\",certificate=\"chain\"} 1000\n"));
+    assertEquals(1, occurrences(text, "# TYPE zu_tls_resumed gauge"));
+    assertTrue(text.contains("zu_tls_resumed{url=\"tls://www.example.com:443\"} 1\n"));
+    assertEquals(0, occurrences(text, "zu_http_tls_resumed"));
+  }
+
+  /**
+   * The TLS parameters of checks of other kinds carry the kind in the name,
+   * and expiry times that are not known are omitted.
+   */
+
+  @Test
+  public void testTLSUnknownExpiry()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(List.of(0.5, 1.0));
+    final var http =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://www.example.com"));
+
+    metrics.status(http, 200);
+    metrics.tls(http, new ZuMetrics.TLS(
+      "TLSv1.3",
+      "TLS_AES_128_GCM_SHA256",
+      ZuMetrics.EXPIRY_UNKNOWN,
+      1000L
+    ));
+
+    final var text = render(new ZuMetricsExposition(metrics));
+    assertEquals(1, occurrences(text, "# TYPE zu_http_tls_info gauge"));
+    assertTrue(text.contains("zu_http_tls_info{url=\"https://www.example.com\",protocol=\"TLSv1.3\",cipher=\"TLS_AES_128_GCM_SHA256\"} 1\n"));
+    assertEquals(0, occurrences(text, "certificate=\"leaf\""));
+    assertTrue(text.contains("zu_http_cert_expiry_seconds{url=\"https://www.example.com\",certificate=\"chain\"} 1000\n"));
+
+    final var open = render(
+      new ZuMetricsExposition(metrics, ZuMetricsFormat.OPENMETRICS_TEXT)
+    );
+    assertEquals(1, occurrences(open, "# TYPE zu_http_tls info"));
+    assertEquals(0, occurrences(open, String.valueOf(Long.MAX_VALUE)));
+  }
+
+  /**
+   * Failures are exposed as bounded outcome classes, and the raw messages
+   * are available as diagnostics.
+   */
+
+  @Test
+  public void testOutcomes()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var check =
+      metrics.register(ZuCheckKind.TLS, URI.create("tls://example.com:443"));
+
+    metrics.exception(check, new UnknownHostException("example.com: \"Name\" unknown"));
+    var text = render(new ZuMetricsExposition(metrics));
+    assertTrue(text.contains("zu_tls_status{url=\"tls://example.com:443\",outcome=\"dns\"} 1\n"));
+    assertEquals(0, occurrences(text, "Name"));
+
+    final var diagnostics = ZuDiagnosticsHandler.diagnostics(metrics);
+    assertEquals(1, diagnostics.size());
+    assertEquals("dns", diagnostics.get(0).outcome());
+    assertEquals("example.com: \"Name\" unknown", diagnostics.get(0).message());
+
+    metrics.timeout(check, ZuProbePhase.CONNECT);
+    assertEquals(ZuOutcome.CONNECT_TIMEOUT, metrics.outcome(check.id()));
+    metrics.exception(check, new IOException(new SSLHandshakeException("No")));
+    assertEquals(ZuOutcome.TLS_HANDSHAKE, metrics.outcome(check.id()));
+  }
+
+  /**
+   * Each completed probe is counted under its outcome, and the counters
+   * survive subsequent changes of status.
+   */
+
+  @Test
+  public void testCounters()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var check =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://example.com"));
+    final var exposition =
+      new ZuMetricsExposition(metrics);
+
+    metrics.status(check, 200);
+    metrics.count(check, 0L);
+    metrics.status(check, 200);
+    metrics.count(check, 0L);
+    metrics.status(check, 503);
+    metrics.count(check, 0L);
+    metrics.exception(check, new ConnectException("Refused"));
+    metrics.count(check, 0L);
+    metrics.status(check, 200);
+
+    var text = render(exposition);
+    assertTrue(text.contains("# TYPE zu_http_attempts_total counter\n"));
+    assertTrue(text.contains("zu_http_attempts_total{url=\"https://example.com\"} 4\n"));
+    assertTrue(text.contains("zu_http_successes_total{url=\"https://example.com\"} 2\n"));
+    assertTrue(text.contains("zu_http_failures_total{url=\"https://example.com\",outcome=\"http_5xx\"} 1\n"));
+    assertTrue(text.contains("zu_http_failures_total{url=\"https://example.com\",outcome=\"connect_refused\"} 1\n"));
+    assertEquals(0, occurrences(text, "outcome=\"dns\"} "));
+
+    metrics.count(check, 0L);
+    text = render(exposition);
+    assertTrue(text.contains("zu_http_attempts_total{url=\"https://example.com\"} 5\n"));
+    assertTrue(text.contains("zu_http_successes_total{url=\"https://example.com\"} 3\n"));
+
+    metrics.unregister(check);
+    final var again =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://example.com"));
+    assertEquals(check.id(), again.id());
+    assertEquals(0L, metrics.attempts(again.id()));
+  }
+
+  /**
+   * Availability is computed over each window, and probes leave a window
+   * once they are older than it.
+   */
+
+  @Test
+  public void testAvailability()
+    throws Exception
+  {
+    final var time =
+      new AtomicLong();
+    final var metrics =
+      new ZuMetrics(
+        ZuConfiguration.DEFAULT_DURATION_BUCKETS,
+        List.of(Duration.ofMinutes(1L), Duration.ofHours(1L)),
+        ZuConfiguration.DEFAULT_HISTORY_SIZE,
+        time::get
+      );
+    final var check =
+      metrics.register(ZuCheckKind.TCP, URI.create("tcp://example.com:25"));
+    final var exposition =
+      new ZuMetricsExposition(metrics);
+
+    var text = render(exposition);
+    assertEquals(0, occurrences(text, "zu_tcp_availability_ratio"));
+
+    metrics.success(check);
+    metrics.count(check, 0L);
+    metrics.failure(check, "Failed");
+    metrics.count(check, 0L);
+    metrics.count(check, 0L);
+    metrics.success(check);
+    metrics.count(check, 0L);
+
+    text = render(exposition);
+    assertTrue(text.contains("# TYPE zu_tcp_availability_ratio gauge\n"));
+    assertTrue(text.contains("zu_tcp_availability_ratio{url=\"tcp://example.com:25\",window=\"1m\"} 0.5\n"));
+    assertTrue(text.contains("zu_tcp_availability_ratio{url=\"tcp://example.com:25\",window=\"1h\"} 0.5\n"));
+
+    time.set(Duration.ofMinutes(2L).toNanos());
+    metrics.count(check, 0L);
+
+    text = render(exposition);
+    assertTrue(text.contains("zu_tcp_availability_ratio{url=\"tcp://example.com:25\",window=\"1m\"} 1.0\n"));
+    assertTrue(text.contains("zu_tcp_availability_ratio{url=\"tcp://example.com:25\",window=\"1h\"} 0.6\n"));
+
+    time.set(Duration.ofHours(2L).toNanos());
+
+    text = render(exposition);
+    assertEquals(0, occurrences(text, "zu_tcp_availability_ratio"));
+  }
+
+  /**
+   * The OpenMetrics exposition names counter and info families without
+   * their sample suffixes, annotates duration buckets with exemplars, and
+   * is terminated.
+   */
+
+  @Test
+  public void testOpenMetrics()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(List.of(0.5, 1.0));
+    final var check =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://example.com"));
+
+    metrics.status(check, 200);
+    metrics.count(check, 250_000_000L);
+    metrics.count(check, 750_000_000L);
+
+    final var text =
+      render(new ZuMetricsExposition(metrics, ZuMetricsFormat.OPENMETRICS_TEXT));
+
+    assertTrue(text.contains("# TYPE zu_http_attempts counter\n"));
+    assertTrue(text.contains("zu_http_attempts_total{url=\"https://example.com\"} 2\n"));
+    assertTrue(text.matches(
+      "(?s).*zu_http_duration_seconds_bucket\\{url=\"https://example.com\",le=\"0.5\"} 1 # \\{check=\"%d\",probe=\"0\"} 0.25 [0-9]+\\.[0-9]{3}\n.*"
+        .formatted(check.id())));
+    assertTrue(text.matches(
+      "(?s).*zu_http_duration_seconds_bucket\\{url=\"https://example.com\",le=\"1.0\"} 2 # \\{check=\"%d\",probe=\"1\"} 0.75 [0-9]+\\.[0-9]{3}\n.*"
+        .formatted(check.id())));
+    assertTrue(text.endsWith("# EOF\n"));
+
+    final var classic = render(new ZuMetricsExposition(metrics));
+    assertTrue(classic.contains("# TYPE zu_http_attempts_total counter\n"));
+    assertEquals(0, occurrences(classic, "probe="));
+    assertEquals(0, occurrences(classic, "# EOF"));
+  }
+
+  /**
+   * The compressed exposition decompresses to exactly the uncompressed
+   * exposition, as chunks are reused and replaced across scrapes.
+   */
+
+  @Test
+  public void testGzip()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    final var checks =
+      new ArrayList<ZuMetrics.Check>();
+
+    for (int index = 0; index < 1000; ++index) {
+      final var kind = ZuCheckKind.values()[index % ZuCheckKind.values().length];
+      final var check =
+        metrics.register(kind, URI.create("https://%d.example.com".formatted(index)));
+      metrics.success(check);
+      metrics.count(check, index * 1000L);
+      checks.add(check);
+    }
+
+    for (final var format : ZuMetricsFormat.values()) {
+      final var exposition = new ZuMetricsExposition(metrics, format);
+      for (int scrape = 0; scrape < 4; ++scrape) {
+        final var compressed = new ByteArrayOutputStream();
+        exposition.writeGzip(compressed);
+        final var text = render(exposition);
+
+        try (final var input =
+               new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+          assertEquals(text, new String(input.readAllBytes(), UTF_8));
+        }
+
+        metrics.status(checks.get(scrape * 300), 503);
+        metrics.count(checks.get(scrape * 300), 1000L);
+        metrics.unregister(checks.get(scrape * 300 + 1));
+      }
+    }
+  }
+
+  /**
+   * OpenMetrics and gzip are only served to clients that ask for them.
+   */
+
+  @Test
+  public void testNegotiation()
+  {
+    assertEquals(
+      ZuMetricsFormat.PROMETHEUS_TEXT,
+      ZuMetricsHandler.negotiateFormat(List.of())
+    );
+    assertEquals(
+      ZuMetricsFormat.PROMETHEUS_TEXT,
+      ZuMetricsHandler.negotiateFormat(List.of("text/plain;version=0.0.4"))
+    );
+    assertEquals(
+      ZuMetricsFormat.OPENMETRICS_TEXT,
+      ZuMetricsHandler.negotiateFormat(List.of(
+        "application/openmetrics-text;version=1.0.0;q=0.5,"
+        + "application/openmetrics-text;version=0.0.1;q=0.4,"
+        + "text/plain;version=0.0.4;q=0.3,*/*;q=0.2"))
+    );
+    assertEquals(
+      ZuMetricsFormat.PROMETHEUS_TEXT,
+      ZuMetricsHandler.negotiateFormat(List.of(
+        "application/openmetrics-text;q=0.2, text/plain;q=0.9"))
+    );
+
+    assertTrue(ZuMetricsHandler.acceptsGzip(List.of("gzip")));
+    assertTrue(ZuMetricsHandler.acceptsGzip(List.of("deflate, gzip;q=0.5")));
+    assertFalse(ZuMetricsHandler.acceptsGzip(List.of("gzip;q=0")));
+    assertFalse(ZuMetricsHandler.acceptsGzip(List.of("identity")));
+    assertTrue(ZuMetricsHandler.acceptsGzip(List.of("identity, *")));
+    assertFalse(ZuMetricsHandler.acceptsGzip(List.of("*;q=0")));
+    assertFalse(ZuMetricsHandler.acceptsGzip(List.of("gzip;q=0, *")));
+    assertFalse(ZuMetricsHandler.acceptsGzip(List.of("*", "x-gzip;q=0")));
+    assertTrue(ZuMetricsHandler.acceptsGzip(List.of("gzip;q=0.1, *;q=0")));
+    assertFalse(ZuMetricsHandler.acceptsGzip(List.of()));
+  }
+
+  /**
+   * Restricted expositions contain only the selected checks, and the shards
+   * of a store partition its series.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSelection()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    metrics.registerGauge("zu_example", "Example", () -> 1L);
+
+    final var checks = new ArrayList<ZuMetrics.Check>();
+    for (int index = 0; index < 20; ++index) {
+      final var http = metrics.register(
+        ZuCheckKind.HTTP,
+        URI.create("https://h%d.example.com".formatted(index))
+      );
+      final var tcp = metrics.register(
+        ZuCheckKind.TCP,
+        URI.create("tcp://t%d.example.com:25".formatted(index))
+      );
+      metrics.status(http, 200);
+      metrics.success(tcp);
+      checks.add(http);
+      checks.add(tcp);
+    }
+
+    final var all = render(new ZuMetricsExposition(metrics));
+    final var tcpOnly =
+      new ZuMetricsExposition(
+        metrics,
+        ZuMetricsFormat.PROMETHEUS_TEXT,
+        new ZuCheckSelector(Set.of(ZuCheckKind.TCP), Set.of(), Set.of(), 0, 1)
+      );
+    var text = render(tcpOnly);
+    assertEquals(20, occurrences(text, "zu_tcp_status{"));
+    assertEquals(0, occurrences(text, "zu_http_"));
+    assertEquals(0, occurrences(text, "zu_example"));
+
+    final var single =
+      new ZuCheckSelector(Set.of(), Set.of("https://h3.example.com"), Set.of(), 0, 1);
+    text = render(new ZuMetricsExposition(metrics, ZuMetricsFormat.PROMETHEUS_TEXT, single));
+    assertEquals(1, occurrences(text, "zu_http_status{"));
+    assertEquals(0, occurrences(text, "zu_tcp_"));
+
+    final var shards = 4;
+    final var series = new ArrayList<String>();
+    for (int shard = 0; shard < shards; ++shard) {
+      final var selector =
+        new ZuCheckSelector(Set.of(), Set.of(), Set.of(), shard, shards);
+      final var shardText =
+        render(new ZuMetricsExposition(metrics, ZuMetricsFormat.PROMETHEUS_TEXT, selector));
+      assertEquals(shard == 0 ? 1 : 0, occurrences(shardText, "zu_example 1"));
+      shardText.lines().filter(l -> !l.startsWith("#")).forEach(series::add);
+    }
+    final var expected =
+      all.lines().filter(l -> !l.startsWith("#")).sorted().toList();
+    assertEquals(expected, series.stream().sorted().toList());
+
+    metrics.unregister(checks.get(1));
+    final var added =
+      metrics.register(ZuCheckKind.TCP, URI.create("tcp://new.example.com:25"));
+    metrics.success(added);
+    text = render(tcpOnly);
+    assertEquals(20, occurrences(text, "zu_tcp_status{"));
+    assertEquals(0, occurrences(text, "t0.example.com"));
+    assertEquals(1, occurrences(text, "zu_tcp_status{url=\"tcp://new.example.com:25\""));
+  }
+
+  /**
+   * Internal histograms are exposed without labels.
+   */
+
+  @Test
+  public void testInternalHistogram()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(List.of(0.5, 1.0));
+    final var histogram =
+      metrics.registerHistogram("zu_example_seconds", "An example.");
+
+    histogram.record(250_000_000L);
+
+    final var text = render(new ZuMetricsExposition(metrics));
+    assertTrue(text.contains("# TYPE zu_example_seconds histogram\n"));
+    assertTrue(text.contains("zu_example_seconds_bucket{le=\"0.5\"} 1\n"));
+    assertTrue(text.contains("zu_example_seconds_bucket{le=\"+Inf\"} 1\n"));
+    assertTrue(text.contains("zu_example_seconds_sum 0.25\n"));
+    assertTrue(text.contains("zu_example_seconds_count 1\n"));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.internal.ZuOutcome;
+import com.io7m.zugorum.server.internal.ZuProbePhase;
+import com.io7m.zugorum.server.internal.ZuTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.ProtocolException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class ZuOutcomeTest
+{
+  private record Case(
+    Throwable exception,
+    ZuOutcome expected)
+  {
+
+  }
+
+  private static <T extends Throwable> T causedBy(
+    final T exception,
+    final Throwable cause)
+  {
+    exception.initCause(cause);
+    return exception;
+  }
+
+  private static Throwable wrapped(
+    final Throwable exception,
+    final int depth)
+  {
+    var current = exception;
+    for (int index = 0; index < depth; ++index) {
+      current = new RuntimeException(current);
+    }
+    return current;
+  }
+
+  /**
+   * Exceptions are classified by type, by message where the type is not
+   * specific enough, and by the first classifiable exception in the chain
+   * of causes.
+   */
+
+  @Test
+  public void testExceptions()
+  {
+    final var cases = List.of(
+      new Case(new UnknownHostException("x.invalid"), ZuOutcome.DNS),
+      new Case(new UnresolvedAddressException(), ZuOutcome.DNS),
+
+      new Case(new ConnectException("Connection refused"), ZuOutcome.CONNECT_REFUSED),
+      new Case(new ConnectException("Connection timed out"), ZuOutcome.CONNECT_TIMEOUT),
+      new Case(new ConnectException("Network is unreachable"), ZuOutcome.CONNECT_FAILED),
+      new Case(new ConnectException(), ZuOutcome.CONNECT_FAILED),
+      new Case(
+        causedBy(new ConnectException(), new ConnectException("Connection refused")),
+        ZuOutcome.CONNECT_REFUSED),
+      new Case(
+        causedBy(new ConnectException(), new IllegalStateException()),
+        ZuOutcome.CONNECT_FAILED),
+      new Case(new NoRouteToHostException("No route to host"), ZuOutcome.CONNECT_FAILED),
+      new Case(new HttpConnectTimeoutException("Timed out"), ZuOutcome.CONNECT_TIMEOUT),
+
+      new Case(new ZuTimeoutException(ZuProbePhase.DNS), ZuOutcome.DNS),
+      new Case(new ZuTimeoutException(ZuProbePhase.CONNECT), ZuOutcome.CONNECT_TIMEOUT),
+      new Case(new ZuTimeoutException(ZuProbePhase.TLS_HANDSHAKE), ZuOutcome.TLS_HANDSHAKE),
+      new Case(new ZuTimeoutException(ZuProbePhase.EXCHANGE), ZuOutcome.TIMEOUT),
+
+      new Case(new SSLHandshakeException("Handshake failed"), ZuOutcome.TLS_HANDSHAKE),
+      new Case(
+        causedBy(new SSLHandshakeException("Bad certificate"), new CertificateException("Expired")),
+        ZuOutcome.TLS_CERT),
+      new Case(
+        causedBy(
+          new SSLHandshakeException("Bad certificate"),
+          new IOException(new CertPathValidatorException("No path"))),
+        ZuOutcome.TLS_CERT),
+      new Case(new SSLException("Closed"), ZuOutcome.TLS_HANDSHAKE),
+      new Case(new CertificateException("Expired"), ZuOutcome.TLS_CERT),
+      new Case(new CertPathValidatorException("No path"), ZuOutcome.TLS_CERT),
+
+      new Case(new ProtocolException("Malformed"), ZuOutcome.PROTOCOL),
+
+      new Case(new IOException(new UnknownHostException("x.invalid")), ZuOutcome.DNS),
+      new Case(
+        new RuntimeException(new IOException(new ConnectException("Connection refused"))),
+        ZuOutcome.CONNECT_REFUSED),
+      new Case(
+        new IOException(causedBy(new SSLHandshakeException("Bad certificate"), new CertificateException())),
+        ZuOutcome.TLS_CERT),
+      new Case(wrapped(new ProtocolException("Malformed"), 7), ZuOutcome.PROTOCOL),
+      new Case(wrapped(new ProtocolException("Malformed"), 8), ZuOutcome.ERROR),
+
+      new Case(new IllegalStateException(), ZuOutcome.ERROR)
+    );
+
+    for (final var c : cases) {
+      assertEquals(c.expected(), ZuOutcome.ofException(c.exception()), c.exception().toString());
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuProbeLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuProbeLimiterTest
+{
+  /**
+   * No more than the limit of probes run at once, and queued probes run in
+   * the order they were submitted.
+   */
+
+  @Test
+  public void testLimitAndOrder()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      final var limiter =
+        ZuProbeLimiter.create(executor, metrics, 4);
+
+      final var count = 200;
+      final var running = new AtomicInteger();
+      final var maximum = new AtomicInteger();
+      final var done = new CountDownLatch(count);
+      final List<Integer> started =
+        Collections.synchronizedList(new ArrayList<>());
+
+      final var gate = new CountDownLatch(1);
+      for (int index = 0; index < count; ++index) {
+        final var id = Integer.valueOf(index);
+        limiter.submit(() -> {
+          started.add(id);
+          final var now = running.incrementAndGet();
+          maximum.accumulateAndGet(now, Math::max);
+          try {
+            gate.await();
+            Thread.sleep(1L);
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            running.decrementAndGet();
+            limiter.release();
+            done.countDown();
+          }
+        });
+      }
+
+      assertEquals(4, limiter.inFlight());
+      assertEquals(count - 4, limiter.queueDepth());
+      gate.countDown();
+
+      assertTrue(done.await(30L, TimeUnit.SECONDS));
+      assertTrue(maximum.get() <= 4);
+      assertEquals(0, limiter.queueDepth());
+      assertEquals(0, limiter.inFlight());
+
+      /*
+       * The first four probes start in an arbitrary order because they run
+       * concurrently; after that, a probe can only start when an earlier
+       * probe has released its permit.
+       */
+
+      for (int index = 4; index < count; ++index) {
+        assertTrue(started.indexOf(Integer.valueOf(index)) >= index - 4);
+      }
+
+      final var wait =
+        metrics.histograms().get("zu_probe_queue_wait_seconds").histogram();
+      assertEquals(count, wait.count());
+    }
+  }
+
+  /**
+   * Raising the limit immediately dispatches queued probes.
+   */
+
+  @Test
+  public void testRaiseLimit()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      final var limiter =
+        ZuProbeLimiter.create(executor, metrics, 1);
+      final var gate = new CountDownLatch(1);
+      final var started = new CountDownLatch(3);
+
+      for (int index = 0; index < 3; ++index) {
+        limiter.submit(() -> {
+          started.countDown();
+          try {
+            gate.await();
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            limiter.release();
+          }
+        });
+      }
+
+      assertEquals(2, limiter.queueDepth());
+      limiter.setLimit(3);
+      assertTrue(started.await(10L, TimeUnit.SECONDS));
+      assertEquals(0, limiter.queueDepth());
+      gate.countDown();
+    }
+  }
+
+  /**
+   * Additional permits are taken only while a permit is free, and count
+   * against the limit.
+   */
+
+  @Test
+  public void testAdditional()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      final var limiter =
+        ZuProbeLimiter.create(executor, metrics, 2);
+      final var gate = new CountDownLatch(1);
+      final var started = new CountDownLatch(2);
+
+      assertTrue(limiter.tryAcquireAdditional());
+      assertEquals(1, limiter.inFlight());
+
+      for (int index = 0; index < 2; ++index) {
+        limiter.submit(() -> {
+          started.countDown();
+          try {
+            gate.await();
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            limiter.release();
+          }
+        });
+      }
+
+      assertEquals(2, limiter.inFlight());
+      assertEquals(1, limiter.queueDepth());
+      assertFalse(limiter.tryAcquireAdditional());
+
+      limiter.setLimit(3);
+      assertTrue(started.await(10L, TimeUnit.SECONDS));
+      assertEquals(0, limiter.queueDepth());
+      assertEquals(3, limiter.inFlight());
+      assertFalse(limiter.tryAcquireAdditional());
+
+      limiter.release();
+      assertEquals(2, limiter.inFlight());
+      assertTrue(limiter.tryAcquireAdditional());
+      assertEquals(3, limiter.inFlight());
+      limiter.release();
+      gate.countDown();
+    }
+  }
+}
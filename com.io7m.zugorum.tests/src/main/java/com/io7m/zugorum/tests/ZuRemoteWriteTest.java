@@ -0,0 +1,622 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuCheckKind;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuMetricsExposition;
+import com.io7m.zugorum.server.internal.ZuMetricsSamples;
+import com.io7m.zugorum.server.internal.ZuRemoteWriteEncoder;
+import com.io7m.zugorum.server.internal.ZuRemoteWriter;
+import com.io7m.zugorum.server.internal.ZuSnappy;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuRemoteWriteTest
+{
+  /**
+   * Compressed data matches the output of the reference implementation of
+   * Snappy, as produced by its pure Java port (org.iq80.snappy 0.4), for
+   * inputs that exercise literals, both copy encodings, long copies, and
+   * multiple fragments.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSnappyReference()
+    throws Exception
+  {
+    assertEquals("00", hex(ZuSnappy.compress(new byte[0])));
+    assertEquals("0308616263", hex(ZuSnappy.compress(bytes("abc"))));
+    assertEquals(
+      "640061fe01008a0100",
+      hex(ZuSnappy.compress(bytes("a".repeat(100))))
+    );
+    assertEquals(
+      "47f04654686520717569636b2062726f776e20666f78206a756d7073206f7665722074"
+      + "6865206c617a7920646f672e20303132333435363738396162636465666768696a6b"
+      + "6c6d6e6f70",
+      hex(ZuSnappy.compress(bytes(
+        "The quick brown fox jumps over the lazy dog. "
+        + "0123456789abcdefghijklmnop")))
+    );
+    assertEquals(
+      "6f4c7a755f687474705f7374617475737b75726c3d220111a0733a2f2f7777772e696f"
+      + "376d2e636f6d222c6f7574636f6d653d2273756363657373227d203230300a11411c"
+      + "74696d656f75747b6642000c7d20300a",
+      hex(ZuSnappy.compress(bytes(
+        "zu_http_status{url=\"https://www.io7m.com\",outcome=\"success\"} 200\n"
+        + "zu_http_timeout{url=\"https://www.io7m.com\"} 0\n")))
+    );
+
+    final var large = ZuSnappy.compress(bytes("ab".repeat(50_000)));
+    assertEquals(4704, large.length);
+    assertEquals(
+      "1428b26411f6e67bdbcc892a2fe7e07168f215ae5b3a89deaf29014ca6c14115",
+      hex(MessageDigest.getInstance("SHA-256").digest(large))
+    );
+  }
+
+  /**
+   * Compressed data decompresses to the original.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSnappy()
+    throws Exception
+  {
+    final var text = new StringBuilder();
+    for (int index = 0; index < 10_000; ++index) {
+      text.append("zu_http2xx_attempts_total{check=\"c")
+        .append(index)
+        .append("\"} ")
+        .append(index * 7)
+        .append('\n');
+    }
+
+    final var data = text.toString().getBytes(UTF_8);
+    final var compressed = ZuSnappy.compress(data);
+    assertTrue(compressed.length < data.length / 3);
+    assertArrayEquals(data, decompress(compressed));
+  }
+
+  /**
+   * A series is encoded as in the protobuf wire format of
+   * {@code prometheus.WriteRequest}, with its labels sorted by name. The
+   * expected bytes were derived by hand from the wire format: a
+   * {@code timeseries} field (1) holding three {@code labels} fields (1)
+   * and a {@code samples} field (2) holding a fixed64 {@code value} (1) and
+   * a varint {@code timestamp} (2).
+   */
+
+  @Test
+  public void testEncoderReference()
+  {
+    final var encoder = new ZuRemoteWriteEncoder(1_700_000_000_000L, 10);
+    encoder.sample(
+      "up",
+      List.of(
+        new ZuMetricsSamples.Label("job", "zu"),
+        new ZuMetricsSamples.Label("instance", "a")
+      ),
+      1.0
+    );
+
+    final var requests = encoder.finish();
+    assertEquals(1, requests.size());
+    assertEquals(
+      "0a3c"
+      + "0a0e" + "0a085f5f6e616d655f5f" + "12027570"
+      + "0a0d" + "0a08696e7374616e6365" + "120161"
+      + "0a09" + "0a036a6f62" + "12027a75"
+      + "1210" + "09000000000000f03f" + "1080d095ffbc31",
+      hex(requests.getFirst())
+    );
+  }
+
+  /**
+   * Requests are split by the series limit, and nothing is produced for no
+   * samples.
+   */
+
+  @Test
+  public void testEncoderSplit()
+  {
+    final var encoder = new ZuRemoteWriteEncoder(0L, 2);
+    for (int index = 0; index < 5; ++index) {
+      encoder.sample("up", List.of(), index);
+    }
+    assertEquals(3, encoder.finish().size());
+    assertEquals(0, new ZuRemoteWriteEncoder(0L, 2).finish().size());
+  }
+
+  /**
+   * The samples of a metrics store are exactly the series of its classic
+   * text exposition.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSamples()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(List.of(0.5, 1.0));
+    final var http =
+      metrics.register(ZuCheckKind.HTTP, URI.create("https://www.example.com"));
+    final var tls =
+      metrics.register(ZuCheckKind.TLS, URI.create("tls://www.example.com:443"));
+    final var tcp =
+      metrics.register(ZuCheckKind.TCP, URI.create("tcp://example.com:25"), "192.0.2.1");
+
+    metrics.status(http, 200);
+    metrics.count(http, 300_000_000L);
+    metrics.tls(http, new ZuMetrics.TLS(
+      "TLSv1.2",
+      "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+      ZuMetrics.EXPIRY_UNKNOWN,
+      3000L
+    ));
+    metrics.phaseDurations(tls, "connect").record(100_000_000L);
+    metrics.tls(tls, new ZuMetrics.TLS("TLSv1.3", "TLS_AES_128_GCM_SHA256", 2000L, 1000L));
+    metrics.resumption(tls, true);
+    metrics.success(tls);
+    metrics.count(tls, 700_000_000L);
+    metrics.exception(tcp, new ConnectException("Refused"));
+    metrics.count(tcp, 0L);
+    metrics.registerGauge("zu_example_gauge", "Gauge", () -> 23L);
+    metrics.registerCounter("zu_example", "Counter", () -> 47L);
+    metrics.registerHistogram("zu_example_seconds", "Histogram")
+      .record(200_000_000L);
+
+    final var output = new ByteArrayOutputStream();
+    new ZuMetricsExposition(metrics).write(output);
+    final var text = output.toString(UTF_8);
+    assertTrue(text.contains("# TYPE zu_example_total counter\nzu_example_total 47\n"));
+
+    final var expected = new TreeMap<String, Double>();
+    for (final var line : text.split("\n")) {
+      if (!line.startsWith("#")) {
+        final var split = line.lastIndexOf(' ');
+        expected.put(
+          seriesOfLine(line.substring(0, split)),
+          parseValue(line.substring(split + 1))
+        );
+      }
+    }
+
+    final var received = new TreeMap<String, Double>();
+    new ZuMetricsSamples(metrics).forEach((name, labels, value) -> {
+      final var key = series(name, labels);
+      assertEquals(null, received.put(key, value), key);
+    });
+
+    assertEquals(expected, received);
+  }
+
+  /**
+   * Pushed series carry the names, labels and values of the exposition,
+   * split across requests by the series limit.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testPush()
+    throws Exception
+  {
+    final var metrics =
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+    metrics.registerGauge("zu_example_a", "A", () -> 23L);
+    metrics.registerGauge("zu_example_b", "B", () -> 47L);
+
+    final var series = new TreeMap<String, Double>();
+    try (var receiver = new Receiver();
+         var writer = receiver.writer(metrics, 1, 1000, 0)) {
+      writer.push();
+      assertEquals(0L, writer.backlogSize());
+      assertTrue(writer.sent() > 1L);
+      assertEquals(writer.sent(), receiver.received.size());
+
+      for (final var request : receiver.received) {
+        assertEquals(1, request.size());
+        series.putAll(request);
+      }
+    }
+
+    assertEquals(23.0, series.get("{__name__=\"zu_example_a\"}"));
+    assertEquals(47.0, series.get("{__name__=\"zu_example_b\"}"));
+    assertEquals(0.0, series.get("{__name__=\"zu_remote_write_backlog_requests\"}"));
+    assertEquals(0.0, series.get("{__name__=\"zu_remote_write_dropped_requests_total\"}"));
+    assertEquals(0.0, series.get("{__name__=\"zu_remote_write_sent_requests_total\"}"));
+  }
+
+  /**
+   * Requests that fail with server errors are retried, and requests that
+   * still fail are held for the next push.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRetry()
+    throws Exception
+  {
+    try (var receiver = new Receiver();
+         var writer = receiver.writer(metrics(), 1000, 1000, 1)) {
+      receiver.statuses.add(503);
+      receiver.statuses.add(503);
+      receiver.statuses.add(429);
+
+      writer.push();
+      assertEquals(1L, writer.backlogSize());
+      assertEquals(0L, writer.sent());
+
+      writer.push();
+      assertEquals(0L, writer.backlogSize());
+      assertEquals(2L, writer.sent());
+      assertEquals(0L, writer.dropped());
+      assertEquals(2, receiver.received.size());
+    }
+  }
+
+  /**
+   * The backlog is bounded, and rejected requests are dropped.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testBacklog()
+    throws Exception
+  {
+    try (var receiver = new Receiver();
+         var writer = receiver.writer(metrics(), 1000, 2, 0)) {
+      for (int index = 0; index < 3; ++index) {
+        receiver.statuses.add(500);
+      }
+      receiver.statuses.add(400);
+
+      writer.push();
+      writer.push();
+      writer.push();
+      assertEquals(2L, writer.backlogSize());
+      assertEquals(1L, writer.dropped());
+
+      writer.push();
+      assertEquals(0L, writer.backlogSize());
+      assertEquals(1L, writer.sent());
+      assertEquals(3L, writer.dropped());
+    }
+  }
+
+  private static ZuMetrics metrics()
+  {
+    return new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS);
+  }
+
+  /**
+   * A remote-write receiver that answers with scripted statuses, and
+   * decodes the requests it accepts.
+   */
+
+  private static final class Receiver implements AutoCloseable
+  {
+    private final HttpServer server;
+    private final ConcurrentLinkedQueue<Integer> statuses;
+    private final CopyOnWriteArrayList<Map<String, Double>> received;
+
+    Receiver()
+      throws IOException
+    {
+      this.statuses =
+        new ConcurrentLinkedQueue<>();
+      this.received =
+        new CopyOnWriteArrayList<>();
+      this.server =
+        HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      this.server.createContext("/write", this::receive);
+      this.server.start();
+    }
+
+    ZuRemoteWriter writer(
+      final ZuMetrics metrics,
+      final int maxSeries,
+      final int maxBacklog,
+      final int maxRetries)
+    {
+      final var port = this.server.getAddress().getPort();
+      return ZuRemoteWriter.create(
+        new ZuConfiguration.RemoteWrite(
+          URI.create("http://localhost:%d/write".formatted(port)),
+          Duration.ofHours(1L),
+          Duration.ofSeconds(5L),
+          Integer.valueOf(maxSeries),
+          Integer.valueOf(maxBacklog),
+          Integer.valueOf(maxRetries)
+        ),
+        metrics
+      );
+    }
+
+    private void receive(
+      final HttpExchange exchange)
+      throws IOException
+    {
+      try (exchange) {
+        final var headers =
+          exchange.getRequestHeaders();
+        final var body =
+          exchange.getRequestBody().readAllBytes();
+        final var status =
+          Optional.ofNullable(this.statuses.poll()).orElse(200);
+
+        assertEquals("snappy", headers.getFirst("Content-Encoding"));
+        assertEquals("application/x-protobuf", headers.getFirst("Content-Type"));
+
+        if (status.intValue() == 200) {
+          this.received.add(decodeWriteRequest(decompress(body)));
+        }
+        exchange.sendResponseHeaders(status.intValue(), -1L);
+      }
+    }
+
+    @Override
+    public void close()
+    {
+      this.server.stop(0);
+    }
+  }
+
+  private static byte[] bytes(
+    final String text)
+  {
+    return text.getBytes(UTF_8);
+  }
+
+  private static String hex(
+    final byte[] data)
+  {
+    return HexFormat.of().formatHex(data);
+  }
+
+  /**
+   * Render a series as a label set including the metric name, with labels
+   * sorted by name.
+   */
+
+  private static String series(
+    final String name,
+    final List<ZuMetricsSamples.Label> labels)
+  {
+    final var sorted = new TreeMap<String, String>();
+    sorted.put("__name__", name);
+    for (final var label : labels) {
+      sorted.put(label.name(), label.value());
+    }
+
+    final var text = new ArrayList<String>();
+    for (final var entry : sorted.entrySet()) {
+      text.add("%s=\"%s\"".formatted(entry.getKey(), entry.getValue()));
+    }
+    return "{" + String.join(",", text) + "}";
+  }
+
+  /**
+   * Parse the series of an exposition line, without its value. Label
+   * values in the tests contain no escapes.
+   */
+
+  private static String seriesOfLine(
+    final String text)
+  {
+    final var brace = text.indexOf('{');
+    if (brace < 0) {
+      return series(text, List.of());
+    }
+
+    final var labels = new ArrayList<ZuMetricsSamples.Label>();
+    final var body = text.substring(brace + 1, text.length() - 1);
+    for (final var pair : body.split("\",")) {
+      final var equals = pair.indexOf('=');
+      labels.add(new ZuMetricsSamples.Label(
+        pair.substring(0, equals),
+        pair.substring(equals + 2).replace("\"", "")
+      ));
+    }
+    return series(text.substring(0, brace), labels);
+  }
+
+  private static double parseValue(
+    final String text)
+  {
+    return switch (text) {
+      case "+Inf" -> Double.POSITIVE_INFINITY;
+      case "NaN" -> Double.NaN;
+      default -> Double.parseDouble(text);
+    };
+  }
+
+  /**
+   * Decompress data in the Snappy block format.
+   */
+
+  private static byte[] decompress(
+    final byte[] data)
+    throws IOException
+  {
+    final var input = new ByteArrayInputStream(data);
+    final var output = new byte[(int) varint(input)];
+
+    var position = 0;
+    while (input.available() > 0) {
+      final var tag = input.read();
+      if ((tag & 3) == 0) {
+        var length = tag >>> 2;
+        if (length >= 60) {
+          final var count = length - 59;
+          length = 0;
+          for (int index = 0; index < count; ++index) {
+            length |= input.read() << (8 * index);
+          }
+        }
+        length += 1;
+        assertEquals(length, input.readNBytes(output, position, length));
+        position += length;
+        continue;
+      }
+
+      final int length;
+      final int offset;
+      switch (tag & 3) {
+        case 1 -> {
+          length = ((tag >>> 2) & 7) + 4;
+          offset = (tag >>> 5) << 8 | input.read();
+        }
+        case 2 -> {
+          length = (tag >>> 2) + 1;
+          offset = input.read() | input.read() << 8;
+        }
+        default -> {
+          length = (tag >>> 2) + 1;
+          offset = input.read()
+                   | input.read() << 8
+                   | input.read() << 16
+                   | input.read() << 24;
+        }
+      }
+
+      assertTrue(offset > 0 && offset <= position, "Copy offset");
+      for (int index = 0; index < length; ++index) {
+        output[position + index] = output[position - offset + index];
+      }
+      position += length;
+    }
+
+    assertEquals(output.length, position);
+    return output;
+  }
+
+  /**
+   * Decode a WriteRequest into a map from rendered label sets to the value
+   * of the single sample of each series.
+   */
+
+  private static Map<String, Double> decodeWriteRequest(
+    final byte[] data)
+    throws IOException
+  {
+    final var result = new TreeMap<String, Double>();
+    for (final var series : fields(data, 1)) {
+      final var labels = new ArrayList<String>();
+      for (final var label : fields(series, 1)) {
+        final var name = new String(fields(label, 1).getFirst(), UTF_8);
+        final var value = new String(fields(label, 2).getFirst(), UTF_8);
+        labels.add("%s=\"%s\"".formatted(name, value));
+      }
+
+      final var samples = fields(series, 2);
+      assertEquals(1, samples.size());
+      final var value =
+        ByteBuffer.wrap(fields(samples.getFirst(), 1).getFirst())
+          .order(ByteOrder.LITTLE_ENDIAN)
+          .getDouble();
+      result.put("{" + String.join(",", labels) + "}", value);
+    }
+    return result;
+  }
+
+  /**
+   * Extract the contents of the length-delimited and fixed64 fields with
+   * the given number, skipping varints.
+   */
+
+  private static List<byte[]> fields(
+    final byte[] data,
+    final int number)
+    throws IOException
+  {
+    final var input = new ByteArrayInputStream(data);
+    final var results = new ArrayList<byte[]>();
+    while (input.available() > 0) {
+      final var tag = (int) varint(input);
+      final byte[] content = switch (tag & 7) {
+        case 0 -> {
+          varint(input);
+          yield null;
+        }
+        case 1 -> input.readNBytes(8);
+        case 2 -> input.readNBytes((int) varint(input));
+        default -> throw new IOException("Unexpected wire type " + (tag & 7));
+      };
+      if ((tag >>> 3) == number && content != null) {
+        results.add(content);
+      }
+    }
+    return results;
+  }
+
+  private static long varint(
+    final InputStream input)
+    throws IOException
+  {
+    long value = 0L;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final var b = input.read();
+      if (b < 0) {
+        throw new IOException("Truncated varint");
+      }
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuDeadline;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuProbePhase;
+import com.io7m.zugorum.server.internal.ZuResolver;
+import com.io7m.zugorum.server.internal.ZuTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ZuResolverTest
+{
+  private static ZuDeadline deadline(
+    final Duration deadline)
+  {
+    return ZuDeadline.start(
+      new ZuConfiguration.CheckTLS(
+        ZuConfiguration.CheckTLS.TYPE,
+        URI.create("tls://localhost:443"),
+        Duration.ofSeconds(1L),
+        Duration.ofSeconds(1L),
+        Duration.ofSeconds(1L),
+        Duration.ofSeconds(1L),
+        deadline,
+        null,
+        null
+      )
+    );
+  }
+
+  private static ZuResolver resolver(
+    final ZuConfiguration.DNSCache configuration,
+    final ZuResolver.LookupType lookup)
+  {
+    return ZuResolver.create(
+      configuration,
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS),
+      Runnable::run,
+      lookup
+    );
+  }
+
+  /**
+   * Successful lookups are cached.
+   */
+
+  @Test
+  public void testPositiveCached()
+    throws Exception
+  {
+    final var calls = new AtomicInteger();
+    final var resolver =
+      resolver(new ZuConfiguration.DNSCache(null, null), host -> {
+        calls.incrementAndGet();
+        return new InetAddress[]{InetAddress.getLoopbackAddress()};
+      });
+
+    for (int index = 0; index < 10; ++index) {
+      final var addresses =
+        resolver.resolve("LocalHost", deadline(Duration.ofSeconds(1L)));
+      assertEquals(InetAddress.getLoopbackAddress(), addresses.getFirst());
+    }
+    assertEquals(1, calls.get());
+  }
+
+  /**
+   * Failed lookups are cached for the negative TTL.
+   */
+
+  @Test
+  public void testNegativeCached()
+    throws Exception
+  {
+    final var calls = new AtomicInteger();
+    final var resolver =
+      resolver(
+        new ZuConfiguration.DNSCache(Duration.ofMinutes(1L), Duration.ofMillis(100L)),
+        host -> {
+          calls.incrementAndGet();
+          throw new UnknownHostException(host);
+        });
+
+    for (int index = 0; index < 3; ++index) {
+      assertThrows(UnknownHostException.class, () -> {
+        resolver.resolve("x.invalid", deadline(Duration.ofSeconds(1L)));
+      });
+    }
+    assertEquals(1, calls.get());
+
+    Thread.sleep(150L);
+    assertThrows(UnknownHostException.class, () -> {
+      resolver.resolve("x.invalid", deadline(Duration.ofSeconds(1L)));
+    });
+    assertEquals(2, calls.get());
+  }
+
+  /**
+   * A lookup that takes longer than the deadline times out in the DNS phase,
+   * and concurrent lookups of the same name share one query.
+   */
+
+  @Test
+  public void testTimeoutSingleFlight()
+    throws Exception
+  {
+    final var calls = new AtomicInteger();
+    final var release = new CountDownLatch(1);
+
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      final var resolver =
+        ZuResolver.create(
+          new ZuConfiguration.DNSCache(null, null),
+          new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS),
+          executor,
+          host -> {
+            calls.incrementAndGet();
+            try {
+              release.await();
+            } catch (final InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return new InetAddress[]{InetAddress.getLoopbackAddress()};
+          }
+        );
+
+      for (int index = 0; index < 3; ++index) {
+        final var ex =
+          assertThrows(ZuTimeoutException.class, () -> {
+            resolver.resolve("slow.example.com", deadline(Duration.ofMillis(50L)));
+          });
+        assertEquals(ZuProbePhase.DNS, ex.phase());
+      }
+
+      release.countDown();
+      resolver.resolve("slow.example.com", deadline(Duration.ofSeconds(1L)));
+      assertEquals(1, calls.get());
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.internal.ZuSMTPReply;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.net.ProtocolException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuSMTPReplyTest
+{
+  private static ByteArrayInputStream stream(
+    final String text)
+  {
+    return new ByteArrayInputStream(text.getBytes(US_ASCII));
+  }
+
+  /**
+   * Multi-line replies are read in full, and consecutive replies on the
+   * same stream are read separately.
+   */
+
+  @Test
+  public void testMultiLine()
+    throws Exception
+  {
+    final var input = stream(
+      "250-mail.example.com Hello\r\n"
+      + "250-PIPELINING\r\n"
+      + "250-starttls\r\n"
+      + "250 SIZE 10240000\r\n"
+      + "221 Bye\r\n"
+    );
+
+    final var ehlo = ZuSMTPReply.read(input);
+    assertEquals(250, ehlo.code());
+    assertEquals(
+      List.of("mail.example.com Hello", "PIPELINING", "starttls", "SIZE 10240000"),
+      ehlo.lines()
+    );
+    assertTrue(ehlo.isPositive());
+    assertTrue(ehlo.hasExtension("STARTTLS"));
+    assertTrue(ehlo.hasExtension("SIZE"));
+    assertFalse(ehlo.hasExtension("mail.example.com"));
+
+    final var quit = ZuSMTPReply.read(input);
+    assertEquals(221, quit.code());
+    assertEquals("221 Bye", quit.text());
+  }
+
+  /**
+   * A reply consisting of a bare code, and bare LF terminators, are
+   * accepted.
+   */
+
+  @Test
+  public void testBare()
+    throws Exception
+  {
+    final var reply = ZuSMTPReply.read(stream("220\n"));
+    assertEquals(220, reply.code());
+    assertEquals(List.of(""), reply.lines());
+  }
+
+  /**
+   * Malformed and truncated replies are rejected.
+   */
+
+  @Test
+  public void testMalformed()
+  {
+    assertThrows(ProtocolException.class, () -> {
+      ZuSMTPReply.read(stream("250-one\r\n251 two\r\n"));
+    });
+    assertThrows(ProtocolException.class, () -> {
+      ZuSMTPReply.read(stream("25x hello\r\n"));
+    });
+    assertThrows(ProtocolException.class, () -> {
+      ZuSMTPReply.read(stream("250/hello\r\n"));
+    });
+    assertThrows(ProtocolException.class, () -> {
+      ZuSMTPReply.read(stream("+25 hello\r\n"));
+    });
+    assertThrows(ProtocolException.class, () -> {
+      ZuSMTPReply.read(stream("-25 hello\r\n"));
+    });
+    assertThrows(ProtocolException.class, () -> {
+      ZuSMTPReply.read(stream("250-one\r\n+250 two\r\n"));
+    });
+    assertThrows(ProtocolException.class, () -> {
+      ZuSMTPReply.read(stream("250 " + "x".repeat(ZuSMTPReply.MAXIMUM_LINE_LENGTH)));
+    });
+    assertThrows(EOFException.class, () -> {
+      ZuSMTPReply.read(stream("250-hello\r\n"));
+    });
+  }
+}
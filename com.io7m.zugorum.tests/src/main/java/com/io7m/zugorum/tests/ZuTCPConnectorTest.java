@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.ZuConfiguration;
+import com.io7m.zugorum.server.internal.ZuMetrics;
+import com.io7m.zugorum.server.internal.ZuTCPConnector;
+import com.io7m.zugorum.server.internal.ZuTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuTCPConnectorTest
+{
+  private static ZuTCPConnector connector()
+    throws Exception
+  {
+    return ZuTCPConnector.create(
+      new ZuMetrics(ZuConfiguration.DEFAULT_DURATION_BUCKETS)
+    );
+  }
+
+  private static CompletableFuture<Exception> attempt(
+    final ZuTCPConnector connector,
+    final InetSocketAddress address,
+    final Duration timeout)
+  {
+    final var future = new CompletableFuture<Exception>();
+    connector.connect(address, timeout.toNanos(), new ZuTCPConnector.CallbackType()
+    {
+      @Override
+      public void onConnected(
+        final long connectNanos)
+      {
+        future.complete(null);
+      }
+
+      @Override
+      public void onFailed(
+        final Exception e)
+      {
+        future.complete(e);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Many concurrent connection attempts are driven by a single thread.
+   */
+
+  @Test
+  public void testManyConcurrent()
+    throws Exception
+  {
+    final var count = 2000;
+
+    try (final var connector = connector();
+         final var server =
+           new ServerSocket(0, count, InetAddress.getLoopbackAddress())) {
+      final var acceptor = Thread.ofVirtual().start(() -> {
+        for (int index = 0; index < count; ++index) {
+          try {
+            server.accept().close();
+          } catch (final Exception e) {
+            return;
+          }
+        }
+      });
+
+      final var address =
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+      final var done =
+        new CountDownLatch(count);
+      final var succeeded =
+        new AtomicInteger();
+
+      for (int index = 0; index < count; ++index) {
+        attempt(connector, address, Duration.ofSeconds(10L))
+          .thenAccept(e -> {
+            if (e == null) {
+              succeeded.incrementAndGet();
+            }
+            done.countDown();
+          });
+      }
+
+      assertTrue(done.await(30L, TimeUnit.SECONDS));
+
+      assertEquals(count, succeeded.get());
+      assertEquals(0, connector.inFlight());
+      acceptor.join();
+    }
+  }
+
+  /**
+   * Connecting to a closed port reports the connection failure.
+   */
+
+  @Test
+  public void testRefused()
+    throws Exception
+  {
+    final int port;
+    try (final var server =
+           new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = server.getLocalPort();
+    }
+
+    try (final var connector = connector()) {
+      final var address =
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+      final var e =
+        attempt(connector, address, Duration.ofSeconds(5L))
+          .get(10L, TimeUnit.SECONDS);
+
+      assertInstanceOf(ConnectException.class, e);
+    }
+  }
+
+  /**
+   * A server whose accept queue is full does not answer, and the attempt
+   * times out.
+   */
+
+  @Test
+  public void testTimeout()
+    throws Exception
+  {
+    final var filling = new ArrayList<Socket>();
+    try (final var connector = connector();
+         final var server =
+           new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      final var address =
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+
+      for (int index = 0; index < 4; ++index) {
+        final var socket = new Socket();
+        try {
+          socket.connect(address, 100);
+        } catch (final Exception e) {
+          // Ignored
+        }
+        filling.add(socket);
+      }
+
+      final var time0 = System.nanoTime();
+      final var e =
+        attempt(connector, address, Duration.ofMillis(250L))
+          .get(10L, TimeUnit.SECONDS);
+      final var elapsed = Duration.ofNanos(System.nanoTime() - time0);
+
+      assertInstanceOf(ZuTimeoutException.class, e);
+      assertTrue(elapsed.compareTo(Duration.ofMillis(200L)) >= 0);
+      assertTrue(elapsed.compareTo(Duration.ofSeconds(2L)) < 0);
+    } finally {
+      for (final var socket : filling) {
+        socket.close();
+      }
+    }
+  }
+}
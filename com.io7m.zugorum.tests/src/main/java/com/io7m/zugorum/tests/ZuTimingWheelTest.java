@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2025 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+
+package com.io7m.zugorum.tests;
+
+import com.io7m.zugorum.server.internal.ZuTimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZuTimingWheelTest
+{
+  private static final Duration TICK =
+    Duration.ofMillis(10L);
+
+  @Test
+  public void testDispatchesAfterDelay()
+    throws Exception
+  {
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor();
+         final var wheel = ZuTimingWheel.create(executor, TICK, 64)) {
+      final var latch = new CountDownLatch(1);
+      final var time0 = System.nanoTime();
+      wheel.schedule(latch::countDown, Duration.ofMillis(100L));
+      assertTrue(latch.await(5L, TimeUnit.SECONDS));
+      final var elapsed = System.nanoTime() - time0;
+      assertTrue(elapsed >= Duration.ofMillis(100L).toNanos());
+    }
+  }
+
+  @Test
+  public void testDispatchesAfterMultipleRounds()
+    throws Exception
+  {
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor();
+         final var wheel = ZuTimingWheel.create(executor, TICK, 4)) {
+      final var latch = new CountDownLatch(1);
+      final var time0 = System.nanoTime();
+      wheel.schedule(latch::countDown, Duration.ofMillis(250L));
+      assertTrue(latch.await(5L, TimeUnit.SECONDS));
+      final var elapsed = System.nanoTime() - time0;
+      assertTrue(elapsed >= Duration.ofMillis(250L).toNanos());
+    }
+  }
+
+  @Test
+  public void testCancelled()
+    throws Exception
+  {
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor();
+         final var wheel = ZuTimingWheel.create(executor, TICK, 64)) {
+      final var count = new AtomicInteger();
+      final var timeout =
+        wheel.schedule(count::incrementAndGet, Duration.ofMillis(50L));
+
+      assertTrue(timeout.cancel());
+      Thread.sleep(200L);
+      assertEquals(0, count.get());
+      assertTrue(timeout.isCancelled());
+      assertFalse(timeout.isExpired());
+    }
+  }
+
+  /**
+   * Many checks spread over several rounds of the wheel are all dispatched,
+   * and none is dispatched before its deadline.
+   */
+
+  @Test
+  public void testManyChecks()
+    throws Exception
+  {
+    final var checkCount = 1_000;
+    final var window = Duration.ofMillis(200L).toNanos();
+
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor();
+         final var wheel = ZuTimingWheel.create(executor, TICK, 8)) {
+      final var latch = new CountDownLatch(checkCount);
+      final var early = new AtomicInteger();
+
+      for (int index = 0; index < checkCount; ++index) {
+        final var delay = (window * index) / checkCount;
+        final var expected = System.nanoTime() + delay;
+        wheel.schedule(() -> {
+          if (System.nanoTime() < expected) {
+            early.incrementAndGet();
+          }
+          latch.countDown();
+        }, Duration.ofNanos(delay));
+      }
+
+      assertTrue(latch.await(30L, TimeUnit.SECONDS));
+      assertEquals(0, early.get());
+    }
+  }
+}
@@ -27,4 +27,7 @@ open module com.io7m.zugorum.tests
   requires org.junit.platform.launcher;
 
   requires com.io7m.zugorum.server;
+
+  requires java.net.http;
+  requires jdk.httpserver;
 }